@@ -0,0 +1,125 @@
+package app;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the sequential and parallel versions of the
+ * {@link InventorySnapshot} aggregations.
+ *
+ * The columns are generated directly, so sizes in the tens of millions fit in
+ * memory without a product object per row; the product column repeats a small
+ * catalog. Unlike the other JMH classes, which are in package
+ * {@code benchmark}, this class is in the store's package for the snapshot's
+ * package-private constructor, which takes the columns as they are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class AnalyticsBenchmarks {
+
+	private static final int CATALOG_SIZE = 1024;
+	private static final int TOP = 10;
+
+	@Param({ "1000000", "10000000", "50000000" })
+	public int snapshotSize;
+
+	private InventorySnapshot snapshot;
+
+	/**
+	 * Generates the snapshot's columns.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		List<SalableProduct> catalog = new CatalogGenerator(42).generate(CATALOG_SIZE);
+		SalableProduct[] products = new SalableProduct[snapshotSize];
+		double[] prices = new double[snapshotSize];
+		int[] quantities = new int[snapshotSize];
+		byte[] categories = new byte[snapshotSize];
+		for (int i = 0; i < snapshotSize; i++) {
+			products[i] = catalog.get(i & (CATALOG_SIZE - 1));
+			prices[i] = 1 + random.nextInt(500_000) / 100.0;
+			quantities[i] = random.nextInt(100);
+			categories[i] = (byte) random.nextInt(ProductCategory.values().length);
+		}
+		snapshot = new InventorySnapshot(products, prices, quantities, categories);
+	}
+
+	/**
+	 * Adds up the stock value on one thread.
+	 *
+	 * @return the total value
+	 */
+	@Benchmark
+	public double totalStockValueSequential() {
+		return snapshot.getTotalStockValue(false);
+	}
+
+	/**
+	 * Adds up the stock value across the common pool.
+	 *
+	 * @return the total value
+	 */
+	@Benchmark
+	public double totalStockValueParallel() {
+		return snapshot.getTotalStockValue(true);
+	}
+
+	/**
+	 * Adds up the stock value of each category on one thread.
+	 *
+	 * @return the value of each category
+	 */
+	@Benchmark
+	public Map<ProductCategory, Double> stockValueByCategorySequential() {
+		return snapshot.getStockValueByCategory(false);
+	}
+
+	/**
+	 * Adds up the stock value of each category across the common pool.
+	 *
+	 * @return the value of each category
+	 */
+	@Benchmark
+	public Map<ProductCategory, Double> stockValueByCategoryParallel() {
+		return snapshot.getStockValueByCategory(true);
+	}
+
+	/**
+	 * Finds the ten most expensive products on one thread.
+	 *
+	 * @return the products, most expensive first
+	 */
+	@Benchmark
+	public List<SalableProduct> mostExpensiveSequential() {
+		return snapshot.getMostExpensive(TOP, false);
+	}
+
+	/**
+	 * Finds the ten most expensive products across the common pool.
+	 *
+	 * @return the products, most expensive first
+	 */
+	@Benchmark
+	public List<SalableProduct> mostExpensiveParallel() {
+		return snapshot.getMostExpensive(TOP, true);
+	}
+}
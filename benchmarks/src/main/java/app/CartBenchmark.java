@@ -0,0 +1,60 @@
+package app;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * CartBenchmark measures how many add/remove cart operations per second a
+ * {@link StoreFront} can run when the results are only returned, compared with
+ * printing every result through a {@link ConsoleView} the way the console
+ * application used to.
+ *
+ * Usage: {@code CartBenchmark [operations] [stdout]}. With {@code stdout} the
+ * printed run writes to the real console, otherwise it writes to a stream that
+ * discards output so only formatting and stream locking are measured.
+ */
+public class CartBenchmark {
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional operation count and {@code stdout}
+	 */
+	public static void main(String[] args) {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		boolean toStdout = args.length > 1 && args[1].equals("stdout");
+		PrintStream sink = toStdout ? System.out : new PrintStream(OutputStream.nullOutputStream(), true);
+		ConsoleView view = new ConsoleView(sink);
+
+		StoreFront store = new StoreFront();
+		// Warm up both paths before measuring
+		run(store, null, operations / 10);
+		run(store, view, operations / 10);
+
+		long quiet = run(store, null, operations);
+		long printed = run(store, view, operations);
+
+		System.out.printf("Operations: %d\n", operations);
+		System.out.printf("Results only: %.0f ops/s\n", operations / (quiet / 1e9));
+		System.out.printf("Printed results: %.0f ops/s\n", operations / (printed / 1e9));
+	}
+
+	/**
+	 * Alternates adding and removing one unit of a product.
+	 *
+	 * @param store      the store to run against
+	 * @param view       the view to print results with, or null to discard them
+	 * @param operations how many operations to run
+	 * @return the elapsed time in nanoseconds
+	 */
+	private static long run(StoreFront store, ConsoleView view, int operations) {
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			CartResult result = (i & 1) == 0 ? store.addToCart("Sword", 1) : store.removeFromCart("Sword", 1);
+			if (view != null) {
+				view.printResult(result);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+}
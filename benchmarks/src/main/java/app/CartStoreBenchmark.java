@@ -0,0 +1,136 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * CartStoreBenchmark measures what parking many carts in a {@link CartStore}
+ * costs: saving them, the file they take, reopening the store, and restoring
+ * carts at random as their sessions resume. For comparison it also times
+ * writing every cart as one JSON document, which a store that rewrote its
+ * whole file would do on every save.
+ *
+ * Each cart holds one to five random products from a generated catalog. The
+ * carts are saved in batches of {@link StoreSessionManager#PARK_BATCH}, as
+ * parking idle sessions and shutting down do, so each batch waits for the disk
+ * once. Saving a cart on its own waits for the disk every time, which is timed
+ * separately. The file is deleted afterwards.
+ *
+ * Usage: {@code CartStoreBenchmark [carts] [products]}
+ */
+public class CartStoreBenchmark {
+
+	private static final int RESTORES = 100_000;
+	private static final int SINGLE_SAVES = 1_000;
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional cart count and product count
+	 * @throws IOException if the store cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int carts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int products = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+		InventoryManager inventory = new InventoryManager();
+		List<SalableProduct> catalog = new CatalogGenerator(42).generate(products);
+		for (SalableProduct product : catalog) {
+			inventory.addSalableProduct(product);
+		}
+		List<String> sessions = new ArrayList<>(carts);
+		for (int i = 0; i < carts; i++) {
+			sessions.add(String.format("session-%08d", i));
+		}
+		File file = new File("benchmark_carts.dat");
+		file.delete();
+		System.out.printf("Carts: %,d | Products: %,d\n", carts, products);
+
+		Random random = new Random(7);
+		try (CartStore store = new CartStore(file)) {
+			Map<String, ShoppingCart> batch = new LinkedHashMap<>();
+			long start = System.nanoTime();
+			for (String session : sessions) {
+				ShoppingCart cart = new ShoppingCart();
+				int lines = 1 + random.nextInt(5);
+				for (int i = 0; i < lines; i++) {
+					cart.addToCart(catalog.get(random.nextInt(products)), 1 + random.nextInt(3));
+				}
+				batch.put(session, cart);
+				if (batch.size() == StoreSessionManager.PARK_BATCH) {
+					store.saveAll(batch);
+					batch.clear();
+				}
+			}
+			store.saveAll(batch);
+			long nanos = System.nanoTime() - start;
+			System.out.printf("%-10s | %,10.0f carts/s | %6.2f us/cart | file %,d bytes (%.0f bytes/cart)\n", "save",
+					carts / (nanos / 1e9), nanos / 1e3 / carts, store.getFileBytes(),
+					(double) store.getFileBytes() / carts);
+
+			int singles = Math.min(SINGLE_SAVES, carts);
+			start = System.nanoTime();
+			for (int i = 0; i < singles; i++) {
+				ShoppingCart cart = new ShoppingCart();
+				cart.addToCart(catalog.get(random.nextInt(products)), 1);
+				store.save(sessions.get(i), cart);
+			}
+			nanos = System.nanoTime() - start;
+			System.out.printf("%-10s | %,10.0f carts/s | %6.2f us/cart\n", "save one", singles / (nanos / 1e9),
+					nanos / 1e3 / singles);
+		}
+
+		long heapBefore = usedHeap();
+		long start = System.nanoTime();
+		try (CartStore store = new CartStore(file)) {
+			long nanos = System.nanoTime() - start;
+			System.out.printf("%-10s | %,10.1f ms | index heap about %,d bytes\n", "reopen", nanos / 1e6,
+					usedHeap() - heapBefore);
+
+			LatencyHistogram restore = new LatencyHistogram();
+			long units = 0;
+			for (int i = 0; i < RESTORES; i++) {
+				String session = sessions.get(random.nextInt(carts));
+				long restoreStart = System.nanoTime();
+				ShoppingCart cart = store.load(session, inventory);
+				restore.record(System.nanoTime() - restoreStart);
+				units += cart.getProductsInCart().size();
+			}
+			System.out.printf("%-10s | p50 %8.1f us | p99 %8.1f us | lines %d\n", "restore",
+					restore.getPercentile(0.50) / 1e3, restore.getPercentile(0.99) / 1e3, units);
+		}
+
+		// What one save would cost if every cart were rewritten as JSON
+		Map<String, Map<String, Integer>> all = new LinkedHashMap<>();
+		for (String session : sessions) {
+			Map<String, Integer> lines = new LinkedHashMap<>();
+			int count = 1 + random.nextInt(5);
+			for (int i = 0; i < count; i++) {
+				lines.merge(catalog.get(random.nextInt(products)).getName(), 1 + random.nextInt(3), Integer::sum);
+			}
+			all.put(session, lines);
+		}
+		File json = new File("benchmark_carts.json");
+		start = System.nanoTime();
+		new ObjectMapper().writeValue(json, all);
+		System.out.printf("%-10s | %,10.1f ms per save | file %,d bytes\n", "json all", (System.nanoTime() - start) / 1e6,
+				json.length());
+		json.delete();
+		file.delete();
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
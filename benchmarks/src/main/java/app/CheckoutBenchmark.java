@@ -0,0 +1,110 @@
+package app;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * CheckoutBenchmark measures checkouts per second when many shoppers check
+ * out at the same time, purchasing each cart directly with
+ * {@link StoreFront#purchaseFromCart()} against purchasing through a
+ * {@link CheckoutPipeline}.
+ *
+ * Each shopper fills a cart with one to three products and checks out, over
+ * and over. A share of the lines go to a few hot products, as in a sale, so
+ * every checkout wants the same stock. The inventory has a subscriber on its
+ * change stream, as it does in the store, so each stock change is published.
+ * Stock is large enough that no checkout runs out.
+ *
+ * Usage: {@code CheckoutBenchmark [shoppers] [seconds per run] [products]}
+ */
+public class CheckoutBenchmark {
+
+	private static final double[] HOT_SHARES = { 0.0, 0.5, 0.9 };
+	private static final int HOT_PRODUCTS = 8;
+
+	/**
+	 * How a cart is checked out.
+	 */
+	private interface Checkout {
+		CartResult purchase(ShoppingCart cart);
+	}
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional shopper count, seconds per run and product count
+	 * @throws InterruptedException if interrupted while the shoppers run
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int shoppers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int products = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+		System.out.printf("Shoppers: %d | Products: %d | Hot products: %d | Seconds per run: %d\n", shoppers, products,
+				HOT_PRODUCTS, seconds);
+		for (double hotShare : HOT_SHARES) {
+			InventoryManager inventory = new InventoryManager();
+			List<SalableProduct> catalog = new CatalogGenerator(42).generate(products);
+			for (SalableProduct product : catalog) {
+				product.setQuantity(1_000_000_000);
+				inventory.addSalableProduct(product);
+			}
+			ChangeStream.Subscription subscription = inventory.getChangeStream().subscribe("benchmark", events -> {
+			});
+
+			Checkout direct = cart -> StoreFront.purchaseFromCart(inventory, cart);
+			// Warm up both paths before measuring
+			run(shoppers, 1, catalog, hotShare, direct);
+			run(shoppers, 1, catalog, hotShare, new CheckoutPipeline(inventory)::checkout);
+
+			report(hotShare, "direct", run(shoppers, seconds, catalog, hotShare, direct), seconds, 1);
+			CheckoutPipeline pipeline = new CheckoutPipeline(inventory);
+			LatencyHistogram latency = run(shoppers, seconds, catalog, hotShare, pipeline::checkout);
+			report(hotShare, "pipeline", latency, seconds, pipeline.getAverageBatchSize());
+			subscription.close();
+		}
+	}
+
+	/**
+	 * Runs the shoppers for a number of seconds.
+	 *
+	 * @return the latency of every checkout
+	 */
+	private static LatencyHistogram run(int shoppers, int seconds, List<SalableProduct> catalog, double hotShare,
+			Checkout checkout) throws InterruptedException {
+		LatencyHistogram latency = new LatencyHistogram();
+		long end = System.nanoTime() + seconds * 1_000_000_000L;
+		Thread[] threads = new Thread[shoppers];
+		for (int s = 0; s < shoppers; s++) {
+			threads[s] = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				ShoppingCart cart = new ShoppingCart();
+				while (System.nanoTime() < end) {
+					int lines = 1 + random.nextInt(3);
+					for (int i = 0; i < lines; i++) {
+						int index = random.nextDouble() < hotShare ? random.nextInt(HOT_PRODUCTS)
+								: random.nextInt(catalog.size());
+						cart.addToCart(catalog.get(index), 1);
+					}
+					long start = System.nanoTime();
+					CartResult result = checkout.purchase(cart);
+					latency.record(System.nanoTime() - start);
+					if (result.getStatus() != CartResult.Status.PURCHASED) {
+						throw new IllegalStateException("Checkout failed: " + result.getStatus());
+					}
+				}
+			});
+			threads[s].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return latency;
+	}
+
+	private static void report(double hotShare, String mode, LatencyHistogram latency, int seconds, double batch) {
+		System.out.printf("hot %3.0f%% | %-8s | %,10.0f checkouts/s | p50 %8.1f us | p99 %8.1f us | batch %5.1f\n",
+				hotShare * 100, mode, (double) latency.getCount() / seconds, latency.getPercentile(0.50) / 1e3,
+				latency.getPercentile(0.99) / 1e3, batch);
+	}
+}
@@ -0,0 +1,127 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ColumnarBenchmark compares {@link ColumnarInventory} with a list of product
+ * objects, the way {@link InventoryManager} stores them. It measures the heap
+ * each layout uses, sorting by name then price, and a full scan for the stock
+ * value. Product names repeat, as they do when the same item comes in several
+ * variants.
+ *
+ * Usage: {@code ColumnarBenchmark [products] [rounds]}
+ */
+public class ColumnarBenchmark {
+
+	private static final String[] NAMES = { "Sword", "Axe", "Shield", "Helmet", "Bow", "Dagger", "Spear", "Potion",
+			"Herb", "Gauntlets", "Boots", "Mace", "Staff", "Elixir", "Tonic" };
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional product count and number of measured rounds
+	 */
+	public static void main(String[] args) {
+		int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		long before = usedHeap();
+		List<SalableProduct> objects = generate(productCount);
+		long objectHeap = usedHeap() - before;
+
+		before = usedHeap();
+		ColumnarInventory columns = load(generate(productCount));
+		long columnHeap = usedHeap() - before;
+
+		long objectSort = Long.MAX_VALUE;
+		long columnSort = Long.MAX_VALUE;
+		long objectScan = Long.MAX_VALUE;
+		long columnScan = Long.MAX_VALUE;
+		// The first round of each is a warm-up and is not counted
+		for (int round = 0; round <= rounds; round++) {
+			Collections.shuffle(objects, new Random(round));
+			long start = System.nanoTime();
+			Collections.sort(objects);
+			long sorted = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			double value = 0;
+			for (SalableProduct product : objects) {
+				value += product.getPrice() * product.getQuantity();
+			}
+			long scanned = System.nanoTime() - start;
+
+			long columnSorted = columnSort(columns, productCount, round);
+			start = System.nanoTime();
+			value -= columns.getTotalStockValue();
+			long columnScanned = System.nanoTime() - start;
+
+			if (round > 0) {
+				objectSort = Math.min(objectSort, sorted);
+				objectScan = Math.min(objectScan, scanned);
+				columnSort = Math.min(columnSort, columnSorted);
+				columnScan = Math.min(columnScan, columnScanned);
+			}
+			if (Math.abs(value) > 1) {
+				throw new IllegalStateException("Stock values disagree by " + value);
+			}
+		}
+
+		System.out.printf("Products: %,d | Best of %d rounds\n", productCount, rounds);
+		System.out.printf("Heap:         objects %8.1f MB | columns %8.1f MB\n", objectHeap / 1e6, columnHeap / 1e6);
+		System.out.printf("Sort:         objects %8.1f ms | columns %8.1f ms\n", objectSort / 1e6, columnSort / 1e6);
+		System.out.printf("Stock value:  objects %8.1f ms | columns %8.1f ms\n", objectScan / 1e6, columnScan / 1e6);
+	}
+
+	private static List<SalableProduct> generate(int productCount) {
+		Random random = new Random(42);
+		List<SalableProduct> products = new ArrayList<>(productCount);
+		for (int i = 0; i < productCount; i++) {
+			String name = NAMES[random.nextInt(NAMES.length)] + " " + random.nextInt(productCount / 10 + 1);
+			String description = "Variant " + random.nextInt(100);
+			products.add(new Weapon(name, description, 1 + random.nextInt(500_000) / 100.0, random.nextInt(100)));
+		}
+		return products;
+	}
+
+	/**
+	 * Loads products into a new columnar inventory. Done in its own method so the
+	 * product list can be collected before the heap is measured.
+	 */
+	private static ColumnarInventory load(List<SalableProduct> products) {
+		ColumnarInventory columns = new ColumnarInventory();
+		for (SalableProduct product : products) {
+			columns.addSalableProduct(product);
+		}
+		return columns;
+	}
+
+	/**
+	 * Sorts the columns after putting them back into a random order, timing only
+	 * the sort.
+	 */
+	private static long columnSort(ColumnarInventory columns, int productCount, int round) {
+		List<SalableProduct> shuffled = columns.getAllProduct();
+		Collections.shuffle(shuffled, new Random(round));
+		ColumnarInventory fresh = load(shuffled);
+		long start = System.nanoTime();
+		fresh.sortByNameThenPrice();
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Measures the live heap after asking for a few full collections.
+	 *
+	 * @return the bytes in use
+	 */
+	static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
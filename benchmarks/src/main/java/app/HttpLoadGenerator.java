@@ -0,0 +1,126 @@
+package app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * HttpLoadGenerator puts load on a local {@link ShopperHttpService}. It starts
+ * the service on a free port with a sample inventory, then runs shoppers from a
+ * pool of client threads and reports request throughput and latency.
+ *
+ * Usage: {@code HttpLoadGenerator [shoppers] [clientThreads] [serverThreads]}
+ */
+public class HttpLoadGenerator {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * Entry point for the load generator.
+	 *
+	 * @param args optional shopper count, client thread count and server thread
+	 *             count
+	 * @throws Exception if the server cannot start or the run is interrupted
+	 */
+	public static void main(String[] args) throws Exception {
+		int shoppers = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int clientThreads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int serverThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		// As in StoreFront, so the latencies are not delayed ACKs
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+
+		InventoryManager inventory = new InventoryManager();
+		for (int i = 0; i < 100; i++) {
+			inventory.addSalableProduct(new SalableProduct("Product " + i, "Sample product " + i, 10.0 + i, 1_000_000));
+		}
+		ExecutorService serverPool = Executors.newFixedThreadPool(serverThreads);
+		ShopperHttpService service = new ShopperHttpService(new StoreSessionManager(inventory, 60_000), 0, serverPool);
+		service.start();
+		String base = "http://localhost:" + service.getPort();
+
+		ExecutorService clients = Executors.newFixedThreadPool(clientThreads);
+		int requestsPerShopper = 4;
+		long[] latencies = new long[shoppers * requestsPerShopper];
+		AtomicInteger failures = new AtomicInteger();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < shoppers; i++) {
+			final int shopper = i;
+			clients.execute(() -> {
+				int slot = shopper * requestsPerShopper;
+				try {
+					long began = System.nanoTime();
+					String session = (String) MAPPER.readValue(send("POST", base + "/session"), Map.class)
+							.get("session");
+					latencies[slot] = System.nanoTime() - began;
+
+					String product = URLEncoder.encode("Product " + (shopper % 100), "UTF-8");
+					began = System.nanoTime();
+					send("POST", base + "/cart/add?session=" + session + "&product=" + product + "&qty=1");
+					latencies[slot + 1] = System.nanoTime() - began;
+
+					began = System.nanoTime();
+					send("GET", base + "/cart?session=" + session);
+					latencies[slot + 2] = System.nanoTime() - began;
+
+					began = System.nanoTime();
+					send("POST", base + "/cart/purchase?session=" + session);
+					latencies[slot + 3] = System.nanoTime() - began;
+				} catch (IOException e) {
+					failures.incrementAndGet();
+				}
+			});
+		}
+		clients.shutdown();
+		clients.awaitTermination(1, TimeUnit.HOURS);
+		long elapsed = System.nanoTime() - start;
+		service.stop(0);
+		serverPool.shutdown();
+
+		Arrays.sort(latencies);
+		double seconds = elapsed / 1e9;
+		System.out.printf("Shoppers: %d | Client threads: %d | Server threads: %d\n", shoppers, clientThreads,
+				serverThreads);
+		System.out.printf("Elapsed: %.2f s | Failed shoppers: %d\n", seconds, failures.get());
+		System.out.printf("Throughput: %.0f requests/s\n", latencies.length / seconds);
+		System.out.printf("Request latency (us): p50 %d | p99 %d | max %d\n",
+				LoadDriver.percentile(latencies, 0.50) / 1000, LoadDriver.percentile(latencies, 0.99) / 1000,
+				latencies[latencies.length - 1] / 1000);
+	}
+
+	/**
+	 * Sends one request and reads the whole response body.
+	 *
+	 * @param method the HTTP method
+	 * @param url    the full request URL
+	 * @return the response body
+	 * @throws IOException if the request fails
+	 */
+	static byte[] send(String method, String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod(method);
+		int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				body.write(buffer, 0, read);
+			}
+			return body.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package app;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * InventoryRenderBenchmark compares listing a large inventory with one
+ * {@code printf} per product against {@link InventoryRenderer}. Both write to a
+ * temporary file, the same as a console redirected to a log.
+ *
+ * Usage: {@code InventoryRenderBenchmark [products] [rounds]}
+ */
+public class InventoryRenderBenchmark {
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional product count and number of measured rounds
+	 * @throws IOException if the temporary file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		List<SalableProduct> products = new ArrayList<>(productCount);
+		for (int i = 0; i < productCount; i++) {
+			products.add(new SalableProduct("Product " + i, "Sample description for product " + i, 10.0 + i * 0.37,
+					i % 500));
+		}
+		File file = File.createTempFile("inventory-render", ".txt");
+		file.deleteOnExit();
+
+		long printfBest = Long.MAX_VALUE;
+		long rendererBest = Long.MAX_VALUE;
+		// The first round of each is a warm-up and is not counted
+		for (int round = 0; round <= rounds; round++) {
+			long printf = printfListing(products, file);
+			long rendered = rendererListing(products, file);
+			if (round > 0) {
+				printfBest = Math.min(printfBest, printf);
+				rendererBest = Math.min(rendererBest, rendered);
+			}
+		}
+
+		System.out.printf("Products: %d | Best of %d rounds\n", productCount, rounds);
+		System.out.printf("printf per row: %.1f ms\n", printfBest / 1e6);
+		System.out.printf("InventoryRenderer: %.1f ms\n", rendererBest / 1e6);
+	}
+
+	private static long printfListing(List<SalableProduct> products, File file) throws IOException {
+		// Same as System.out: a PrintStream that flushes on every newline
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)), true)) {
+			long start = System.nanoTime();
+			out.print(InventoryRenderer.HEADER);
+			for (SalableProduct product : products) {
+				out.printf("Name: %s | Description: %s | Price: $%.2f | Quantity: %d\n", product.getName(),
+						product.getDescription(), product.getPrice(), product.getQuantity());
+			}
+			out.print(InventoryRenderer.FOOTER);
+			out.flush();
+			return System.nanoTime() - start;
+		}
+	}
+
+	private static long rendererListing(List<SalableProduct> products, File file) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			long start = System.nanoTime();
+			new InventoryRenderer(out).renderAll(products);
+			return System.nanoTime() - start;
+		}
+	}
+}
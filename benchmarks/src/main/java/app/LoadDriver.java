@@ -0,0 +1,93 @@
+package app;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LoadDriver simulates many shoppers using a {@link StoreSessionManager} at the
+ * same time and reports throughput and latency.
+ *
+ * Each simulated shopper opens a session, adds a few random products, removes
+ * one of them, purchases the cart and closes the session.
+ *
+ * Usage: {@code LoadDriver [shoppers] [threads] [products]}
+ */
+public class LoadDriver {
+
+	/**
+	 * Entry point for the load driver.
+	 *
+	 * @param args optional shopper count, thread count and product count
+	 * @throws InterruptedException if interrupted while waiting for shoppers
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int shoppers = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+		int productCount = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+		InventoryManager inventory = new InventoryManager();
+		for (int i = 0; i < productCount; i++) {
+			inventory.addSalableProduct(new SalableProduct("Product " + i, "Sample product " + i, 10.0 + i, 1_000_000));
+		}
+		StoreSessionManager manager = new StoreSessionManager(inventory, 60_000);
+		manager.startEvictor(1_000);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long[] latencies = new long[shoppers];
+		AtomicInteger purchases = new AtomicInteger();
+		AtomicInteger operations = new AtomicInteger();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < shoppers; i++) {
+			final int shopper = i;
+			pool.execute(() -> {
+				Random random = new Random(shopper);
+				long began = System.nanoTime();
+				String sessionId = manager.openSession();
+				String first = "Product " + random.nextInt(productCount);
+				manager.addToCart(sessionId, first, 2);
+				for (int j = 0; j < 3; j++) {
+					manager.addToCart(sessionId, "Product " + random.nextInt(productCount), 1 + random.nextInt(3));
+				}
+				manager.removeFromCart(sessionId, first, 1);
+				if (manager.purchaseFromCart(sessionId).isSuccess()) {
+					purchases.incrementAndGet();
+				}
+				manager.closeSession(sessionId);
+				latencies[shopper] = System.nanoTime() - began;
+				operations.addAndGet(7);
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.HOURS);
+		long elapsed = System.nanoTime() - start;
+		manager.stopEvictor();
+
+		Arrays.sort(latencies);
+		double seconds = elapsed / 1e9;
+		System.out.printf("Shoppers: %d | Threads: %d | Products: %d\n", shoppers, threads, productCount);
+		System.out.printf("Elapsed: %.2f s | Purchases: %d\n", seconds, purchases.get());
+		System.out.printf("Throughput: %.0f shoppers/s | %.0f ops/s\n", shoppers / seconds, operations.get() / seconds);
+		System.out.printf("Shopper latency (us): p50 %d | p99 %d | max %d\n", percentile(latencies, 0.50) / 1000,
+				percentile(latencies, 0.99) / 1000, latencies[latencies.length - 1] / 1000);
+	}
+
+	/**
+	 * Gets a percentile from sorted values.
+	 *
+	 * @param sorted   values in ascending order
+	 * @param fraction the percentile as a fraction, for example 0.99
+	 * @return the value at that percentile
+	 */
+	static long percentile(long[] sorted, double fraction) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(fraction * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+}
@@ -0,0 +1,58 @@
+package app;
+
+/**
+ * MetricsBenchmark measures what the metrics cost on the cart hot path: the
+ * same add/remove loop as {@link CartBenchmark} runs with
+ * {@link MetricsRegistry#GLOBAL} enabled and disabled, alternating so both see
+ * the same JIT state.
+ *
+ * Usage: {@code MetricsBenchmark [operations] [rounds]}
+ */
+public class MetricsBenchmark {
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional operations per round and number of measured rounds
+	 */
+	public static void main(String[] args) {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		StoreFront store = new StoreFront();
+		MetricsRegistry metrics = MetricsRegistry.GLOBAL;
+
+		long enabledBest = Long.MAX_VALUE;
+		long disabledBest = Long.MAX_VALUE;
+		// The first round of each is a warm-up and is not counted
+		for (int round = 0; round <= rounds; round++) {
+			metrics.setEnabled(true);
+			long enabled = run(store, operations);
+			metrics.setEnabled(false);
+			long disabled = run(store, operations);
+			if (round > 0) {
+				enabledBest = Math.min(enabledBest, enabled);
+				disabledBest = Math.min(disabledBest, disabled);
+			}
+		}
+		metrics.setEnabled(true);
+
+		System.out.printf("Operations: %,d | Best of %d rounds\n", operations, rounds);
+		System.out.printf("Metrics disabled: %6.1f ns/op\n", (double) disabledBest / operations);
+		System.out.printf("Metrics enabled:  %6.1f ns/op\n", (double) enabledBest / operations);
+		System.out.printf("Overhead:         %6.1f%%\n", 100.0 * (enabledBest - disabledBest) / disabledBest);
+		System.out.printf("cart.add p50 %d ns | p99 %d ns\n", metrics.timer("cart.add").getPercentile(0.5),
+				metrics.timer("cart.add").getPercentile(0.99));
+	}
+
+	private static long run(StoreFront store, int operations) {
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			if ((i & 1) == 0) {
+				store.addToCart("Sword", 1);
+			} else {
+				store.removeFromCart("Sword", 1);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+}
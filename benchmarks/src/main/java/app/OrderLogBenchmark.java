@@ -0,0 +1,123 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * OrderLogBenchmark measures how fast the {@link OrderLog} records orders, one
+ * at a time and in batches as the {@link CheckoutPipeline} records them, and
+ * how long the sales of one product over a time range take from the product
+ * index against replaying every order to add them up.
+ *
+ * Each order holds one to three random products from a generated catalog.
+ * The log is written to a directory that is deleted afterwards.
+ *
+ * Usage: {@code OrderLogBenchmark [orders] [products] [batch size]}
+ */
+public class OrderLogBenchmark {
+
+	private static final int QUERIES = 1_000;
+	private static final int SCANS = 3;
+	/** Time between orders, so the log spans days and the ranges many sales buckets. */
+	private static final long ORDER_MILLIS = 1000;
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional order count, product count and batch size
+	 * @throws IOException if the log cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int orders = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		int products = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+		int batch = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+		List<SalableProduct> catalog = new CatalogGenerator(42).generate(products);
+		File directory = new File("benchmark_orders");
+		delete(directory);
+		System.out.printf("Orders: %d | Products: %d | Batch: %d\n", orders, products, batch);
+		try (OrderLog log = new OrderLog(directory)) {
+			Random random = new Random(7);
+			// Time passes a second per order so the ranges below cover a known share
+			long start = System.nanoTime();
+			for (int i = 0; i < orders / 2; i++) {
+				log.appendAll(List.of(randomOrder(catalog, random)), i * ORDER_MILLIS);
+			}
+			report("append one", orders / 2, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (int i = orders / 2; i < orders; i += batch) {
+				List<Map<SalableProduct, Integer>> purchases = new ArrayList<>(batch);
+				for (int j = i; j < Math.min(orders, i + batch); j++) {
+					purchases.add(randomOrder(catalog, random));
+				}
+				log.appendAll(purchases, i * ORDER_MILLIS);
+			}
+			report("append batch", orders - orders / 2, System.nanoTime() - start);
+			System.out.printf("Segments: %d\n", log.getSegmentCount());
+
+			LatencyHistogram indexed = new LatencyHistogram();
+			long units = 0;
+			for (int i = 0; i < QUERIES; i++) {
+				String name = catalog.get(random.nextInt(products)).getName();
+				long from = random.nextInt(orders / 2) * ORDER_MILLIS;
+				long queryStart = System.nanoTime();
+				units += log.getSales(name, from, from + orders / 4 * ORDER_MILLIS).getUnits();
+				indexed.record(System.nanoTime() - queryStart);
+			}
+			System.out.printf("%-12s | p50 %10.1f us | p99 %10.1f us | units %d\n", "sales index",
+					indexed.getPercentile(0.50) / 1e3, indexed.getPercentile(0.99) / 1e3, units);
+
+			LatencyHistogram scanned = new LatencyHistogram();
+			for (int i = 0; i < SCANS; i++) {
+				String name = catalog.get(random.nextInt(products)).getName();
+				long from = random.nextInt(orders / 2) * ORDER_MILLIS;
+				long to = from + orders / 4 * ORDER_MILLIS;
+				long[] total = new long[1];
+				long queryStart = System.nanoTime();
+				log.replay(0, order -> {
+					if (order.getTimestampMillis() >= from && order.getTimestampMillis() <= to) {
+						for (Order.Line line : order.getLines()) {
+							if (line.getProductName().equalsIgnoreCase(name)) {
+								total[0] += line.getQuantity();
+							}
+						}
+					}
+				});
+				scanned.record(System.nanoTime() - queryStart);
+			}
+			System.out.printf("%-12s | p50 %10.1f us | p99 %10.1f us\n", "replay scan", scanned.getPercentile(0.50) / 1e3,
+					scanned.getPercentile(0.99) / 1e3);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	private static Map<SalableProduct, Integer> randomOrder(List<SalableProduct> catalog, Random random) {
+		Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+		int count = 1 + random.nextInt(3);
+		for (int i = 0; i < count; i++) {
+			lines.merge(catalog.get(random.nextInt(catalog.size())), 1 + random.nextInt(3), Integer::sum);
+		}
+		return lines;
+	}
+
+	private static void report(String mode, int orders, long nanos) {
+		System.out.printf("%-12s | %,10.0f orders/s\n", mode, orders / (nanos / 1e9));
+	}
+
+	private static void delete(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+}
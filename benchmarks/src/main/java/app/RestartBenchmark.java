@@ -0,0 +1,96 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * RestartBenchmark measures how long the store takes to stop and to start
+ * again with a large inventory.
+ *
+ * Stopping is timed for an {@link AdminService} whose persister has changes
+ * not yet saved, as at the end of a busy day: the service drains and the
+ * persister writes the inventory file. Starting is timed by loading the
+ * inventory from its JSON file and from the snapshot written at shutdown, and
+ * adding every product to a new {@link InventoryManager}. The first round of
+ * each includes loading their classes, as a restart would.
+ *
+ * Usage: {@code RestartBenchmark [products] [rounds]}
+ */
+public class RestartBenchmark {
+
+	private static final String JSON_FILE = "benchmark_restart.json";
+	private static final String SNAPSHOT_FILE = "benchmark_restart.snapshot";
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional product count and number of rounds
+	 * @throws Exception if a file cannot be written or the service cannot start
+	 */
+	public static void main(String[] args) throws Exception {
+		int products = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		InventoryManager inventory = new InventoryManager();
+		for (SalableProduct product : new CatalogGenerator(42).generate(products)) {
+			inventory.addSalableProduct(product);
+		}
+		System.out.printf("Products: %,d | Rounds: %d\n", products, rounds);
+
+		// Stop an admin service with every product changed since its last save
+		int port;
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+		InventoryPersister persister = new InventoryPersister(inventory, JSON_FILE, 60_000, Integer.MAX_VALUE,
+				InventoryPersister.Durability.ACK_AFTER_APPLY);
+		AdminService admin = new AdminService(inventory, port, AdminService.DEFAULT_CACHE_BYTES, persister);
+		new Thread(admin).start();
+		StoreLoadHarness.awaitPort(port, 5000);
+		for (SalableProduct product : inventory.getProductsSnapshot()) {
+			product.setQuantity(product.getQuantity() + 1);
+		}
+		StoreLifecycle lifecycle = new StoreLifecycle();
+		lifecycle.add("snapshot", () -> FileService.saveSnapshot(SNAPSHOT_FILE, inventory.getProductsSnapshot()));
+		lifecycle.add("admin", admin::close);
+		lifecycle.shutdown();
+		System.out.printf("Files: json %,d bytes | snapshot %,d bytes\n", new File(JSON_FILE).length(),
+				new File(SNAPSHOT_FILE).length());
+
+		try {
+			for (int round = 1; round <= rounds; round++) {
+				double[] json = time(() -> FileService.loadFromFile(JSON_FILE));
+				double[] snapshot = time(() -> FileService.loadSnapshot(SNAPSHOT_FILE));
+				System.out.printf("round %d | json read %8.1f ms + add %8.1f ms | snapshot read %8.1f ms + add %8.1f ms\n",
+						round, json[0], json[1], snapshot[0], snapshot[1]);
+			}
+		} finally {
+			new File(JSON_FILE).delete();
+			new File(SNAPSHOT_FILE).delete();
+		}
+	}
+
+	/**
+	 * How the inventory is read at start.
+	 */
+	private interface Loader {
+		SalableProduct[] load() throws IOException;
+	}
+
+	/**
+	 * Loads the inventory and adds it to a new inventory manager.
+	 *
+	 * @return the milliseconds taken to read the file and to add the products
+	 */
+	private static double[] time(Loader loader) throws IOException {
+		long start = System.nanoTime();
+		SalableProduct[] loaded = loader.load();
+		long read = System.nanoTime();
+		InventoryManager inventory = new InventoryManager();
+		for (SalableProduct product : loaded) {
+			inventory.addSalableProduct(product);
+		}
+		return new double[] { (read - start) / 1e6, (System.nanoTime() - read) / 1e6 };
+	}
+}
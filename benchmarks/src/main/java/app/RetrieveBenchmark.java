@@ -0,0 +1,69 @@
+package app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * RetrieveBenchmark compares answering the admin "R" command by serializing the
+ * whole product list against {@link ProductJsonCache}, with a share of the
+ * products changed between retrieves.
+ *
+ * Usage: {@code RetrieveBenchmark [products] [changed percent] [rounds]}
+ */
+public class RetrieveBenchmark {
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional product count, percent changed per round and rounds
+	 * @throws IOException if serialization fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		double changed = args.length > 1 ? Double.parseDouble(args[1]) / 100 : 0.01;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+		List<SalableProduct> products = new ArrayList<>(productCount);
+		for (int i = 0; i < productCount; i++) {
+			products.add(new Weapon("Product " + i, "Sample description for product " + i, 10.0 + i * 0.37, i % 500));
+		}
+		ObjectWriter listWriter = new ObjectMapper().writerFor(FileService.PRODUCT_LIST);
+		ProductJsonCache cache = new ProductJsonCache(AdminService.DEFAULT_CACHE_BYTES * 4);
+		OutputStream sink = OutputStream.nullOutputStream();
+		Random random = new Random(42);
+
+		long listBest = Long.MAX_VALUE;
+		long cacheBest = Long.MAX_VALUE;
+		// The first round of each is a warm-up and is not counted
+		for (int round = 0; round <= rounds; round++) {
+			for (int i = 0; i < productCount * changed; i++) {
+				SalableProduct product = products.get(random.nextInt(productCount));
+				product.setQuantity(product.getQuantity() + 1);
+			}
+			long start = System.nanoTime();
+			// The writer closes the stream it writes to
+			listWriter.writeValue(OutputStream.nullOutputStream(), products);
+			long listed = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			cache.writeArray(products, sink);
+			long cached = System.nanoTime() - start;
+			if (round > 0) {
+				listBest = Math.min(listBest, listed);
+				cacheBest = Math.min(cacheBest, cached);
+			}
+		}
+
+		System.out.printf("Products: %,d | Changed per round: %.1f%% | Best of %d rounds\n", productCount,
+				changed * 100, rounds);
+		System.out.printf("Serialize list:   %6.1f ms\n", listBest / 1e6);
+		System.out.printf("ProductJsonCache: %6.1f ms | hit rate %.3f | %,d bytes cached\n", cacheBest / 1e6,
+				cache.getHitRate(), cache.getCachedBytes());
+	}
+}
@@ -0,0 +1,79 @@
+package app;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * SearchBenchmark builds an inventory of generated products and measures how
+ * long it takes to index them and to answer prefix, multi-word and misspelled
+ * searches.
+ *
+ * Usage: {@code SearchBenchmark [products] [queries]}
+ */
+public class SearchBenchmark {
+
+	private static final String[] ADJECTIVES = { "iron", "steel", "golden", "ancient", "cursed", "blessed", "heavy",
+			"light", "rusty", "royal", "shadow", "crystal", "dragon", "elven", "dwarven", "silver" };
+	private static final String[] NOUNS = { "sword", "axe", "shield", "helmet", "bow", "dagger", "spear", "potion",
+			"herb", "armor", "gauntlets", "boots", "mace", "staff", "elixir", "tonic" };
+	private static final String[] WORDS = { "sharp", "sturdy", "heals", "protects", "forged", "in", "the", "north",
+			"by", "masters", "restores", "stamina", "blocks", "arrows", "glows", "at", "night", "old", "rare" };
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional product count and number of queries of each kind
+	 */
+	public static void main(String[] args) {
+		int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+		Random random = new Random(42);
+
+		InventoryManager inventory = new InventoryManager();
+		long start = System.nanoTime();
+		for (int i = 0; i < productCount; i++) {
+			String name = pick(random, ADJECTIVES) + " " + pick(random, NOUNS) + " " + i;
+			String description = pick(random, WORDS) + " " + pick(random, WORDS) + " " + pick(random, WORDS);
+			inventory.addSalableProduct(new SalableProduct(name, description, 1 + random.nextInt(5000), 10));
+		}
+		System.out.printf("Indexed %d products in %.1f s\n", productCount, (System.nanoTime() - start) / 1e9);
+
+		measure("prefix", inventory, queries, r -> pick(r, NOUNS).substring(0, 3));
+		measure("multi-word", inventory, queries, r -> pick(r, ADJECTIVES) + " " + pick(r, NOUNS));
+		measure("misspelled", inventory, queries, r -> {
+			String word = pick(r, ADJECTIVES);
+			int at = 1 + r.nextInt(word.length() - 1);
+			return word.substring(0, at) + "x" + word.substring(at + 1);
+		});
+		measure("exact id", inventory, queries, r -> String.valueOf(r.nextInt(productCount)));
+	}
+
+	/**
+	 * Makes a query from a random source.
+	 */
+	private interface QueryMaker {
+		String make(Random random);
+	}
+
+	private static void measure(String kind, InventoryManager inventory, int queries, QueryMaker maker) {
+		Random random = new Random(7);
+		// Warm up before measuring
+		for (int i = 0; i < queries / 10; i++) {
+			inventory.search(maker.make(random), 20);
+		}
+		long[] latencies = new long[queries];
+		for (int i = 0; i < queries; i++) {
+			String query = maker.make(random);
+			long began = System.nanoTime();
+			inventory.search(query, 20);
+			latencies[i] = System.nanoTime() - began;
+		}
+		Arrays.sort(latencies);
+		System.out.printf("%-10s p50 %8.1f us | p99 %8.1f us\n", kind, LoadDriver.percentile(latencies, 0.50) / 1e3,
+				LoadDriver.percentile(latencies, 0.99) / 1e3);
+	}
+
+	private static String pick(Random random, String[] words) {
+		return words[random.nextInt(words.length)];
+	}
+}
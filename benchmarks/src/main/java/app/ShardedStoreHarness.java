@@ -0,0 +1,150 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * ShardedStoreHarness spreads a generated catalog over several
+ * {@link ShardNode} processes on this machine and drives them through a
+ * {@link ShardRouter}.
+ *
+ * It starts the shards, loads the catalog through the router, and checks that
+ * the category totals gathered from every shard match the catalog. Then it
+ * times lookups by name, which each go to one shard, cart adds, and a full
+ * listing, which asks every shard and merges the answers. The shards and their
+ * files are removed at the end.
+ *
+ * Usage: {@code ShardedStoreHarness [shards] [products] [lookups] [shard heap]}
+ */
+public class ShardedStoreHarness {
+
+	private static final int LOAD_BATCH = 5_000;
+
+	/**
+	 * Entry point for the harness.
+	 *
+	 * @param args optional shard count, product count, lookup count and the
+	 *             {@code -Xmx} of each shard, such as {@code 256m}
+	 * @throws Exception if a shard cannot be started or reached
+	 */
+	public static void main(String[] args) throws Exception {
+		int shards = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int products = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+		int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+		String heap = args.length > 3 ? args[3] : "256m";
+
+		File dir = Files.createTempDirectory("shards").toFile();
+		List<Process> processes = new ArrayList<>();
+		try {
+			List<String> addresses = startShards(shards, heap, dir, processes);
+			try (ShardRouter router = new ShardRouter(addresses)) {
+				run(router, products, lookups);
+			}
+		} finally {
+			for (Process process : processes) {
+				process.destroy();
+			}
+			for (Process process : processes) {
+				process.waitFor();
+			}
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	private static List<String> startShards(int shards, String heap, File dir, List<Process> processes)
+			throws IOException, InterruptedException {
+		String java = ProcessHandle.current().info().command().orElse("java");
+		String classPath = System.getProperty("java.class.path");
+		List<String> addresses = new ArrayList<>();
+		int[] ports = new int[shards];
+		for (int i = 0; i < shards; i++) {
+			ports[i] = StoreLoadHarness.freePort();
+			ProcessBuilder builder = new ProcessBuilder(java, "-Xmx" + heap, "-cp", classPath, "app.ShardNode",
+					String.valueOf(ports[i]), new File(dir, "shard-" + i + ".json").getPath());
+			builder.redirectErrorStream(true);
+			builder.redirectOutput(new File(dir, "shard-" + i + ".log"));
+			processes.add(builder.start());
+			addresses.add("localhost:" + ports[i]);
+		}
+		for (int port : ports) {
+			StoreLoadHarness.awaitPort(port, 60_000);
+		}
+		System.out.printf("Started %d shards with -Xmx%s: %s\n", shards, heap, addresses);
+		return addresses;
+	}
+
+	private static void run(ShardRouter router, int products, int lookups) throws IOException {
+		List<SalableProduct> catalog = new CatalogGenerator(42).generate(products);
+		int[] owned = new int[router.getShardCount()];
+		for (SalableProduct product : catalog) {
+			owned[router.shardFor(product.getName())]++;
+		}
+		System.out.printf("%,d products | per shard %s\n", products, Arrays.toString(owned));
+
+		long start = System.nanoTime();
+		for (int from = 0; from < catalog.size(); from += LOAD_BATCH) {
+			router.update(catalog.subList(from, Math.min(from + LOAD_BATCH, catalog.size())));
+		}
+		System.out.printf("load     | %,10.1f ms\n", (System.nanoTime() - start) / 1e6);
+
+		long count = 0;
+		long stock = 0;
+		for (SalableProduct product : catalog) {
+			count++;
+			stock += product.getQuantity();
+		}
+		long shardCount = 0;
+		long shardStock = 0;
+		for (Map.Entry<ProductCategory, ShardRouter.CategoryTotals> entry : router.getCategoryTotals().entrySet()) {
+			shardCount += entry.getValue().getCount();
+			shardStock += entry.getValue().getStock();
+			System.out.printf("totals   | %-6s | %,8d products | %,10d in stock | value %,16.2f\n", entry.getKey(),
+					entry.getValue().getCount(), entry.getValue().getStock(), entry.getValue().getValue());
+		}
+		if (shardCount != count || shardStock != stock) {
+			throw new IllegalStateException("Shard totals " + shardCount + "/" + shardStock
+					+ " do not match the catalog's " + count + "/" + stock);
+		}
+
+		Random random = new Random(7);
+		LatencyHistogram latency = new LatencyHistogram();
+		for (int i = 0; i < lookups; i++) {
+			String name = catalog.get(random.nextInt(catalog.size())).getName();
+			long began = System.nanoTime();
+			SalableProduct found = router.getProductByName(name);
+			latency.record(System.nanoTime() - began);
+			if (found == null) {
+				throw new IllegalStateException("Lookup missed " + name);
+			}
+		}
+		report("lookup", latency);
+
+		ShoppingCart cart = new ShoppingCart();
+		latency = new LatencyHistogram();
+		for (int i = 0; i < 1000; i++) {
+			long began = System.nanoTime();
+			router.addToCart(cart, catalog.get(random.nextInt(catalog.size())).getName(), 1);
+			latency.record(System.nanoTime() - began);
+		}
+		report("cart add", latency);
+
+		start = System.nanoTime();
+		int listed = router.getAllProducts().size();
+		System.out.printf("list     | %,10.1f ms | %,d products\n", (System.nanoTime() - start) / 1e6, listed);
+	}
+
+	private static void report(String operation, LatencyHistogram latency) {
+		System.out.printf("%-8s | %,10d ops | p50 %8.1f us | p99 %8.1f us | max %8.1f us\n", operation,
+				latency.getCount(), latency.getPercentile(0.50) / 1e3, latency.getPercentile(0.99) / 1e3,
+				latency.getMax() / 1e3);
+	}
+}
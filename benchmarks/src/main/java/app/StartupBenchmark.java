@@ -0,0 +1,186 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * StartupBenchmark measures how soon a newly started store answers its first
+ * shopper, with and without warming up and a class data sharing archive.
+ *
+ * Each run starts {@link StoreFront} in its own JVM, in a temporary folder
+ * holding a generated inventory, and asks it for a search over HTTP until it
+ * answers. The time to the first answer covers starting the JVM, loading the
+ * inventory and the first request, and the first request's own time is shown
+ * too. The store is then stopped as with Ctrl-C, so each run after the first
+ * restarts from the snapshot the last one wrote, as a real restart would.
+ *
+ * The archive is made by a training run of {@code StoreFront --train} with
+ * {@code -XX:ArchiveClassesAtExit}. The JVM only archives classes from jar
+ * files, so the archive runs are skipped unless this benchmark is run from
+ * jars, for example with {@code -cp benchmarks/target/benchmarks.jar}.
+ *
+ * Usage: {@code StartupBenchmark [products] [rounds]}
+ */
+public class StartupBenchmark {
+
+	private static final long TIMEOUT_MILLIS = 120_000;
+	private static final String LOG_FILE = "store.log";
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional product count and number of rounds
+	 * @throws Exception if a store cannot be started or does not answer
+	 */
+	public static void main(String[] args) throws Exception {
+		int products = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		File dir = Files.createTempDirectory("startup").toFile();
+		FileService.saveToFile(new File(dir, StoreFront.INVENTORY_FILE).getPath(),
+				new CatalogGenerator(42).generate(products));
+		// Each store runs in the temporary folder, so relative entries would not be found
+		StringBuilder absolute = new StringBuilder();
+		for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			absolute.append(absolute.length() == 0 ? "" : File.pathSeparator).append(new File(path).getAbsolutePath());
+		}
+		String classPath = absolute.toString();
+		boolean jarsOnly = Arrays.stream(classPath.split(File.pathSeparator)).allMatch(path -> new File(path).isFile());
+		System.out.printf("Products: %,d | Rounds: %d\n", products, rounds);
+
+		List<String> names = new ArrayList<>(Arrays.asList("cold", "warm"));
+		List<List<String>> options = new ArrayList<>();
+		options.add(Arrays.asList());
+		options.add(Arrays.asList("--warm"));
+		if (jarsOnly) {
+			File archive = new File(dir, "store.jsa");
+			long start = System.nanoTime();
+			Process training = launch(dir, classPath, "-XX:ArchiveClassesAtExit=" + archive, "--train");
+			if (training.waitFor() != 0 || !archive.isFile()) {
+				throw new IOException("Training run did not make " + archive + ":\n" + log(dir));
+			}
+			System.out.printf("Training run: %.1f ms | archive %,d bytes\n", (System.nanoTime() - start) / 1e6,
+					archive.length());
+			names.add("cds");
+			options.add(Arrays.asList("-XX:SharedArchiveFile=" + archive));
+			names.add("cds+warm");
+			options.add(Arrays.asList("-XX:SharedArchiveFile=" + archive, "--warm"));
+		} else {
+			System.out.println("Class path has folders, so runs with an archive are skipped");
+		}
+
+		try {
+			double[] totals = new double[names.size()];
+			for (int round = 1; round <= rounds; round++) {
+				StringBuilder line = new StringBuilder("round " + round);
+				for (int i = 0; i < names.size(); i++) {
+					double[] times = time(dir, classPath, options.get(i));
+					totals[i] += times[0];
+					line.append(String.format(" | %s %7.1f ms (first request %6.1f ms)", names.get(i), times[0],
+							times[1]));
+				}
+				System.out.println(line);
+			}
+			StringBuilder mean = new StringBuilder("mean   ");
+			for (int i = 0; i < names.size(); i++) {
+				mean.append(String.format(" | %s %7.1f ms", names.get(i), totals[i] / rounds));
+			}
+			System.out.println(mean);
+		} finally {
+			delete(dir);
+		}
+	}
+
+	/**
+	 * Starts a store and waits for it to answer a search.
+	 *
+	 * @return the milliseconds until the first answer, and those taken by the
+	 *         request that got it
+	 */
+	private static double[] time(File dir, String classPath, List<String> options) throws Exception {
+		int httpPort = freePort();
+		List<String> arguments = new ArrayList<>(options);
+		arguments.add("--http-port");
+		arguments.add(String.valueOf(httpPort));
+		long start = System.nanoTime();
+		Process store = launch(dir, classPath, arguments.toArray(new String[0]));
+		try {
+			URL url = new URL("http://localhost:" + httpPort + "/search?q=iron&limit=20");
+			while (true) {
+				long requestStart = System.nanoTime();
+				try {
+					HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+					try (InputStream in = connection.getInputStream()) {
+						in.readAllBytes();
+					}
+					long end = System.nanoTime();
+					return new double[] { (end - start) / 1e6, (end - requestStart) / 1e6 };
+				} catch (IOException e) {
+					if (!store.isAlive() || System.nanoTime() - start > TIMEOUT_MILLIS * 1_000_000L) {
+						throw new IOException("Store did not answer on port " + httpPort + ":\n" + log(dir), e);
+					}
+					Thread.sleep(5);
+				}
+			}
+		} finally {
+			store.destroy();
+			store.waitFor();
+		}
+	}
+
+	/**
+	 * Starts a store in its own JVM, writing its output to a log in its folder.
+	 * Options starting with "-XX:" go to the JVM, and the rest to the store,
+	 * which also gets a free admin port.
+	 */
+	private static Process launch(File dir, String classPath, String... options) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		List<String> storeOptions = new ArrayList<>();
+		for (String option : options) {
+			(option.startsWith("-XX:") ? command : storeOptions).add(option);
+		}
+		command.add("-cp");
+		command.add(classPath);
+		command.add(StoreFront.class.getName());
+		command.add("--admin-port");
+		command.add(String.valueOf(freePort()));
+		if (!storeOptions.contains("--http-port")) {
+			storeOptions.add("--http-port");
+			storeOptions.add(String.valueOf(freePort()));
+		}
+		command.addAll(storeOptions);
+		// The store reads its menu from the console, which ends when it is stopped
+		return new ProcessBuilder(command).directory(dir).redirectErrorStream(true)
+				.redirectOutput(new File(dir, LOG_FILE)).start();
+	}
+
+	private static String log(File dir) throws IOException {
+		return new String(Files.readAllBytes(new File(dir, LOG_FILE).toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket probe = new ServerSocket(0)) {
+			return probe.getLocalPort();
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,253 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * StoreLoadHarness loads a generated catalog into the store and then, for a set
+ * time, has shoppers fill and purchase carts while admins send inventory
+ * updates to a running {@link AdminService}. It reports the throughput of each
+ * operation and its latency percentiles.
+ *
+ * Shoppers use the same cart operations as {@link StoreFront}, on their own
+ * carts and the shared inventory. They favor some products over others: a few
+ * at the front of the catalog get most of the traffic, as best sellers do.
+ * Admins connect over the admin protocol and add a few new products with each
+ * "U" command. Updates save the inventory to a temporary file, not to
+ * Inventory.json.
+ *
+ * Usage: {@code StoreLoadHarness [products] [seconds] [shoppers] [admins] [productsPerUpdate]}
+ */
+public class StoreLoadHarness {
+
+	private final InventoryManager inventory;
+	private final String[] names;
+	private final long deadline;
+	private final LatencyHistogram addLatency = new LatencyHistogram();
+	private final LatencyHistogram removeLatency = new LatencyHistogram();
+	private final LatencyHistogram purchaseLatency = new LatencyHistogram();
+	private final LatencyHistogram updateLatency = new LatencyHistogram();
+	private final LongAdder purchases = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	private StoreLoadHarness(InventoryManager inventory, long deadline) {
+		this.inventory = inventory;
+		this.deadline = deadline;
+		List<SalableProduct> products = inventory.getProductsSnapshot();
+		this.names = new String[products.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = products.get(i).getName();
+		}
+	}
+
+	/**
+	 * Entry point for the load harness.
+	 *
+	 * @param args optional product count, seconds to run, shopper threads, admin
+	 *             threads and products sent in each update
+	 * @throws Exception if the admin service cannot be started or a thread is
+	 *                   interrupted
+	 */
+	public static void main(String[] args) throws Exception {
+		int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int shoppers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 2;
+		int admins = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		int productsPerUpdate = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+		InventoryManager inventory = new InventoryManager();
+		for (SalableProduct product : new CatalogGenerator(42).generate(productCount)) {
+			inventory.addSalableProduct(product);
+		}
+		File inventoryFile = File.createTempFile("load-inventory", ".json");
+		inventoryFile.deleteOnExit();
+		int port = startAdminService(inventory, inventoryFile);
+
+		StoreLoadHarness harness = new StoreLoadHarness(inventory, System.nanoTime() + seconds * 1_000_000_000L);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < shoppers; i++) {
+			final int shopper = i;
+			threads.add(new Thread(() -> harness.shop(new Random(shopper))));
+		}
+		for (int i = 0; i < admins; i++) {
+			final int admin = i;
+			threads.add(new Thread(() -> harness.update(port, new CatalogGenerator(1000 + admin), productsPerUpdate)));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		System.out.printf("Products: %,d at start, %,d at end | %d s | Shoppers: %d | Admins: %d\n", productCount,
+				inventory.getProductsSnapshot().size(), seconds, shoppers, admins);
+		System.out.printf("Purchases: %,d | Rejected operations: %,d\n", harness.purchases.sum(),
+				harness.rejected.sum());
+		report("add", harness.addLatency, seconds);
+		report("remove", harness.removeLatency, seconds);
+		report("purchase", harness.purchaseLatency, seconds);
+		report("update", harness.updateLatency, seconds);
+	}
+
+	/**
+	 * Runs one shopper until the time is up: add one to four products, sometimes
+	 * put one back, then purchase.
+	 */
+	private void shop(Random random) {
+		while (System.nanoTime() < deadline) {
+			ShoppingCart cart = new ShoppingCart();
+			String first = null;
+			int lines = 1 + random.nextInt(4);
+			for (int i = 0; i < lines; i++) {
+				String name = pickName(random);
+				first = first == null ? name : first;
+				long start = System.nanoTime();
+				CartResult result = StoreFront.addToCart(inventory, cart, name, 1 + random.nextInt(2));
+				addLatency.record(System.nanoTime() - start);
+				count(result);
+			}
+			if (random.nextInt(5) == 0) {
+				long start = System.nanoTime();
+				CartResult result = StoreFront.removeFromCart(inventory, cart, first, 1);
+				removeLatency.record(System.nanoTime() - start);
+				count(result);
+			}
+			long start = System.nanoTime();
+			CartResult result = StoreFront.purchaseFromCart(inventory, cart);
+			purchaseLatency.record(System.nanoTime() - start);
+			if (result.getStatus() == CartResult.Status.PURCHASED) {
+				purchases.increment();
+			} else {
+				count(result);
+			}
+		}
+	}
+
+	/**
+	 * Runs one admin until the time is up, sending updates one after another.
+	 */
+	private void update(int port, CatalogGenerator generator, int productsPerUpdate) {
+		ObjectWriter writer = new ObjectMapper().writerFor(FileService.PRODUCT_LIST);
+		try {
+			while (System.nanoTime() < deadline) {
+				byte[] payload = writer.writeValueAsBytes(generator.generate(productsPerUpdate));
+				long start = System.nanoTime();
+				try (Socket socket = new Socket("localhost", port)) {
+					OutputStream out = socket.getOutputStream();
+					out.write("U\n".getBytes(StandardCharsets.UTF_8));
+					out.write(payload);
+					out.write('\n');
+					out.flush();
+					new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+							.readLine();
+				}
+				updateLatency.record(System.nanoTime() - start);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Picks a product name, favoring the front of the catalog: the position is a
+	 * random fraction cubed, so the first tenth of the catalog gets nearly half
+	 * the picks.
+	 */
+	private String pickName(Random random) {
+		double position = random.nextDouble();
+		return names[(int) (names.length * position * position * position)];
+	}
+
+	private void count(CartResult result) {
+		CartResult.Status status = result.getStatus();
+		if (status != CartResult.Status.ADDED && status != CartResult.Status.REMOVED) {
+			rejected.increment();
+		}
+	}
+
+	/**
+	 * Starts an AdminService on a free port and waits until it accepts
+	 * connections.
+	 *
+	 * @return the port
+	 */
+	private static int startAdminService(InventoryManager inventory, File inventoryFile)
+			throws IOException, InterruptedException {
+		int port = freePort();
+		startAdminService(new AdminService(inventory, port, AdminService.DEFAULT_CACHE_BYTES, inventoryFile.getPath()),
+				port);
+		return port;
+	}
+
+	/**
+	 * Finds a port that nothing is listening on.
+	 *
+	 * @return the port
+	 * @throws IOException if no port can be opened
+	 */
+	static int freePort() throws IOException {
+		try (ServerSocket probe = new ServerSocket(0)) {
+			return probe.getLocalPort();
+		}
+	}
+
+	/**
+	 * Runs an AdminService on a daemon thread and waits until it accepts
+	 * connections.
+	 *
+	 * @param service the service
+	 * @param port    the port it listens on
+	 * @throws IOException          if it does not start listening
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	static void startAdminService(AdminService service, int port) throws IOException, InterruptedException {
+		Thread thread = new Thread(service);
+		thread.setDaemon(true);
+		thread.start();
+		awaitPort(port, 5000);
+	}
+
+	/**
+	 * Waits until something accepts connections on a local port.
+	 *
+	 * @param port          the port
+	 * @param timeoutMillis the longest time to wait
+	 * @throws IOException          if nothing accepted in time
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	static void awaitPort(int port, long timeoutMillis) throws IOException, InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (true) {
+			try {
+				new Socket("localhost", port).close();
+				return;
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				Thread.sleep(50);
+			}
+		}
+	}
+
+	private static void report(String operation, LatencyHistogram latency, int seconds) {
+		System.out.printf("%-8s %,10d ops | %,10.0f ops/s | p50 %8.1f us | p99 %8.1f us | p99.9 %8.1f us | max %8.1f us\n",
+				operation, latency.getCount(), (double) latency.getCount() / seconds,
+				latency.getPercentile(0.50) / 1e3, latency.getPercentile(0.99) / 1e3,
+				latency.getPercentile(0.999) / 1e3, latency.getMax() / 1e3);
+	}
+}
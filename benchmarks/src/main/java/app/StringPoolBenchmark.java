@@ -0,0 +1,85 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * StringPoolBenchmark writes a large generated catalog to a JSON file and loads
+ * it twice, once with names and descriptions pooled and once with a pool that
+ * keeps nothing, and reports the heap each loaded catalog uses. In the catalog
+ * each base item comes in several variants that share its name and
+ * description, as they do in a real store.
+ *
+ * Usage: {@code StringPoolBenchmark [products] [variants]}
+ */
+public class StringPoolBenchmark {
+
+	private static final String[] ITEMS = { "Sword", "Axe", "Shield", "Helmet", "Bow", "Dagger", "Spear", "Potion",
+			"Herb", "Gauntlets", "Boots", "Mace", "Staff", "Elixir", "Tonic" };
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional product count and variants per base item
+	 * @throws IOException if the catalog cannot be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+		int variants = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		Random random = new Random(42);
+		List<SalableProduct> catalog = new ArrayList<>(productCount);
+		for (int i = 0; i < productCount; i++) {
+			int item = i / variants;
+			String name = ITEMS[item % ITEMS.length] + " of the " + item;
+			String description = "A well made " + ITEMS[item % ITEMS.length].toLowerCase() + ", catalog entry " + item
+					+ ", sold in several sizes and finishes";
+			catalog.add(new Weapon(name, description, 1 + random.nextInt(500_000) / 100.0, random.nextInt(100)));
+		}
+		File file = File.createTempFile("catalog", ".json");
+		file.deleteOnExit();
+		FileService.saveToFile(file.getPath(), catalog);
+		catalog = null;
+
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectReader unpooled = mapper.readerFor(SalableProduct[].class).withAttribute(StringPool.class,
+				new StringPool(0));
+		StringPool pool = new StringPool(256L * 1024 * 1024);
+		ObjectReader pooled = mapper.readerFor(SalableProduct[].class).withAttribute(StringPool.class, pool);
+
+		// Warm up both readers before measuring
+		unpooled.readValue(file);
+		pooled.readValue(file);
+		long[] unpooledResult = load(unpooled, file);
+		long[] pooledResult = load(pooled, file);
+
+		System.out.printf("Products: %,d | Variants per item: %d | Distinct strings: %,d\n", productCount, variants,
+				pool.size());
+		System.out.printf("Unpooled: %8.1f MB heap | %6.0f ms load\n", unpooledResult[0] / 1e6,
+				unpooledResult[1] / 1e6);
+		System.out.printf("Pooled:   %8.1f MB heap | %6.0f ms load\n", pooledResult[0] / 1e6, pooledResult[1] / 1e6);
+	}
+
+	/**
+	 * Loads the catalog and measures it.
+	 *
+	 * @return the heap the loaded products use and the load time in nanoseconds
+	 */
+	private static long[] load(ObjectReader reader, File file) throws IOException {
+		long before = ColumnarBenchmark.usedHeap();
+		long start = System.nanoTime();
+		SalableProduct[] products = reader.readValue(file);
+		long elapsed = System.nanoTime() - start;
+		long heap = ColumnarBenchmark.usedHeap() - before;
+		if (products.length == 0) {
+			throw new IllegalStateException("Catalog did not load");
+		}
+		return new long[] { heap, elapsed };
+	}
+}
@@ -0,0 +1,142 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * WriteBehindBenchmark measures how long an admin "U" command takes to answer
+ * at several catalog sizes: saving the whole file before answering, as the
+ * admin service used to, against an {@link InventoryPersister} in each
+ * {@link InventoryPersister.Durability durability} mode.
+ *
+ * Several admins send updates at the same time, so updates waiting for disk
+ * can share a flush. The "save every update" row adds the products and saves
+ * the file on the calling thread, without the network.
+ *
+ * Usage: {@code WriteBehindBenchmark [updates per admin] [admins] [products per update]}
+ */
+public class WriteBehindBenchmark {
+
+	private static final int[] CATALOG_SIZES = { 1_000, 10_000, 100_000 };
+
+	/**
+	 * Updates one admin sends.
+	 */
+	private interface Admin {
+		void update(List<SalableProduct> products) throws IOException;
+	}
+
+	/**
+	 * Entry point for the benchmark.
+	 *
+	 * @param args optional updates per admin, admins and products per update
+	 * @throws Exception if the admin service cannot be started or an update fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int updates = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int admins = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int productsPerUpdate = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		System.out.printf("Admins: %d | Updates per admin: %d | Products per update: %d\n", admins, updates,
+				productsPerUpdate);
+		for (int catalogSize : CATALOG_SIZES) {
+			File file = File.createTempFile("write-behind", ".json");
+			file.deleteOnExit();
+
+			InventoryManager inventory = load(catalogSize);
+			long[] latencies = run(admins, updates, productsPerUpdate, products -> {
+				for (SalableProduct product : products) {
+					inventory.addSalableProduct(product);
+				}
+				FileService.saveToFile(file.getPath(), inventory.getProductsSnapshot());
+			});
+			report(catalogSize, "save every update", latencies);
+
+			for (InventoryPersister.Durability durability : InventoryPersister.Durability.values()) {
+				InventoryManager persisted = load(catalogSize);
+				try (InventoryPersister persister = new InventoryPersister(persisted, file.getPath(), durability)) {
+					int port = StoreLoadHarness.freePort();
+					StoreLoadHarness.startAdminService(
+							new AdminService(persisted, port, AdminService.DEFAULT_CACHE_BYTES, persister), port);
+					report(catalogSize, durability.toString(),
+							run(admins, updates, productsPerUpdate, products -> send(port, products)));
+				}
+			}
+		}
+	}
+
+	private static InventoryManager load(int catalogSize) {
+		InventoryManager inventory = new InventoryManager();
+		for (SalableProduct product : new CatalogGenerator(42).generate(catalogSize)) {
+			inventory.addSalableProduct(product);
+		}
+		return inventory;
+	}
+
+	/**
+	 * Runs the admins at the same time, each sending its updates one after
+	 * another. The first update of each admin is a warm-up and is not counted.
+	 *
+	 * @return the latency of every update counted, sorted
+	 */
+	private static long[] run(int admins, int updates, int productsPerUpdate, Admin admin)
+			throws InterruptedException {
+		long[] latencies = new long[admins * updates];
+		Thread[] threads = new Thread[admins];
+		for (int a = 0; a < admins; a++) {
+			final int first = a * updates;
+			final CatalogGenerator generator = new CatalogGenerator(1000 + a);
+			threads[a] = new Thread(() -> {
+				try {
+					for (int i = -1; i < updates; i++) {
+						List<SalableProduct> products = generator.generate(productsPerUpdate);
+						long start = System.nanoTime();
+						admin.update(products);
+						if (i >= 0) {
+							latencies[first + i] = System.nanoTime() - start;
+						}
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			});
+			threads[a].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+	private static void send(int port, List<SalableProduct> products) throws IOException {
+		ObjectWriter writer = new ObjectMapper().writerFor(FileService.PRODUCT_LIST);
+		try (Socket socket = new Socket("localhost", port)) {
+			OutputStream out = socket.getOutputStream();
+			out.write("U\n".getBytes(StandardCharsets.UTF_8));
+			out.write(writer.writeValueAsBytes(products));
+			out.write('\n');
+			out.flush();
+			String reply = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+					.readLine();
+			if (!"Inventory updated successfully".equals(reply)) {
+				throw new IOException("Update failed: " + reply);
+			}
+		}
+	}
+
+	private static void report(int catalogSize, String mode, long[] latencies) {
+		System.out.printf("%,8d products | %-18s | p50 %9.2f ms | p99 %9.2f ms\n", catalogSize, mode,
+				LoadDriver.percentile(latencies, 0.50) / 1e6, LoadDriver.percentile(latencies, 0.99) / 1e6);
+	}
+}
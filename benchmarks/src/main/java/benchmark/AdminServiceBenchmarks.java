@@ -0,0 +1,111 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.AdminService;
+import app.CatalogGenerator;
+import app.InventoryManager;
+import app.SalableProduct;
+
+/**
+ * Benchmarks a full admin protocol round trip against a running
+ * {@link AdminService}: connect, send a command, read the one line reply.
+ * "R" returns the whole inventory; "S" returns a few statistics and so
+ * measures the cost of the connection and protocol alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdminServiceBenchmarks {
+
+	@Param({ "1000", "100000" })
+	public int catalogSize;
+
+	private int port;
+
+	/**
+	 * Starts an AdminService on a free port and waits until it accepts
+	 * connections.
+	 *
+	 * @throws Exception if the service does not start
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		InventoryManager inventory = new InventoryManager();
+		for (SalableProduct product : new CatalogGenerator(42).generate(catalogSize)) {
+			inventory.addSalableProduct(product);
+		}
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+		Thread service = new Thread(new AdminService(inventory, port));
+		service.setDaemon(true);
+		service.start();
+		for (int attempt = 0;; attempt++) {
+			try {
+				new Socket("localhost", port).close();
+				break;
+			} catch (IOException e) {
+				if (attempt == 100) {
+					throw e;
+				}
+				Thread.sleep(50);
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the inventory as JSON.
+	 *
+	 * @return the length of the reply
+	 * @throws IOException if the round trip fails
+	 */
+	@Benchmark
+	public int retrieve() throws IOException {
+		return send("R");
+	}
+
+	/**
+	 * Retrieves the cache statistics.
+	 *
+	 * @return the length of the reply
+	 * @throws IOException if the round trip fails
+	 */
+	@Benchmark
+	public int statistics() throws IOException {
+		return send("S");
+	}
+
+	private int send(String command) throws IOException {
+		try (Socket socket = new Socket("localhost", port)) {
+			OutputStream out = socket.getOutputStream();
+			out.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 64 * 1024);
+			return in.readLine().length();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.CatalogGenerator;
+import app.SalableProduct;
+import app.ShoppingCart;
+
+/**
+ * Benchmarks {@link ShoppingCart#getTotalPrice()} on a cart holding every
+ * product of the catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmarks {
+
+	@Param({ "1000", "100000" })
+	public int catalogSize;
+
+	private ShoppingCart cart;
+
+	/**
+	 * Fills the cart with one to three of each product.
+	 */
+	@Setup
+	public void setUp() {
+		cart = new ShoppingCart();
+		int i = 0;
+		for (SalableProduct product : new CatalogGenerator(42).generate(catalogSize)) {
+			cart.addToCart(product, 1 + i++ % 3);
+		}
+	}
+
+	/**
+	 * Totals the cart.
+	 *
+	 * @return the total price
+	 */
+	@Benchmark
+	public double getTotalPrice() {
+		return cart.getTotalPrice();
+	}
+}
@@ -0,0 +1,113 @@
+package benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.CatalogGenerator;
+import app.InventoryManager;
+import app.SalableProduct;
+
+/**
+ * Benchmarks {@link InventoryManager#getProductByName(String)} and
+ * {@link InventoryManager#sortByNameThenPrice()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryBenchmarks {
+
+	@Param({ "1000", "100000" })
+	public int catalogSize;
+
+	private InventoryManager inventory;
+	private String[] names;
+	private int next;
+
+	/**
+	 * Loads the catalog and picks the names to look up.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		inventory = new InventoryManager();
+		List<SalableProduct> products = new CatalogGenerator(42).generate(catalogSize);
+		for (SalableProduct product : products) {
+			inventory.addSalableProduct(product);
+		}
+		names = new String[1024];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = products.get(random.nextInt(catalogSize)).getName().toUpperCase();
+		}
+	}
+
+	/**
+	 * An inventory put back into a random order before each sort, so every sort
+	 * does the full amount of work.
+	 */
+	@State(Scope.Benchmark)
+	public static class Shuffled {
+
+		@Param({ "1000", "100000" })
+		public int catalogSize;
+
+		private InventoryManager inventory;
+		private final Random random = new Random(42);
+
+		/**
+		 * Loads the catalog.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			inventory = new InventoryManager();
+			for (SalableProduct product : new CatalogGenerator(42).generate(catalogSize)) {
+				inventory.addSalableProduct(product);
+			}
+		}
+
+		/**
+		 * Shuffles the products.
+		 */
+		@Setup(Level.Invocation)
+		public void shuffle() {
+			Collections.shuffle(inventory.getAllProduct(), random);
+		}
+	}
+
+	/**
+	 * Looks up a random product by name, ignoring case.
+	 *
+	 * @return the product found
+	 */
+	@Benchmark
+	public SalableProduct getProductByName() {
+		return inventory.getProductByName(names[next++ & (names.length - 1)]);
+	}
+
+	/**
+	 * Sorts the shuffled inventory.
+	 *
+	 * @param shuffled the inventory to sort
+	 */
+	@Benchmark
+	public void sortByNameThenPrice(Shuffled shuffled) {
+		shuffled.inventory.sortByNameThenPrice();
+	}
+}
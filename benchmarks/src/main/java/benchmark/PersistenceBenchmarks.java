@@ -0,0 +1,90 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.CatalogGenerator;
+import app.FileService;
+import app.InventoryManager;
+import app.SalableProduct;
+
+/**
+ * Benchmarks saving the inventory with {@link FileService#saveToFile} and
+ * loading it back the way the store does at startup: reading the JSON file and
+ * adding every product to a new {@link InventoryManager}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmarks {
+
+	@Param({ "1000", "100000" })
+	public int catalogSize;
+
+	private List<SalableProduct> products;
+	private File saveFile;
+	private File loadFile;
+
+	/**
+	 * Generates the catalog and writes the file to load.
+	 *
+	 * @throws IOException if the temporary files cannot be created
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		products = new CatalogGenerator(42).generate(catalogSize);
+		saveFile = File.createTempFile("save-benchmark", ".json");
+		loadFile = File.createTempFile("load-benchmark", ".json");
+		FileService.saveToFile(loadFile.getPath(), products);
+	}
+
+	/**
+	 * Removes the temporary files.
+	 */
+	@TearDown
+	public void tearDown() {
+		saveFile.delete();
+		loadFile.delete();
+	}
+
+	/**
+	 * Saves the catalog as pretty-printed JSON.
+	 */
+	@Benchmark
+	public void saveToFile() {
+		FileService.saveToFile(saveFile.getPath(), products);
+	}
+
+	/**
+	 * Loads the catalog into a new inventory.
+	 *
+	 * @return the loaded inventory
+	 * @throws IOException if the file cannot be read
+	 */
+	@Benchmark
+	public InventoryManager loadInventory() throws IOException {
+		InventoryManager inventory = new InventoryManager();
+		for (SalableProduct product : FileService.loadFromFile(loadFile.getPath())) {
+			inventory.addSalableProduct(product);
+		}
+		return inventory;
+	}
+}
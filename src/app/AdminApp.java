@@ -12,8 +12,9 @@ import java.util.Scanner;
  * AdminApp is a client application that connects to the AdminService server.
  * 
  * It allows an adminUser to: - Send "U" command to update inventory with JSON
- * input - Send "R" command to retrieve the current inventory - Send "Q" to quit
- * the application
+ * input - Send "R" command to retrieve the current inventory - Send "S" to see
+ * the retrieve cache and latency statistics - Send "M" to see all store metrics
+ * - Send "Q" to quit the application
  */
 public class AdminApp {
 
@@ -31,36 +32,44 @@ public class AdminApp {
 
 		try {
 			while (true) {
+				// Read the whole command before connecting, so the service is not kept
+				// waiting while the admin types
+				System.out.println("\nEnter Command (U to update, R to retrieve, S for statistics, M for metrics, Q to quit):");
+				String command = scanner.nextLine().trim().toUpperCase();
+
+				if (command.equals("Q")) {
+					System.out.println("Exiting Admin Application...");
+					break;
+				}
+				if (!command.equals("U") && !command.equals("R") && !command.equals("S") && !command.equals("M")) {
+					System.out.println("Unknown command. Please enter U, R, S, M, or Q.");
+					continue;
+				}
+				String jsonPayload = null;
+				if (command.equals("U")) {
+					System.out.println("Enter JSON of products to add:");
+					jsonPayload = scanner.nextLine();
+				}
+
 				try (Socket socket = new Socket(SERVER, PORT);
 						BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
 						BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
 
-					System.out.println("\nEnter Command (U to update, R to retrieve, Q to quit):");
-					String command = scanner.nextLine().trim().toUpperCase();
-
-					if (command.equals("Q")) {
-						System.out.println("Exiting Admin Application...");
-						break;
-					}
-
 					out.write(command + "\n");
+					if (jsonPayload != null) {
+						out.write(jsonPayload + "\n");
+					}
 					out.flush();
 
+					String response = in.readLine();
 					if (command.equals("U")) {
-						System.out.println("Enter JSON of products to add:");
-						String jsonPayload = scanner.nextLine();
-						out.write(jsonPayload + "\n");
-						out.flush();
-
-						String response = in.readLine();
 						System.out.println("Server: " + response);
-
 					} else if (command.equals("R")) {
-						String response = in.readLine();
 						System.out.println("Inventory Received:\n" + response);
-
+					} else if (command.equals("S")) {
+						System.out.println("Statistics:\n" + response);
 					} else {
-						System.out.println("Unknown command. Please enter U, R, or Q.");
+						System.out.println("Metrics:\n" + response);
 					}
 
 				} catch (IOException e) {
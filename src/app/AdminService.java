@@ -1,36 +1,229 @@
 package app;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.List;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * AdminService listens on a network port and handles admin commands.
  * 
  * It supports: - "U": Update inventory with a JSON list of products - "R":
- * Retrieve current inventory as JSON
+ * Retrieve current inventory as JSON - "S": Retrieve the retrieve cache and
+ * latency statistics as JSON - "M": Retrieve every metric in
+ * {@link MetricsRegistry#GLOBAL} as JSON - "N": Find the product named on the
+ * next line, as JSON or "null" - "A": Retrieve each category's product count,
+ * stock and stock value as JSON
+ * 
+ * Retrieves reuse each product's JSON from a {@link ProductJsonCache}, so only
+ * products changed since the last retrieve are serialized again. The cache
+ * follows the inventory's {@link ChangeStream} and writes changed products in
+ * the background, so most retrieves serialize nothing.
+ * 
+ * Updates are saved only when the service is given an inventory file or an
+ * {@link InventoryPersister}; otherwise they are kept in memory. Whether "U"
+ * answers once the products are added or once they are on disk depends on the
+ * persister's {@link InventoryPersister.Durability durability}. On a node that follows a
+ * {@link ReplicationLeader} the service is read-only, since updates must go to
+ * the leader.
+ * 
+ * Each connection carries one command. So that a misbehaving client cannot
+ * use up threads or memory, connections are admitted before any work is done
+ * on them:
+ * <ul>
+ * <li>each client address has a token bucket, and a client over its rate is
+ * answered "Too many requests" at once;</li>
+ * <li>a fixed pool of workers handles commands, with a bounded queue of
+ * connections waiting for one, and a connection that finds the queue full is
+ * answered "Busy" at once;</li>
+ * <li>a request larger than the limit is answered "Payload too large" without
+ * being read any further, and a client that stops sending partway is dropped
+ * after the read timeout.</li>
+ * </ul>
+ * The limits are set with {@link #setRateLimit}, {@link #setWorkers} and
+ * {@link #setMaxRequestBytes} before the service is started.
+ * 
+ * {@link #shutdown(long)} stops accepting connections, lets the commands
+ * already accepted finish, and then saves any changes the persister has not
+ * saved yet. Like {@link #close()}, it does not throw if interrupted; the
+ * thread's interrupt flag is set again instead.
  */
-public class AdminService implements Runnable {
+public class AdminService implements Runnable, AutoCloseable {
+
+	/** The default size of the product JSON cache. */
+	public static final long DEFAULT_CACHE_BYTES = 16 * 1024 * 1024;
+	/** The inventory file the store loads at start and saves updates to. */
+	public static final String DEFAULT_INVENTORY_FILE = "Inventory.json";
+	/** How long an update waits to be saved before answering without it. */
+	public static final long SAVE_TIMEOUT_MILLIS = 30_000;
+	/** The default rate each client is held to, in commands per second. */
+	public static final double DEFAULT_RATE_PER_SECOND = 1_000;
+	/** The default most commands a client can send at once. */
+	public static final int DEFAULT_BURST = 2_000;
+	/** The default number of threads handling commands. */
+	public static final int DEFAULT_WORKERS = 16;
+	/** The default most connections waiting for a worker. */
+	public static final int DEFAULT_QUEUE_CAPACITY = 128;
+	/** The default most bytes read from one connection, command and payload together. */
+	public static final long DEFAULT_MAX_REQUEST_BYTES = 16 * 1024 * 1024;
+	/** How long a client can go without sending while a request is read. */
+	public static final int READ_TIMEOUT_MILLIS = 30_000;
+	/** How long {@link #close()} waits for accepted commands to finish. */
+	public static final long DEFAULT_DRAIN_MILLIS = 10_000;
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram UPDATE_TIMER = METRICS.timer("admin.update");
+	private static final LatencyHistogram RETRIEVE_TIMER = METRICS.timer("admin.retrieve");
+	private static final LatencyHistogram STATISTICS_TIMER = METRICS.timer("admin.statistics");
+	private static final LatencyHistogram METRICS_TIMER = METRICS.timer("admin.metrics");
+	private static final LatencyHistogram FIND_TIMER = METRICS.timer("admin.find");
+	private static final LatencyHistogram TOTALS_TIMER = METRICS.timer("admin.totals");
+	private static final LongAdder CONNECTIONS = METRICS.counter("admin.connections");
+	private static final LongAdder UNKNOWN_COMMANDS = METRICS.counter("admin.unknownCommands");
+	private static final LongAdder INVALID_UPDATES = METRICS.counter("admin.invalidUpdates");
+	private static final LongAdder ERRORS = METRICS.counter("admin.errors");
+	private static final LongAdder THROTTLED = METRICS.counter("admin.throttled");
+	private static final LongAdder BUSY = METRICS.counter("admin.busy");
+	private static final LongAdder TOO_LARGE = METRICS.counter("admin.tooLarge");
+	private static final LongAdder TIMEOUTS = METRICS.counter("admin.timeouts");
 
 	private InventoryManager inventoryManager;
 	private int port;
+	private final ProductJsonCache jsonCache;
+	private final ChangeStream.Subscription jsonCacheSubscription;
+	private final InventoryPersister persister;
+	private volatile boolean readOnly;
+	private ClientRateLimiter rateLimiter = new ClientRateLimiter(DEFAULT_RATE_PER_SECOND, DEFAULT_BURST);
+	private int workers = DEFAULT_WORKERS;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private long maxRequestBytes = DEFAULT_MAX_REQUEST_BYTES;
+	private volatile boolean stopping;
+	private volatile ServerSocket serverSocket;
+	private volatile ThreadPoolExecutor pool;
 
 	/**
-	 * Creates an AdminService with a given inventory and port number.
+	 * Thrown when a client sends more than the request limit.
+	 */
+	private static class RequestTooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		RequestTooLargeException() {
+			super("Request larger than the limit");
+		}
+	}
+
+	/**
+	 * Creates an AdminService with a given inventory and port number. Updates
+	 * are not saved.
 	 *
 	 * @param inventoryManager the inventory manager to use
 	 * @param port             the port to listen on
 	 */
 	public AdminService(InventoryManager inventoryManager, int port) {
+		this(inventoryManager, port, DEFAULT_CACHE_BYTES);
+	}
+
+	/**
+	 * Creates an AdminService with a given inventory, port number and JSON cache
+	 * size. Updates are not saved.
+	 *
+	 * @param inventoryManager the inventory manager to use
+	 * @param port             the port to listen on
+	 * @param cacheBytes       the most bytes of product JSON to cache
+	 */
+	public AdminService(InventoryManager inventoryManager, int port, long cacheBytes) {
+		this(inventoryManager, port, cacheBytes, (InventoryPersister) null);
+	}
+
+	/**
+	 * Creates an AdminService that saves updates to the given file and answers
+	 * them once they are on disk.
+	 *
+	 * @param inventoryManager the inventory manager to use
+	 * @param port             the port to listen on
+	 * @param cacheBytes       the most bytes of product JSON to cache
+	 * @param inventoryFile    the file to save the inventory to
+	 */
+	public AdminService(InventoryManager inventoryManager, int port, long cacheBytes, String inventoryFile) {
+		this(inventoryManager, port, cacheBytes, new InventoryPersister(inventoryManager, inventoryFile,
+				InventoryPersister.Durability.ACK_AFTER_FSYNC));
+	}
+
+	/**
+	 * Creates an AdminService whose updates are saved by the given persister.
+	 *
+	 * @param inventoryManager the inventory manager to use
+	 * @param port             the port to listen on
+	 * @param cacheBytes       the most bytes of product JSON to cache
+	 * @param persister        the persister saving inventoryManager, or null to
+	 *                         keep updates in memory only
+	 */
+	public AdminService(InventoryManager inventoryManager, int port, long cacheBytes, InventoryPersister persister) {
 		this.inventoryManager = inventoryManager;
 		this.port = port;
+		this.jsonCache = new ProductJsonCache(cacheBytes);
+		this.persister = persister;
+		this.jsonCacheSubscription = inventoryManager.getChangeStream().subscribe("admin-json-cache", jsonCache);
+	}
+
+	/**
+	 * Sets whether "U" is refused, as on a node following a replication leader.
+	 *
+	 * @param readOnly true to refuse updates
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Sets the rate each client address is held to.
+	 *
+	 * @param requestsPerSecond the rate, in commands per second
+	 * @param burst             the most commands a client can send at once
+	 */
+	public void setRateLimit(double requestsPerSecond, int burst) {
+		this.rateLimiter = new ClientRateLimiter(requestsPerSecond, burst);
+	}
+
+	/**
+	 * Sets how many commands are handled at once and how many connections can
+	 * wait for a worker.
+	 *
+	 * @param workers       the number of threads handling commands
+	 * @param queueCapacity the most connections waiting for a worker
+	 */
+	public void setWorkers(int workers, int queueCapacity) {
+		this.workers = workers;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Sets the most bytes read from one connection, command and payload
+	 * together.
+	 *
+	 * @param maxRequestBytes the limit
+	 */
+	public void setMaxRequestBytes(long maxRequestBytes) {
+		this.maxRequestBytes = maxRequestBytes;
 	}
 
 	/**
@@ -38,17 +231,104 @@ public class AdminService implements Runnable {
 	 */
 	@Override
 	public void run() {
-		try (ServerSocket serverSocket = new ServerSocket(port)) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), r -> {
+					Thread t = new Thread(r, "admin-worker");
+					t.setDaemon(true);
+					return t;
+				});
+		this.pool = pool;
+		try (ServerSocket serverSocket = new ServerSocket(port, queueCapacity)) {
+			this.serverSocket = serverSocket;
+			if (stopping) {
+				return;
+			}
 			System.out.println("AdminService is running on port " + port);
 
 			while (true) {
 				Socket clientSocket = serverSocket.accept();
+				METRICS.increment(CONNECTIONS);
+				if (!rateLimiter.tryAcquire(clientSocket.getInetAddress().getHostAddress())) {
+					METRICS.increment(THROTTLED);
+					reject(clientSocket, "Too many requests; try again later\n");
+					continue;
+				}
+				try {
+					pool.execute(() -> handleClient(clientSocket));
+				} catch (RejectedExecutionException e) {
+					METRICS.increment(BUSY);
+					reject(clientSocket, "Busy; try again later\n");
+				}
+			}
 
-				new Thread(() -> handleClient(clientSocket)).start();
+		} catch (IOException e) {
+			if (!stopping) {
+				e.printStackTrace();
 			}
+		} finally {
+			pool.shutdown();
+		}
+	}
 
+	/**
+	 * Stops the service: no new connections are accepted, commands already
+	 * accepted, including those waiting for a worker, are finished, and then
+	 * the persister saves whatever it has not saved yet and stops. The JSON
+	 * cache stops following the inventory.
+	 *
+	 * @param timeoutMillis the longest time to wait for accepted commands
+	 * @return true if every accepted command finished in time, false if time
+	 *         ran out or the thread was interrupted while waiting
+	 */
+	public boolean shutdown(long timeoutMillis) {
+		stopping = true;
+		ServerSocket listening = serverSocket;
+		if (listening != null) {
+			try {
+				listening.close();
+			} catch (IOException e) {
+				// Closing only stops accept(); there is nothing else to undo
+			}
+		}
+		boolean drained = true;
+		ThreadPoolExecutor workers = pool;
+		if (workers != null) {
+			workers.shutdown();
+			try {
+				drained = workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				drained = false;
+			}
+		}
+		jsonCacheSubscription.close();
+		if (persister != null) {
+			persister.close();
+		}
+		return drained;
+	}
+
+	/**
+	 * Stops the service, waiting up to {@link #DEFAULT_DRAIN_MILLIS} for
+	 * accepted commands.
+	 */
+	@Override
+	public void close() {
+		shutdown(DEFAULT_DRAIN_MILLIS);
+	}
+
+	/**
+	 * Answers a connection that is not admitted and closes it. The answer is
+	 * short enough to fit the socket's send buffer, so this never blocks the
+	 * accepting thread.
+	 */
+	private static void reject(Socket socket, String reply) {
+		try (Socket closing = socket) {
+			OutputStream out = closing.getOutputStream();
+			out.write(reply.getBytes(StandardCharsets.UTF_8));
+			out.flush();
 		} catch (IOException e) {
-			e.printStackTrace();
+			// The client has gone; there is no one to tell
 		}
 	}
 
@@ -58,41 +338,209 @@ public class AdminService implements Runnable {
 	 * @param socket the client socket
 	 */
 	private void handleClient(Socket socket) {
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+		try (BufferedReader in = new BufferedReader(
+				new InputStreamReader(new LimitedInputStream(socket.getInputStream(), maxRequestBytes)));
 				BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+			socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+			try {
+				handleCommand(socket, in, out);
+			} catch (RequestTooLargeException e) {
+				METRICS.increment(TOO_LARGE);
+				out.write("Payload too large\n");
+				out.flush();
+			} catch (SocketTimeoutException e) {
+				METRICS.increment(TIMEOUTS);
+			}
+		} catch (IOException e) {
+			METRICS.increment(ERRORS);
+			e.printStackTrace();
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// The client has gone; there is nothing left to close
+			}
+		}
+	}
 
-			String command = in.readLine();
-			ObjectMapper mapper = new ObjectMapper();
+	/**
+	 * Reads one command and its lines from a client and answers it.
+	 */
+	private void handleCommand(Socket socket, BufferedReader in, BufferedWriter out) throws IOException {
+		String command = in.readLine();
+		if (command == null) {
+			// The client closed without sending a command
+			return;
+		}
+		ObjectMapper mapper = new ObjectMapper();
+		long start = METRICS.start();
 
-			switch (command) {
-			case "U":
+		switch (command) {
+		case "U":
+			// Timed however the update ends, so refused and invalid updates count too
+			try {
 				// Read next line: JSON payload
 				String jsonPayload = in.readLine();
-				SalableProduct[] products = mapper.readValue(jsonPayload, SalableProduct[].class);
+				if (readOnly) {
+					out.write("Inventory is read-only; send updates to the replication leader\n");
+					out.flush();
+					break;
+				}
+				SalableProduct[] products = null;
+				String invalid = "Missing product list";
+				if (jsonPayload != null && !jsonPayload.isBlank()) {
+					try {
+						products = mapper.readValue(jsonPayload, SalableProduct[].class);
+					} catch (JsonProcessingException e) {
+						invalid = "Invalid product list: " + e.getOriginalMessage().replace('\n', ' ');
+					}
+				}
+				if (products == null) {
+					METRICS.increment(INVALID_UPDATES);
+					out.write(invalid + "\n");
+					out.flush();
+					break;
+				}
 
 				for (SalableProduct p : products) {
 					inventoryManager.addSalableProduct(p);
 				}
 
-				FileService.saveToFile("Inventory.json", inventoryManager.getAllProduct());
-				out.write("Inventory updated successfully\n");
+				if (persister != null && persister.getDurability() == InventoryPersister.Durability.ACK_AFTER_FSYNC
+						&& !persister.awaitSaved(SAVE_TIMEOUT_MILLIS)) {
+					out.write("Inventory updated but not saved yet\n");
+				} else {
+					out.write("Inventory updated successfully\n");
+				}
 				out.flush();
-				break;
+			} finally {
+				METRICS.stop(UPDATE_TIMER, start);
+			}
+			break;
 
-			case "R":
-				List<SalableProduct> inventory = inventoryManager.getAllProduct();
-				String json = mapper.writeValueAsString(inventory);
-				out.write(json + "\n");
-				out.flush();
-				break;
+		case "R":
+			OutputStream bytes = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+			writeInventory(bytes);
+			bytes.write('\n');
+			bytes.flush();
+			METRICS.stop(RETRIEVE_TIMER, start);
+			break;
 
-			default:
-				out.write("Unknown command\n");
-				out.flush();
+		case "S":
+			out.write(mapper.writeValueAsString(getStatistics()) + "\n");
+			out.flush();
+			METRICS.stop(STATISTICS_TIMER, start);
+			break;
+
+		case "M":
+			out.write(mapper.writeValueAsString(METRICS.snapshot()) + "\n");
+			out.flush();
+			METRICS.stop(METRICS_TIMER, start);
+			break;
+
+		case "N":
+			SalableProduct found = inventoryManager.getProductByName(in.readLine());
+			out.write(mapper.writerFor(SalableProduct.class).writeValueAsString(found) + "\n");
+			out.flush();
+			METRICS.stop(FIND_TIMER, start);
+			break;
+
+		case "A":
+			out.write(mapper.writeValueAsString(getCategoryTotals()) + "\n");
+			out.flush();
+			METRICS.stop(TOTALS_TIMER, start);
+			break;
+
+		default:
+			METRICS.increment(UNKNOWN_COMMANDS);
+			out.write("Unknown command\n");
+			out.flush();
+		}
+	}
+
+	/**
+	 * Reads from a client, failing once more than the limit has been read.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		private long remaining;
+
+		LimitedInputStream(InputStream in, long limit) {
+			super(in);
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				throw new RequestTooLargeException();
 			}
+			int b = super.read();
+			if (b != -1) {
+				remaining--;
+			}
+			return b;
+		}
 
-		} catch (IOException e) {
-			e.printStackTrace();
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				throw new RequestTooLargeException();
+			}
+			int n = super.read(b, off, (int) Math.min(len, remaining));
+			if (n > 0) {
+				remaining -= n;
+			}
+			return n;
 		}
 	}
+
+	/**
+	 * Writes the inventory as a JSON array, taking each product's JSON from the
+	 * cache.
+	 *
+	 * @param out the stream to write to; it is not flushed
+	 * @throws IOException if the stream fails
+	 */
+	void writeInventory(OutputStream out) throws IOException {
+		jsonCache.writeArray(inventoryManager.getProductsSnapshot(), out);
+	}
+
+	/**
+	 * Gets the product count, stock total and stock value of each category, as
+	 * reported by the "A" command.
+	 *
+	 * @return the totals by category name, each with "count", "stock" and "value"
+	 */
+	public Map<String, Map<String, Object>> getCategoryTotals() {
+		Map<ProductCategory, Double> values = inventoryManager.getStockValueByCategory();
+		Map<String, Map<String, Object>> totals = new LinkedHashMap<>();
+		for (ProductCategory category : ProductCategory.values()) {
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("count", inventoryManager.getCategoryCount(category));
+			row.put("stock", inventoryManager.getCategoryStock(category));
+			row.put("value", values.getOrDefault(category, 0.0));
+			totals.put(category.name(), row);
+		}
+		return totals;
+	}
+
+	/**
+	 * Gets the cache and retrieve statistics reported by the "S" command.
+	 *
+	 * @return the statistics by name, in a fixed order
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("retrieves", RETRIEVE_TIMER.getCount());
+		statistics.put("avgRetrieveMicros", RETRIEVE_TIMER.getMean() / 1000);
+		statistics.put("p99RetrieveMicros", RETRIEVE_TIMER.getPercentile(0.99) / 1000);
+		statistics.put("maxRetrieveMicros", RETRIEVE_TIMER.getMax() / 1000);
+		statistics.put("cacheHits", jsonCache.getHits());
+		statistics.put("cacheMisses", jsonCache.getMisses());
+		statistics.put("cacheHitRate", jsonCache.getHitRate());
+		statistics.put("cacheEvictions", jsonCache.getEvictions());
+		statistics.put("cacheEntries", jsonCache.getSize());
+		statistics.put("cacheBytes", jsonCache.getCachedBytes());
+		return statistics;
+	}
 }
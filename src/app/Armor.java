@@ -11,6 +11,13 @@ package app;
  */
 public class Armor extends SalableProduct {
 
+	/**
+	 * Constructs an empty {@code Armor}, used when loading from JSON.
+	 */
+	public Armor() {
+		super();
+	}
+
 	/**
 	 * Constructs a new {@code Armor} object with the specified name, description,
 	 * price, and quantity.
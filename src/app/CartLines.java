@@ -0,0 +1,187 @@
+package app;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * CartLines maps product ids to quantities in plain int arrays, so adding to or
+ * removing from a cart neither boxes an {@code Integer} nor allocates a map
+ * entry. Keys are found by open addressing with linear probing, and every
+ * update finds its slot with one probe sequence. Removing a line shifts the
+ * lines after it back instead of leaving a marker, so lookups never slow down
+ * as lines come and go.
+ *
+ * The product of each line is kept next to its quantity for totals and
+ * purchases.
+ *
+ * This class is not thread safe; {@link ShoppingCart} is used by one shopper at
+ * a time.
+ */
+class CartLines {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** Product ids, or 0 for an empty slot. Ids start at 1. */
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private int[] quantities = new int[INITIAL_CAPACITY];
+	private SalableProduct[] products = new SalableProduct[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * Adds to the quantity of a product, adding a line if it has none.
+	 *
+	 * @param product the product
+	 * @param qty     the quantity to add
+	 * @return the new quantity
+	 */
+	int add(SalableProduct product, int qty) {
+		int slot = slotOf(product.getId());
+		if (ids[slot] == 0) {
+			ids[slot] = product.getId();
+			products[slot] = product;
+			quantities[slot] = qty;
+			// Grow once the table is over three quarters full
+			if (++size * 4 > ids.length * 3) {
+				resize(ids.length * 2);
+			}
+			return qty;
+		}
+		return quantities[slot] += qty;
+	}
+
+	/**
+	 * Takes a quantity off a product's line, removing the line if nothing is
+	 * left.
+	 *
+	 * @param product the product
+	 * @param qty     the quantity to take off
+	 * @return the quantity left, or 0 if the product had no line
+	 */
+	int remove(SalableProduct product, int qty) {
+		int slot = slotOf(product.getId());
+		if (ids[slot] == 0) {
+			return 0;
+		}
+		if (qty < quantities[slot]) {
+			return quantities[slot] -= qty;
+		}
+		delete(slot);
+		return 0;
+	}
+
+	/**
+	 * Gets the quantity of a product.
+	 *
+	 * @param product the product
+	 * @return its quantity, or 0 if it has no line
+	 */
+	int get(SalableProduct product) {
+		int slot = slotOf(product.getId());
+		return ids[slot] == 0 ? 0 : quantities[slot];
+	}
+
+	/**
+	 * Gets the number of lines.
+	 *
+	 * @return the line count
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every line, keeping the table's capacity.
+	 */
+	void clear() {
+		Arrays.fill(ids, 0);
+		Arrays.fill(products, null);
+		size = 0;
+	}
+
+	/**
+	 * Adds up price times quantity over the lines.
+	 *
+	 * @return the total price
+	 */
+	double totalPrice() {
+		double total = 0.0;
+		for (int slot = 0; slot < ids.length; slot++) {
+			if (ids[slot] != 0) {
+				total += products[slot].getPrice() * quantities[slot];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Copies the lines into a map keyed by product identity.
+	 *
+	 * @return a new map of product to quantity
+	 */
+	Map<SalableProduct, Integer> toMap() {
+		Map<SalableProduct, Integer> map = new IdentityHashMap<>(size);
+		for (int slot = 0; slot < ids.length; slot++) {
+			if (ids[slot] != 0) {
+				map.put(products[slot], quantities[slot]);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Finds the slot holding an id, or the empty slot where it would go.
+	 */
+	private int slotOf(int id) {
+		int mask = ids.length - 1;
+		int slot = home(id, mask);
+		while (ids[slot] != 0 && ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int home(int id, int mask) {
+		// Ids are sequential, so spread them across the table
+		int hash = id * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	/**
+	 * Empties a slot and moves back any later lines that probed past it.
+	 */
+	private void delete(int slot) {
+		int mask = ids.length - 1;
+		int hole = slot;
+		for (int next = (hole + 1) & mask; ids[next] != 0; next = (next + 1) & mask) {
+			int home = home(ids[next], mask);
+			// The line can fill the hole if the hole lies between its home and where it is
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				ids[hole] = ids[next];
+				quantities[hole] = quantities[next];
+				products[hole] = products[next];
+				hole = next;
+			}
+		}
+		ids[hole] = 0;
+		products[hole] = null;
+		size--;
+	}
+
+	private void resize(int capacity) {
+		int[] oldIds = ids;
+		int[] oldQuantities = quantities;
+		SalableProduct[] oldProducts = products;
+		ids = new int[capacity];
+		quantities = new int[capacity];
+		products = new SalableProduct[capacity];
+		for (int i = 0; i < oldIds.length; i++) {
+			if (oldIds[i] != 0) {
+				int slot = slotOf(oldIds[i]);
+				ids[slot] = oldIds[i];
+				quantities[slot] = oldQuantities[i];
+				products[slot] = oldProducts[i];
+			}
+		}
+	}
+}
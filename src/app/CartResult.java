@@ -0,0 +1,115 @@
+package app;
+
+/**
+ * The outcome of a cart operation such as adding, removing or purchasing.
+ * Operations return a CartResult instead of printing, so the caller decides how
+ * to show it.
+ *
+ * @see ConsoleView
+ */
+public class CartResult {
+
+	/**
+	 * What happened when the operation ran.
+	 */
+	public enum Status {
+		/** The product was added to the cart. */
+		ADDED,
+		/** The product was removed from the cart. */
+		REMOVED,
+		/** The cart was purchased. */
+		PURCHASED,
+		/** The product does not exist or does not have enough stock. */
+		NOT_AVAILABLE,
+		/** The product is not in the cart. */
+		NOT_IN_CART,
+		/** More was asked to be removed than the cart holds. */
+		EXCEEDS_CART_QUANTITY,
+		/** The cart is empty so there is nothing to purchase. */
+		CART_EMPTY,
+		/** Stock ran out for something in the cart before it was purchased. */
+		OUT_OF_STOCK,
+		/** The shopper session does not exist. */
+		NO_SESSION,
+		/** The store follows another and cannot take purchases. */
+		READ_ONLY
+	}
+
+	private final Status status;
+	private final String productName;
+	private final int quantity;
+	private final double total;
+
+	/**
+	 * Creates a result.
+	 *
+	 * @param status      what happened
+	 * @param productName the product involved, or null for whole-cart operations
+	 * @param quantity    the quantity added or removed, or for
+	 *                    {@link Status#EXCEEDS_CART_QUANTITY} the quantity in the
+	 *                    cart
+	 * @param total       the purchase total for {@link Status#PURCHASED}
+	 */
+	public CartResult(Status status, String productName, int quantity, double total) {
+		this.status = status;
+		this.productName = productName;
+		this.quantity = quantity;
+		this.total = total;
+	}
+
+	/**
+	 * Creates a result that has no product, quantity or total.
+	 *
+	 * @param status what happened
+	 */
+	public CartResult(Status status) {
+		this(status, null, 0, 0);
+	}
+
+	/**
+	 * Checks whether the operation changed the cart.
+	 *
+	 * @return true for {@link Status#ADDED}, {@link Status#REMOVED} and
+	 *         {@link Status#PURCHASED}
+	 */
+	public boolean isSuccess() {
+		return status == Status.ADDED || status == Status.REMOVED || status == Status.PURCHASED;
+	}
+
+	/**
+	 * Gets what happened.
+	 *
+	 * @return the status
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Gets the name of the product involved.
+	 *
+	 * @return the product name, or null
+	 */
+	public String getProductName() {
+		return productName;
+	}
+
+	/**
+	 * Gets the quantity added or removed, or the quantity in the cart when too
+	 * many were asked to be removed.
+	 *
+	 * @return the quantity
+	 */
+	public int getQuantity() {
+		return quantity;
+	}
+
+	/**
+	 * Gets the purchase total.
+	 *
+	 * @return the total, or 0 if nothing was purchased
+	 */
+	public double getTotal() {
+		return total;
+	}
+}
@@ -0,0 +1,444 @@
+package app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * CartStore keeps the carts of shoppers who have left, so a cart saved when a
+ * purchase is cancelled or a session goes idle is still there when the shopper
+ * comes back, even after the store restarts.
+ *
+ * Each save appends one small binary record to a single file: the session id,
+ * then the name and quantity of each product in the cart. An empty cart is
+ * saved as a record with no products, which removes the session. Saving one
+ * cart never rewrites the others, whatever their number. Each record is
+ * forced to disk before the save returns, so a saved cart survives the machine
+ * going down as well as the store. Many carts saved together with
+ * {@link #saveAll(Map)} are forced once for the whole batch.
+ *
+ * Only the position of each session's latest record is kept in memory, and a
+ * cart is read back only when its session is resumed. When records replaced
+ * by later ones take up more than half the file, the live records are copied
+ * to a new file which then replaces the old one. A record cut short by a crash
+ * is dropped when the store is opened again.
+ *
+ * Products are saved by name, since product ids are only unique within one
+ * run. A product no longer in the inventory is left out of the restored cart.
+ */
+public class CartStore implements AutoCloseable {
+
+	/** The default smallest file compacted, so a few carts are not copied over and over. */
+	public static final long DEFAULT_COMPACT_BYTES = 1024 * 1024;
+
+	/** Record positions are packed with their length into one long. */
+	private static final int LENGTH_BITS = 24;
+	private static final int MAX_RECORD_BYTES = (1 << LENGTH_BITS) - 1;
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram SAVE_TIMER = METRICS.timer("carts.save");
+	private static final LatencyHistogram RESTORE_TIMER = METRICS.timer("carts.restore");
+	private static final LongAdder COMPACTIONS = METRICS.counter("carts.compactions");
+
+	private final File file;
+	private final long compactBytes;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	/** Each session's latest record, its position shifted left and its length. */
+	private final Map<String, Long> records = new HashMap<>();
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private long size;
+	private long liveBytes;
+
+	/**
+	 * Opens the cart store in a file with {@link #DEFAULT_COMPACT_BYTES},
+	 * creating it if needed.
+	 *
+	 * @param file the file holding the carts
+	 * @throws IOException if the file cannot be read
+	 */
+	public CartStore(File file) throws IOException {
+		this(file, DEFAULT_COMPACT_BYTES);
+	}
+
+	/**
+	 * Opens the cart store in a file, creating it if needed, and finds the latest
+	 * record of every saved session.
+	 *
+	 * @param file         the file holding the carts
+	 * @param compactBytes the smallest file compacted
+	 * @throws IOException if the file cannot be read
+	 */
+	public CartStore(File file, long compactBytes) throws IOException {
+		this.file = file;
+		this.compactBytes = compactBytes;
+		if (file.exists()) {
+			load();
+		}
+		this.raf = new RandomAccessFile(file, "rw");
+		if (raf.length() > size) {
+			System.out.println("Dropping a partly written cart at the end of " + file);
+			raf.setLength(size);
+		}
+		this.channel = raf.getChannel();
+	}
+
+	/**
+	 * Saves a cart for a session, replacing any cart saved before, and forces it
+	 * to disk. Saving an empty cart removes the session.
+	 *
+	 * @param sessionId the session the cart belongs to
+	 * @param cart      the cart to save
+	 * @throws IOException if the cart could not be written or forced to disk
+	 */
+	public void save(String sessionId, ShoppingCart cart) throws IOException {
+		saveAll(Collections.singletonMap(sessionId, cart));
+	}
+
+	/**
+	 * Saves the carts of many sessions, replacing any carts saved before, and
+	 * forces them to disk together, so a batch waits for the disk once rather
+	 * than once per cart. Each cart is read under its own lock, and an empty
+	 * cart removes its session. Either every cart is saved or none is.
+	 *
+	 * @param carts the carts to save by session id
+	 * @return the number of carts saved that have products
+	 * @throws IOException if the carts could not be written or forced to disk
+	 */
+	public int saveAll(Map<String, ShoppingCart> carts) throws IOException {
+		long start = METRICS.start();
+		int count = carts.size();
+		String[] sessionIds = new String[count];
+		int[] ends = new int[count];
+		boolean[] empty = new boolean[count];
+		ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * count);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream record = new DataOutputStream(bytes);
+		int saved = 0;
+		int n = 0;
+		for (Map.Entry<String, ShoppingCart> entry : carts.entrySet()) {
+			String sessionId = entry.getKey();
+			bytes.reset();
+			record.writeInt(0);
+			record.writeUTF(sessionId);
+			int lines;
+			synchronized (entry.getValue()) {
+				Map<SalableProduct, Integer> products = entry.getValue().getProductsInCart();
+				lines = products.size();
+				record.writeShort(lines);
+				for (Map.Entry<SalableProduct, Integer> line : products.entrySet()) {
+					record.writeUTF(line.getKey().getName());
+					record.writeInt(line.getValue());
+				}
+			}
+			if (bytes.size() > MAX_RECORD_BYTES || lines > Short.MAX_VALUE) {
+				throw new IOException("Cart for session " + sessionId + " is too large to save");
+			}
+			byte[] encoded = bytes.toByteArray();
+			ByteBuffer.wrap(encoded).putInt(0, encoded.length - Integer.BYTES);
+			batch.write(encoded);
+			sessionIds[n] = sessionId;
+			ends[n] = batch.size();
+			empty[n] = lines == 0;
+			if (lines > 0) {
+				saved++;
+			}
+			n++;
+		}
+		byte[] all = batch.toByteArray();
+
+		lock.writeLock().lock();
+		try {
+			// Runs of records are written as they are, skipping removals of
+			// sessions with nothing saved
+			long offset = size;
+			long[] offsets = new long[count];
+			boolean[] written = new boolean[count];
+			try {
+				int runStart = 0;
+				for (int i = 0; i < count; i++) {
+					int recordStart = i == 0 ? 0 : ends[i - 1];
+					if (empty[i] && !records.containsKey(sessionIds[i])) {
+						offset = write(all, runStart, recordStart, offset);
+						runStart = ends[i];
+						continue;
+					}
+					offsets[i] = offset + recordStart - runStart;
+					written[i] = true;
+				}
+				offset = write(all, runStart, all.length, offset);
+				if (offset > size) {
+					channel.force(false);
+				}
+			} catch (IOException e) {
+				// Cut off what was written so the next record starts at a record boundary,
+				// and records that may not be on disk are not read back after a restart
+				try {
+					channel.truncate(size);
+				} catch (IOException truncate) {
+					e.addSuppressed(truncate);
+				}
+				throw e;
+			}
+			size = offset;
+			for (int i = 0; i < count; i++) {
+				if (written[i]) {
+					index(sessionIds[i], offsets[i], ends[i] - (i == 0 ? 0 : ends[i - 1]), empty[i]);
+				}
+			}
+			if (size > compactBytes && liveBytes < size / 2) {
+				try {
+					compact();
+				} catch (IOException e) {
+					// The carts are saved; the old file is still whole and is compacted later
+					System.out.println("Unable to compact " + file + ": " + e.getMessage());
+				}
+			}
+			return saved;
+		} finally {
+			lock.writeLock().unlock();
+			METRICS.stop(SAVE_TIMER, start);
+		}
+	}
+
+	/**
+	 * Removes a session's saved cart, if it has one.
+	 *
+	 * @param sessionId the session
+	 * @throws IOException if the removal could not be written or forced to disk
+	 */
+	public void remove(String sessionId) throws IOException {
+		if (contains(sessionId)) {
+			save(sessionId, new ShoppingCart());
+		}
+	}
+
+	/**
+	 * Checks whether a session has a saved cart, without reading it.
+	 *
+	 * @param sessionId the session
+	 * @return true if the session has a saved cart
+	 */
+	public boolean contains(String sessionId) {
+		lock.readLock().lock();
+		try {
+			return records.containsKey(sessionId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads a session's saved cart, finding its products in the inventory by
+	 * name.
+	 *
+	 * @param sessionId the session
+	 * @param inventory the inventory to find the products in
+	 * @return a new cart holding the saved products, or null if the session has
+	 *         no saved cart
+	 * @throws IOException if the cart cannot be read
+	 */
+	public ShoppingCart load(String sessionId, InventoryManager inventory) throws IOException {
+		long start = METRICS.start();
+		ByteBuffer buffer;
+		lock.readLock().lock();
+		try {
+			Long packed = records.get(sessionId);
+			if (packed == null) {
+				return null;
+			}
+			buffer = ByteBuffer.allocate((int) (packed & MAX_RECORD_BYTES));
+			long offset = packed >>> LENGTH_BITS;
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offset + buffer.position()) < 0) {
+					throw new EOFException("Cart for session " + sessionId + " is cut short");
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		DataInputStream record = new DataInputStream(
+				new ByteArrayInputStream(buffer.array(), Integer.BYTES, buffer.capacity() - Integer.BYTES));
+		record.readUTF();
+		ShoppingCart cart = new ShoppingCart();
+		int lines = record.readShort();
+		for (int i = 0; i < lines; i++) {
+			SalableProduct product = inventory.getProductByName(record.readUTF());
+			int qty = record.readInt();
+			if (product != null) {
+				cart.addToCart(product, qty);
+			}
+		}
+		METRICS.stop(RESTORE_TIMER, start);
+		return cart;
+	}
+
+	/**
+	 * Gets the number of sessions with a saved cart.
+	 *
+	 * @return the session count
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return records.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the length of the file, including records replaced by later ones.
+	 *
+	 * @return the file length in bytes
+	 */
+	public long getFileBytes() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Forces the saved carts to disk and closes the file.
+	 *
+	 * @throws IOException if the file cannot be forced or closed
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			channel.force(false);
+			raf.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes part of an array at a position in the file. The caller holds the
+	 * write lock.
+	 *
+	 * @return the position after the bytes written
+	 */
+	private long write(byte[] bytes, int from, int to, long offset) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, from, to - from);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + buffer.position() - from);
+		}
+		return offset + to - from;
+	}
+
+	/**
+	 * Records where a session's latest record is. The caller holds the write
+	 * lock, or is the constructor.
+	 */
+	private void index(String sessionId, long offset, int length, boolean removed) {
+		Long previous = removed ? records.remove(sessionId)
+				: records.put(sessionId, offset << LENGTH_BITS | length);
+		if (previous != null) {
+			liveBytes -= previous & MAX_RECORD_BYTES;
+		}
+		if (!removed) {
+			liveBytes += length;
+		}
+	}
+
+	/**
+	 * Reads every whole record in the file and sets the size to the end of the
+	 * last one.
+	 */
+	private void load() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+			long offset = 0;
+			while (true) {
+				int length;
+				byte[] payload;
+				try {
+					length = in.readInt();
+					if (length <= 0 || length > MAX_RECORD_BYTES) {
+						break;
+					}
+					payload = new byte[length];
+					in.readFully(payload);
+				} catch (EOFException e) {
+					break;
+				}
+				DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+				String sessionId = record.readUTF();
+				index(sessionId, offset, Integer.BYTES + length, record.readShort() == 0);
+				offset += Integer.BYTES + length;
+			}
+			size = offset;
+		}
+	}
+
+	/**
+	 * Copies the live records to a new file and replaces the old one with it,
+	 * reading and writing each file once from start to end. The caller holds the
+	 * write lock.
+	 */
+	private void compact() throws IOException {
+		File compacted = new File(file.getPath() + ".compact");
+		long written = 0;
+		try {
+			FileOutputStream target = new FileOutputStream(compacted);
+			try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 64 * 1024))) {
+				long offset = 0;
+				while (offset < size) {
+					int length = in.readInt();
+					byte[] payload = new byte[length];
+					in.readFully(payload);
+					String sessionId = new DataInputStream(new ByteArrayInputStream(payload)).readUTF();
+					Long packed = records.get(sessionId);
+					if (packed != null && packed >>> LENGTH_BITS == offset) {
+						out.writeInt(length);
+						out.write(payload);
+						records.put(sessionId, written << LENGTH_BITS | (Integer.BYTES + length));
+						written += Integer.BYTES + length;
+					}
+					offset += Integer.BYTES + length;
+				}
+				out.flush();
+				target.getFD().sync();
+			}
+			Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// Positions may be half moved; find them again in the old file, which is whole
+			compacted.delete();
+			records.clear();
+			liveBytes = 0;
+			load();
+			throw e;
+		}
+		raf.close();
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		size = written;
+		liveBytes = written;
+		METRICS.increment(COMPACTIONS);
+	}
+}
@@ -0,0 +1,184 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * CatalogGenerator makes up a catalog of weapons, armor and health items of any
+ * size, for tests, benchmarks and load tests that need more than the handful of
+ * sample products.
+ *
+ * The catalog looks like a real one rather than a numbered list. Names are
+ * built from a material or strength, a kind of item and sometimes a quality
+ * and an origin, and a few words are far more common than the rest, the way a
+ * real catalog has many iron swords and few dragonbone ones. When a name comes
+ * up again it gets a number, so every name in one generator is unique.
+ * Descriptions are one to three different phrases long. Prices are spread on a
+ * log scale around a typical price for the category, and stock is mostly low
+ * with a few products sold out.
+ *
+ * The same seed always gives the same products in the same order.
+ */
+public class CatalogGenerator {
+
+	private static final double WEAPON_SHARE = 0.45;
+	private static final double ARMOR_SHARE = 0.30;
+	private static final double SOLD_OUT_SHARE = 0.05;
+
+	private static final WordList QUALITIES = new WordList("Fine", "Sturdy", "Worn", "Masterwork", "Rusty", "Balanced",
+			"Ornate", "Cursed", "Blessed", "Ancient", "Royal", "Crude");
+	private static final WordList MATERIALS = new WordList("Iron", "Steel", "Bronze", "Leather", "Oak", "Silver",
+			"Obsidian", "Mithril", "Bone", "Golden", "Crystal", "Dragonbone");
+	private static final WordList WEAPONS = new WordList("Sword", "Axe", "Dagger", "Spear", "Bow", "Mace", "Hammer",
+			"Staff", "Crossbow", "Halberd", "Scimitar", "Flail", "Rapier", "Sling");
+	private static final WordList ARMOR = new WordList("Shield", "Helmet", "Gauntlets", "Boots", "Breastplate",
+			"Greaves", "Chainmail", "Bracers", "Pauldrons", "Cloak", "Buckler", "Tower Shield");
+	private static final WordList ORIGINS = new WordList("of the North", "of the Legion", "of Kings", "of the Deep",
+			"of the Order", "of Embers", "of the Wilds", "of Storms");
+	private static final WordList STRENGTHS = new WordList("Minor", "Lesser", "Common", "Greater", "Superior",
+			"Supreme");
+	private static final WordList REMEDIES = new WordList("Healing", "Stamina", "Mana", "Antidote", "Fire Resistance",
+			"Regeneration", "Vigor", "Clarity", "Night Sight", "Swiftness");
+	private static final WordList HEALTH = new WordList("Potion", "Elixir", "Tonic", "Herb", "Salve", "Draught",
+			"Med Kit", "Bandage", "Tincture", "Poultice");
+
+	private static final WordList WEAPON_PHRASES = new WordList("sharp and can swing", "well balanced",
+			"forged in the north", "heavy but deadly", "quick in the hand", "holds an edge", "good reach",
+			"favored by the guard", "light enough to carry all day", "hits hard", "handle wrapped in leather",
+			"engraved blade");
+	private static final WordList ARMOR_PHRASES = new WordList("stops things", "saves your head", "light to wear",
+			"blocks arrows", "riveted plates", "padded inside", "fits most sizes", "polished to a shine",
+			"turns a blade", "made to last", "lined with fur", "dented but solid");
+	private static final WordList HEALTH_PHRASES = new WordList("tastes bad but helps", "life saver",
+			"restores stamina", "works in seconds", "smells of mint", "brewed by monks", "keep away from children",
+			"heals small wounds", "lasts an hour", "best taken warm", "one dose", "clears poison");
+
+	private final Random random;
+	private final Map<String, Integer> nameCounts = new HashMap<>();
+
+	/**
+	 * A list of words where the first ones are picked more often than the last:
+	 * the word at rank r is picked in proportion to 1 / r.
+	 */
+	private static class WordList {
+		private final String[] words;
+		private final double[] cumulative;
+
+		WordList(String... words) {
+			this.words = words;
+			this.cumulative = new double[words.length];
+			double total = 0;
+			for (int i = 0; i < words.length; i++) {
+				total += 1.0 / (i + 1);
+				cumulative[i] = total;
+			}
+		}
+
+		String pick(Random random) {
+			double target = random.nextDouble() * cumulative[cumulative.length - 1];
+			int index = Arrays.binarySearch(cumulative, target);
+			return words[index >= 0 ? index : Math.min(-index - 1, words.length - 1)];
+		}
+	}
+
+	/**
+	 * Creates a generator.
+	 *
+	 * @param seed the seed; generators with the same seed make the same products
+	 */
+	public CatalogGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generates the next products of the catalog.
+	 *
+	 * @param count the number of products
+	 * @return a new list of the products, in the order they were made
+	 */
+	public List<SalableProduct> generate(int count) {
+		List<SalableProduct> products = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			products.add(next());
+		}
+		return products;
+	}
+
+	/**
+	 * Generates the next product of the catalog.
+	 *
+	 * @return a new Weapon, Armor or Health product
+	 */
+	public SalableProduct next() {
+		double category = random.nextDouble();
+		if (category < WEAPON_SHARE) {
+			return new Weapon(uniqueName(gearName(WEAPONS)), description(WEAPON_PHRASES), price(400), quantity(30));
+		} else if (category < WEAPON_SHARE + ARMOR_SHARE) {
+			return new Armor(uniqueName(gearName(ARMOR)), description(ARMOR_PHRASES), price(300), quantity(30));
+		}
+		return new Health(uniqueName(healthName()), description(HEALTH_PHRASES), price(25), quantity(80));
+	}
+
+	private String gearName(WordList items) {
+		StringBuilder name = new StringBuilder();
+		if (random.nextDouble() < 0.4) {
+			name.append(QUALITIES.pick(random)).append(' ');
+		}
+		name.append(MATERIALS.pick(random)).append(' ').append(items.pick(random));
+		if (random.nextDouble() < 0.2) {
+			name.append(' ').append(ORIGINS.pick(random));
+		}
+		return name.toString();
+	}
+
+	private String healthName() {
+		String remedy = REMEDIES.pick(random) + " " + HEALTH.pick(random);
+		return random.nextDouble() < 0.6 ? STRENGTHS.pick(random) + " " + remedy : remedy;
+	}
+
+	/**
+	 * Numbers a name that has been made before, so "Iron Sword" is followed by
+	 * "Iron Sword #2".
+	 */
+	private String uniqueName(String name) {
+		int seen = nameCounts.merge(name, 1, Integer::sum);
+		return seen == 1 ? name : name + " #" + seen;
+	}
+
+	private String description(WordList phrases) {
+		int count = 1 + random.nextInt(3);
+		List<String> picked = new ArrayList<>(count);
+		while (picked.size() < count) {
+			String phrase = phrases.pick(random);
+			if (!picked.contains(phrase)) {
+				picked.add(phrase);
+			}
+		}
+		String description = String.join(", ", picked);
+		return Character.toUpperCase(description.charAt(0)) + description.substring(1);
+	}
+
+	/**
+	 * Picks a price around a typical one, with about a third of prices under half
+	 * or over double it, ending in .99 or .00 like shop prices do.
+	 */
+	private double price(double typical) {
+		long whole = Math.max(1, Math.round(typical * Math.exp(0.7 * random.nextGaussian())));
+		return random.nextBoolean() ? whole - 0.01 : whole;
+	}
+
+	/**
+	 * Picks a stock level: a few products are sold out, and the rest have a small
+	 * quantity more often than a large one.
+	 */
+	private int quantity(int typical) {
+		if (random.nextDouble() < SOLD_OUT_SHARE) {
+			return 0;
+		}
+		return 1 + (int) (-typical * Math.log(1 - random.nextDouble()));
+	}
+}
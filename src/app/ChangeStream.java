@@ -0,0 +1,276 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ChangeStream passes {@link InventoryEvent}s from the inventory to any number
+ * of subscribers, so work such as saving and cache refreshing can follow
+ * changes on other threads instead of slowing down the request that made them.
+ *
+ * Events go into a ring buffer with a fixed number of slots. Publishing takes
+ * the next sequence number with one atomic add, fills its slot and marks it
+ * published; no lock is taken. Each subscriber has its own thread that reads
+ * every published slot after the last one it handled and hands them over in
+ * one batch, so a subscriber that falls behind catches up in a few large
+ * calls rather than many small ones.
+ *
+ * The inventory publishes while holding its write lock, so publishing never
+ * waits for subscribers. A subscriber that falls a whole buffer behind finds
+ * its next slot reused: it is overrun. It skips to the newest event and is
+ * told through {@link InventorySubscriber#onOverrun()}, so it can rebuild
+ * from the inventory, and then carries on with the events after that. A
+ * subscriber that throws, even an Error, loses only that batch. With no
+ * subscribers, publishing does nothing.
+ *
+ * @see InventoryManager#getChangeStream()
+ */
+public class ChangeStream {
+
+	/** The default number of slots. */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	/** The most events handed to a subscriber in one call. */
+	public static final int MAX_BATCH = 256;
+
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long AWAIT_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LongAdder OVERRUNS = METRICS.counter("changes.overruns");
+
+	private final InventoryEvent[] slots;
+	/** The sequence number last published in each slot, or -1. */
+	private final AtomicLongArray published;
+	private final int mask;
+	/** The next sequence number to hand out. */
+	private final AtomicLong cursor = new AtomicLong();
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	/**
+	 * A subscriber and the thread that delivers events to it.
+	 */
+	public class Subscription implements AutoCloseable {
+		private final InventorySubscriber subscriber;
+		private final Thread thread;
+		/** The sequence number of the last event delivered. */
+		private final AtomicLong delivered;
+		private volatile boolean running = true;
+		private volatile boolean sleeping;
+		private volatile boolean overrun;
+		private final LongAdder overruns = new LongAdder();
+
+		private Subscription(String name, InventorySubscriber subscriber, long start) {
+			this.subscriber = subscriber;
+			this.delivered = new AtomicLong(start - 1);
+			this.thread = new Thread(this::deliver, "changes-" + name);
+			this.thread.setDaemon(true);
+		}
+
+		/**
+		 * Gets the sequence number of the last event delivered.
+		 *
+		 * @return the sequence number, or one less than the first event the
+		 *         subscription will see if none were delivered yet
+		 */
+		public long getDeliveredSequence() {
+			return delivered.get();
+		}
+
+		/**
+		 * Gets how many times the subscriber fell a whole buffer behind and
+		 * skipped events.
+		 *
+		 * @return the overrun count
+		 */
+		public long getOverrunCount() {
+			return overruns.sum();
+		}
+
+		/**
+		 * Waits until an event has been delivered.
+		 *
+		 * @param sequence      the event's sequence number
+		 * @param timeoutMillis the longest time to wait
+		 * @return true if it was delivered, false if time ran out or the
+		 *         subscription was closed first
+		 */
+		public boolean awaitDelivered(long sequence, long timeoutMillis) {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			while (delivered.get() < sequence) {
+				if (!running || System.nanoTime() > deadline) {
+					return false;
+				}
+				LockSupport.parkNanos(AWAIT_PARK_NANOS);
+			}
+			return true;
+		}
+
+		/**
+		 * Stops delivering events. Events not delivered yet are dropped. A batch
+		 * being delivered is finished first.
+		 */
+		@Override
+		public void close() {
+			running = false;
+			subscriptions.remove(this);
+			LockSupport.unpark(thread);
+		}
+
+		private void deliver() {
+			List<InventoryEvent> batch = new ArrayList<>(MAX_BATCH);
+			List<InventoryEvent> view = Collections.unmodifiableList(batch);
+			while (running) {
+				long next = delivered.get() + 1;
+				collect(next, batch);
+				if (overrun) {
+					resync();
+					continue;
+				}
+				if (batch.isEmpty()) {
+					sleeping = true;
+					// Check again, a publish may have missed the flag
+					collect(next, batch);
+					if (batch.isEmpty() && !overrun) {
+						LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+					}
+					sleeping = false;
+					if (batch.isEmpty()) {
+						continue;
+					}
+				}
+				try {
+					subscriber.onEvents(view);
+				} catch (Throwable e) {
+					e.printStackTrace();
+				}
+				delivered.set(next + batch.size() - 1);
+				batch.clear();
+			}
+		}
+
+		/**
+		 * Adds the events published in a row from a sequence number to a batch.
+		 * If the first slot wanted was reused before it was read, the
+		 * subscription is marked overrun.
+		 */
+		private void collect(long next, List<InventoryEvent> batch) {
+			while (batch.size() < MAX_BATCH) {
+				long sequence = next + batch.size();
+				int slot = (int) sequence & mask;
+				long publishedSequence = published.get(slot);
+				if (publishedSequence < sequence) {
+					return;
+				}
+				InventoryEvent event = slots[slot];
+				if (publishedSequence > sequence || event.getSequence() != sequence) {
+					// Events already in the batch are delivered before the overrun
+					overrun = batch.isEmpty();
+					return;
+				}
+				batch.add(event);
+			}
+		}
+
+		/**
+		 * Skips every event published so far and tells the subscriber, which
+		 * then gets the events published after that as usual.
+		 */
+		private void resync() {
+			overrun = false;
+			delivered.set(cursor.get() - 1);
+			overruns.increment();
+			METRICS.increment(OVERRUNS);
+			try {
+				subscriber.onOverrun();
+			} catch (Throwable e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Creates a stream with {@link #DEFAULT_CAPACITY} slots.
+	 */
+	public ChangeStream() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a stream.
+	 *
+	 * @param capacity the number of slots, rounded up to a power of two
+	 */
+	public ChangeStream(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.slots = new InventoryEvent[size];
+		this.published = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			published.set(i, -1);
+		}
+	}
+
+	/**
+	 * Starts delivering events to a subscriber, beginning with the next event
+	 * published.
+	 *
+	 * @param name       a name for the subscription's thread
+	 * @param subscriber the subscriber
+	 * @return the subscription, to close when no more events are wanted
+	 */
+	public Subscription subscribe(String name, InventorySubscriber subscriber) {
+		Subscription subscription = new Subscription(name, subscriber, cursor.get());
+		subscriptions.add(subscription);
+		subscription.thread.start();
+		return subscription;
+	}
+
+	/**
+	 * Publishes an event to every subscriber.
+	 *
+	 * @param type    what happened
+	 * @param product the product it happened to
+	 * @return the event's sequence number, or -1 if there are no subscribers
+	 */
+	public long publish(InventoryEvent.Type type, SalableProduct product) {
+		if (subscriptions.isEmpty()) {
+			return -1;
+		}
+		long sequence = cursor.getAndIncrement();
+		int slot = (int) sequence & mask;
+		slots[slot] = new InventoryEvent(sequence, type, product);
+		published.set(slot, sequence);
+		for (Subscription subscription : subscriptions) {
+			if (subscription.sleeping) {
+				LockSupport.unpark(subscription.thread);
+			}
+		}
+		return sequence;
+	}
+
+	/**
+	 * Gets the sequence number of the last event handed out to a publisher.
+	 *
+	 * @return the sequence number, or -1 before the first event
+	 */
+	public long getLastSequence() {
+		return cursor.get() - 1;
+	}
+
+	/**
+	 * Gets the number of open subscriptions.
+	 *
+	 * @return the subscriber count
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+}
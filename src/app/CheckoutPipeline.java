@@ -0,0 +1,215 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * CheckoutPipeline purchases many carts together, so checkouts during a sale
+ * do not queue one by one for the inventory's write lock.
+ *
+ * A checkout queues its cart and then tries to become the combiner. The
+ * combiner takes every cart waiting, up to a batch size, and purchases them
+ * with {@link InventoryManager#purchaseAll}: one write lock for the batch and
+ * one stock update per product, however many carts hold it. Shoppers that
+ * find a combiner at work wait for it to purchase their carts instead of
+ * queueing for the lock themselves. A lone checkout combines its own cart at
+ * once, with no hand-off to another thread, so batches only grow when carts
+ * arrive faster than they are purchased.
+ *
+ * Each cart still gets its own result, and a cart that cannot be filled does
+ * not hold up the others. With an {@link OrderLog}, the carts purchased in a
+ * batch are recorded with one write after the inventory's lock is released,
+ * and before their shoppers are told.
+ *
+ * @see StoreFront#purchaseFromCart()
+ */
+public class CheckoutPipeline {
+
+	/** The default most carts purchased in one batch. */
+	public static final int DEFAULT_MAX_BATCH = 256;
+
+	private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram BATCH_TIMER = METRICS.timer("checkout.batch");
+	private static final LongAdder BATCHES = METRICS.counter("checkout.batches");
+	private static final LongAdder PURCHASED = METRICS.counter("checkout.purchased");
+	private static final LongAdder OUT_OF_STOCK = METRICS.counter("checkout.outOfStock");
+
+	private final InventoryManager inventory;
+	private final int maxBatch;
+	private final OrderLog orderLog;
+	private final Queue<Checkout> queue = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock combiner = new ReentrantLock();
+	private final LongAdder cartsBatched = new LongAdder();
+	private final LongAdder batchesRun = new LongAdder();
+
+	/**
+	 * One cart waiting to be purchased and the shopper waiting for it.
+	 */
+	private static class Checkout {
+		private final ShoppingCart cart;
+		private final Map<SalableProduct, Integer> lines;
+		/** The lines priced once, for both the total and the order log. */
+		private final List<Order.Line> orderLines;
+		private final double totalPrice;
+		private final Thread waiter = Thread.currentThread();
+		private volatile CartResult result;
+		private volatile RuntimeException failure;
+
+		Checkout(ShoppingCart cart) {
+			this.cart = cart;
+			this.lines = cart.getProductsInCart();
+			this.orderLines = Order.linesOf(lines);
+			this.totalPrice = Order.totalOf(orderLines);
+		}
+	}
+
+	/**
+	 * Creates a pipeline with {@link #DEFAULT_MAX_BATCH}.
+	 *
+	 * @param inventory the inventory to take stock from
+	 */
+	public CheckoutPipeline(InventoryManager inventory) {
+		this(inventory, DEFAULT_MAX_BATCH);
+	}
+
+	/**
+	 * Creates a pipeline.
+	 *
+	 * @param inventory the inventory to take stock from
+	 * @param maxBatch  the most carts purchased in one batch
+	 */
+	public CheckoutPipeline(InventoryManager inventory, int maxBatch) {
+		this(inventory, maxBatch, null);
+	}
+
+	/**
+	 * Creates a pipeline that records the carts it purchases.
+	 *
+	 * @param inventory the inventory to take stock from
+	 * @param maxBatch  the most carts purchased in one batch
+	 * @param orderLog  the order log to record purchases in, or null
+	 */
+	public CheckoutPipeline(InventoryManager inventory, int maxBatch, OrderLog orderLog) {
+		this.inventory = inventory;
+		this.maxBatch = maxBatch;
+		this.orderLog = orderLog;
+	}
+
+	/**
+	 * Purchases everything in a cart, together with any other carts checking out
+	 * at the same time. The cart is cleared only if the inventory had enough
+	 * stock for every product in it, as with
+	 * {@link StoreFront#purchaseFromCart()}.
+	 *
+	 * @param cart the cart to purchase
+	 * @return the result, {@code PURCHASED}, {@code OUT_OF_STOCK},
+	 *         {@code CART_EMPTY} or {@code READ_ONLY}
+	 */
+	public CartResult checkout(ShoppingCart cart) {
+		if (cart.isEmpty()) {
+			return new CartResult(CartResult.Status.CART_EMPTY);
+		}
+		if (inventory.isReadOnly()) {
+			return new CartResult(CartResult.Status.READ_ONLY, null, 0, cart.getTotalPrice());
+		}
+		Checkout checkout = new Checkout(cart);
+		queue.add(checkout);
+		while (checkout.result == null && checkout.failure == null) {
+			if (combiner.tryLock()) {
+				try {
+					combine();
+				} finally {
+					combiner.unlock();
+				}
+				// Wake the next shopper so a cart queued during the batch is not
+				// left waiting for its timeout
+				Checkout next = queue.peek();
+				if (next != null) {
+					LockSupport.unpark(next.waiter);
+				}
+			} else {
+				LockSupport.parkNanos(this, WAIT_NANOS);
+			}
+		}
+		if (checkout.failure != null) {
+			throw checkout.failure;
+		}
+		return checkout.result;
+	}
+
+	/**
+	 * Gets the average number of carts purchased in one batch.
+	 *
+	 * @return the average batch size, or 0 before the first batch
+	 */
+	public double getAverageBatchSize() {
+		long batches = batchesRun.sum();
+		return batches == 0 ? 0 : (double) cartsBatched.sum() / batches;
+	}
+
+	/**
+	 * Purchases the oldest carts waiting as one batch. The caller holds the
+	 * combiner lock.
+	 */
+	private void combine() {
+		List<Checkout> batch = new ArrayList<>();
+		Checkout next;
+		while (batch.size() < maxBatch && (next = queue.poll()) != null) {
+			batch.add(next);
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		long start = METRICS.start();
+		List<Map<SalableProduct, Integer>> purchases = new ArrayList<>(batch.size());
+		for (Checkout checkout : batch) {
+			purchases.add(checkout.lines);
+		}
+		boolean[] taken;
+		try {
+			taken = inventory.purchaseAll(purchases);
+		} catch (RuntimeException e) {
+			// Fail every cart in the batch rather than leave their shoppers waiting
+			for (Checkout checkout : batch) {
+				checkout.failure = e;
+				LockSupport.unpark(checkout.waiter);
+			}
+			return;
+		}
+		if (orderLog != null) {
+			// Recorded at the prices the shoppers were charged, not the prices now
+			List<List<Order.Line>> purchased = new ArrayList<>(batch.size());
+			for (int i = 0; i < batch.size(); i++) {
+				if (taken[i]) {
+					purchased.add(batch.get(i).orderLines);
+				}
+			}
+			StoreFront.recordOrders(orderLog, purchased);
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			Checkout checkout = batch.get(i);
+			if (taken[i]) {
+				METRICS.increment(PURCHASED);
+				checkout.cart.clearCart();
+				checkout.result = new CartResult(CartResult.Status.PURCHASED, null, 0, checkout.totalPrice);
+			} else {
+				METRICS.increment(OUT_OF_STOCK);
+				checkout.result = new CartResult(CartResult.Status.OUT_OF_STOCK, null, 0, checkout.totalPrice);
+			}
+			LockSupport.unpark(checkout.waiter);
+		}
+		cartsBatched.add(batch.size());
+		batchesRun.increment();
+		METRICS.increment(BATCHES);
+		METRICS.stop(BATCH_TIMER, start);
+	}
+}
@@ -0,0 +1,148 @@
+package app;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ClientRateLimiter gives each client a token bucket, so one client sending
+ * too many requests is turned away without slowing the others.
+ *
+ * A bucket holds up to the burst size in tokens and refills at the rate, and
+ * each request takes one token. A client that waits long enough can send a
+ * whole burst at once, and one that keeps sending is held to the rate.
+ *
+ * Buckets are made on a client's first request. When there are more than
+ * {@link #MAX_CLIENTS}, the buckets of clients that have been quiet long
+ * enough to fill up again are dropped, since a new bucket would be the same.
+ * If every client is still sending, as when a flood comes from many
+ * addresses, the quietest quarter of the buckets is dropped instead, so the
+ * limiter never holds more than {@link #MAX_CLIENTS} buckets.
+ */
+public class ClientRateLimiter {
+
+	/** The most clients kept before quiet clients are dropped. */
+	public static final int MAX_CLIENTS = 10_000;
+
+	private final double tokensPerNano;
+	private final double burst;
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * One client's tokens.
+	 */
+	private static class Bucket {
+		private double tokens;
+		private long lastRefill;
+		/** When the client last sent a request; refilling does not change it. */
+		private volatile long lastRequest;
+
+		Bucket(double tokens, long now) {
+			this.tokens = tokens;
+			this.lastRefill = now;
+			this.lastRequest = now;
+		}
+	}
+
+	/**
+	 * Creates a rate limiter.
+	 *
+	 * @param requestsPerSecond the rate each client is held to
+	 * @param burst             the most requests a client can send at once
+	 */
+	public ClientRateLimiter(double requestsPerSecond, int burst) {
+		this.tokensPerNano = requestsPerSecond / 1e9;
+		this.burst = burst;
+	}
+
+	/**
+	 * Takes a token for a request from a client.
+	 *
+	 * @param client the client, such as its address
+	 * @return true if the request is allowed, false if the client has no tokens
+	 *         left
+	 */
+	public boolean tryAcquire(String client) {
+		long now = System.nanoTime();
+		Bucket bucket = buckets.get(client);
+		if (bucket == null) {
+			if (buckets.size() >= MAX_CLIENTS) {
+				makeRoom(now);
+			}
+			bucket = buckets.computeIfAbsent(client, c -> new Bucket(burst, now));
+		}
+		bucket.lastRequest = now;
+		synchronized (bucket) {
+			refill(bucket, now);
+			if (bucket.tokens < 1) {
+				return false;
+			}
+			bucket.tokens--;
+			return true;
+		}
+	}
+
+	/**
+	 * Gets the number of clients with a bucket.
+	 *
+	 * @return the client count
+	 */
+	public int getClientCount() {
+		return buckets.size();
+	}
+
+	/**
+	 * Gets the number of buckets dropped while their clients were still
+	 * sending, to keep within {@link #MAX_CLIENTS}.
+	 *
+	 * @return the eviction count
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	private void refill(Bucket bucket, long now) {
+		bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.lastRefill) * tokensPerNano);
+		bucket.lastRefill = now;
+	}
+
+	/**
+	 * Drops the full buckets, and then the quietest quarter if that was not
+	 * enough. Dropping a quarter at a time means the sort is paid once every
+	 * few thousand new clients rather than on each one.
+	 */
+	private synchronized void makeRoom(long now) {
+		if (buckets.size() < MAX_CLIENTS) {
+			// Another thread made room already
+			return;
+		}
+		dropFullBuckets(now);
+		if (buckets.size() < MAX_CLIENTS) {
+			return;
+		}
+		// Sorted from a copy of the times, since clients keep sending meanwhile
+		long[] lastRequests = buckets.values().stream().mapToLong(bucket -> bucket.lastRequest).sorted().toArray();
+		int excess = lastRequests.length - MAX_CLIENTS * 3 / 4;
+		if (excess <= 0) {
+			return;
+		}
+		long cutoff = lastRequests[excess - 1];
+		buckets.values().removeIf(bucket -> {
+			if (bucket.lastRequest > cutoff) {
+				return false;
+			}
+			evictions.increment();
+			return true;
+		});
+	}
+
+	private void dropFullBuckets(long now) {
+		buckets.values().removeIf(bucket -> {
+			synchronized (bucket) {
+				refill(bucket, now);
+				return bucket.tokens >= burst;
+			}
+		});
+	}
+}
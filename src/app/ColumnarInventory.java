@@ -0,0 +1,453 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A store inventory kept as columns instead of product objects. Each product is
+ * a row spread across primitive arrays: its price in cents, its quantity, its
+ * category, and the dictionary ids of its name and description. Names and
+ * descriptions are stored once in the dictionary however many products share
+ * them, packed in a {@link TextDictionary}.
+ *
+ * The methods mirror those of {@link InventoryManager} with the same names.
+ * Scans such as totals and price ranges read straight through the arrays, and
+ * sorting compares whole numbers instead of strings. Since there are no product
+ * objects to hand out, the products returned are new copies built from a row,
+ * and products passed in are matched to rows by name.
+ *
+ * Products are found by name through an index from each name's dictionary id
+ * to the first row with that name, so lookups do not scan the rows.
+ *
+ * Like InventoryManager, lookups take a read lock and changes take a write lock.
+ */
+public class ColumnarInventory {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private long[] priceCents = new long[INITIAL_CAPACITY];
+	private int[] quantities = new int[INITIAL_CAPACITY];
+	private byte[] categories = new byte[INITIAL_CAPACITY];
+	private int[] nameIds = new int[INITIAL_CAPACITY];
+	private int[] descriptionIds = new int[INITIAL_CAPACITY];
+	private int size;
+	/** The first row with each name, by the name's dictionary id, or -1. */
+	private int[] rowsByNameId = new int[0];
+
+	private final TextDictionary dictionary = new TextDictionary();
+
+	/**
+	 * Compares two rows by their position in a sort.
+	 */
+	private interface RowComparator {
+		int compare(int a, int b);
+	}
+
+	/**
+	 * Sorts the inventory by product name, ignoring case, and then by price, the
+	 * same order as {@link InventoryManager#sortByNameThenPrice()}.
+	 *
+	 * Rows are sorted as numbers: name ids are compared through the dictionary,
+	 * which orders most pairs by their first eight letters alone. The columns are
+	 * then rearranged into the new order so later scans still read them front to
+	 * back.
+	 */
+	public void sortByNameThenPrice() {
+		lock.writeLock().lock();
+		try {
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			sortRows(order, (a, b) -> {
+				int byName = dictionary.compareIgnoreCase(nameIds[a], nameIds[b]);
+				return byName != 0 ? byName : Long.compare(priceCents[a], priceCents[b]);
+			});
+			priceCents = reorder(priceCents, order);
+			quantities = reorder(quantities, order);
+			categories = reorder(categories, order);
+			nameIds = reorder(nameIds, order);
+			descriptionIds = reorder(descriptionIds, order);
+			Arrays.fill(rowsByNameId, -1);
+			for (int i = 0; i < size; i++) {
+				indexName(i);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets the quantity of the first product with the same name.
+	 *
+	 * @param product     The product to update, matched by name.
+	 * @param newQuantity The new quantity of the product to be set.
+	 */
+	public void removeSalableProduct(SalableProduct product, int newQuantity) {
+		if (product == null) {
+			System.out.println("Product not found");
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			int row = findRow(product.getName());
+			if (row < 0) {
+				System.out.println("Product not found");
+			} else {
+				quantities[row] = newQuantity;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Takes the given quantities out of stock as one step. Either every line has
+	 * enough stock and all of them are taken, or nothing changes. Lines whose
+	 * products share a name take from the same row, so their quantities are
+	 * added up before the stock is checked.
+	 *
+	 * @param lines The products to purchase, matched by name, and how many of
+	 *              each.
+	 * @return true if the stock was taken, false if any product was missing or
+	 *         short.
+	 */
+	public boolean purchase(Map<SalableProduct, Integer> lines) {
+		lock.writeLock().lock();
+		try {
+			int[] rows = new int[lines.size()];
+			long[] amounts = new long[lines.size()];
+			int count = 0;
+			for (Map.Entry<SalableProduct, Integer> entry : lines.entrySet()) {
+				int row = findRow(entry.getKey().getName());
+				if (row < 0) {
+					return false;
+				}
+				int line = 0;
+				while (line < count && rows[line] != row) {
+					line++;
+				}
+				if (line == count) {
+					rows[count++] = row;
+				}
+				amounts[line] += entry.getValue();
+			}
+			for (int i = 0; i < count; i++) {
+				if (quantities[rows[i]] < amounts[i]) {
+					return false;
+				}
+			}
+			for (int i = 0; i < count; i++) {
+				quantities[rows[i]] -= (int) amounts[i];
+			}
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a new product to the inventory. Only the product's values are kept;
+	 * later changes to the product object are not seen.
+	 *
+	 * @param product The SalableProduct to add.
+	 */
+	public void addSalableProduct(SalableProduct product) {
+		if (product == null) {
+			System.out.println("Cannot add null product to inventory.");
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			if (size == priceCents.length) {
+				grow();
+			}
+			priceCents[size] = Math.round(product.getPrice() * 100);
+			quantities[size] = product.getQuantity();
+			categories[size] = (byte) ProductCategory.of(product).ordinal();
+			nameIds[size] = dictionary.intern(product.getName());
+			descriptionIds[size] = dictionary.intern(product.getDescription());
+			indexName(size);
+			size++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets copies of all products in the inventory, in row order.
+	 *
+	 * @return A new list of SalableProduct instances.
+	 */
+	public List<SalableProduct> getAllProduct() {
+		lock.readLock().lock();
+		try {
+			List<SalableProduct> products = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				products.add(toProduct(i));
+			}
+			return products;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of products in the inventory.
+	 *
+	 * @return the product count
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches for a product in the inventory by its name (case-insensitive).
+	 *
+	 * @param name The name of the product to search for.
+	 * @return A copy of the matching product, or null if not found.
+	 */
+	public SalableProduct getProductByName(String name) {
+		lock.readLock().lock();
+		try {
+			int row = findRow(name);
+			return row < 0 ? null : toProduct(row);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the products priced from {@code minPrice} to {@code maxPrice},
+	 * including both ends, cheapest first, the same order as
+	 * {@link InventoryManager#getProductsByPriceRange(double, double)}. Products
+	 * with the same price stay in row order.
+	 *
+	 * @param minPrice The lowest price to include.
+	 * @param maxPrice The highest price to include.
+	 * @return Copies of the matching products.
+	 */
+	public List<SalableProduct> getProductsByPriceRange(double minPrice, double maxPrice) {
+		long min = Math.round(minPrice * 100);
+		long max = Math.round(maxPrice * 100);
+		lock.readLock().lock();
+		try {
+			int[] rows = new int[size];
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (priceCents[i] >= min && priceCents[i] <= max) {
+					rows[count++] = i;
+				}
+			}
+			rows = Arrays.copyOf(rows, count);
+			sortRows(rows, (a, b) -> Long.compare(priceCents[a], priceCents[b]));
+			List<SalableProduct> products = new ArrayList<>(count);
+			for (int row : rows) {
+				products.add(toProduct(row));
+			}
+			return products;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds up price times quantity for every product. The sum is taken in whole
+	 * cents, so it has no rounding error.
+	 *
+	 * @return The total value of the stock.
+	 */
+	public double getTotalStockValue() {
+		lock.readLock().lock();
+		try {
+			long cents = 0;
+			for (int i = 0; i < size; i++) {
+				cents += priceCents[i] * quantities[i];
+			}
+			return cents / 100.0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the total quantity in stock of one category.
+	 *
+	 * @param category The category to total.
+	 * @return The sum of the quantities of its products.
+	 */
+	public long getCategoryStock(ProductCategory category) {
+		byte ordinal = (byte) category.ordinal();
+		lock.readLock().lock();
+		try {
+			long stock = 0;
+			for (int i = 0; i < size; i++) {
+				if (categories[i] == ordinal) {
+					stock += quantities[i];
+				}
+			}
+			return stock;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies the columns into an {@link InventorySnapshot} for the parallel
+	 * aggregations. The snapshot holds product copies built from the rows.
+	 *
+	 * @return A snapshot of the inventory as it is now.
+	 */
+	public InventorySnapshot getSnapshot() {
+		lock.readLock().lock();
+		try {
+			SalableProduct[] products = new SalableProduct[size];
+			double[] prices = new double[size];
+			for (int i = 0; i < size; i++) {
+				products[i] = toProduct(i);
+				prices[i] = priceCents[i] / 100.0;
+			}
+			return new InventorySnapshot(products, prices, Arrays.copyOf(quantities, size),
+					Arrays.copyOf(categories, size));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of distinct names and descriptions stored.
+	 *
+	 * @return the dictionary size
+	 */
+	public int getDictionarySize() {
+		lock.readLock().lock();
+		try {
+			return dictionary.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the first row whose name equals the given one ignoring case. Names
+	 * differing only in case have different ids, so the lowest row of any of
+	 * them is taken.
+	 */
+	private int findRow(String name) {
+		int found = -1;
+		for (int id : dictionary.findIgnoreCase(name)) {
+			int row = id < rowsByNameId.length ? rowsByNameId[id] : -1;
+			if (row >= 0 && (found < 0 || row < found)) {
+				found = row;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Records a row in the name index unless an earlier row has the same name.
+	 */
+	private void indexName(int row) {
+		int id = nameIds[row];
+		if (id == TextDictionary.NULL_ID) {
+			return;
+		}
+		if (id >= rowsByNameId.length) {
+			int oldLength = rowsByNameId.length;
+			rowsByNameId = Arrays.copyOf(rowsByNameId, Math.max(id + 1, oldLength * 2));
+			Arrays.fill(rowsByNameId, oldLength, rowsByNameId.length, -1);
+		}
+		if (rowsByNameId[id] < 0) {
+			rowsByNameId[id] = row;
+		}
+	}
+
+	private SalableProduct toProduct(int row) {
+		String name = dictionary.get(nameIds[row]);
+		String description = dictionary.get(descriptionIds[row]);
+		double price = priceCents[row] / 100.0;
+		int quantity = quantities[row];
+		switch (ProductCategory.values()[categories[row]]) {
+		case WEAPON:
+			return new Weapon(name, description, price, quantity);
+		case ARMOR:
+			return new Armor(name, description, price, quantity);
+		case HEALTH:
+			return new Health(name, description, price, quantity);
+		default:
+			return new SalableProduct(name, description, price, quantity);
+		}
+	}
+
+	/**
+	 * A stable merge sort of row numbers that never boxes them.
+	 */
+	private static void sortRows(int[] rows, RowComparator comparator) {
+		int[] buffer = new int[rows.length];
+		int[] from = rows;
+		int[] to = buffer;
+		for (int width = 1; width < rows.length; width *= 2) {
+			for (int start = 0; start < rows.length; start += 2 * width) {
+				int middle = Math.min(start + width, rows.length);
+				int end = Math.min(start + 2 * width, rows.length);
+				int left = start;
+				int right = middle;
+				for (int i = start; i < end; i++) {
+					if (left < middle && (right >= end || comparator.compare(from[left], from[right]) <= 0)) {
+						to[i] = from[left++];
+					} else {
+						to[i] = from[right++];
+					}
+				}
+			}
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		if (from != rows) {
+			System.arraycopy(from, 0, rows, 0, rows.length);
+		}
+	}
+
+	private long[] reorder(long[] column, int[] order) {
+		long[] sorted = new long[column.length];
+		for (int i = 0; i < order.length; i++) {
+			sorted[i] = column[order[i]];
+		}
+		return sorted;
+	}
+
+	private int[] reorder(int[] column, int[] order) {
+		int[] sorted = new int[column.length];
+		for (int i = 0; i < order.length; i++) {
+			sorted[i] = column[order[i]];
+		}
+		return sorted;
+	}
+
+	private byte[] reorder(byte[] column, int[] order) {
+		byte[] sorted = new byte[column.length];
+		for (int i = 0; i < order.length; i++) {
+			sorted[i] = column[order[i]];
+		}
+		return sorted;
+	}
+
+	private void grow() {
+		int capacity = priceCents.length * 2;
+		priceCents = Arrays.copyOf(priceCents, capacity);
+		quantities = Arrays.copyOf(quantities, capacity);
+		categories = Arrays.copyOf(categories, capacity);
+		nameIds = Arrays.copyOf(nameIds, capacity);
+		descriptionIds = Arrays.copyOf(descriptionIds, capacity);
+	}
+}
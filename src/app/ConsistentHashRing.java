@@ -0,0 +1,101 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ConsistentHashRing decides which of several nodes owns a key.
+ *
+ * Each node is placed on a ring of 64-bit hashes at many points, its virtual
+ * nodes, and a key belongs to the first point at or after the key's own hash.
+ * The virtual nodes even out how many keys each node gets. When a node is
+ * added, only the keys that now land on its points move, about one in every
+ * node count, instead of almost every key as with a hash modulo the count.
+ *
+ * Every process that builds a ring from the same node names in any order
+ * agrees on every key's owner.
+ */
+public class ConsistentHashRing {
+
+	/** The default number of points each node has on the ring. */
+	public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+	private final List<String> nodes;
+	private final TreeMap<Long, Integer> ring = new TreeMap<>();
+
+	/**
+	 * Creates a ring with {@link #DEFAULT_VIRTUAL_NODES} points per node.
+	 *
+	 * @param nodes the node names, such as {@code host:port}
+	 */
+	public ConsistentHashRing(List<String> nodes) {
+		this(nodes, DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * Creates a ring.
+	 *
+	 * @param nodes        the node names, such as {@code host:port}
+	 * @param virtualNodes the number of points each node has on the ring
+	 */
+	public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+		if (nodes.isEmpty()) {
+			throw new IllegalArgumentException("A ring needs at least one node");
+		}
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+		for (int i = 0; i < nodes.size(); i++) {
+			for (int v = 0; v < virtualNodes; v++) {
+				// On the rare equal hash the smaller name wins, so order does not matter
+				long point = hash(nodes.get(i) + "#" + v);
+				Integer owner = ring.get(point);
+				if (owner == null || nodes.get(owner).compareTo(nodes.get(i)) > 0) {
+					ring.put(point, i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the node names, in the order the ring was built with.
+	 *
+	 * @return the node names
+	 */
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Gets the node that owns a key.
+	 *
+	 * @param key the key
+	 * @return the owner's index in {@link #getNodes()}
+	 */
+	public int nodeFor(String key) {
+		Map.Entry<Long, Integer> point = ring.ceilingEntry(hash(key));
+		return (point != null ? point : ring.firstEntry()).getValue();
+	}
+
+	/**
+	 * Hashes a string to 64 bits: FNV-1a over its characters, then the MurmurHash3
+	 * finalizer so that similar strings land far apart.
+	 *
+	 * @param key the string to hash
+	 * @return the hash
+	 */
+	static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,94 @@
+package app;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * ConsoleView prints the results of store operations for the console
+ * application. The store operations themselves only return results, so
+ * printing happens here and nowhere on the operation path.
+ *
+ * @see CartResult
+ * @see StoreFront
+ */
+public class ConsoleView {
+
+	private static final String SEPARATOR = "--------------------------------------------------------------------------------------------";
+
+	private final PrintStream out;
+
+	/**
+	 * Creates a view that prints to the given stream.
+	 *
+	 * @param out the stream to print to, usually {@code System.out}
+	 */
+	public ConsoleView(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Prints the result of adding, removing or purchasing.
+	 *
+	 * @param result the result to print
+	 */
+	public void printResult(CartResult result) {
+		switch (result.getStatus()) {
+		case ADDED:
+			out.println("Product added to cart");
+			break;
+		case REMOVED:
+			out.println("Product removed from cart");
+			break;
+		case PURCHASED:
+			out.printf("Your total is $%.2f. Proceeding with purchase...\n", result.getTotal());
+			out.println("Purchase completed!");
+			break;
+		case NOT_AVAILABLE:
+			out.println("Product not available in desired quantity.");
+			break;
+		case NOT_IN_CART:
+			out.println("Product not found in cart.");
+			break;
+		case EXCEEDS_CART_QUANTITY:
+			out.println("Cannot remove more than the quantity in your cart.");
+			out.println("You currently have " + result.getQuantity() + " of this product in your cart.");
+			break;
+		case CART_EMPTY:
+			out.println("Your cart is empty, cannot proceed with purchase.");
+			break;
+		case OUT_OF_STOCK:
+			out.println("Some products in your cart are no longer in stock.");
+			break;
+		case NO_SESSION:
+			out.println("Your session has expired.");
+			break;
+		case READ_ONLY:
+			out.println("This store cannot take purchases; please buy from the main store.");
+			break;
+		}
+		out.println(SEPARATOR);
+	}
+
+	/**
+	 * Prints the products in a cart with their quantities.
+	 *
+	 * @param cart the cart to print
+	 */
+	public void printCart(ShoppingCart cart) {
+		Map<SalableProduct, Integer> products = cart.getProductsInCart();
+
+		if (products.isEmpty()) {
+			out.println("Your cart is empty.");
+		} else {
+			out.println("\n------------------------------- Cart Contents -------------------------------");
+			// Iterate over the map and print product details
+			for (Map.Entry<SalableProduct, Integer> entry : products.entrySet()) {
+				SalableProduct product = entry.getKey();
+				int quantity = entry.getValue();
+				out.printf("Name: %s | Description: %s | Price: $%.2f | Quantity: %d\n", product.getName(),
+						product.getDescription(), product.getPrice(), quantity);
+			}
+			out.println("-----------------------------------------------------------------------------");
+		}
+	}
+}
@@ -1,14 +1,48 @@
 package app;
 
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- * FileService handles saving a list of products to a JSON file.
+ * FileService handles saving a list of products to a JSON file and loading it
+ * back.
+ *
+ * It also saves and loads snapshots: the same products in a compact binary
+ * form that loads several times faster than JSON, written when the store shuts
+ * down so the next start is quick.
  */
 public class FileService {
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram SAVE_TIMER = METRICS.timer("file.save");
+	private static final LongAdder SAVE_FAILURES = METRICS.counter("file.save.failures");
+
+	/** Marks a snapshot file, followed by its format version. */
+	private static final int SNAPSHOT_MAGIC = 0x53544b53;
+	private static final int SNAPSHOT_VERSION = 2;
+	/** The fewest bytes a product takes in a snapshot: both strings null. */
+	private static final int SNAPSHOT_MIN_PRODUCT_BYTES = 1 + 4 + 4 + 8 + 4;
+
+	/**
+	 * The JSON type of a product list. Writing with it keeps each product's
+	 * "type" property, which a plain {@code List} would lose to type erasure.
+	 */
+	public static final TypeReference<List<SalableProduct>> PRODUCT_LIST = new TypeReference<List<SalableProduct>>() {
+	};
 
 	/**
 	 * Saves the given list of SalableProduct objects to a JSON file.
@@ -17,13 +51,166 @@ public class FileService {
 	 * @param products the list of products to be saved
 	 */
 	public static void saveToFile(String filename, List<SalableProduct> products) {
+		long start = METRICS.start();
 		ObjectMapper mapper = new ObjectMapper();
 		try {
-			mapper.writerWithDefaultPrettyPrinter().writeValue(new File(filename), products);
+			mapper.writerFor(PRODUCT_LIST).withDefaultPrettyPrinter().writeValue(new File(filename), products);
 		} catch (Exception e) {
+			METRICS.increment(SAVE_FAILURES);
 			e.printStackTrace();
 			
+		} finally {
+			METRICS.stop(SAVE_TIMER, start);
+		}
+
+	}
+
+	/**
+	 * Saves products so that the file holds either the old list or the new one,
+	 * never part of either, and the new list is on disk when this returns. The
+	 * list is written to a temporary file next to the target, forced to disk,
+	 * and then renamed over the target.
+	 *
+	 * @param filename the name of the file to save to
+	 * @param products the products to save
+	 * @throws IOException if the products could not be written or forced to disk
+	 */
+	public static void saveToFileDurably(String filename, List<SalableProduct> products) throws IOException {
+		long start = METRICS.start();
+		File target = new File(filename).getAbsoluteFile();
+		File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+		try {
+			try (FileOutputStream out = new FileOutputStream(temp)) {
+				new ObjectMapper().writerFor(PRODUCT_LIST).withDefaultPrettyPrinter()
+						.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, products);
+				out.getFD().sync();
+			}
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			METRICS.increment(SAVE_FAILURES);
+			throw e;
+		} finally {
+			METRICS.stop(SAVE_TIMER, start);
+		}
+	}
+
+	/**
+	 * Loads the products saved in a JSON file.
+	 *
+	 * @param filename the name of the file to load
+	 * @return the products, each as the class its "type" names
+	 * @throws IOException if the file cannot be read or is not a product list
+	 */
+	public static SalableProduct[] loadFromFile(String filename) throws IOException {
+		return new ObjectMapper().readValue(new File(filename), SalableProduct[].class);
+	}
+
+	/**
+	 * Saves products as a snapshot, with the same all-or-nothing replacement as
+	 * {@link #saveToFileDurably}. Each product is its category, name,
+	 * description, price and quantity. Strings are their UTF-8 length, or -1 for
+	 * null, followed by their bytes, so they may be any length.
+	 *
+	 * @param filename the name of the file to save to
+	 * @param products the products to save
+	 * @throws IOException if the products could not be written or forced to disk
+	 */
+	public static void saveSnapshot(String filename, List<SalableProduct> products) throws IOException {
+		File target = new File(filename).getAbsoluteFile();
+		File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(temp);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeInt(products.size());
+			for (SalableProduct product : products) {
+				out.writeByte(ProductCategory.of(product).ordinal());
+				writeString(out, product.getName());
+				writeString(out, product.getDescription());
+				out.writeDouble(product.getPrice());
+				out.writeInt(product.getQuantity());
+			}
+			out.flush();
+			file.getFD().sync();
 		}
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
 
+	/**
+	 * Loads the products saved in a snapshot.
+	 *
+	 * @param filename the name of the file to load
+	 * Names and descriptions go through {@link StringPool#SHARED}, as they do
+	 * when loading JSON.
+	 *
+	 * @return the products, each as the class of its category
+	 * @throws IOException if the file cannot be read, is not a snapshot or is
+	 *                     corrupt
+	 */
+	public static SalableProduct[] loadSnapshot(String filename) throws IOException {
+		long fileLength = new File(filename).length();
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(filename), 64 * 1024))) {
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+				throw new IOException(filename + " is not a snapshot this version can read");
+			}
+			ProductCategory[] categories = ProductCategory.values();
+			int count = in.readInt();
+			// Checked against the file's size, so a corrupt count cannot ask for a huge array
+			if (count < 0 || count > fileLength / SNAPSHOT_MIN_PRODUCT_BYTES) {
+				throw new IOException(filename + " is corrupt: " + count + " products");
+			}
+			SalableProduct[] products = new SalableProduct[count];
+			for (int i = 0; i < products.length; i++) {
+				int ordinal = in.readByte();
+				if (ordinal < 0 || ordinal >= categories.length) {
+					throw new IOException(filename + " is corrupt: product " + i + " has category " + ordinal);
+				}
+				ProductCategory category = categories[ordinal];
+				String name = StringPool.SHARED.intern(readString(in, fileLength));
+				String description = StringPool.SHARED.intern(readString(in, fileLength));
+				double price = in.readDouble();
+				int quantity = in.readInt();
+				switch (category) {
+				case WEAPON:
+					products[i] = new Weapon(name, description, price, quantity);
+					break;
+				case ARMOR:
+					products[i] = new Armor(name, description, price, quantity);
+					break;
+				case HEALTH:
+					products[i] = new Health(name, description, price, quantity);
+					break;
+				default:
+					products[i] = new SalableProduct(name, description, price, quantity);
+				}
+			}
+			return products;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in, long fileLength) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > fileLength) {
+			throw new IOException("Snapshot is corrupt: string of " + length + " bytes");
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
 	}
 }
@@ -13,6 +13,13 @@ package app;
  */
 public class Health extends SalableProduct {
 
+	/**
+	 * Constructs an empty {@code Health}, used when loading from JSON.
+	 */
+	public Health() {
+		super();
+	}
+
 	/**
      * Constructs a new {@code Health} object with the specified name, description, price, and quantity.
      * 
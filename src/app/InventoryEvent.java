@@ -0,0 +1,97 @@
+package app;
+
+/**
+ * One change to an {@link InventoryManager}, as published on its
+ * {@link ChangeStream}.
+ *
+ * The event holds the product itself, not a copy, so a subscriber that reads
+ * the product sees its current fields, which may be newer than the event. The
+ * quantity and version are taken when the event is published.
+ */
+public class InventoryEvent {
+
+	/**
+	 * What happened to the product.
+	 */
+	public enum Type {
+		/** The product was added to the inventory. */
+		ADDED,
+		/** A setter changed the product's name, description, price or quantity. */
+		UPDATED,
+		/** A purchase took some of the product's stock. */
+		STOCK_DECREMENTED
+	}
+
+	private final long sequence;
+	private final Type type;
+	private final SalableProduct product;
+	private final int quantity;
+	private final int version;
+
+	/**
+	 * Creates an event.
+	 *
+	 * @param sequence the event's position in the stream
+	 * @param type     what happened
+	 * @param product  the product it happened to
+	 */
+	InventoryEvent(long sequence, Type type, SalableProduct product) {
+		this.sequence = sequence;
+		this.type = type;
+		this.product = product;
+		this.quantity = product.getQuantity();
+		this.version = product.getVersion();
+	}
+
+	/**
+	 * Gets the event's position in the stream. The first event is 0 and each
+	 * event after it is one more.
+	 *
+	 * @return the sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Gets what happened to the product.
+	 *
+	 * @return the event type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the product that changed.
+	 *
+	 * @return the product
+	 */
+	public SalableProduct getProduct() {
+		return product;
+	}
+
+	/**
+	 * Gets the product's quantity right after the change.
+	 *
+	 * @return the quantity in stock
+	 */
+	public int getQuantity() {
+		return quantity;
+	}
+
+	/**
+	 * Gets the product's {@link SalableProduct#getVersion() version} right after
+	 * the change.
+	 *
+	 * @return the version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	@Override
+	public String toString() {
+		return sequence + " " + type + " " + product.getName() + " quantity " + quantity;
+	}
+}
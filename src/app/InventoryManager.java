@@ -1,20 +1,100 @@
 package app;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Represents an inventory of SalableProducts in the store.
+ * 
+ * The inventory can be shared by many shopper sessions and the admin service at
+ * the same time, so lookups take a read lock and changes take a write lock.
+ * 
+ * The inventory watches every product it holds, so changes made through the
+ * product setters keep the search index current.
+ * 
+ * Products are also kept in one partition per {@link ProductCategory}, with the
+ * product count and stock total of each category updated as products change,
+ * so category queries never scan the whole inventory. Sorted indexes on price
+ * and quantity answer range queries in O(log n + k).
+ * 
+ * Every add, product change and purchase is published on the inventory's
+ * {@link ChangeStream}, so other parts of the store can follow the inventory
+ * without reading the whole of it again.
  */
-public class InventoryManager {
+public class InventoryManager implements ProductChangeListener {
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram LOOKUP_TIMER = METRICS.timer("inventory.getProductByName");
+	private static final LongAdder LOOKUP_MISSES = METRICS.counter("inventory.getProductByName.misses");
+
 	private List<SalableProduct> storeInventory;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final SearchIndex searchIndex = new SearchIndex();
+	private final Map<ProductCategory, List<SalableProduct>> categories = new EnumMap<>(ProductCategory.class);
+	private final long[] categoryStock = new long[ProductCategory.values().length];
+	private final Map<SalableProduct, IndexedProduct> indexed = new IdentityHashMap<>();
+	private final NavigableSet<IndexedProduct> priceIndex = new TreeSet<>((a, b) -> {
+		int byPrice = Double.compare(a.price, b.price);
+		return byPrice != 0 ? byPrice : Long.compare(a.sequence, b.sequence);
+	});
+	private final NavigableSet<IndexedProduct> quantityIndex = new TreeSet<>((a, b) -> {
+		int byQuantity = Integer.compare(a.quantity, b.quantity);
+		return byQuantity != 0 ? byQuantity : Long.compare(a.sequence, b.sequence);
+	});
+	private long nextSequence;
+	private final ChangeStream changes = new ChangeStream();
+	/** Set while a purchase takes stock, so its changes publish as purchases. */
+	private boolean purchasing;
+	private volatile boolean readOnly;
+
+	/**
+	 * What the indexes last recorded about a product, so a change can be undone
+	 * from them. The sequence number keeps products with the same price or
+	 * quantity apart in the sorted indexes.
+	 */
+	private static class IndexedProduct {
+		private final SalableProduct product;
+		private final ProductCategory category;
+		private final long sequence;
+		private double price;
+		private int quantity;
+
+		IndexedProduct(SalableProduct product, ProductCategory category, long sequence) {
+			this.product = product;
+			this.category = category;
+			this.sequence = sequence;
+			this.price = product.getPrice();
+			this.quantity = product.getQuantity();
+		}
+
+		/**
+		 * Creates a search bound for the sorted indexes.
+		 */
+		IndexedProduct(double price, int quantity, long sequence) {
+			this.product = null;
+			this.category = null;
+			this.sequence = sequence;
+			this.price = price;
+			this.quantity = quantity;
+		}
+	}
 
 	/**
 	 * Initialize the storeInventory with sample products
 	 */
 	public InventoryManager() {
 		this.storeInventory = new ArrayList<>();
+		for (ProductCategory category : ProductCategory.values()) {
+			categories.put(category, new ArrayList<>());
+		}
 	}
 
 	/**
@@ -26,7 +106,50 @@ public class InventoryManager {
 	 * first.
 	 */
 	public void sortByNameThenPrice() {
-		Collections.sort(storeInventory);
+		lock.writeLock().lock();
+		try {
+			Collections.sort(storeInventory);
+			for (List<SalableProduct> partition : categories.values()) {
+				Collections.sort(partition);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets whether purchases are refused, as on a node following a replication
+	 * leader, whose stock only the leader may take. Changes made through the
+	 * product setters still apply.
+	 * 
+	 * @param readOnly true to refuse purchases
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Checks whether purchases are refused.
+	 * 
+	 * @return true if {@link #purchase} and {@link #purchaseAll} take no stock
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Runs changes to products in the inventory as one step under the write lock,
+	 * so no purchase runs between reading a product and setting its fields.
+	 * 
+	 * @param change The change, made through the product setters.
+	 */
+	public void update(Runnable change) {
+		lock.writeLock().lock();
+		try {
+			change.run();
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -40,7 +163,100 @@ public class InventoryManager {
 		if (product == null) {
 			System.out.println("Product not found");
 		} else {
-			product.setQuantity(newQuantity);
+			lock.writeLock().lock();
+			try {
+				product.setQuantity(newQuantity);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Takes the given quantities out of stock as one step. Either every line has
+	 * enough stock and all of them are taken, or nothing changes.
+	 * 
+	 * @param lines The products to purchase and how many of each.
+	 * @return true if the stock was taken, false if any product was short or the
+	 *         inventory is read-only.
+	 */
+	public boolean purchase(Map<SalableProduct, Integer> lines) {
+		lock.writeLock().lock();
+		try {
+			if (readOnly) {
+				return false;
+			}
+			for (Map.Entry<SalableProduct, Integer> entry : lines.entrySet()) {
+				if (entry.getKey().getQuantity() < entry.getValue()) {
+					return false;
+				}
+			}
+			purchasing = true;
+			for (Map.Entry<SalableProduct, Integer> entry : lines.entrySet()) {
+				SalableProduct product = entry.getKey();
+				product.setQuantity(product.getQuantity() - entry.getValue());
+				if (indexed.containsKey(product)) {
+					changes.publish(InventoryEvent.Type.STOCK_DECREMENTED, product);
+				}
+			}
+			return true;
+		} finally {
+			purchasing = false;
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Takes stock for many purchases as one step. Purchases are checked in order
+	 * against the stock that earlier purchases in the batch left, and each one
+	 * either gets every line or nothing. Each product's stock is then written
+	 * once for the whole batch, so a product in many purchases is re-indexed and
+	 * published once instead of once per purchase.
+	 *
+	 * @param purchases The purchases, each the products and how many of each.
+	 * @return For each purchase, true if its stock was taken, false if any
+	 *         product was short or the inventory is read-only.
+	 */
+	public boolean[] purchaseAll(List<Map<SalableProduct, Integer>> purchases) {
+		boolean[] taken = new boolean[purchases.size()];
+		Map<SalableProduct, int[]> remaining = new IdentityHashMap<>();
+		lock.writeLock().lock();
+		try {
+			if (readOnly) {
+				return taken;
+			}
+			for (int i = 0; i < purchases.size(); i++) {
+				Map<SalableProduct, Integer> lines = purchases.get(i);
+				boolean enough = true;
+				for (Map.Entry<SalableProduct, Integer> entry : lines.entrySet()) {
+					int[] left = remaining.get(entry.getKey());
+					if ((left != null ? left[0] : entry.getKey().getQuantity()) < entry.getValue()) {
+						enough = false;
+						break;
+					}
+				}
+				if (enough) {
+					for (Map.Entry<SalableProduct, Integer> entry : lines.entrySet()) {
+						remaining.computeIfAbsent(entry.getKey(), product -> new int[] { product.getQuantity() })[0] -= entry
+								.getValue();
+					}
+					taken[i] = true;
+				}
+			}
+			purchasing = true;
+			for (Map.Entry<SalableProduct, int[]> entry : remaining.entrySet()) {
+				SalableProduct product = entry.getKey();
+				if (product.getQuantity() != entry.getValue()[0]) {
+					product.setQuantity(entry.getValue()[0]);
+					if (indexed.containsKey(product)) {
+						changes.publish(InventoryEvent.Type.STOCK_DECREMENTED, product);
+					}
+				}
+			}
+			return taken;
+		} finally {
+			purchasing = false;
+			lock.writeLock().unlock();
 		}
 	}
 
@@ -51,13 +267,72 @@ public class InventoryManager {
 	 */
 	public void addSalableProduct(SalableProduct product) {
 		if (product != null) {
-			this.storeInventory.add(product);
-
+			lock.writeLock().lock();
+			try {
+				if (indexed.containsKey(product)) {
+					System.out.println("Product is already in the inventory.");
+					return;
+				}
+				add(product);
+			} finally {
+				lock.writeLock().unlock();
+			}
 		} else {
 			System.out.println("Cannot add null product to inventory.");
 		}
 	}
 
+	/**
+	 * Replaces every product in the inventory with the given ones as one step,
+	 * in the given order. Products that were already in the inventory stay the
+	 * same objects, so carts holding them keep working. Each product is published
+	 * as added.
+	 * 
+	 * @param products The products the inventory should hold.
+	 */
+	public void replaceAll(List<SalableProduct> products) {
+		lock.writeLock().lock();
+		try {
+			for (SalableProduct product : storeInventory) {
+				product.watchChanges(null);
+				searchIndex.remove(product);
+			}
+			storeInventory.clear();
+			for (List<SalableProduct> partition : categories.values()) {
+				partition.clear();
+			}
+			Arrays.fill(categoryStock, 0);
+			indexed.clear();
+			priceIndex.clear();
+			quantityIndex.clear();
+			for (SalableProduct product : products) {
+				if (product != null && !indexed.containsKey(product)) {
+					add(product);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a product that is not in the inventory yet. The caller holds the write
+	 * lock.
+	 */
+	private void add(SalableProduct product) {
+		this.storeInventory.add(product);
+		ProductCategory category = ProductCategory.of(product);
+		categories.get(category).add(product);
+		categoryStock[category.ordinal()] += product.getQuantity();
+		IndexedProduct entry = new IndexedProduct(product, category, nextSequence++);
+		indexed.put(product, entry);
+		priceIndex.add(entry);
+		quantityIndex.add(entry);
+		searchIndex.add(product);
+		product.watchChanges(this);
+		changes.publish(InventoryEvent.Type.ADDED, product);
+	}
+
 	/**
 	 * Gets the list of all products in the inventory.
 	 * 
@@ -67,6 +342,236 @@ public class InventoryManager {
 		return this.storeInventory;
 	}
 
+	/**
+	 * Gets the stream that every change to this inventory is published on.
+	 * 
+	 * @return The inventory's change stream.
+	 */
+	public ChangeStream getChangeStream() {
+		return changes;
+	}
+
+	/**
+	 * Gets a copy of the product list that later changes to the inventory do not
+	 * affect. Safe to call while other threads add products.
+	 * 
+	 * @return A new list of the SalableProduct instances.
+	 */
+	public List<SalableProduct> getProductsSnapshot() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(this.storeInventory);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets one page of every product in the inventory, in the order they were
+	 * added.
+	 * 
+	 * @param page     The page number, starting at 0.
+	 * @param pageSize The number of products on a page.
+	 * @return A new list of the products on that page, empty past the last page.
+	 */
+	public List<SalableProduct> getProductsPage(int page, int pageSize) {
+		lock.readLock().lock();
+		try {
+			int from = (int) Math.min(Math.max(0L, (long) page * pageSize), storeInventory.size());
+			int to = (int) Math.min(Math.max((long) from + pageSize, from), storeInventory.size());
+			return new ArrayList<>(storeInventory.subList(from, to));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets every product in one category.
+	 * 
+	 * @param category The category to list.
+	 * @return A new list of the products in that category.
+	 */
+	public List<SalableProduct> getProductsByCategory(ProductCategory category) {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(categories.get(category));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets one page of the products in a category.
+	 * 
+	 * @param category The category to list.
+	 * @param page     The page number, starting at 0.
+	 * @param pageSize The number of products on a page.
+	 * @return A new list of the products on that page, empty past the last page.
+	 */
+	public List<SalableProduct> getProductsByCategory(ProductCategory category, int page, int pageSize) {
+		lock.readLock().lock();
+		try {
+			List<SalableProduct> partition = categories.get(category);
+			int from = (int) Math.min(Math.max(0L, (long) page * pageSize), partition.size());
+			int to = (int) Math.min(Math.max((long) from + pageSize, from), partition.size());
+			return new ArrayList<>(partition.subList(from, to));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of products in a category.
+	 * 
+	 * @param category The category to count.
+	 * @return The number of products.
+	 */
+	public int getCategoryCount(ProductCategory category) {
+		lock.readLock().lock();
+		try {
+			return categories.get(category).size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the total quantity in stock of all products in a category.
+	 * 
+	 * @param category The category to total.
+	 * @return The sum of the quantities.
+	 */
+	public long getCategoryStock(ProductCategory category) {
+		lock.readLock().lock();
+		try {
+			return categoryStock[category.ordinal()];
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the products priced between two amounts, cheapest first.
+	 * 
+	 * @param minPrice The lowest price to include.
+	 * @param maxPrice The highest price to include.
+	 * @return A new list of the products in the price range.
+	 */
+	public List<SalableProduct> getProductsByPriceRange(double minPrice, double maxPrice) {
+		if (!(minPrice <= maxPrice)) {
+			return new ArrayList<>();
+		}
+		lock.readLock().lock();
+		try {
+			return toProducts(priceIndex.subSet(new IndexedProduct(minPrice, 0, Long.MIN_VALUE), true,
+					new IndexedProduct(maxPrice, 0, Long.MAX_VALUE), true));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the products whose quantity in stock is between two amounts, lowest
+	 * stock first.
+	 * 
+	 * @param minQuantity The lowest quantity to include.
+	 * @param maxQuantity The highest quantity to include.
+	 * @return A new list of the products in the quantity range.
+	 */
+	public List<SalableProduct> getProductsByQuantityRange(int minQuantity, int maxQuantity) {
+		if (minQuantity > maxQuantity) {
+			return new ArrayList<>();
+		}
+		lock.readLock().lock();
+		try {
+			return toProducts(quantityIndex.subSet(new IndexedProduct(0, minQuantity, Long.MIN_VALUE), true,
+					new IndexedProduct(0, maxQuantity, Long.MAX_VALUE), true));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the products with less than a given quantity in stock, lowest stock
+	 * first.
+	 * 
+	 * @param quantity The quantity that products must be below.
+	 * @return A new list of the low stock products.
+	 */
+	public List<SalableProduct> getProductsWithQuantityBelow(int quantity) {
+		if (quantity == Integer.MIN_VALUE) {
+			return new ArrayList<>();
+		}
+		return getProductsByQuantityRange(Integer.MIN_VALUE, quantity - 1);
+	}
+
+	/**
+	 * Copies the price, quantity and category of every product into an
+	 * {@link InventorySnapshot}. The copy is taken under the read lock, so it
+	 * reflects one consistent moment even while purchases are running.
+	 * 
+	 * @return A snapshot in inventory order.
+	 */
+	public InventorySnapshot getSnapshot() {
+		lock.readLock().lock();
+		try {
+			int size = storeInventory.size();
+			SalableProduct[] products = new SalableProduct[size];
+			double[] prices = new double[size];
+			int[] quantities = new int[size];
+			byte[] productCategories = new byte[size];
+			for (int i = 0; i < size; i++) {
+				IndexedProduct entry = indexed.get(storeInventory.get(i));
+				products[i] = entry.product;
+				prices[i] = entry.price;
+				quantities[i] = entry.quantity;
+				productCategories[i] = (byte) entry.category.ordinal();
+			}
+			return new InventorySnapshot(products, prices, quantities, productCategories);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the value of all stock, price times quantity summed over every
+	 * product. Large inventories are summed in parallel.
+	 * 
+	 * @return The total stock value.
+	 */
+	public double getTotalStockValue() {
+		return getSnapshot().getTotalStockValue(true);
+	}
+
+	/**
+	 * Gets the value of the stock in each category. Large inventories are summed
+	 * in parallel.
+	 * 
+	 * @return The stock value of each category.
+	 */
+	public Map<ProductCategory, Double> getStockValueByCategory() {
+		return getSnapshot().getStockValueByCategory(true);
+	}
+
+	/**
+	 * Gets the most expensive products. Large inventories are searched in
+	 * parallel.
+	 * 
+	 * @param n How many products to return.
+	 * @return The products, most expensive first.
+	 */
+	public List<SalableProduct> getMostExpensive(int n) {
+		return getSnapshot().getMostExpensive(n, true);
+	}
+
+	private static List<SalableProduct> toProducts(NavigableSet<IndexedProduct> entries) {
+		List<SalableProduct> products = new ArrayList<>();
+		for (IndexedProduct entry : entries) {
+			products.add(entry.product);
+		}
+		return products;
+	}
+
 	/**
 	 * Searches for a product in the inventory by its name (case-insensitive).
 	 * 
@@ -74,13 +579,72 @@ public class InventoryManager {
 	 * @return The matching SalableProduct, or null if not found.
 	 */
 	public SalableProduct getProductByName(String name) {
-		List<SalableProduct> storeInventory = this.storeInventory;
-		for (int i = 0; i < storeInventory.size(); i++) {
-			if (storeInventory.get(i).getName().equalsIgnoreCase(name)) {
-				return storeInventory.get(i);
+		long start = METRICS.start();
+		lock.readLock().lock();
+		try {
+			List<SalableProduct> storeInventory = this.storeInventory;
+			for (int i = 0; i < storeInventory.size(); i++) {
+				if (storeInventory.get(i).getName().equalsIgnoreCase(name)) {
+					return storeInventory.get(i);
+				}
+			}
+			METRICS.increment(LOOKUP_MISSES);
+			return null;
+		} finally {
+			lock.readLock().unlock();
+			METRICS.stop(LOOKUP_TIMER, start);
+		}
+	}
+
+	/**
+	 * Searches product names and descriptions. Every word of the query must match
+	 * a word of the product, the last word may be the start of a word, and words
+	 * with one typo still match. The best matches come first.
+	 * 
+	 * @param query The words to search for.
+	 * @param limit The most products to return.
+	 * @return The matching products, best match first.
+	 */
+	public List<SalableProduct> search(String query, int limit) {
+		lock.readLock().lock();
+		try {
+			return searchIndex.search(query, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Updates the indexes after one of the products in the inventory changed.
+	 * 
+	 * @param product The product that changed.
+	 */
+	@Override
+	public void productChanged(SalableProduct product) {
+		lock.writeLock().lock();
+		try {
+			IndexedProduct entry = indexed.get(product);
+			if (entry == null) {
+				return;
+			}
+			if (Double.compare(entry.price, product.getPrice()) != 0) {
+				priceIndex.remove(entry);
+				entry.price = product.getPrice();
+				priceIndex.add(entry);
+			}
+			if (entry.quantity != product.getQuantity()) {
+				categoryStock[entry.category.ordinal()] += product.getQuantity() - entry.quantity;
+				quantityIndex.remove(entry);
+				entry.quantity = product.getQuantity();
+				quantityIndex.add(entry);
+			}
+			searchIndex.update(product);
+			if (!purchasing) {
+				changes.publish(InventoryEvent.Type.UPDATED, product);
 			}
+		} finally {
+			lock.writeLock().unlock();
 		}
-		return null;
 	}
 
 }
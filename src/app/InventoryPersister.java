@@ -0,0 +1,245 @@
+package app;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * InventoryPersister saves an inventory to its JSON file in the background, so
+ * a change does not wait for the whole file to be written again.
+ *
+ * It follows the inventory's {@link ChangeStream}. A flusher thread saves the
+ * inventory once the flush interval has passed or once enough changes have
+ * arrived, whichever comes first, and only if something changed. Each save
+ * goes through {@link FileService#saveToFileDurably}, so the file is replaced
+ * whole and is on disk when the save ends.
+ *
+ * The {@link Durability} says when a caller that changed the inventory may
+ * answer its client. With {@link Durability#ACK_AFTER_APPLY} it answers right
+ * away and a crash can lose the last flush interval of changes. With
+ * {@link Durability#ACK_AFTER_FSYNC} it calls {@link #awaitSaved(long, long)},
+ * which starts a flush at once and waits for it. Callers waiting at the same
+ * time share one flush.
+ *
+ * @see AdminService
+ */
+public class InventoryPersister implements InventorySubscriber, AutoCloseable {
+
+	/**
+	 * When a change counts as done.
+	 */
+	public enum Durability {
+		/** Once it is in the inventory; it is saved with the next flush. */
+		ACK_AFTER_APPLY,
+		/** Once a flush that includes it has been forced to disk. */
+		ACK_AFTER_FSYNC
+	}
+
+	/** The default longest time between a change and the flush that saves it. */
+	public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+	/** The default number of changes that starts a flush early. */
+	public static final int DEFAULT_FLUSH_CHANGES = 10_000;
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram FLUSH_TIMER = METRICS.timer("persister.flush");
+	private static final LongAdder FLUSH_FAILURES = METRICS.counter("persister.flush.failures");
+
+	private final InventoryManager inventory;
+	private final String filename;
+	private final long flushIntervalMillis;
+	private final int flushChanges;
+	private final Durability durability;
+	private final ChangeStream.Subscription subscription;
+	private final Thread flusher;
+
+	// Guarded by this
+	private long pendingChanges;
+	private long savedSequence = -1;
+	private boolean flushRequested;
+	private boolean running = true;
+
+	/**
+	 * Creates a persister with the default flush interval and size, and starts
+	 * following the inventory.
+	 *
+	 * @param inventory  the inventory to save
+	 * @param filename   the file to save it to
+	 * @param durability when a change counts as done
+	 */
+	public InventoryPersister(InventoryManager inventory, String filename, Durability durability) {
+		this(inventory, filename, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_FLUSH_CHANGES, durability);
+	}
+
+	/**
+	 * Creates a persister and starts following the inventory.
+	 *
+	 * @param inventory           the inventory to save
+	 * @param filename            the file to save it to
+	 * @param flushIntervalMillis the longest time between a change and the flush
+	 *                            that saves it
+	 * @param flushChanges        the number of changes that starts a flush before
+	 *                            the interval has passed
+	 * @param durability          when a change counts as done
+	 */
+	public InventoryPersister(InventoryManager inventory, String filename, long flushIntervalMillis,
+			int flushChanges, Durability durability) {
+		this.inventory = inventory;
+		this.filename = filename;
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.flushChanges = flushChanges;
+		this.durability = durability;
+		this.subscription = inventory.getChangeStream().subscribe("persister", this);
+		this.flusher = new Thread(this::runFlusher, "persister-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * Gets when a change counts as done.
+	 *
+	 * @return the durability mode
+	 */
+	public Durability getDurability() {
+		return durability;
+	}
+
+	/**
+	 * Counts changes toward the next flush.
+	 *
+	 * @param events the inventory changes
+	 */
+	@Override
+	public synchronized void onEvents(List<InventoryEvent> events) {
+		pendingChanges += events.size();
+		if (pendingChanges >= flushChanges) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Starts a flush, since an unknown number of changes were missed. Every
+	 * flush saves the whole inventory, so nothing else is needed.
+	 */
+	@Override
+	public synchronized void onOverrun() {
+		flushRequested = true;
+		notifyAll();
+	}
+
+	/**
+	 * Waits until every change published so far is saved, starting a flush if
+	 * none is running.
+	 *
+	 * @param timeoutMillis the longest time to wait
+	 * @return true if the changes are on disk, false if time ran out, for
+	 *         example because saving failed
+	 */
+	public boolean awaitSaved(long timeoutMillis) {
+		return awaitSaved(inventory.getChangeStream().getLastSequence(), timeoutMillis);
+	}
+
+	/**
+	 * Waits until a change is saved, starting a flush if none is running.
+	 *
+	 * @param sequence      the change's sequence number on the inventory's
+	 *                      change stream
+	 * @param timeoutMillis the longest time to wait
+	 * @return true if the change is on disk, false if time ran out, for example
+	 *         because saving failed
+	 */
+	public synchronized boolean awaitSaved(long sequence, long timeoutMillis) {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (savedSequence < sequence) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (!running || remaining <= 0) {
+				return false;
+			}
+			if (!flushRequested) {
+				// Only wake others when asking for a flush; waiters waking each
+				// other would keep the flusher from the lock
+				flushRequested = true;
+				notifyAll();
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Saves any changes not saved yet and stops following the inventory. If the
+	 * calling thread is interrupted while the last flush runs, the flush carries
+	 * on in the background and the thread's interrupt flag is set again.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			running = false;
+			notifyAll();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		subscription.close();
+	}
+
+	private void runFlusher() {
+		while (true) {
+			synchronized (this) {
+				long deadline = System.currentTimeMillis() + flushIntervalMillis;
+				long remaining = flushIntervalMillis;
+				while (running && !flushRequested && pendingChanges < flushChanges && remaining > 0) {
+					try {
+						wait(remaining);
+					} catch (InterruptedException e) {
+						running = false;
+					}
+					remaining = deadline - System.currentTimeMillis();
+				}
+			}
+			flush();
+			synchronized (this) {
+				if (!running) {
+					notifyAll();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Saves the inventory if anything changed since the last save. The sequence
+	 * number is read before the snapshot is taken, and every change is published
+	 * under the inventory's write lock, so the snapshot holds every change up to
+	 * that number.
+	 */
+	private void flush() {
+		long upTo = inventory.getChangeStream().getLastSequence();
+		synchronized (this) {
+			flushRequested = false;
+			if (upTo <= savedSequence) {
+				return;
+			}
+			pendingChanges = 0;
+		}
+		long start = METRICS.start();
+		try {
+			FileService.saveToFileDurably(filename, inventory.getProductsSnapshot());
+			synchronized (this) {
+				savedSequence = upTo;
+				notifyAll();
+			}
+		} catch (IOException e) {
+			METRICS.increment(FLUSH_FAILURES);
+			e.printStackTrace();
+		} finally {
+			METRICS.stop(FLUSH_TIMER, start);
+		}
+	}
+}
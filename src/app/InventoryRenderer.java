@@ -0,0 +1,216 @@
+package app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * InventoryRenderer writes inventory listings to a stream in large blocks.
+ * Rows are encoded as UTF-8 straight into one reusable byte buffer without
+ * {@code String.format}, and the buffer is only written out when it is full or
+ * when {@link #flush()} is called, so a long listing takes a handful of writes
+ * instead of one locked write per product.
+ *
+ * Prices are rounded to cents with {@link Math#round(double)}.
+ *
+ * @see StoreFront#displayInventory()
+ */
+public class InventoryRenderer {
+
+	/** The header line printed above a listing. */
+	public static final String HEADER = "\n----------------------------- Current Inventory -------------------------------\n";
+
+	/** The line printed below a listing. */
+	public static final String FOOTER = "--------------------------------------------------------------------------------------------\n"
+			+ "--------------------------------------------------------------------------------------------\n";
+
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final OutputStream out;
+	private final byte[] buffer;
+	private int position;
+
+	/**
+	 * Creates a renderer with a 64 KB buffer.
+	 *
+	 * @param out the stream to write to; it is flushed but never closed
+	 */
+	public InventoryRenderer(OutputStream out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a renderer with the given buffer size.
+	 *
+	 * @param out        the stream to write to; it is flushed but never closed
+	 * @param bufferSize the number of bytes to collect before writing
+	 */
+	public InventoryRenderer(OutputStream out, int bufferSize) {
+		this.out = out;
+		this.buffer = new byte[Math.max(bufferSize, 256)];
+	}
+
+	/**
+	 * Renders a whole listing with its header and footer and flushes it.
+	 *
+	 * @param products the products to list
+	 */
+	public void renderAll(List<SalableProduct> products) {
+		append(HEADER);
+		renderRows(products, 0, products.size());
+		append(FOOTER);
+		flush();
+	}
+
+	/**
+	 * Renders one page of a listing with a page footer and flushes it.
+	 *
+	 * @param products the products to list
+	 * @param page     the page number, starting at 0
+	 * @param pageSize the number of products on a page, at least 1
+	 * @return true if there are more pages after this one
+	 * @throws IllegalArgumentException if the page size is not positive
+	 */
+	public boolean renderPage(List<SalableProduct> products, int page, int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+		}
+		int from = (int) Math.min(Math.max(0L, (long) page * pageSize), products.size());
+		int to = (int) Math.min((long) from + pageSize, products.size());
+		int pages = (int) Math.max(1L, ((long) products.size() + pageSize - 1) / pageSize);
+		if (page == 0) {
+			append(HEADER);
+		}
+		renderRows(products, from, to);
+		append("-- Page ");
+		appendInt(page + 1L);
+		append(" of ");
+		appendInt(pages);
+		append(" --\n");
+		flush();
+		return to < products.size();
+	}
+
+	/**
+	 * Renders product rows into the buffer without flushing.
+	 *
+	 * @param products the products to list
+	 * @param from     the first index to render, inclusive
+	 * @param to       the last index to render, exclusive
+	 */
+	public void renderRows(List<SalableProduct> products, int from, int to) {
+		for (int i = from; i < to; i++) {
+			SalableProduct product = products.get(i);
+			append("Name: ");
+			append(product.getName());
+			append(" | Description: ");
+			append(product.getDescription());
+			append(" | Price: $");
+			appendPrice(product.getPrice());
+			append(" | Quantity: ");
+			appendInt(product.getQuantity());
+			append('\n');
+		}
+	}
+
+	/**
+	 * Writes out everything in the buffer and flushes the stream.
+	 */
+	public void flush() {
+		try {
+			drain();
+			out.flush();
+		} catch (IOException e) {
+			System.out.println("Unable to write the listing: " + e.getMessage());
+		}
+	}
+
+	private void append(String text) {
+		String value = text == null ? "null" : text;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				// Rare non-ASCII text falls back to the charset encoder
+				appendBytes(value.substring(i).getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			if (position == buffer.length) {
+				drainQuietly();
+			}
+			buffer[position++] = (byte) c;
+		}
+	}
+
+	private void appendBytes(byte[] bytes) {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (position == buffer.length) {
+				drainQuietly();
+			}
+			int count = Math.min(bytes.length - offset, buffer.length - position);
+			System.arraycopy(bytes, offset, buffer, position, count);
+			position += count;
+			offset += count;
+		}
+	}
+
+	private void append(char c) {
+		if (position == buffer.length) {
+			drainQuietly();
+		}
+		buffer[position++] = (byte) c;
+	}
+
+	private void appendInt(long value) {
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		// 19 digits covers every positive long
+		if (buffer.length - position < 20) {
+			drainQuietly();
+		}
+		int start = position;
+		do {
+			buffer[position++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		// Digits were written lowest first, so reverse them in place
+		for (int i = start, j = position - 1; i < j; i++, j--) {
+			byte tmp = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = tmp;
+		}
+	}
+
+	private void appendPrice(double price) {
+		long cents = Math.round(price * 100);
+		if (cents < 0) {
+			append('-');
+			cents = -cents;
+		}
+		appendInt(cents / 100);
+		append('.');
+		long fraction = cents % 100;
+		append((char) ('0' + fraction / 10));
+		append((char) ('0' + fraction % 10));
+	}
+
+	private void drain() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+
+	private void drainQuietly() {
+		try {
+			drain();
+		} catch (IOException e) {
+			System.out.println("Unable to write the listing: " + e.getMessage());
+			position = 0;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * A copy of the inventory's prices, quantities and categories taken at one
+ * moment, stored column by column in primitive arrays. Aggregations over the
+ * snapshot see a consistent inventory without holding the inventory's lock,
+ * and can run sequentially or split across the common fork-join pool.
+ *
+ * @see InventoryManager#getSnapshot()
+ */
+public class InventorySnapshot {
+
+	/** Below this many products the parallel versions run sequentially. */
+	static final int PARALLEL_THRESHOLD = 10_000;
+
+	private final SalableProduct[] products;
+	private final double[] prices;
+	private final int[] quantities;
+	private final byte[] categories;
+
+	/**
+	 * Creates a snapshot from columns that are already copied. Every array must
+	 * have the same length.
+	 *
+	 * @param products   the products, or null when only the numbers are needed
+	 * @param prices     the price of each product
+	 * @param quantities the quantity in stock of each product
+	 * @param categories the {@link ProductCategory} ordinal of each product
+	 */
+	InventorySnapshot(SalableProduct[] products, double[] prices, int[] quantities, byte[] categories) {
+		this.products = products;
+		this.prices = prices;
+		this.quantities = quantities;
+		this.categories = categories;
+	}
+
+	/**
+	 * Gets the number of products in the snapshot.
+	 *
+	 * @return the product count
+	 */
+	public int size() {
+		return prices.length;
+	}
+
+	/**
+	 * Adds up price times quantity for every product.
+	 *
+	 * @param parallel whether to split the work across threads
+	 * @return the total value of the stock
+	 */
+	public double getTotalStockValue(boolean parallel) {
+		return range(parallel).mapToDouble(i -> prices[i] * quantities[i]).sum();
+	}
+
+	/**
+	 * Adds up price times quantity for the products of each category.
+	 *
+	 * @param parallel whether to split the work across threads
+	 * @return the stock value of each category
+	 */
+	public Map<ProductCategory, Double> getStockValueByCategory(boolean parallel) {
+		int categoryCount = ProductCategory.values().length;
+		double[] totals = range(parallel).collect(() -> new double[categoryCount],
+				(sums, i) -> sums[categories[i]] += prices[i] * quantities[i], (a, b) -> {
+					for (int c = 0; c < categoryCount; c++) {
+						a[c] += b[c];
+					}
+				});
+		Map<ProductCategory, Double> byCategory = new EnumMap<>(ProductCategory.class);
+		for (ProductCategory category : ProductCategory.values()) {
+			byCategory.put(category, totals[category.ordinal()]);
+		}
+		return byCategory;
+	}
+
+	/**
+	 * Finds the most expensive products.
+	 *
+	 * @param n        how many products to return
+	 * @param parallel whether to split the work across threads
+	 * @return the positions of the products in the snapshot, most expensive first
+	 */
+	public int[] getMostExpensiveIndexes(int n, boolean parallel) {
+		if (n <= 0) {
+			return new int[0];
+		}
+		// Each thread keeps its own best n in a heap whose head is the cheapest
+		PriorityQueue<Integer> best = range(parallel).collect(
+				() -> new PriorityQueue<Integer>(n + 1, (a, b) -> byPrice(a, b)), (heap, i) -> offer(heap, i, n),
+				(a, b) -> {
+					for (Integer i : b) {
+						offer(a, i, n);
+					}
+				});
+		int[] indexes = new int[best.size()];
+		for (int i = indexes.length - 1; i >= 0; i--) {
+			indexes[i] = best.poll();
+		}
+		return indexes;
+	}
+
+	/**
+	 * Finds the most expensive products.
+	 *
+	 * @param n        how many products to return
+	 * @param parallel whether to split the work across threads
+	 * @return the products, most expensive first
+	 */
+	public List<SalableProduct> getMostExpensive(int n, boolean parallel) {
+		if (products == null) {
+			throw new IllegalStateException("Snapshot was taken without products");
+		}
+		List<SalableProduct> result = new ArrayList<>();
+		for (int i : getMostExpensiveIndexes(n, parallel)) {
+			result.add(products[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the price of the product at a position.
+	 *
+	 * @param index the position in the snapshot
+	 * @return the price
+	 */
+	public double getPrice(int index) {
+		return prices[index];
+	}
+
+	/**
+	 * Gets the quantity of the product at a position.
+	 *
+	 * @param index the position in the snapshot
+	 * @return the quantity
+	 */
+	public int getQuantity(int index) {
+		return quantities[index];
+	}
+
+	private IntStream range(boolean parallel) {
+		IntStream range = IntStream.range(0, prices.length);
+		return parallel && prices.length >= PARALLEL_THRESHOLD ? range.parallel() : range;
+	}
+
+	private int byPrice(int a, int b) {
+		int byPrice = Double.compare(prices[a], prices[b]);
+		// On equal prices the earlier product ranks higher
+		return byPrice != 0 ? byPrice : Integer.compare(b, a);
+	}
+
+	private void offer(PriorityQueue<Integer> heap, int index, int n) {
+		if (heap.size() < n) {
+			heap.add(index);
+		} else if (byPrice(index, heap.peek()) > 0) {
+			heap.poll();
+			heap.add(index);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package app;
+
+import java.util.List;
+
+/**
+ * Receives the events of a {@link ChangeStream}, a batch at a time, on the
+ * subscription's own thread.
+ *
+ * @see ChangeStream#subscribe(String, InventorySubscriber)
+ */
+public interface InventorySubscriber {
+
+	/**
+	 * Called with the next events of the stream, in order. Every event is
+	 * delivered once; a batch holds as many as were waiting, up to a limit.
+	 *
+	 * The inventory does not wait for this call, so a slow subscriber does not
+	 * hold up purchases; if it falls a whole buffer behind it misses events and
+	 * {@link #onOverrun()} is called instead.
+	 *
+	 * @param events the events; the list is reused after the call returns
+	 */
+	void onEvents(List<InventoryEvent> events);
+
+	/**
+	 * Called when events were skipped because the subscriber fell a whole
+	 * buffer behind. Events published after this call are delivered as usual,
+	 * so a subscriber that keeps a copy of the inventory should rebuild it from
+	 * the inventory now. By default nothing is done.
+	 */
+	default void onOverrun() {
+	}
+}
@@ -0,0 +1,160 @@
+package app;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram counts durations in buckets whose width grows with the
+ * value, the layout HdrHistogram uses. Each power of two is split into 16
+ * buckets, so any recorded value is known to within about 6% while the whole
+ * range of a long fits in under a thousand counters.
+ *
+ * Recording is a few shifts and one atomic add, with no allocation and no
+ * lock, so it can be called on every request from many threads. Callers that
+ * only time some calls report the others with {@link #countCall()}, so the
+ * count stays exact while the mean, percentiles and max come from the timed
+ * calls. Reads are not a consistent snapshot: a percentile taken while values
+ * are recorded may mix counts from just before and just after.
+ *
+ * @see MetricsRegistry
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder samples = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records one duration. Negative durations count as 0.
+	 *
+	 * @param nanos the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucketOf(value));
+		calls.increment();
+		samples.increment();
+		sum.add(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Counts a call that was not timed.
+	 */
+	public void countCall() {
+		calls.increment();
+	}
+
+	/**
+	 * Gets the number of calls, timed or not.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		return calls.sum();
+	}
+
+	/**
+	 * Gets the number of durations recorded.
+	 *
+	 * @return the count of timed calls
+	 */
+	public long getSampleCount() {
+		return samples.sum();
+	}
+
+	/**
+	 * Gets the mean of the durations recorded.
+	 *
+	 * @return the mean in nanoseconds, or 0 if none were recorded
+	 */
+	public long getMean() {
+		long n = samples.sum();
+		return n == 0 ? 0 : sum.sum() / n;
+	}
+
+	/**
+	 * Gets the longest duration recorded.
+	 *
+	 * @return the exact maximum in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Gets the duration that the given share of recordings were at or below.
+	 *
+	 * @param fraction the share, from 0 to 1, for example 0.99
+	 * @return the top of the bucket holding that duration, in nanoseconds, never
+	 *         more than the maximum; 0 if none were recorded
+	 */
+	public long getPercentile(double fraction) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValueIn(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Clears every recorded duration.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		calls.reset();
+		samples.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Finds the bucket of a value. Values below 16 get a bucket each; above
+	 * that, the highest set bit picks the power of two and the next four bits
+	 * pick the bucket within it.
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the largest value that falls in a bucket.
+	 */
+	static long highestValueIn(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,60 @@
+package app;
+
+import java.util.Map;
+
+/**
+ * The JMX view of a {@link MetricsRegistry}, registered as
+ * {@value MetricsRegistry#OBJECT_NAME}.
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * Gets whether metrics are being recorded.
+	 *
+	 * @return true if enabled
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Turns recording on or off.
+	 *
+	 * @param enabled true to record
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Gets how many calls there are for each one that is timed.
+	 *
+	 * @return the sample rate, a power of two
+	 */
+	int getSampleEvery();
+
+	/**
+	 * Sets how many calls there are for each one that is timed. 1 times every
+	 * call.
+	 *
+	 * @param calls the sample rate, a power of two
+	 */
+	void setSampleEvery(int calls);
+
+	/**
+	 * Gets every counter by name.
+	 *
+	 * @return the counter values
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 * Gets the count, number timed, mean, p50, p99, p99.9 and max of every timer,
+	 * keyed by the timer name and the statistic, for example
+	 * {@code cart.add.p99Nanos}.
+	 *
+	 * @return the timer statistics
+	 */
+	Map<String, Long> getTimers();
+
+	/**
+	 * Clears every counter and timer.
+	 */
+	void reset();
+}
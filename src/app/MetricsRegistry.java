@@ -0,0 +1,215 @@
+package app;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * MetricsRegistry holds the named counters and latency timers of the store.
+ * Counters are {@link LongAdder}s, which spread updates from different threads
+ * over separate cells so busy counters do not contend. Timers are
+ * {@link LatencyHistogram}s.
+ *
+ * Code on a hot path looks its counters and timers up once, into static
+ * fields, and then only pays for the update:
+ *
+ * <pre>
+ * long start = METRICS.start();
+ * ...
+ * METRICS.stop(TIMER, start);
+ * </pre>
+ *
+ * Reading the clock costs tens of nanoseconds on some machines, as much as a
+ * whole cart operation, so by default only one call in 16, picked at random,
+ * is timed. Every call is still counted. When the registry is disabled,
+ * {@link #start()} skips reading the clock and nothing is recorded.
+ *
+ * The registry can be read through the admin "M" command and through JMX.
+ */
+public class MetricsRegistry implements MetricsMXBean {
+
+	/** The registry the store records into. */
+	public static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+	/** The JMX name {@link #GLOBAL} is registered under. */
+	public static final String OBJECT_NAME = "app:type=Metrics";
+
+	private static final long NOT_STARTED = Long.MIN_VALUE;
+	private static final long NOT_SAMPLED = Long.MIN_VALUE + 1;
+
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+	private volatile boolean enabled = true;
+	private volatile int sampleMask = 15;
+
+	/**
+	 * Gets a counter, creating it if needed.
+	 *
+	 * @param name the counter name
+	 * @return the counter
+	 */
+	public LongAdder counter(String name) {
+		return counters.computeIfAbsent(name, k -> new LongAdder());
+	}
+
+	/**
+	 * Gets a timer, creating it if needed.
+	 *
+	 * @param name the timer name
+	 * @return the timer
+	 */
+	public LatencyHistogram timer(String name) {
+		return timers.computeIfAbsent(name, k -> new LatencyHistogram());
+	}
+
+	/**
+	 * Adds one to a counter if the registry is enabled.
+	 *
+	 * @param counter a counter from this registry
+	 */
+	public void increment(LongAdder counter) {
+		if (enabled) {
+			counter.increment();
+		}
+	}
+
+	/**
+	 * Starts timing something.
+	 *
+	 * @return the start time to pass to {@link #stop}
+	 */
+	public long start() {
+		if (!enabled) {
+			return NOT_STARTED;
+		}
+		if ((ThreadLocalRandom.current().nextInt() & sampleMask) != 0) {
+			return NOT_SAMPLED;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Counts a call in a timer, recording the time since {@link #start()} if the
+	 * call was picked for timing. Does nothing if the registry was disabled at
+	 * the start.
+	 *
+	 * @param timer a timer from this registry
+	 * @param start the value {@link #start()} returned
+	 */
+	public void stop(LatencyHistogram timer, long start) {
+		if (start == NOT_SAMPLED) {
+			timer.countCall();
+		} else if (start != NOT_STARTED) {
+			timer.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public int getSampleEvery() {
+		return sampleMask + 1;
+	}
+
+	@Override
+	public void setSampleEvery(int calls) {
+		if (calls < 1 || Integer.bitCount(calls) != 1) {
+			throw new IllegalArgumentException("Sample rate must be a power of two: " + calls);
+		}
+		this.sampleMask = calls - 1;
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		Map<String, Long> values = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().sum());
+		}
+		return values;
+	}
+
+	@Override
+	public Map<String, Long> getTimers() {
+		Map<String, Long> values = new TreeMap<>();
+		for (Map.Entry<String, Map<String, Long>> timer : getTimerStatistics().entrySet()) {
+			for (Map.Entry<String, Long> statistic : timer.getValue().entrySet()) {
+				values.put(timer.getKey() + "." + statistic.getKey(), statistic.getValue());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Gets the statistics of every timer, grouped by timer.
+	 *
+	 * @return timer name to its count, mean, percentiles and max
+	 */
+	public Map<String, Map<String, Long>> getTimerStatistics() {
+		Map<String, Map<String, Long>> values = new TreeMap<>();
+		for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			Map<String, Long> statistics = new LinkedHashMap<>();
+			statistics.put("count", histogram.getCount());
+			statistics.put("sampled", histogram.getSampleCount());
+			statistics.put("meanNanos", histogram.getMean());
+			statistics.put("p50Nanos", histogram.getPercentile(0.50));
+			statistics.put("p99Nanos", histogram.getPercentile(0.99));
+			statistics.put("p999Nanos", histogram.getPercentile(0.999));
+			statistics.put("maxNanos", histogram.getMax());
+			values.put(entry.getKey(), statistics);
+		}
+		return values;
+	}
+
+	/**
+	 * Gets everything in the registry, in the form the admin "M" command sends.
+	 *
+	 * @return whether the registry is enabled, its counters and its timers
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("enabled", enabled);
+		snapshot.put("sampleEvery", getSampleEvery());
+		snapshot.put("counters", getCounters());
+		snapshot.put("timers", getTimerStatistics());
+		return snapshot;
+	}
+
+	@Override
+	public void reset() {
+		for (LongAdder counter : counters.values()) {
+			counter.reset();
+		}
+		for (LatencyHistogram timer : timers.values()) {
+			timer.reset();
+		}
+	}
+
+	/**
+	 * Registers this registry with the platform MBean server under
+	 * {@link #OBJECT_NAME}. Failures are printed and otherwise ignored, since the
+	 * store runs the same without JMX.
+	 */
+	public void registerMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+}
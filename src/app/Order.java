@@ -0,0 +1,162 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One completed purchase, as recorded in the {@link OrderLog}.
+ *
+ * Lines hold the product's name, quantity and unit price at the time of the
+ * purchase, so an order stays correct after the product changes.
+ */
+public class Order {
+
+	/**
+	 * One product in an order.
+	 */
+	public static class Line {
+		private String productName;
+		private int quantity;
+		private double unitPrice;
+
+		/**
+		 * Creates an empty line for reading.
+		 */
+		Line() {
+		}
+
+		/**
+		 * Creates a line.
+		 *
+		 * @param productName the product's name
+		 * @param quantity    how many were bought
+		 * @param unitPrice   the price of one
+		 */
+		public Line(String productName, int quantity, double unitPrice) {
+			this.productName = productName;
+			this.quantity = quantity;
+			this.unitPrice = unitPrice;
+		}
+
+		/**
+		 * Gets the product's name.
+		 *
+		 * @return the name
+		 */
+		public String getProductName() {
+			return productName;
+		}
+
+		/**
+		 * Gets how many were bought.
+		 *
+		 * @return the quantity
+		 */
+		public int getQuantity() {
+			return quantity;
+		}
+
+		/**
+		 * Gets the price of one at the time of the purchase.
+		 *
+		 * @return the unit price
+		 */
+		public double getUnitPrice() {
+			return unitPrice;
+		}
+	}
+
+	private long orderId;
+	private long timestampMillis;
+	private List<Line> lines;
+	private double total;
+
+	/**
+	 * Creates an empty order for reading.
+	 */
+	Order() {
+	}
+
+	/**
+	 * Creates an order. The total is the sum of the lines.
+	 *
+	 * @param orderId         the order's number in the log
+	 * @param timestampMillis when the order was placed
+	 * @param lines           the products bought
+	 */
+	Order(long orderId, long timestampMillis, List<Line> lines) {
+		this.orderId = orderId;
+		this.timestampMillis = timestampMillis;
+		this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+		this.total = totalOf(lines);
+	}
+
+	/**
+	 * Makes the lines of a purchase, reading each product's price once, so the
+	 * lines can be taken when the purchase is priced and recorded later at those
+	 * prices.
+	 *
+	 * @param products the products bought and how many of each
+	 * @return a line for each product at its current price
+	 */
+	public static List<Line> linesOf(Map<SalableProduct, Integer> products) {
+		List<Line> lines = new ArrayList<>(products.size());
+		for (Map.Entry<SalableProduct, Integer> entry : products.entrySet()) {
+			lines.add(new Line(entry.getKey().getName(), entry.getValue(), entry.getKey().getPrice()));
+		}
+		return lines;
+	}
+
+	/**
+	 * Adds up quantity times unit price over some lines.
+	 *
+	 * @param lines the lines
+	 * @return their total price
+	 */
+	public static double totalOf(List<Line> lines) {
+		double total = 0;
+		for (Line line : lines) {
+			total += line.quantity * line.unitPrice;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the order's number. Orders are numbered from 0 in the order they were
+	 * placed.
+	 *
+	 * @return the order id
+	 */
+	public long getOrderId() {
+		return orderId;
+	}
+
+	/**
+	 * Gets when the order was placed. Later orders never have an earlier time.
+	 *
+	 * @return the time in milliseconds since the epoch
+	 */
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	/**
+	 * Gets the products bought.
+	 *
+	 * @return the lines
+	 */
+	public List<Line> getLines() {
+		return lines;
+	}
+
+	/**
+	 * Gets the price of the whole order.
+	 *
+	 * @return the total
+	 */
+	public double getTotal() {
+		return total;
+	}
+}
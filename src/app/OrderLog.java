@@ -0,0 +1,797 @@
+package app;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * OrderLog records every completed purchase as an {@link Order} and answers
+ * questions about past sales.
+ *
+ * Orders are appended to segment files in a directory, one JSON line per
+ * order, and a segment is never changed once written. When a segment passes
+ * its size limit the next order starts a new one, named after its first order
+ * id. A crash can only leave part of the last line of the last segment, which
+ * is cut off when the log is opened again.
+ *
+ * Two indexes are kept in memory and rebuilt by reading the segments on open:
+ * <ul>
+ * <li>A sparse index holds the file position of every
+ * {@value #INDEX_INTERVAL}th order, so reading the orders of a time range or
+ * one order by id starts close to the first one wanted.</li>
+ * <li>A product index holds the lines, units and revenue of each product
+ * summed per {@link #SALES_BUCKET_MILLIS} of time, so its memory grows with
+ * the minutes a product sold in rather than with every line ever sold. The
+ * sales of a product over a time range add up the buckets the range covers,
+ * and only the orders in the partly covered buckets at its two ends are read
+ * from the segments.</li>
+ * </ul>
+ *
+ * Products are recorded by name, since product ids are only unique within one
+ * run. Reading every order with {@link #replay} holds one order in memory at
+ * a time.
+ */
+public class OrderLog implements AutoCloseable {
+
+	/** The default size a segment grows to before a new one is started. */
+	public static final long DEFAULT_SEGMENT_BYTES = 16 * 1024 * 1024;
+	/** How many orders apart the sparse index entries are. */
+	public static final int INDEX_INTERVAL = 64;
+	/** The length of time each product's sales are summed over. */
+	public static final long SALES_BUCKET_MILLIS = 60 * 1000;
+
+	private static final String SEGMENT_PREFIX = "orders-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram APPEND_TIMER = METRICS.timer("orders.append");
+	private static final LatencyHistogram SALES_TIMER = METRICS.timer("orders.sales");
+	private static final LatencyHistogram RANGE_TIMER = METRICS.timer("orders.range");
+	private static final LongAdder ORDERS_APPENDED = METRICS.counter("orders.appended");
+
+	private final File directory;
+	private final long segmentBytes;
+	private final ObjectWriter writer;
+	private final ObjectReader reader;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final List<Segment> segments = new ArrayList<>();
+	private final Map<String, ProductSales> byProduct = new HashMap<>();
+	private FileOutputStream out;
+	private long nextOrderId;
+	private long lastTimestamp;
+
+	/**
+	 * The sales of one product over a time range.
+	 */
+	public static class Sales {
+		private final long lines;
+		private final long units;
+		private final double revenue;
+
+		Sales(long lines, long units, double revenue) {
+			this.lines = lines;
+			this.units = units;
+			this.revenue = revenue;
+		}
+
+		/**
+		 * Gets the number of order lines with the product.
+		 *
+		 * @return the line count
+		 */
+		public long getLines() {
+			return lines;
+		}
+
+		/**
+		 * Gets the number of units sold.
+		 *
+		 * @return the units
+		 */
+		public long getUnits() {
+			return units;
+		}
+
+		/**
+		 * Gets the money taken, quantity times unit price summed over the lines.
+		 *
+		 * @return the revenue
+		 */
+		public double getRevenue() {
+			return revenue;
+		}
+	}
+
+	/**
+	 * One segment file and where some of its orders start.
+	 */
+	private static class Segment {
+		private final File file;
+		private final long firstOrderId;
+		/** The length of the file up to the end of its last whole order. */
+		private long size;
+		private int orders;
+		private long firstTimestamp;
+		private long lastTimestamp;
+		private long[] indexTimes = new long[16];
+		private long[] indexOffsets = new long[16];
+		private int indexSize;
+
+		Segment(File file, long firstOrderId) {
+			this.file = file;
+			this.firstOrderId = firstOrderId;
+		}
+
+		void add(Order order, long offset) {
+			if (orders % INDEX_INTERVAL == 0) {
+				if (indexSize == indexTimes.length) {
+					indexTimes = Arrays.copyOf(indexTimes, indexSize * 2);
+					indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+				}
+				indexTimes[indexSize] = order.getTimestampMillis();
+				indexOffsets[indexSize] = offset;
+				indexSize++;
+			}
+			if (orders == 0) {
+				firstTimestamp = order.getTimestampMillis();
+			}
+			lastTimestamp = order.getTimestampMillis();
+			orders++;
+		}
+
+		/**
+		 * Gets a position at or before the first order placed at or after a time.
+		 */
+		long offsetBefore(long timestampMillis) {
+			// Orders with the same time can sit before an index entry, so start
+			// from the last entry strictly earlier
+			int low = 0;
+			int high = indexSize - 1;
+			int found = -1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (indexTimes[mid] < timestampMillis) {
+					found = mid;
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return found < 0 ? 0 : indexOffsets[found];
+		}
+
+		/**
+		 * Gets the position of the index entry at or before an order.
+		 */
+		long offsetOf(long orderId) {
+			return indexOffsets[(int) ((orderId - firstOrderId) / INDEX_INTERVAL)];
+		}
+
+		long lastOrderId() {
+			return firstOrderId + orders - 1;
+		}
+	}
+
+	/**
+	 * The sales of one product summed per bucket of time, in time order. Buckets
+	 * are numbered from the epoch, and only those with sales are kept.
+	 */
+	private static class ProductSales {
+		private int[] buckets = new int[4];
+		private int[] lines = new int[4];
+		private int[] units = new int[4];
+		private double[] revenue = new double[4];
+		private int size;
+
+		void add(long timestampMillis, int quantity, double amount) {
+			// Orders are indexed in time order, so a line is in the last bucket or a new one
+			int bucket = (int) Math.floorDiv(timestampMillis, SALES_BUCKET_MILLIS);
+			if (size == 0 || buckets[size - 1] != bucket) {
+				if (size == buckets.length) {
+					buckets = Arrays.copyOf(buckets, size * 2);
+					lines = Arrays.copyOf(lines, size * 2);
+					units = Arrays.copyOf(units, size * 2);
+					revenue = Arrays.copyOf(revenue, size * 2);
+				}
+				buckets[size++] = bucket;
+			}
+			lines[size - 1]++;
+			units[size - 1] += quantity;
+			revenue[size - 1] += amount;
+		}
+
+		/**
+		 * Adds up the buckets in a range, inclusive, to the given totals.
+		 */
+		void sum(long fromBucket, long toBucket, long[] counts, double[] amount) {
+			for (int i = firstAtOrAfter(fromBucket); i < size && buckets[i] <= toBucket; i++) {
+				counts[0] += lines[i];
+				counts[1] += units[i];
+				amount[0] += revenue[i];
+			}
+		}
+
+		boolean has(long bucket) {
+			int i = firstAtOrAfter(bucket);
+			return i < size && buckets[i] == bucket;
+		}
+
+		private int firstAtOrAfter(long bucket) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (buckets[mid] < bucket) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * Reads whole lines from a segment and keeps count of the position.
+	 */
+	private static class LineReader {
+		private final InputStream in;
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+		private long position;
+
+		LineReader(InputStream in, long position) {
+			this.in = new BufferedInputStream(in, 64 * 1024);
+			this.position = position;
+		}
+
+		/**
+		 * Reads the next line, without its newline.
+		 *
+		 * @return the line, or null at the end of the file or before a line that
+		 *         has no newline yet
+		 */
+		byte[] next() throws IOException {
+			line.reset();
+			int b;
+			while ((b = in.read()) != -1) {
+				if (b == '\n') {
+					position += line.size() + 1;
+					return line.toByteArray();
+				}
+				line.write(b);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Opens the order log in a directory with {@link #DEFAULT_SEGMENT_BYTES}
+	 * segments, creating it if needed.
+	 *
+	 * @param directory the directory holding the segments
+	 * @throws IOException if the segments cannot be read
+	 */
+	public OrderLog(File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_BYTES);
+	}
+
+	/**
+	 * Opens the order log in a directory, creating it if needed, and rebuilds
+	 * the indexes from its segments.
+	 *
+	 * @param directory    the directory holding the segments
+	 * @param segmentBytes the size a segment grows to before a new one is
+	 *                     started
+	 * @throws IOException if the segments cannot be read
+	 */
+	public OrderLog(File directory, long segmentBytes) throws IOException {
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		ObjectMapper mapper = new ObjectMapper();
+		this.writer = mapper.writerFor(Order.class);
+		this.reader = mapper.readerFor(Order.class);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+
+		File[] files = directory.listFiles(
+				(dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+		Arrays.sort(files);
+		for (File file : files) {
+			String name = file.getName();
+			Segment segment = new Segment(file,
+					Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			load(segment);
+			segments.add(segment);
+		}
+		if (segments.isEmpty()) {
+			segments.add(new Segment(segmentFile(0), 0));
+		}
+		Segment last = segments.get(segments.size() - 1);
+		try (RandomAccessFile file = new RandomAccessFile(last.file, "rw")) {
+			if (file.length() > last.size) {
+				System.out.println("Cutting off a partly written order at the end of " + last.file);
+				file.setLength(last.size);
+			}
+		}
+		this.nextOrderId = last.firstOrderId + last.orders;
+		this.out = new FileOutputStream(last.file, true);
+	}
+
+	/**
+	 * Records a purchase placed now.
+	 *
+	 * @param lines the products bought and how many of each, at their current
+	 *              prices
+	 * @return the order recorded
+	 * @throws IOException if the order could not be written
+	 */
+	public Order append(Map<SalableProduct, Integer> lines) throws IOException {
+		return appendAll(List.of(lines), System.currentTimeMillis()).get(0);
+	}
+
+	/**
+	 * Records several purchases placed now with a single write.
+	 *
+	 * @param purchases the purchases, each the products bought and how many of
+	 *                  each, at their current prices
+	 * @return the orders recorded, in the same order
+	 * @throws IOException if the orders could not be written; those not yet
+	 *                     written are not recorded
+	 */
+	public List<Order> appendAll(List<Map<SalableProduct, Integer>> purchases) throws IOException {
+		return appendAll(purchases, System.currentTimeMillis());
+	}
+
+	/**
+	 * Records several purchases placed at one time with a single write. A time
+	 * earlier than the last order's is recorded as the last order's time, so
+	 * times never go backwards.
+	 *
+	 * @param purchases       the purchases, each the products bought and how
+	 *                        many of each, at their current prices
+	 * @param timestampMillis when they were placed
+	 * @return the orders recorded, in the same order
+	 * @throws IOException if the orders could not be written; those not yet
+	 *                     written are not recorded
+	 */
+	public List<Order> appendAll(List<Map<SalableProduct, Integer>> purchases, long timestampMillis)
+			throws IOException {
+		List<List<Order.Line>> orders = new ArrayList<>(purchases.size());
+		for (Map<SalableProduct, Integer> purchase : purchases) {
+			orders.add(Order.linesOf(purchase));
+		}
+		return appendLines(orders, timestampMillis);
+	}
+
+	/**
+	 * Records several purchases placed now with a single write, at prices taken
+	 * when they were made.
+	 *
+	 * @param purchases the lines of each purchase, as from
+	 *                  {@link Order#linesOf(Map)}
+	 * @return the orders recorded, in the same order
+	 * @throws IOException if the orders could not be written; those not yet
+	 *                     written are not recorded
+	 */
+	public List<Order> appendLines(List<List<Order.Line>> purchases) throws IOException {
+		return appendLines(purchases, System.currentTimeMillis());
+	}
+
+	/**
+	 * Records several purchases placed at one time with a single write, at
+	 * prices taken when they were made. A time earlier than the last order's is
+	 * recorded as the last order's time, so times never go backwards.
+	 *
+	 * @param purchases       the lines of each purchase, as from
+	 *                        {@link Order#linesOf(Map)}
+	 * @param timestampMillis when they were placed
+	 * @return the orders recorded, in the same order
+	 * @throws IOException if the orders could not be written; those not yet
+	 *                     written are not recorded
+	 */
+	public List<Order> appendLines(List<List<Order.Line>> purchases, long timestampMillis) throws IOException {
+		long start = METRICS.start();
+		lock.writeLock().lock();
+		try {
+			long timestamp = Math.max(timestampMillis, lastTimestamp);
+			lastTimestamp = timestamp;
+			List<Order> orders = new ArrayList<>(purchases.size());
+			List<Order> unwritten = new ArrayList<>(purchases.size());
+			List<Long> offsets = new ArrayList<>(purchases.size());
+			ByteArrayOutputStream pending = new ByteArrayOutputStream();
+			long firstPending = nextOrderId;
+			try {
+				for (List<Order.Line> lines : purchases) {
+					Order order = new Order(nextOrderId++, timestamp, lines);
+					byte[] line = writer.writeValueAsBytes(order);
+					Segment current = segments.get(segments.size() - 1);
+					if (current.orders + unwritten.size() > 0
+							&& current.size + pending.size() + line.length + 1 > segmentBytes) {
+						write(pending, unwritten, offsets);
+						firstPending = order.getOrderId();
+						roll(order.getOrderId());
+						current = segments.get(segments.size() - 1);
+					}
+					offsets.add(current.size + pending.size());
+					orders.add(order);
+					unwritten.add(order);
+					pending.write(line);
+					pending.write('\n');
+				}
+				write(pending, unwritten, offsets);
+			} catch (IOException e) {
+				// Forget the orders not written so the next ones reuse their ids
+				Segment current = segments.get(segments.size() - 1);
+				nextOrderId = firstPending;
+				try {
+					out.getChannel().truncate(current.size);
+				} catch (IOException truncate) {
+					e.addSuppressed(truncate);
+				}
+				throw e;
+			}
+			METRICS.stop(APPEND_TIMER, start);
+			return orders;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the sales of a product over a time range. The whole buckets in the
+	 * range come from the product index, and only the orders in the partly
+	 * covered buckets at its ends are read, if the product sold in them.
+	 *
+	 * @param productName the product's name, in any case
+	 * @param fromMillis  the start of the range, inclusive
+	 * @param toMillis    the end of the range, inclusive
+	 * @return the product's sales in the range
+	 * @throws IOException if a segment cannot be read
+	 */
+	public Sales getSales(String productName, long fromMillis, long toMillis) throws IOException {
+		long start = METRICS.start();
+		String key = productName.toLowerCase(Locale.ROOT);
+		long[] counts = new long[2];
+		double[] amount = new double[1];
+		long fromBucket = Math.floorDiv(fromMillis, SALES_BUCKET_MILLIS);
+		long toBucket = Math.floorDiv(toMillis, SALES_BUCKET_MILLIS);
+		// The whole buckets in the range are those after the first when it starts
+		// part way in, up to the last unless the range ends before its end
+		boolean startsInside = Math.floorMod(fromMillis, SALES_BUCKET_MILLIS) != 0;
+		boolean endsInside = toMillis != Long.MAX_VALUE
+				&& Math.floorMod(toMillis, SALES_BUCKET_MILLIS) != SALES_BUCKET_MILLIS - 1;
+		long firstWhole = startsInside ? fromBucket + 1 : fromBucket;
+		long lastWhole = endsInside ? toBucket - 1 : toBucket;
+		List<long[]> scans = new ArrayList<>(2);
+		lock.readLock().lock();
+		try {
+			ProductSales sales = byProduct.get(key);
+			if (sales == null || fromMillis > toMillis) {
+				METRICS.stop(SALES_TIMER, start);
+				return new Sales(0, 0, 0);
+			}
+			if (firstWhole > lastWhole) {
+				// No whole bucket, so the range is inside one bucket or across the edge of two
+				if (sales.has(fromBucket) || sales.has(toBucket)) {
+					scans.add(new long[] { fromMillis, toMillis });
+				}
+			} else {
+				sales.sum(firstWhole, lastWhole, counts, amount);
+				if (startsInside && sales.has(fromBucket)) {
+					scans.add(new long[] { fromMillis, firstWhole * SALES_BUCKET_MILLIS - 1 });
+				}
+				if (endsInside && sales.has(toBucket)) {
+					scans.add(new long[] { toBucket * SALES_BUCKET_MILLIS, toMillis });
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		for (long[] scan : scans) {
+			visitOrders(scan[0], scan[1], order -> {
+				for (Order.Line line : order.getLines()) {
+					if (line.getProductName().toLowerCase(Locale.ROOT).equals(key)) {
+						counts[0]++;
+						counts[1] += line.getQuantity();
+						amount[0] += line.getQuantity() * line.getUnitPrice();
+					}
+				}
+			});
+		}
+		METRICS.stop(SALES_TIMER, start);
+		return new Sales(counts[0], counts[1], amount[0]);
+	}
+
+	/**
+	 * Reads the orders placed in a time range, starting each segment from the
+	 * sparse index rather than its beginning.
+	 *
+	 * @param fromMillis the start of the range, inclusive
+	 * @param toMillis   the end of the range, inclusive
+	 * @return the orders, oldest first
+	 * @throws IOException if a segment cannot be read
+	 */
+	public List<Order> getOrders(long fromMillis, long toMillis) throws IOException {
+		long start = METRICS.start();
+		List<Order> orders = new ArrayList<>();
+		visitOrders(fromMillis, toMillis, orders::add);
+		METRICS.stop(RANGE_TIMER, start);
+		return orders;
+	}
+
+	/**
+	 * Reads the orders placed in a time range, oldest first, starting each
+	 * segment from the sparse index rather than its beginning.
+	 */
+	private void visitOrders(long fromMillis, long toMillis, Consumer<Order> consumer) throws IOException {
+		List<Segment> reading = new ArrayList<>();
+		List<long[]> ranges = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			for (Segment segment : segments) {
+				if (segment.orders == 0 || segment.lastTimestamp < fromMillis) {
+					continue;
+				}
+				if (segment.firstTimestamp > toMillis) {
+					break;
+				}
+				reading.add(segment);
+				ranges.add(new long[] { segment.offsetBefore(fromMillis), segment.size });
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		for (int i = 0; i < reading.size(); i++) {
+			boolean more = read(reading.get(i), ranges.get(i)[0], ranges.get(i)[1], order -> {
+				if (order.getTimestampMillis() > toMillis) {
+					return false;
+				}
+				if (order.getTimestampMillis() >= fromMillis) {
+					consumer.accept(order);
+				}
+				return true;
+			});
+			if (!more) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads one order.
+	 *
+	 * @param orderId the order's id
+	 * @return the order, or null if there is none with that id
+	 * @throws IOException if its segment cannot be read
+	 */
+	public Order getOrder(long orderId) throws IOException {
+		Segment segment = null;
+		long offset;
+		long limit;
+		lock.readLock().lock();
+		try {
+			for (int i = segments.size() - 1; i >= 0; i--) {
+				if (segments.get(i).firstOrderId <= orderId) {
+					segment = segments.get(i);
+					break;
+				}
+			}
+			if (segment == null || orderId > segment.lastOrderId()) {
+				return null;
+			}
+			offset = segment.offsetOf(orderId);
+			limit = segment.size;
+		} finally {
+			lock.readLock().unlock();
+		}
+		Order[] found = new Order[1];
+		read(segment, offset, limit, order -> {
+			if (order.getOrderId() == orderId) {
+				found[0] = order;
+			}
+			return order.getOrderId() < orderId;
+		});
+		return found[0];
+	}
+
+	/**
+	 * Reads every order from one on, oldest first, one at a time, so the log
+	 * can be replayed whatever its size. Orders appended while replaying may or
+	 * may not be included.
+	 *
+	 * @param fromOrderId the first order to read
+	 * @param consumer    called with each order
+	 * @throws IOException if a segment cannot be read
+	 */
+	public void replay(long fromOrderId, Consumer<Order> consumer) throws IOException {
+		List<Segment> reading = new ArrayList<>();
+		List<long[]> ranges = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			for (Segment segment : segments) {
+				if (segment.orders > 0 && segment.lastOrderId() >= fromOrderId) {
+					reading.add(segment);
+					ranges.add(new long[] { fromOrderId > segment.firstOrderId ? segment.offsetOf(fromOrderId) : 0,
+							segment.size });
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		for (int i = 0; i < reading.size(); i++) {
+			read(reading.get(i), ranges.get(i)[0], ranges.get(i)[1], order -> {
+				if (order.getOrderId() >= fromOrderId) {
+					consumer.accept(order);
+				}
+				return true;
+			});
+		}
+	}
+
+	/**
+	 * Gets the number of orders recorded.
+	 *
+	 * @return the order count
+	 */
+	public long getOrderCount() {
+		lock.readLock().lock();
+		try {
+			return nextOrderId;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of segment files.
+	 *
+	 * @return the segment count
+	 */
+	public int getSegmentCount() {
+		lock.readLock().lock();
+		try {
+			return segments.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Forces the orders recorded so far to disk.
+	 *
+	 * @throws IOException if the segment cannot be forced
+	 */
+	public void sync() throws IOException {
+		lock.writeLock().lock();
+		try {
+			out.getFD().sync();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Forces the orders to disk and closes the current segment.
+	 *
+	 * @throws IOException if the segment cannot be forced or closed
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			out.getFD().sync();
+			out.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes the pending orders to the current segment, then indexes them.
+	 */
+	private void write(ByteArrayOutputStream pending, List<Order> orders, List<Long> offsets) throws IOException {
+		if (pending.size() == 0) {
+			return;
+		}
+		Segment current = segments.get(segments.size() - 1);
+		pending.writeTo(out);
+		current.size += pending.size();
+		for (int i = 0; i < orders.size(); i++) {
+			index(current, orders.get(i), offsets.get(i));
+		}
+		if (METRICS.isEnabled()) {
+			ORDERS_APPENDED.add(orders.size());
+		}
+		pending.reset();
+		orders.clear();
+		offsets.clear();
+	}
+
+	/**
+	 * Forces the current segment to disk and starts a new one.
+	 */
+	private void roll(long firstOrderId) throws IOException {
+		out.getFD().sync();
+		out.close();
+		Segment segment = new Segment(segmentFile(firstOrderId), firstOrderId);
+		segments.add(segment);
+		out = new FileOutputStream(segment.file, true);
+	}
+
+	private File segmentFile(long firstOrderId) {
+		return new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstOrderId, SEGMENT_SUFFIX));
+	}
+
+	private void index(Segment segment, Order order, long offset) {
+		segment.add(order, offset);
+		for (Order.Line line : order.getLines()) {
+			byProduct.computeIfAbsent(line.getProductName().toLowerCase(Locale.ROOT), name -> new ProductSales())
+					.add(order.getTimestampMillis(), line.getQuantity(), line.getQuantity() * line.getUnitPrice());
+		}
+	}
+
+	/**
+	 * Indexes every whole order in a segment and sets its size to the end of the
+	 * last one.
+	 */
+	private void load(Segment segment) throws IOException {
+		try (FileInputStream in = new FileInputStream(segment.file)) {
+			LineReader lines = new LineReader(in, 0);
+			long offset = 0;
+			byte[] line;
+			while ((line = lines.next()) != null) {
+				Order order = reader.readValue(line);
+				index(segment, order, offset);
+				lastTimestamp = Math.max(lastTimestamp, order.getTimestampMillis());
+				offset = lines.position;
+			}
+			segment.size = offset;
+		}
+	}
+
+	/**
+	 * Reads orders from a position in a segment up to a limit.
+	 *
+	 * @param visitor called with each order; returns false to stop
+	 * @return false if the visitor stopped the read
+	 */
+	private boolean read(Segment segment, long offset, long limit, OrderVisitor visitor) throws IOException {
+		try (FileInputStream in = new FileInputStream(segment.file)) {
+			in.getChannel().position(offset);
+			LineReader lines = new LineReader(in, offset);
+			byte[] line;
+			while (lines.position < limit && (line = lines.next()) != null) {
+				if (!visitor.visit(reader.readValue(line))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Called with each order read.
+	 */
+	private interface OrderVisitor {
+		boolean visit(Order order);
+	}
+}
@@ -0,0 +1,26 @@
+package app;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+
+/**
+ * Reads a JSON string through a {@link StringPool}, so product names and
+ * descriptions that repeat across a catalog share one instance.
+ *
+ * The pool is {@link StringPool#SHARED} unless the reader sets another one as
+ * the {@code StringPool.class} attribute, for example
+ * {@code mapper.readerFor(SalableProduct[].class).withAttribute(StringPool.class, pool)}.
+ */
+public class PooledStringDeserializer extends JsonDeserializer<String> {
+
+	@Override
+	public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+		String text = StringDeserializer.instance.deserialize(parser, context);
+		Object pool = context.getAttribute(StringPool.class);
+		return (pool instanceof StringPool ? (StringPool) pool : StringPool.SHARED).intern(text);
+	}
+}
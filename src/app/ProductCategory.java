@@ -0,0 +1,52 @@
+package app;
+
+/**
+ * The categories a {@link SalableProduct} can belong to, one for each product
+ * subclass. Plain SalableProducts belong to {@link #OTHER}.
+ *
+ * @see Weapon
+ * @see Armor
+ * @see Health
+ */
+public enum ProductCategory {
+	/** Products that are {@link Weapon}s. */
+	WEAPON,
+	/** Products that are {@link Armor}. */
+	ARMOR,
+	/** Products that are {@link Health} items. */
+	HEALTH,
+	/** Products that are not one of the other categories. */
+	OTHER;
+
+	/**
+	 * Gets the category of a product from its class.
+	 *
+	 * @param product the product
+	 * @return the product's category
+	 */
+	public static ProductCategory of(SalableProduct product) {
+		if (product instanceof Weapon) {
+			return WEAPON;
+		} else if (product instanceof Armor) {
+			return ARMOR;
+		} else if (product instanceof Health) {
+			return HEALTH;
+		}
+		return OTHER;
+	}
+
+	/**
+	 * Finds a category by name, ignoring case.
+	 *
+	 * @param name the category name, for example "weapon"
+	 * @return the category, or null if there is none with that name
+	 */
+	public static ProductCategory fromName(String name) {
+		for (ProductCategory category : values()) {
+			if (category.name().equalsIgnoreCase(name)) {
+				return category;
+			}
+		}
+		return null;
+	}
+}
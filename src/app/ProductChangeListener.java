@@ -0,0 +1,17 @@
+package app;
+
+/**
+ * Receives a call whenever a {@link SalableProduct} it watches has its name,
+ * description, price or quantity changed through a setter.
+ *
+ * @see InventoryManager
+ */
+public interface ProductChangeListener {
+
+	/**
+	 * Called after a field of the product has been changed.
+	 *
+	 * @param product the product that changed
+	 */
+	void productChanged(SalableProduct product);
+}
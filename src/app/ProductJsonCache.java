@@ -0,0 +1,210 @@
+package app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * ProductJsonCache keeps the JSON of each product as UTF-8 bytes, so a list of
+ * mostly unchanged products can be written by copying bytes instead of
+ * serializing every product again.
+ *
+ * Each entry remembers the product's {@link SalableProduct#getVersion()
+ * version} when it was written. A setter call moves the version on, and the
+ * next lookup writes the product again. The version is read before the product
+ * is written, so a change made while writing only makes the entry look older
+ * than it is.
+ *
+ * The cache holds at most a set number of bytes. When it is full the product
+ * used least recently is dropped.
+ *
+ * Subscribed to an inventory's {@link ChangeStream}, the cache writes changed
+ * products again as soon as the change is published, on the stream's thread,
+ * so the next retrieve finds them current. Changes it misses after falling
+ * behind the stream are caught by the version check on lookup.
+ *
+ * @see AdminService
+ */
+public class ProductJsonCache implements InventorySubscriber {
+
+	private static final byte[] OPEN = { '[' };
+	private static final byte[] COMMA = { ',' };
+	private static final byte[] CLOSE = { ']' };
+
+	private final ObjectWriter writer = new ObjectMapper().writerFor(SalableProduct.class);
+	private final long maxBytes;
+	/** Product id to its JSON, least recently used first. */
+	private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedBytes;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * The JSON of one product and the version it was written from.
+	 */
+	private static class Entry {
+		private final byte[] json;
+		private final int version;
+
+		Entry(byte[] json, int version) {
+			this.json = json;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxBytes the most bytes of JSON to keep
+	 */
+	public ProductJsonCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Gets the JSON of a product, with its "type" property, from the cache or by
+	 * writing it.
+	 *
+	 * @param product the product
+	 * @return the product's JSON as UTF-8; callers must not change the array
+	 * @throws JsonProcessingException if the product cannot be written
+	 */
+	public byte[] toJson(SalableProduct product) throws JsonProcessingException {
+		int version = product.getVersion();
+		synchronized (this) {
+			Entry entry = entries.get(product.getId());
+			if (entry != null && entry.version == version) {
+				hits.increment();
+				return entry.json;
+			}
+		}
+		misses.increment();
+		byte[] json = writer.writeValueAsBytes(product);
+		put(product, version, json);
+		return json;
+	}
+
+	/**
+	 * Writes the JSON of products added or changed, so later lookups hit. Does
+	 * not count as hits or misses.
+	 *
+	 * @param events the inventory changes
+	 */
+	@Override
+	public void onEvents(List<InventoryEvent> events) {
+		for (InventoryEvent event : events) {
+			SalableProduct product = event.getProduct();
+			int version = product.getVersion();
+			synchronized (this) {
+				Entry entry = entries.get(product.getId());
+				if (entry != null && entry.version == version) {
+					continue;
+				}
+			}
+			try {
+				put(product, version, writer.writeValueAsBytes(product));
+			} catch (JsonProcessingException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Writes products as a JSON array, the same as writing the list with
+	 * {@link FileService#PRODUCT_LIST}.
+	 *
+	 * @param products the products to write
+	 * @param out      the stream to write to; it is not flushed or closed
+	 * @throws IOException if a product cannot be written or the stream fails
+	 */
+	public void writeArray(List<SalableProduct> products, OutputStream out) throws IOException {
+		out.write(OPEN);
+		for (int i = 0; i < products.size(); i++) {
+			if (i > 0) {
+				out.write(COMMA);
+			}
+			out.write(toJson(products.get(i)));
+		}
+		out.write(CLOSE);
+	}
+
+	/**
+	 * Gets how many lookups found current JSON in the cache.
+	 *
+	 * @return the hit count
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets how many lookups had to write the product.
+	 *
+	 * @return the miss count
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the share of lookups that were hits.
+	 *
+	 * @return the hit rate from 0 to 1, or 0 before any lookup
+	 */
+	public double getHitRate() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * Gets how many entries were dropped to stay within the size limit.
+	 *
+	 * @return the eviction count
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Gets the number of products cached.
+	 *
+	 * @return the entry count
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the bytes of JSON cached.
+	 *
+	 * @return the cached byte count
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	private synchronized void put(SalableProduct product, int version, byte[] json) {
+		Entry old = entries.put(product.getId(), new Entry(json, version));
+		cachedBytes += json.length - (old == null ? 0 : old.json.length);
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Integer, Entry>> eldest = entries.entrySet().iterator();
+		while (cachedBytes > maxBytes && eldest.hasNext()) {
+			cachedBytes -= eldest.next().getValue().json.length;
+			eldest.remove();
+			evictions.increment();
+		}
+	}
+}
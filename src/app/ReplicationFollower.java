@@ -0,0 +1,314 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * ReplicationFollower keeps an inventory a copy of a
+ * {@link ReplicationLeader}'s inventory on another store node.
+ *
+ * On connecting it reads the leader's snapshot and makes it the whole
+ * inventory with {@link InventoryManager#replaceAll}, then applies each change
+ * the leader sends through the product setters, so the follower's own indexes,
+ * caches and persister follow along. If the connection drops it connects again
+ * and catches up from a new snapshot. Products it already has keep their
+ * objects as long as the leader has not restarted.
+ *
+ * Only the leader takes purchases: a follower's inventory should be
+ * {@link InventoryManager#setReadOnly read-only}, or its own sales would be
+ * overwritten by the leader's stock and sold twice.
+ *
+ * The follower counts how far it is behind in changes, from the sequence
+ * numbers the leader sends, and in time, from the leader's clock on each line.
+ * The time lag of every change applied is recorded in the
+ * "replication.follower.lag" timer; it assumes the two clocks agree, which
+ * holds for nodes on one host.
+ */
+public class ReplicationFollower implements Runnable, AutoCloseable {
+
+	/** How long to wait before connecting again after losing the leader. */
+	public static final long RECONNECT_MILLIS = 1000;
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram LAG_TIMER = METRICS.timer("replication.follower.lag");
+	private static final LatencyHistogram CATCH_UP_TIMER = METRICS.timer("replication.follower.catchUp");
+	private static final LongAdder CHANGES_APPLIED = METRICS.counter("replication.follower.changesApplied");
+	private static final LongAdder SNAPSHOTS = METRICS.counter("replication.follower.snapshots");
+	private static final LongAdder DISCONNECTS = METRICS.counter("replication.follower.disconnects");
+
+	private final InventoryManager inventory;
+	private final String host;
+	private final int port;
+	private final ObjectReader reader = new ObjectMapper().readerFor(ReplicationRecord.class);
+
+	/** The leader's epoch and its product ids to the products here. */
+	private String epoch;
+	private Map<Integer, SalableProduct> products = new HashMap<>();
+
+	private volatile boolean running = true;
+	private volatile Socket socket;
+	private volatile boolean caughtUp;
+	private volatile long appliedSequence = -1;
+	private volatile long leaderSequence = -1;
+	private volatile long lastLeaderTimeMillis;
+	private volatile long lastReceivedMillis;
+
+	/**
+	 * Creates a follower. It connects once {@link #run()} is called.
+	 *
+	 * @param inventory the inventory to keep in step with the leader
+	 * @param host      the leader's host
+	 * @param port      the leader's replication port
+	 */
+	public ReplicationFollower(InventoryManager inventory, String host, int port) {
+		this.inventory = inventory;
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Follows the leader until closed, connecting again whenever the connection
+	 * is lost.
+	 */
+	@Override
+	public void run() {
+		while (running) {
+			try (Socket socket = new Socket()) {
+				this.socket = socket;
+				socket.connect(new InetSocketAddress(host, port));
+				System.out.println("ReplicationFollower connected to " + host + ":" + port);
+				follow(new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)));
+			} catch (IOException e) {
+				if (running) {
+					System.out.println("ReplicationFollower lost " + host + ":" + port + ": " + e);
+				}
+			} finally {
+				caughtUp = false;
+			}
+			if (running) {
+				METRICS.increment(DISCONNECTS);
+				try {
+					Thread.sleep(RECONNECT_MILLIS);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops following the leader. The inventory keeps what it has.
+	 *
+	 * @throws IOException if the connection cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		Socket socket = this.socket;
+		if (socket != null) {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Tells whether the follower has applied a snapshot since it last connected.
+	 *
+	 * @return true once the inventory holds the leader's catalog
+	 */
+	public boolean isCaughtUp() {
+		return caughtUp;
+	}
+
+	/**
+	 * Gets the leader's sequence number of the last change applied here.
+	 *
+	 * @return the sequence number, or -1 before the first snapshot
+	 */
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	/**
+	 * Gets how many of the leader's changes are not applied here yet, as far as
+	 * the follower knows.
+	 *
+	 * @return the number of changes behind
+	 */
+	public long getLagChanges() {
+		return Math.max(0, leaderSequence - appliedSequence);
+	}
+
+	/**
+	 * Gets how long the last line from the leader took to arrive, from the
+	 * leader's clock when it was sent to this node's clock when it was read.
+	 * While the leader is idle, heartbeats keep this current.
+	 *
+	 * @return the lag in milliseconds, or -1 before the first line
+	 */
+	public long getLagMillis() {
+		if (lastLeaderTimeMillis == 0) {
+			return -1;
+		}
+		return Math.max(0, lastReceivedMillis - lastLeaderTimeMillis);
+	}
+
+	/**
+	 * Waits until every change the leader has published up to a sequence number
+	 * is applied here.
+	 *
+	 * @param sequence      the leader's sequence number
+	 * @param timeoutMillis the longest time to wait
+	 * @return true if the change is applied, false if time ran out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitApplied(long sequence, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (!caughtUp || appliedSequence < sequence) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the follower's lag and connection state, for reports.
+	 *
+	 * @return the statistics by name, in a fixed order
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("caughtUp", caughtUp);
+		statistics.put("appliedSequence", appliedSequence);
+		statistics.put("leaderSequence", leaderSequence);
+		statistics.put("lagChanges", getLagChanges());
+		statistics.put("lagMillis", getLagMillis());
+		return statistics;
+	}
+
+	/**
+	 * Reads and applies lines until the connection ends.
+	 */
+	private void follow(BufferedReader in) throws IOException {
+		List<SalableProduct> snapshot = null;
+		int expected = 0;
+		long catchUpStart = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			ReplicationRecord record = reader.readValue(line);
+			lastReceivedMillis = System.currentTimeMillis();
+			lastLeaderTimeMillis = record.getLeaderTimeMillis();
+			leaderSequence = Math.max(leaderSequence, record.getSequence());
+
+			switch (record.getType()) {
+			case SNAPSHOT:
+				catchUpStart = METRICS.start();
+				if (!record.getEpoch().equals(epoch)) {
+					// The leader restarted, so its product ids mean something new
+					epoch = record.getEpoch();
+					products = new HashMap<>();
+				}
+				snapshot = new ArrayList<>(record.getCount());
+				expected = record.getCount();
+				leaderSequence = record.getSequence();
+				appliedSequence = record.getSequence();
+				break;
+
+			case PRODUCT:
+				snapshot.add(apply(record.getId(), record.getProduct()));
+				break;
+
+			case ADDED:
+			case UPDATED:
+				SalableProduct product = products.get(record.getId());
+				if (product == null) {
+					inventory.addSalableProduct(apply(record.getId(), record.getProduct()));
+				} else {
+					apply(record.getId(), record.getProduct());
+				}
+				applied(record);
+				break;
+
+			case STOCK_DECREMENTED:
+				SalableProduct purchased = products.get(record.getId());
+				if (purchased != null) {
+					inventory.update(() -> {
+						if (purchased.getQuantity() != record.getQuantity()) {
+							purchased.setQuantity(record.getQuantity());
+						}
+					});
+				}
+				applied(record);
+				break;
+
+			case HEARTBEAT:
+				break;
+			}
+
+			if (snapshot != null && snapshot.size() == expected) {
+				inventory.replaceAll(snapshot);
+				snapshot = null;
+				caughtUp = true;
+				METRICS.increment(SNAPSHOTS);
+				METRICS.stop(CATCH_UP_TIMER, catchUpStart);
+			}
+		}
+	}
+
+	/**
+	 * Copies the state of one of the leader's products onto the product here,
+	 * or keeps the state as the product if it is new. Only fields that differ
+	 * are set, so a line that changes nothing publishes nothing. The fields are
+	 * set under the inventory's write lock, so they cannot interleave with
+	 * anything else changing the product.
+	 *
+	 * @return the product here
+	 */
+	private SalableProduct apply(int id, SalableProduct state) {
+		SalableProduct product = products.get(id);
+		if (product == null) {
+			products.put(id, state);
+			return state;
+		}
+		inventory.update(() -> {
+			if (!Objects.equals(product.getName(), state.getName())) {
+				product.setName(state.getName());
+			}
+			if (!Objects.equals(product.getDescription(), state.getDescription())) {
+				product.setDescription(state.getDescription());
+			}
+			if (Double.compare(product.getPrice(), state.getPrice()) != 0) {
+				product.setPrice(state.getPrice());
+			}
+			if (product.getQuantity() != state.getQuantity()) {
+				product.setQuantity(state.getQuantity());
+			}
+		});
+		return product;
+	}
+
+	private void applied(ReplicationRecord record) {
+		appliedSequence = Math.max(appliedSequence, record.getSequence());
+		METRICS.increment(CHANGES_APPLIED);
+		if (METRICS.isEnabled()) {
+			LAG_TIMER.record(
+					TimeUnit.MILLISECONDS.toNanos(Math.max(0, lastReceivedMillis - record.getLeaderTimeMillis())));
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package app;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * ReplicationLeader streams an inventory's changes to
+ * {@link ReplicationFollower}s on other store nodes, so they all sell from the
+ * same catalog.
+ *
+ * A follower that connects first gets a snapshot of the whole inventory, then
+ * every change as one JSON line, in the order of the inventory's
+ * {@link ChangeStream}. The leader follows the stream once and writes each
+ * change to JSON once, then hands the line to every follower's queue. Each
+ * follower has its own thread writing its queue to the socket, so a slow
+ * follower never holds up the inventory. A follower whose queue fills up is
+ * disconnected; it reconnects and catches up from a new snapshot. If the
+ * leader itself falls behind the stream and misses changes, every follower is
+ * disconnected the same way.
+ *
+ * The follower's queue is set up before the snapshot is taken, so no change
+ * can fall between them. A change that is already in the snapshot is sent as
+ * well, which is harmless because each line holds absolute state.
+ *
+ * @see ReplicationRecord
+ */
+public class ReplicationLeader implements Runnable, InventorySubscriber, AutoCloseable {
+
+	/** The default number of lines a follower may fall behind before it is dropped. */
+	public static final int DEFAULT_QUEUE_CAPACITY = 100_000;
+	/** How long a follower's connection may be idle before a heartbeat is sent. */
+	public static final long HEARTBEAT_MILLIS = 500;
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LongAdder FOLLOWERS_CONNECTED = METRICS.counter("replication.leader.followersConnected");
+	private static final LongAdder FOLLOWERS_DROPPED = METRICS.counter("replication.leader.followersDropped");
+	private static final LongAdder LINES_SENT = METRICS.counter("replication.leader.linesSent");
+	private static final LatencyHistogram SNAPSHOT_TIMER = METRICS.timer("replication.leader.snapshot");
+
+	private final InventoryManager inventory;
+	private final int queueCapacity;
+	private final String epoch = UUID.randomUUID().toString();
+	private final ObjectWriter writer = new ObjectMapper().writerFor(ReplicationRecord.class);
+	private final List<Follower> followers = new CopyOnWriteArrayList<>();
+	private final ChangeStream.Subscription subscription;
+	private final ServerSocket serverSocket;
+	private volatile Thread acceptor;
+
+	/**
+	 * One connected follower and the lines waiting to be sent to it.
+	 */
+	private class Follower {
+		private final Socket socket;
+		private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(queueCapacity);
+		private volatile boolean open = true;
+
+		Follower(Socket socket) {
+			this.socket = socket;
+		}
+
+		/**
+		 * Sends the snapshot, then the queued lines until the follower goes away.
+		 */
+		void send() {
+			try (OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024)) {
+				sendSnapshot(out);
+				while (open) {
+					byte[] line = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+					if (line == null) {
+						write(out, new ReplicationRecord(ReplicationRecord.Type.HEARTBEAT,
+								inventory.getChangeStream().getLastSequence()));
+					}
+					for (; line != null; line = queue.poll()) {
+						out.write(line);
+						METRICS.increment(LINES_SENT);
+					}
+					out.flush();
+				}
+			} catch (IOException e) {
+				System.out.println("Replication follower " + socket.getRemoteSocketAddress() + " left: " + e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				close();
+			}
+		}
+
+		void sendSnapshot(OutputStream out) throws IOException {
+			long start = METRICS.start();
+			long sequence = inventory.getChangeStream().getLastSequence();
+			List<SalableProduct> products = inventory.getProductsSnapshot();
+			ReplicationRecord header = new ReplicationRecord(ReplicationRecord.Type.SNAPSHOT, sequence);
+			header.setEpoch(epoch);
+			header.setCount(products.size());
+			write(out, header);
+			for (SalableProduct product : products) {
+				ReplicationRecord record = new ReplicationRecord(ReplicationRecord.Type.PRODUCT, sequence);
+				record.setId(product.getId());
+				record.setProduct(product);
+				write(out, record);
+			}
+			out.flush();
+			METRICS.stop(SNAPSHOT_TIMER, start);
+		}
+
+		/**
+		 * Queues a line, dropping the follower if it is too far behind.
+		 */
+		void offer(byte[] line) {
+			if (open && !queue.offer(line)) {
+				System.out.println("Replication follower " + socket.getRemoteSocketAddress() + " fell behind");
+				METRICS.increment(FOLLOWERS_DROPPED);
+				close();
+			}
+		}
+
+		void close() {
+			open = false;
+			followers.remove(this);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+		}
+	}
+
+	/**
+	 * Creates a leader with the default follower queue size and starts following
+	 * the inventory.
+	 *
+	 * @param inventory the inventory to replicate
+	 * @param port      the port followers connect to, or 0 for any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public ReplicationLeader(InventoryManager inventory, int port) throws IOException {
+		this(inventory, port, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Creates a leader and starts following the inventory. Followers are accepted
+	 * once {@link #run()} is called.
+	 *
+	 * @param inventory     the inventory to replicate
+	 * @param port          the port followers connect to, or 0 for any free port
+	 * @param queueCapacity the number of lines a follower may fall behind before
+	 *                      it is dropped
+	 * @throws IOException if the port cannot be opened
+	 */
+	public ReplicationLeader(InventoryManager inventory, int port, int queueCapacity) throws IOException {
+		this.inventory = inventory;
+		this.queueCapacity = queueCapacity;
+		this.serverSocket = new ServerSocket(port);
+		this.subscription = inventory.getChangeStream().subscribe("replication-leader", this);
+	}
+
+	/**
+	 * Gets the port followers connect to.
+	 *
+	 * @return the port number
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Gets the number of followers connected.
+	 *
+	 * @return the follower count
+	 */
+	public int getFollowerCount() {
+		return followers.size();
+	}
+
+	/**
+	 * Accepts followers until the leader is closed, starting a sender thread for
+	 * each.
+	 */
+	@Override
+	public void run() {
+		System.out.println("ReplicationLeader is running on port " + getPort());
+		acceptor = Thread.currentThread();
+		try {
+			while (true) {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				Follower follower = new Follower(socket);
+				followers.add(follower);
+				METRICS.increment(FOLLOWERS_CONNECTED);
+				Thread sender = new Thread(follower::send, "replication-" + socket.getRemoteSocketAddress());
+				sender.setDaemon(true);
+				sender.start();
+			}
+		} catch (IOException e) {
+			if (!serverSocket.isClosed()) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Writes each change to JSON once and queues it for every follower.
+	 *
+	 * @param events the inventory changes
+	 */
+	@Override
+	public void onEvents(List<InventoryEvent> events) {
+		if (followers.isEmpty()) {
+			return;
+		}
+		for (InventoryEvent event : events) {
+			byte[] line;
+			try {
+				line = toLine(ReplicationRecord.of(event));
+			} catch (JsonProcessingException e) {
+				e.printStackTrace();
+				continue;
+			}
+			for (Follower follower : followers) {
+				follower.offer(line);
+			}
+		}
+	}
+
+	/**
+	 * Disconnects every follower, since changes were missed that they will
+	 * never get. Each reconnects and catches up from a new snapshot.
+	 */
+	@Override
+	public void onOverrun() {
+		for (Follower follower : followers) {
+			System.out.println("Replication follower " + follower.socket.getRemoteSocketAddress() + " missed changes");
+			METRICS.increment(FOLLOWERS_DROPPED);
+			follower.close();
+		}
+	}
+
+	/**
+	 * Stops accepting followers, disconnects the ones connected and stops
+	 * following the inventory. The port is released by the time this returns,
+	 * so a new leader can open it at once.
+	 *
+	 * @throws IOException if the port cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		subscription.close();
+		serverSocket.close();
+		// The socket is only released once the thread blocked in accept leaves it
+		Thread thread = acceptor;
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (Follower follower : followers) {
+			follower.close();
+		}
+	}
+
+	private void write(OutputStream out, ReplicationRecord record) throws IOException {
+		out.write(toLine(record));
+		METRICS.increment(LINES_SENT);
+	}
+
+	private byte[] toLine(ReplicationRecord record) throws JsonProcessingException {
+		byte[] json = writer.writeValueAsBytes(record);
+		byte[] line = new byte[json.length + 1];
+		System.arraycopy(json, 0, line, 0, json.length);
+		line[json.length] = '\n';
+		return line;
+	}
+}
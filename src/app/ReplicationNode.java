@@ -0,0 +1,119 @@
+package app;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * ReplicationNode runs a store inventory with no console, as a replication
+ * leader or follower, so replication can be tried with several processes on
+ * one host.
+ *
+ * The leader generates a catalog and then changes it at a steady rate, mixing
+ * price changes, restocks and purchases. Followers start empty and catch up
+ * from the leader. Every node prints its progress once a second and, when its
+ * time is up, its product count and total stock value, which should match on
+ * every node once the leader has stopped changing the catalog.
+ *
+ * Usage:
+ * <ul>
+ * <li>{@code ReplicationNode leader <port> [products] [changes per second] [seconds]}</li>
+ * <li>{@code ReplicationNode follower <host> <port> [seconds]}</li>
+ * </ul>
+ */
+public class ReplicationNode {
+
+	/**
+	 * Entry point for a node.
+	 *
+	 * @param args the role and its options, see the class comment
+	 * @throws Exception if the node cannot be started
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length >= 2 && args[0].equals("leader")) {
+			runLeader(Integer.parseInt(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 10_000,
+					args.length > 3 ? Integer.parseInt(args[3]) : 1000, args.length > 4 ? Integer.parseInt(args[4]) : 30);
+		} else if (args.length >= 3 && args[0].equals("follower")) {
+			runFollower(args[1], Integer.parseInt(args[2]), args.length > 3 ? Integer.parseInt(args[3]) : 35);
+		} else {
+			System.out.println("Usage: ReplicationNode leader <port> [products] [changes per second] [seconds]");
+			System.out.println("       ReplicationNode follower <host> <port> [seconds]");
+		}
+	}
+
+	private static void runLeader(int port, int products, int changesPerSecond, int seconds) throws Exception {
+		InventoryManager inventory = new InventoryManager();
+		for (SalableProduct product : new CatalogGenerator(42).generate(products)) {
+			inventory.addSalableProduct(product);
+		}
+		try (ReplicationLeader leader = new ReplicationLeader(inventory, port)) {
+			Thread acceptor = new Thread(leader, "replication-acceptor");
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			List<SalableProduct> catalog = inventory.getProductsSnapshot();
+			Random random = new Random(7);
+			long intervalNanos = 1_000_000_000L / Math.max(1, changesPerSecond);
+			long start = System.nanoTime();
+			long next = start;
+			long nextReport = start + 1_000_000_000L;
+			long end = start + seconds * 1_000_000_000L;
+			long changes = 0;
+			while (System.nanoTime() < end) {
+				change(inventory, catalog.get(random.nextInt(catalog.size())), random);
+				changes++;
+				next += intervalNanos;
+				long now;
+				while ((now = System.nanoTime()) < next) {
+					Thread.sleep(0, 100_000);
+				}
+				if (now >= nextReport) {
+					System.out.printf("leader   | %,10d changes | sequence %,10d | %d followers\n", changes,
+							inventory.getChangeStream().getLastSequence(), leader.getFollowerCount());
+					nextReport += 1_000_000_000L;
+				}
+			}
+			// Give followers a moment to drain before reporting the final state
+			Thread.sleep(2000);
+			report("leader", inventory);
+		}
+	}
+
+	private static void change(InventoryManager inventory, SalableProduct product, Random random) {
+		int kind = random.nextInt(10);
+		if (kind < 2) {
+			product.setPrice(Math.round(product.getPrice() * (0.9 + random.nextDouble() * 0.2) * 100) / 100.0);
+		} else if (kind < 4 || product.getQuantity() == 0) {
+			product.setQuantity(product.getQuantity() + 1 + random.nextInt(20));
+		} else {
+			Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+			lines.put(product, 1);
+			inventory.purchase(lines);
+		}
+	}
+
+	private static void runFollower(String host, int port, int seconds) throws Exception {
+		InventoryManager inventory = new InventoryManager();
+		inventory.setReadOnly(true);
+		try (ReplicationFollower follower = new ReplicationFollower(inventory, host, port)) {
+			Thread thread = new Thread(follower, "replication-follower");
+			thread.setDaemon(true);
+			thread.start();
+			for (int i = 0; i < seconds; i++) {
+				Thread.sleep(1000);
+				System.out.printf("follower | applied %,10d | behind %,6d changes | lag %4d ms\n",
+						follower.getAppliedSequence(), follower.getLagChanges(), follower.getLagMillis());
+			}
+			report("follower", inventory);
+			LatencyHistogram lag = MetricsRegistry.GLOBAL.timer("replication.follower.lag");
+			System.out.printf("follower | lag p50 %d ms | p99 %d ms | max %d ms\n", lag.getPercentile(0.50) / 1_000_000,
+					lag.getPercentile(0.99) / 1_000_000, lag.getMax() / 1_000_000);
+		}
+	}
+
+	private static void report(String role, InventoryManager inventory) {
+		System.out.printf("%-8s | %,d products | stock value %,.2f\n", role, inventory.getProductsSnapshot().size(),
+				inventory.getTotalStockValue());
+	}
+}
@@ -0,0 +1,146 @@
+package app;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of the stream a {@link ReplicationLeader} sends its followers.
+ *
+ * A connection starts with a {@link Type#SNAPSHOT} header and one
+ * {@link Type#PRODUCT} line per product, then carries one line per inventory
+ * change and a {@link Type#HEARTBEAT} whenever the leader is idle. Products are
+ * named by their id on the leader, which is only stable while that leader runs,
+ * so the header also carries the leader's epoch.
+ *
+ * Every line holds the product's whole state, or its stock for a purchase,
+ * rather than a difference, so a follower can apply a change it already has in
+ * its snapshot without harm.
+ */
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+class ReplicationRecord {
+
+	/**
+	 * What a line carries.
+	 */
+	enum Type {
+		/** Starts a snapshot of {@code count} products taken at {@code sequence}. */
+		SNAPSHOT,
+		/** One product of a snapshot. */
+		PRODUCT,
+		/** A product was added. */
+		ADDED,
+		/** A product's fields changed. */
+		UPDATED,
+		/** A purchase left the product with {@code quantity} in stock. */
+		STOCK_DECREMENTED,
+		/** The leader is idle; {@code sequence} is its last change. */
+		HEARTBEAT
+	}
+
+	private Type type;
+	private long sequence;
+	private String epoch;
+	private int count;
+	private int id;
+	private SalableProduct product;
+	private int quantity;
+	private long leaderTimeMillis;
+
+	/**
+	 * Creates an empty record for reading.
+	 */
+	ReplicationRecord() {
+	}
+
+	/**
+	 * Creates a record stamped with the leader's clock.
+	 *
+	 * @param type     what the line carries
+	 * @param sequence the change's sequence number on the leader
+	 */
+	ReplicationRecord(Type type, long sequence) {
+		this.type = type;
+		this.sequence = sequence;
+		this.leaderTimeMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Creates the record for an inventory change.
+	 *
+	 * @param event the change
+	 * @return the record
+	 */
+	static ReplicationRecord of(InventoryEvent event) {
+		ReplicationRecord record = new ReplicationRecord(Type.valueOf(event.getType().name()), event.getSequence());
+		record.id = event.getProduct().getId();
+		if (event.getType() == InventoryEvent.Type.STOCK_DECREMENTED) {
+			record.quantity = event.getQuantity();
+		} else {
+			record.product = event.getProduct();
+		}
+		return record;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	public String getEpoch() {
+		return epoch;
+	}
+
+	public void setEpoch(String epoch) {
+		this.epoch = epoch;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public SalableProduct getProduct() {
+		return product;
+	}
+
+	public void setProduct(SalableProduct product) {
+		this.product = product;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	public long getLeaderTimeMillis() {
+		return leaderTimeMillis;
+	}
+
+	public void setLeaderTimeMillis(long leaderTimeMillis) {
+		this.leaderTimeMillis = leaderTimeMillis;
+	}
+}
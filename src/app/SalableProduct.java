@@ -1,16 +1,52 @@
 package app;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 /**
  * Represents a product that can be sold in the store. Each SalableProduct has a
  * name, description, price, and quantity in stock.
+ * 
+ * In JSON the subclass is kept in a "type" property, so weapons, armor and
+ * health items load back as the same class. Products without a type load as a
+ * plain SalableProduct. Names and descriptions read from JSON or a snapshot go
+ * through {@link StringPool#SHARED}, so products that repeat them share one
+ * copy.
  */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type",
+		defaultImpl = SalableProduct.class)
+@JsonSubTypes({ @JsonSubTypes.Type(value = Weapon.class, name = "weapon"),
+		@JsonSubTypes.Type(value = Armor.class, name = "armor"),
+		@JsonSubTypes.Type(value = Health.class, name = "health") })
 public class SalableProduct implements Comparable<SalableProduct> {
+	private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+	/** Moves {@link #version} on atomically without an object per product. */
+	private static final VarHandle VERSION;
+
+	static {
+		try {
+			VERSION = MethodHandles.lookup().findVarHandle(SalableProduct.class, "version", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final int id = NEXT_ID.getAndIncrement();
+	@JsonDeserialize(using = PooledStringDeserializer.class)
 	private String name;
+	@JsonDeserialize(using = PooledStringDeserializer.class)
 	private String description;
 	private double price;
 	private int quantity;
+	private ProductChangeListener changeListener;
+	private volatile int version;
 
 	public SalableProduct() {
 		name = "";
@@ -48,6 +84,18 @@ public class SalableProduct implements Comparable<SalableProduct> {
         return Objects.hash(name, description, price, quantity);
     }
     
+	/**
+	 * Gets the id of this product. Every product object gets its own id when it
+	 * is created, starting from 1, so the id tells two objects apart even when
+	 * all their fields are equal. It is not saved to JSON.
+	 *
+	 * @return The product's id.
+	 */
+	@JsonIgnore
+	public int getId() {
+		return this.id;
+	}
+
 	/**
 	 * Gets the name of the product.
 	 *
@@ -64,6 +112,7 @@ public class SalableProduct implements Comparable<SalableProduct> {
 	 */
 	public void setName(String name) {
 		this.name = name;
+		notifyChanged();
 	}
 
 	/**
@@ -82,6 +131,7 @@ public class SalableProduct implements Comparable<SalableProduct> {
 	 */
 	public void setDescription(String description) {
 		this.description = description;
+		notifyChanged();
 	}
 
 	/**
@@ -100,6 +150,7 @@ public class SalableProduct implements Comparable<SalableProduct> {
 	 */
 	public void setPrice(double price) {
 		this.price = price;
+		notifyChanged();
 	}
 
 	/**
@@ -118,6 +169,7 @@ public class SalableProduct implements Comparable<SalableProduct> {
 	 */
 	public void setQuantity(int quantity) {
 		this.quantity = quantity;
+		notifyChanged();
 	}
 
 	@Override
@@ -129,4 +181,35 @@ public class SalableProduct implements Comparable<SalableProduct> {
 		return Double.compare(this.getPrice(), o.getPrice());
 	}
 
+	/**
+	 * Gets a number that goes up every time a setter changes this product, so a
+	 * copy made from the product can tell whether it is out of date. The version
+	 * is moved on atomically, so setters called from several threads at once are
+	 * each counted.
+	 *
+	 * @return The product's version.
+	 */
+	@JsonIgnore
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Sets the listener that is told when a setter changes this product. The
+	 * inventory that holds the product uses this to keep its indexes current.
+	 *
+	 * @param listener the listener, or null to stop listening
+	 */
+	void watchChanges(ProductChangeListener listener) {
+		this.changeListener = listener;
+	}
+
+	private void notifyChanged() {
+		VERSION.getAndAdd(this, 1);
+		ProductChangeListener listener = this.changeListener;
+		if (listener != null) {
+			listener.productChanged(this);
+		}
+	}
+
 }
@@ -0,0 +1,334 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * SearchIndex is an inverted index over the words in product names and
+ * descriptions.
+ *
+ * Words are kept in a sorted dictionary so every word starting with a prefix
+ * can be found with one range lookup. For misspelled words, each dictionary
+ * word is also stored under every way of deleting one of its letters, which
+ * finds words one edit away without scanning the dictionary.
+ *
+ * Each query word must match. Exact matches score highest, then prefix
+ * matches, then one-edit matches, and a word found in the name counts more
+ * than one found in the description.
+ *
+ * This class is not thread safe; {@link InventoryManager} guards it with its
+ * lock.
+ */
+public class SearchIndex {
+
+	private static final int NAME_WEIGHT = 2;
+	private static final int DESCRIPTION_WEIGHT = 1;
+	private static final double EXACT_MATCH = 1.0;
+	private static final double PREFIX_MATCH = 0.5;
+	private static final double FUZZY_MATCH = 0.3;
+	private static final int MIN_FUZZY_LENGTH = 4;
+
+	/** Word to the products containing it and their field weight. */
+	private final TreeMap<String, Map<SalableProduct, Integer>> postings = new TreeMap<>();
+	/** A word with one letter deleted to the dictionary words it came from. */
+	private final Map<String, Set<String>> deletions = new HashMap<>();
+	/** The name and description each product was indexed with. */
+	private final Map<SalableProduct, String[]> indexedText = new IdentityHashMap<>();
+
+	/**
+	 * Adds a product to the index, or re-indexes it if it is already there.
+	 *
+	 * @param product the product to index
+	 */
+	public void add(SalableProduct product) {
+		remove(product);
+		String[] text = { product.getName(), product.getDescription() };
+		indexedText.put(product, text);
+		forEachWord(text, (word, weight) -> {
+			Map<SalableProduct, Integer> products = postings.get(word);
+			if (products == null) {
+				products = new IdentityHashMap<>();
+				postings.put(word, products);
+				addDeletions(word);
+			}
+			products.merge(product, weight, Integer::sum);
+		});
+	}
+
+	/**
+	 * Re-indexes a product after its name or description changed. Does nothing if
+	 * the text is unchanged or the product is not indexed.
+	 *
+	 * @param product the product that changed
+	 */
+	public void update(SalableProduct product) {
+		String[] text = indexedText.get(product);
+		if (text != null && (!same(text[0], product.getName()) || !same(text[1], product.getDescription()))) {
+			add(product);
+		}
+	}
+
+	/**
+	 * Removes a product from the index.
+	 *
+	 * @param product the product to remove
+	 */
+	public void remove(SalableProduct product) {
+		String[] text = indexedText.remove(product);
+		if (text == null) {
+			return;
+		}
+		forEachWord(text, (word, weight) -> {
+			Map<SalableProduct, Integer> products = postings.get(word);
+			if (products != null && products.remove(product) != null && products.isEmpty()) {
+				postings.remove(word);
+				removeDeletions(word);
+			}
+		});
+	}
+
+	/**
+	 * Finds the products matching every word of a query, best match first. The
+	 * last word also matches as a prefix so partly typed queries work.
+	 *
+	 * @param query the words to search for
+	 * @param limit the most results to return
+	 * @return the matching products, ranked
+	 */
+	public List<SalableProduct> search(String query, int limit) {
+		List<String> words = tokenize(query);
+		if (words.isEmpty() || limit <= 0) {
+			return new ArrayList<>();
+		}
+		List<List<Match>> matches = new ArrayList<>();
+		for (int i = 0; i < words.size(); i++) {
+			List<Match> wordMatches = matchWord(words.get(i), i == words.size() - 1);
+			if (wordMatches.isEmpty()) {
+				return new ArrayList<>();
+			}
+			matches.add(wordMatches);
+		}
+		// Start from the word with the fewest products so later words only check
+		// those candidates
+		matches.sort((a, b) -> Integer.compare(productCount(a), productCount(b)));
+
+		Map<SalableProduct, double[]> scores = new IdentityHashMap<>();
+		for (Match match : matches.get(0)) {
+			for (Map.Entry<SalableProduct, Integer> entry : match.products.entrySet()) {
+				double score = match.quality * entry.getValue();
+				double[] current = scores.get(entry.getKey());
+				if (current == null) {
+					scores.put(entry.getKey(), new double[] { score });
+				} else if (score > current[0]) {
+					current[0] = score;
+				}
+			}
+		}
+		for (int i = 1; i < matches.size() && !scores.isEmpty(); i++) {
+			List<Match> wordMatches = matches.get(i);
+			Iterator<Map.Entry<SalableProduct, double[]>> it = scores.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<SalableProduct, double[]> candidate = it.next();
+				double best = 0;
+				for (Match match : wordMatches) {
+					Integer weight = match.products.get(candidate.getKey());
+					if (weight != null) {
+						best = Math.max(best, match.quality * weight);
+					}
+				}
+				if (best == 0) {
+					it.remove();
+				} else {
+					candidate.getValue()[0] += best;
+				}
+			}
+		}
+		return topResults(scores, limit);
+	}
+
+	/**
+	 * Gets the number of distinct words in the index.
+	 *
+	 * @return the dictionary size
+	 */
+	public int getWordCount() {
+		return postings.size();
+	}
+
+	/**
+	 * Splits text into lower case words of letters and digits.
+	 *
+	 * @param text the text to split
+	 * @return the words in order
+	 */
+	static List<String> tokenize(String text) {
+		List<String> words = new ArrayList<>();
+		if (text == null) {
+			return words;
+		}
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				words.add(text.substring(start, i).toLowerCase());
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * The products of one dictionary word and how well that word matched.
+	 */
+	private static class Match {
+		private final Map<SalableProduct, Integer> products;
+		private final double quality;
+
+		Match(Map<SalableProduct, Integer> products, double quality) {
+			this.products = products;
+			this.quality = quality;
+		}
+	}
+
+	private List<Match> matchWord(String word, boolean allowPrefix) {
+		List<Match> matches = new ArrayList<>();
+		Map<SalableProduct, Integer> exact = postings.get(word);
+		if (exact != null) {
+			matches.add(new Match(exact, EXACT_MATCH));
+		}
+		if (allowPrefix) {
+			for (Map<SalableProduct, Integer> products : postings
+					.subMap(word, false, word + Character.MAX_VALUE, false).values()) {
+				matches.add(new Match(products, PREFIX_MATCH));
+			}
+		}
+		if (matches.isEmpty() && word.length() >= MIN_FUZZY_LENGTH) {
+			for (String similar : oneEditAway(word)) {
+				matches.add(new Match(postings.get(similar), FUZZY_MATCH));
+			}
+		}
+		return matches;
+	}
+
+	private static int productCount(List<Match> matches) {
+		int count = 0;
+		for (Match match : matches) {
+			count += match.products.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Finds dictionary words one insertion, deletion or substitution away.
+	 */
+	private Set<String> oneEditAway(String word) {
+		Set<String> similar = new HashSet<>();
+		// The query with a letter deleted may be a dictionary word
+		for (int i = 0; i < word.length(); i++) {
+			String deleted = deleteAt(word, i);
+			if (postings.containsKey(deleted)) {
+				similar.add(deleted);
+			}
+			// Both with a letter deleted at the same spot: a substitution
+			Set<String> sources = deletions.get(deleted);
+			if (sources != null) {
+				similar.addAll(sources);
+			}
+		}
+		// A dictionary word with a letter deleted may be the query
+		Set<String> sources = deletions.get(word);
+		if (sources != null) {
+			similar.addAll(sources);
+		}
+		return similar;
+	}
+
+	private List<SalableProduct> topResults(Map<SalableProduct, double[]> scores, int limit) {
+		Comparator<Map.Entry<SalableProduct, double[]>> ranking = (a, b) -> {
+			int byScore = Double.compare(b.getValue()[0], a.getValue()[0]);
+			return byScore != 0 ? byScore : a.getKey().compareTo(b.getKey());
+		};
+		// Keep only the best few in a heap whose head is the worst of them
+		PriorityQueue<Map.Entry<SalableProduct, double[]>> best = new PriorityQueue<>(
+				Math.min(limit, scores.size()) + 1, ranking.reversed());
+		for (Map.Entry<SalableProduct, double[]> entry : scores.entrySet()) {
+			if (best.size() < limit) {
+				best.add(entry);
+			} else if (ranking.compare(entry, best.peek()) < 0) {
+				best.poll();
+				best.add(entry);
+			}
+		}
+		List<Map.Entry<SalableProduct, double[]>> ranked = new ArrayList<>(best);
+		ranked.sort(ranking);
+		List<SalableProduct> results = new ArrayList<>(ranked.size());
+		for (Map.Entry<SalableProduct, double[]> entry : ranked) {
+			results.add(entry.getKey());
+		}
+		return results;
+	}
+
+	private void addDeletions(String word) {
+		if (word.length() < MIN_FUZZY_LENGTH - 1) {
+			return;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			deletions.computeIfAbsent(deleteAt(word, i), k -> new HashSet<>(2)).add(word);
+		}
+	}
+
+	private void removeDeletions(String word) {
+		if (word.length() < MIN_FUZZY_LENGTH - 1) {
+			return;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			String deleted = deleteAt(word, i);
+			Set<String> sources = deletions.get(deleted);
+			if (sources != null && sources.remove(word) && sources.isEmpty()) {
+				deletions.remove(deleted);
+			}
+		}
+	}
+
+	private static String deleteAt(String word, int index) {
+		return word.substring(0, index) + word.substring(index + 1);
+	}
+
+	private static boolean same(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * Receives each word of a product's text with the weight of its field.
+	 */
+	private interface WordVisitor {
+		void visit(String word, int weight);
+	}
+
+	private static void forEachWord(String[] text, WordVisitor visitor) {
+		// A word in both fields gets both weights, but only once per field
+		Set<String> seen = new HashSet<>();
+		for (String word : tokenize(text[0])) {
+			if (seen.add(word)) {
+				visitor.visit(word, NAME_WEIGHT);
+			}
+		}
+		seen.clear();
+		for (String word : tokenize(text[1])) {
+			if (seen.add(word)) {
+				visitor.visit(word, DESCRIPTION_WEIGHT);
+			}
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package app;
+
+import java.io.File;
+
+/**
+ * ShardNode runs one shard of a catalog spread with a {@link ShardRouter}: an
+ * inventory with no console, served by an {@link AdminService} and saved to its
+ * own file, so several shards can run from one directory.
+ *
+ * Usage: {@code ShardNode <admin port> <inventory file>}
+ */
+public class ShardNode {
+
+	/**
+	 * Entry point for a shard. Loads the inventory file if it exists and serves
+	 * admin commands until the process is stopped.
+	 *
+	 * @param args the admin port and the inventory file
+	 * @throws Exception if the inventory file cannot be read
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println("Usage: ShardNode <admin port> <inventory file>");
+			return;
+		}
+		int port = Integer.parseInt(args[0]);
+		String file = args[1];
+
+		InventoryManager inventory = new InventoryManager();
+		if (new File(file).exists()) {
+			for (SalableProduct product : FileService.loadFromFile(file)) {
+				inventory.addSalableProduct(product);
+			}
+		}
+		// The router loads shards in large batches, so updates answer before the
+		// next flush rather than waiting for each one
+		InventoryPersister persister = new InventoryPersister(inventory, file,
+				InventoryPersister.Durability.ACK_AFTER_APPLY);
+		new AdminService(inventory, port, AdminService.DEFAULT_CACHE_BYTES, persister).run();
+	}
+}
@@ -0,0 +1,325 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ShardRouter spreads one catalog over several store processes, each holding
+ * part of it in its own {@link InventoryManager} behind an
+ * {@link AdminService}, so the catalog can be larger than one heap.
+ *
+ * Products are owned by shard according to a {@link ConsistentHashRing} of
+ * their lower-cased names. Names rather than ids are hashed because ids are
+ * only unique within one process, and because a lookup by name must find the
+ * owner without asking every shard. Lookups, cart adds and updates go to the
+ * owning shard only. Listing and category totals ask every shard at once and
+ * merge the answers.
+ *
+ * Every process that routes with the same shard list agrees on each product's
+ * owner, and adding a shard moves only about one product in every shard count.
+ */
+public class ShardRouter implements AutoCloseable {
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram FIND_TIMER = METRICS.timer("router.find");
+	private static final LatencyHistogram UPDATE_TIMER = METRICS.timer("router.update");
+	private static final LatencyHistogram LIST_TIMER = METRICS.timer("router.list");
+	private static final LatencyHistogram TOTALS_TIMER = METRICS.timer("router.totals");
+	private static final TypeReference<Map<String, Map<String, Number>>> TOTALS = new TypeReference<Map<String, Map<String, Number>>>() {
+	};
+
+	private final ConsistentHashRing ring;
+	private final String[] hosts;
+	private final int[] ports;
+	private final ExecutorService fanOut;
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * The product count, stock and stock value of one category, summed over
+	 * every shard.
+	 */
+	public static class CategoryTotals {
+		private long count;
+		private long stock;
+		private double value;
+
+		/**
+		 * Gets the number of products.
+		 *
+		 * @return the product count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Gets the total quantity in stock.
+		 *
+		 * @return the stock total
+		 */
+		public long getStock() {
+			return stock;
+		}
+
+		/**
+		 * Gets the value of the stock, price times quantity summed.
+		 *
+		 * @return the stock value
+		 */
+		public double getValue() {
+			return value;
+		}
+
+		private void add(Map<String, Number> shard) {
+			count += shard.get("count").longValue();
+			stock += shard.get("stock").longValue();
+			value += shard.get("value").doubleValue();
+		}
+	}
+
+	/**
+	 * Creates a router for the given shards. The shards must be listed the same
+	 * way wherever the catalog is routed.
+	 *
+	 * @param shards each shard's admin address as {@code host:port}
+	 */
+	public ShardRouter(List<String> shards) {
+		this.ring = new ConsistentHashRing(shards);
+		this.hosts = new String[shards.size()];
+		this.ports = new int[shards.size()];
+		for (int i = 0; i < shards.size(); i++) {
+			int colon = shards.get(i).lastIndexOf(':');
+			hosts[i] = shards.get(i).substring(0, colon);
+			ports[i] = Integer.parseInt(shards.get(i).substring(colon + 1));
+		}
+		this.fanOut = Executors.newFixedThreadPool(shards.size(), task -> {
+			Thread thread = new Thread(task, "shard-router");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Gets the number of shards.
+	 *
+	 * @return the shard count
+	 */
+	public int getShardCount() {
+		return hosts.length;
+	}
+
+	/**
+	 * Gets the shard that owns a product.
+	 *
+	 * @param productName the product's name, in any case
+	 * @return the shard's index in the list the router was created with
+	 */
+	public int shardFor(String productName) {
+		return ring.nodeFor(productName.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Looks a product up on the shard that owns it.
+	 *
+	 * @param name the product's name, in any case
+	 * @return a copy of the product, or null if there is none
+	 * @throws IOException if the shard cannot be reached
+	 */
+	public SalableProduct getProductByName(String name) throws IOException {
+		long start = METRICS.start();
+		try {
+			return mapper.readValue(request(shardFor(name), "N", name), SalableProduct.class);
+		} finally {
+			METRICS.stop(FIND_TIMER, start);
+		}
+	}
+
+	/**
+	 * Adds a product to a cart if its shard has enough in stock, as
+	 * {@link StoreFront} does for a local inventory. A lookup returns a new copy
+	 * each time, so the copy already in the cart is used if there is one.
+	 *
+	 * @param cart        the cart to add to
+	 * @param productName the product's name
+	 * @param qty         the quantity to add
+	 * @return the result of the operation
+	 * @throws IOException if the shard cannot be reached
+	 */
+	public CartResult addToCart(ShoppingCart cart, String productName, int qty) throws IOException {
+		SalableProduct product = getProductByName(productName);
+		if (product == null || product.getQuantity() < qty) {
+			return new CartResult(CartResult.Status.NOT_AVAILABLE, productName, qty, 0);
+		}
+		for (SalableProduct inCart : cart.getProductsInCart().keySet()) {
+			if (inCart.getName().equalsIgnoreCase(product.getName())) {
+				product = inCart;
+				break;
+			}
+		}
+		cart.addToCart(product, qty);
+		return new CartResult(CartResult.Status.ADDED, product.getName(), qty, 0);
+	}
+
+	/**
+	 * Adds products to the inventory, sending each shard the products it owns in
+	 * one update. Shards are updated at the same time.
+	 *
+	 * @param products the products to add
+	 * @throws IOException if a shard cannot be reached or refuses its update
+	 */
+	public void update(List<SalableProduct> products) throws IOException {
+		long start = METRICS.start();
+		Map<Integer, List<SalableProduct>> byShard = new HashMap<>();
+		for (SalableProduct product : products) {
+			byShard.computeIfAbsent(shardFor(product.getName()), shard -> new ArrayList<>()).add(product);
+		}
+		List<Callable<Void>> updates = new ArrayList<>();
+		for (Map.Entry<Integer, List<SalableProduct>> entry : byShard.entrySet()) {
+			updates.add(() -> {
+				String payload = mapper.writerFor(FileService.PRODUCT_LIST).writeValueAsString(entry.getValue());
+				String reply = request(entry.getKey(), "U", payload);
+				if (!"Inventory updated successfully".equals(reply)) {
+					throw new IOException("Shard " + ring.getNodes().get(entry.getKey()) + ": " + reply);
+				}
+				return null;
+			});
+		}
+		try {
+			invokeAll(updates);
+		} finally {
+			METRICS.stop(UPDATE_TIMER, start);
+		}
+	}
+
+	/**
+	 * Gets every product on every shard, sorted by name and then price as
+	 * {@link InventoryManager#sortByNameThenPrice()} sorts them.
+	 *
+	 * @return copies of the products
+	 * @throws IOException if a shard cannot be reached
+	 */
+	public List<SalableProduct> getAllProducts() throws IOException {
+		long start = METRICS.start();
+		try {
+			List<Callable<SalableProduct[]>> retrieves = new ArrayList<>();
+			for (int shard = 0; shard < hosts.length; shard++) {
+				final int index = shard;
+				retrieves.add(() -> mapper.readValue(request(index, "R", null), SalableProduct[].class));
+			}
+			List<SalableProduct> products = new ArrayList<>();
+			for (SalableProduct[] shardProducts : invokeAll(retrieves)) {
+				Collections.addAll(products, shardProducts);
+			}
+			Collections.sort(products);
+			return products;
+		} finally {
+			METRICS.stop(LIST_TIMER, start);
+		}
+	}
+
+	/**
+	 * Gets each category's product count, stock and stock value, summed over
+	 * every shard.
+	 *
+	 * @return the totals of every category
+	 * @throws IOException if a shard cannot be reached
+	 */
+	public Map<ProductCategory, CategoryTotals> getCategoryTotals() throws IOException {
+		long start = METRICS.start();
+		try {
+			List<Callable<Map<String, Map<String, Number>>>> requests = new ArrayList<>();
+			for (int shard = 0; shard < hosts.length; shard++) {
+				final int index = shard;
+				requests.add(() -> mapper.readValue(request(index, "A", null), TOTALS));
+			}
+			Map<ProductCategory, CategoryTotals> totals = new EnumMap<>(ProductCategory.class);
+			for (ProductCategory category : ProductCategory.values()) {
+				totals.put(category, new CategoryTotals());
+			}
+			for (Map<String, Map<String, Number>> shard : invokeAll(requests)) {
+				for (Map.Entry<String, Map<String, Number>> entry : shard.entrySet()) {
+					totals.get(ProductCategory.valueOf(entry.getKey())).add(entry.getValue());
+				}
+			}
+			return totals;
+		} finally {
+			METRICS.stop(TOTALS_TIMER, start);
+		}
+	}
+
+	/**
+	 * Stops the threads that ask the shards in parallel.
+	 */
+	@Override
+	public void close() {
+		fanOut.shutdownNow();
+	}
+
+	/**
+	 * Runs requests to several shards at the same time and waits for all of
+	 * them.
+	 */
+	private <T> List<T> invokeAll(List<Callable<T>> requests) throws IOException {
+		List<Future<T>> futures = new ArrayList<>();
+		for (Callable<T> request : requests) {
+			futures.add(fanOut.submit(request));
+		}
+		List<T> results = new ArrayList<>();
+		try {
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the shards", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Sends one admin command to a shard and reads its one-line reply.
+	 *
+	 * @param payload the line to send after the command, or null for none
+	 */
+	private String request(int shard, String command, String payload) throws IOException {
+		try (Socket socket = new Socket(hosts[shard], ports[shard])) {
+			OutputStream out = socket.getOutputStream();
+			StringBuilder message = new StringBuilder(command).append('\n');
+			if (payload != null) {
+				message.append(payload).append('\n');
+			}
+			out.write(message.toString().getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			String reply = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+					.readLine();
+			if (reply == null) {
+				throw new IOException("Shard " + ring.getNodes().get(shard) + " closed without a reply");
+			}
+			return reply;
+		}
+	}
+}
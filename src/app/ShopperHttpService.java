@@ -0,0 +1,311 @@
+package app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * ShopperHttpService exposes the shopper actions over HTTP with JSON
+ * responses. Every cart request needs a {@code session} query parameter.
+ * Product lists are sent as arrays so each product keeps its "type" property.
+ *
+ * It supports:
+ * <ul>
+ * <li>POST /session - open a session, or 503 if too many are open</li>
+ * <li>GET /inventory?category=&amp;page=&amp;size= - one page of the inventory,
+ * or of one category, of at most {@link #MAX_PAGE_SIZE} products</li>
+ * <li>GET /search?q=&amp;limit= - search product names and descriptions</li>
+ * <li>GET /cart?session= - view the cart and its total</li>
+ * <li>POST /cart/add?session=&amp;product=&amp;qty= - add to cart</li>
+ * <li>POST /cart/remove?session=&amp;product=&amp;qty= - remove from cart</li>
+ * <li>POST /cart/purchase?session= - purchase the cart</li>
+ * </ul>
+ *
+ * @see StoreSessionManager
+ */
+public class ShopperHttpService {
+
+	/** The most products one page of the inventory may hold. */
+	public static final int MAX_PAGE_SIZE = 200;
+
+	/** The most search results one request may ask for. */
+	public static final int MAX_SEARCH_LIMIT = 100;
+
+	private final StoreSessionManager sessions;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final HttpServer server;
+
+	/**
+	 * Creates the service. The server does not accept requests until
+	 * {@link #start()} is called. Its responses are sent without waiting for the
+	 * client's delayed ACK only if {@code sun.net.httpserver.nodelay} is set to
+	 * true before the first server is created, as {@link StoreFront} does.
+	 *
+	 * @param sessions the session manager that handles shopper actions
+	 * @param port     the port to listen on, or 0 for any free port
+	 * @param executor the executor that runs request handlers
+	 * @throws IOException if the port cannot be bound
+	 */
+	public ShopperHttpService(StoreSessionManager sessions, int port, Executor executor) throws IOException {
+		this.sessions = sessions;
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.server.setExecutor(executor);
+		// Contexts match any path they prefix, so each route checks its full path
+		this.server.createContext("/session", exchange -> handle(exchange, "/session", "POST", this::openSession));
+		this.server.createContext("/inventory", exchange -> handle(exchange, "/inventory", "GET", this::inventory));
+		this.server.createContext("/search", exchange -> handle(exchange, "/search", "GET", this::search));
+		this.server.createContext("/cart", exchange -> handle(exchange, null, null, this::cart));
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+		System.out.println("ShopperHttpService is running on port " + getPort());
+	}
+
+	/**
+	 * Writes a page of the inventory, a cart and a purchase as JSON without
+	 * sending them, so the first shoppers do not wait for this service's
+	 * serializers to be built. Call it before {@link #start()}.
+	 *
+	 * @throws IOException if a response cannot be written
+	 */
+	public void warm() throws IOException {
+		mapper.writeValueAsBytes(sessions.getInventory().getProductsPage(0, 50).toArray(new SalableProduct[0]));
+		mapper.writeValueAsBytes(cartContents(new ShoppingCart()));
+		mapper.writeValueAsBytes(result(new CartResult(CartResult.Status.PURCHASED, null, 0, 0)));
+		mapper.writeValueAsBytes(error("Not found"));
+	}
+
+	/**
+	 * Stops the server, waiting up to the given number of seconds for requests in
+	 * progress to finish.
+	 *
+	 * @param delaySeconds the longest time to wait
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+	}
+
+	/**
+	 * Gets the port the server is bound to.
+	 *
+	 * @return the port number
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Handles one route and returns the object to send back as JSON.
+	 */
+	private interface Route {
+		Object handle(String path, Map<String, String> params) throws HttpError;
+	}
+
+	/**
+	 * A request that cannot be served, with the HTTP status to answer with.
+	 */
+	private static class HttpError extends Exception {
+		private static final long serialVersionUID = 1L;
+		private final int status;
+
+		HttpError(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	private void handle(HttpExchange exchange, String exactPath, String method, Route route) throws IOException {
+		int status = 200;
+		Object body;
+		try {
+			if (exactPath != null && !exactPath.equals(exchange.getRequestURI().getPath())) {
+				throw new HttpError(404, "Not found");
+			}
+			if (method != null && !method.equals(exchange.getRequestMethod())) {
+				throw new HttpError(405, "Method not allowed");
+			}
+			body = route.handle(exchange.getRequestURI().getPath(), parseQuery(exchange.getRequestURI().getRawQuery()));
+		} catch (HttpError e) {
+			status = e.status;
+			body = error(e.getMessage());
+		} catch (RuntimeException e) {
+			status = 500;
+			body = error("Internal error");
+		}
+		byte[] bytes = mapper.writeValueAsBytes(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private Object openSession(String path, Map<String, String> params) throws HttpError {
+		String sessionId = sessions.openSession();
+		if (sessionId == null) {
+			throw new HttpError(503, "Too many sessions");
+		}
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("session", sessionId);
+		return body;
+	}
+
+	private Object inventory(String path, Map<String, String> params) throws HttpError {
+		int page = intParam(params, "page", 0);
+		int size = intParam(params, "size", 50);
+		if (size > MAX_PAGE_SIZE) {
+			throw new HttpError(400, "Size must be at most " + MAX_PAGE_SIZE);
+		}
+		if ((long) page * size > Integer.MAX_VALUE) {
+			throw new HttpError(400, "Page is out of range");
+		}
+		if (!params.containsKey("category")) {
+			return sessions.getInventory().getProductsPage(page, size).toArray(new SalableProduct[0]);
+		}
+		ProductCategory category = ProductCategory.fromName(params.get("category"));
+		if (category == null) {
+			throw new HttpError(400, "Unknown category");
+		}
+		return sessions.getInventory().getProductsByCategory(category, page, size).toArray(new SalableProduct[0]);
+	}
+
+	private Object search(String path, Map<String, String> params) throws HttpError {
+		int limit = intParam(params, "limit", 20);
+		if (limit > MAX_SEARCH_LIMIT) {
+			throw new HttpError(400, "Limit must be at most " + MAX_SEARCH_LIMIT);
+		}
+		return sessions.getInventory().search(required(params, "q"), limit).toArray(new SalableProduct[0]);
+	}
+
+	private Object cart(String path, Map<String, String> params) throws HttpError {
+		String sessionId = params.get("session");
+		ShoppingCart cart = sessionId == null ? null : sessions.getCart(sessionId);
+		if (cart == null) {
+			throw new HttpError(404, "Session not found");
+		}
+		switch (path) {
+		case "/cart":
+			return cartContents(cart);
+		case "/cart/add":
+			return result(sessions.addToCart(sessionId, required(params, "product"), quantity(params)));
+		case "/cart/remove":
+			return result(sessions.removeFromCart(sessionId, required(params, "product"), quantity(params)));
+		case "/cart/purchase":
+			return result(sessions.purchaseFromCart(sessionId));
+		default:
+			throw new HttpError(404, "Not found");
+		}
+	}
+
+	private Map<String, Object> cartContents(ShoppingCart cart) {
+		List<Map<String, Object>> lines = new ArrayList<>();
+		double total;
+		synchronized (cart) {
+			for (Map.Entry<SalableProduct, Integer> entry : cart.getProductsInCart().entrySet()) {
+				Map<String, Object> line = new LinkedHashMap<>();
+				line.put("name", entry.getKey().getName());
+				line.put("price", entry.getKey().getPrice());
+				line.put("quantity", entry.getValue());
+				lines.add(line);
+			}
+			total = cart.getTotalPrice();
+		}
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("products", lines);
+		body.put("total", total);
+		return body;
+	}
+
+	private static Map<String, Object> result(CartResult result) {
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("success", result.isSuccess());
+		body.put("status", result.getStatus().name());
+		if (result.getStatus() == CartResult.Status.PURCHASED) {
+			body.put("total", result.getTotal());
+		} else if (result.getStatus() == CartResult.Status.EXCEEDS_CART_QUANTITY) {
+			body.put("inCart", result.getQuantity());
+		}
+		return body;
+	}
+
+	private static Map<String, Object> error(String message) {
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("success", false);
+		body.put("message", message);
+		return body;
+	}
+
+	private static String required(Map<String, String> params, String name) throws HttpError {
+		String value = params.get(name);
+		if (value == null || value.isEmpty()) {
+			throw new HttpError(400, "Missing parameter: " + name);
+		}
+		return value;
+	}
+
+	private static int intParam(Map<String, String> params, String name, int defaultValue) throws HttpError {
+		String value = params.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int number = Integer.parseInt(value);
+			if (number < 0) {
+				throw new HttpError(400, "Parameter must not be negative: " + name);
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw new HttpError(400, "Parameter must be a number: " + name);
+		}
+	}
+
+	private static int quantity(Map<String, String> params) throws HttpError {
+		try {
+			int qty = Integer.parseInt(required(params, "qty"));
+			if (qty <= 0) {
+				throw new HttpError(400, "Quantity must be positive");
+			}
+			return qty;
+		} catch (NumberFormatException e) {
+			throw new HttpError(400, "Quantity must be a number");
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<>();
+		if (query == null) {
+			return params;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0) {
+				params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+			}
+		}
+		return params;
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -1,20 +1,24 @@
 package app;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Represents a shopping cart that holds SalableProducts and their quantities.
+ * 
+ * Products are keyed by their id rather than their hash code, which includes
+ * the stock quantity and changes whenever another shopper buys the same
+ * product. Quantities are kept as plain ints, so adding and removing do not
+ * allocate.
  */
 public class ShoppingCart {
 
-	private Map<SalableProduct, Integer> productsInCart;
+	private final CartLines productsInCart;
 
 	/**
 	 * Constructs an empty shopping cart.
 	 */
 	public ShoppingCart() {
-		this.productsInCart = new HashMap<>();
+		this.productsInCart = new CartLines();
 	}
 
 	/**
@@ -25,7 +29,7 @@ public class ShoppingCart {
 	 * @param qty     The quantity to add.
 	 */
 	public void addToCart(SalableProduct product, int qty) {
-		productsInCart.put(product, productsInCart.getOrDefault(product, 0) + qty);
+		productsInCart.add(product, qty);
 	}
 
 	/**
@@ -37,23 +41,36 @@ public class ShoppingCart {
 	 * @param qty     The quantity to remove.
 	 */
 	public void removeFromCart(SalableProduct product, int qty) {
-		if (productsInCart.containsKey(product)) {
-			int currentQty = productsInCart.get(product);
-			if (qty >= currentQty) {
-				productsInCart.remove(product);
-			} else {
-				productsInCart.put(product, currentQty - qty);
-			}
-		}
+		productsInCart.remove(product, qty);
 	}
 
 	/**
-	 * Gets the productsInCart and their quantities in the cart.
+	 * Gets the quantity of a product in the cart.
 	 * 
-	 * @return A map of SalableProduct to quantity.
+	 * @param product The product to look up.
+	 * @return The quantity in the cart, or 0 if the product is not in it.
+	 */
+	public int getQuantity(SalableProduct product) {
+		return productsInCart.get(product);
+	}
+
+	/**
+	 * Checks whether the cart has no products.
+	 * 
+	 * @return true if the cart is empty.
+	 */
+	public boolean isEmpty() {
+		return productsInCart.size() == 0;
+	}
+
+	/**
+	 * Gets a copy of the productsInCart and their quantities in the cart. Later
+	 * changes to the cart do not change the copy.
+	 * 
+	 * @return A new map of SalableProduct to quantity, keyed by identity.
 	 */
 	public Map<SalableProduct, Integer> getProductsInCart() {
-		return this.productsInCart;
+		return productsInCart.toMap();
 	}
 
 	/**
@@ -70,11 +87,7 @@ public class ShoppingCart {
 	 * @return The total price of the cart.
 	 */
 	public double getTotalPrice() {
-		double totalPrice = 0.0;
-		for (Map.Entry<SalableProduct, Integer> entry : productsInCart.entrySet()) {
-			totalPrice += entry.getKey().getPrice() * entry.getValue();
-		}
-		return totalPrice;
+		return productsInCart.totalPrice();
 	}
 
 }
@@ -1,11 +1,13 @@
 package app;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.io.File;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 /*
  * The StoreFront class represents a storefront in a retail system, where customers can view and purchase products.
@@ -18,14 +20,51 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * @see SalableProduct
  */
 public class StoreFront {
+	private static final int INVENTORY_PAGE_SIZE = 20;
+	/** The session the console shopper's cart is saved under. */
+	private static final String CONSOLE_SESSION = "console";
+	/** The file the inventory is saved to as it changes. */
+	static final String INVENTORY_FILE = AdminService.DEFAULT_INVENTORY_FILE;
+	/** The file the inventory is saved to at shutdown, for a fast start. */
+	static final String SNAPSHOT_FILE = "Inventory.snapshot";
+	/** The folder purchases are recorded in. */
+	static final String ORDERS_FOLDER = "orders";
+	/** The file parked carts are saved in. */
+	static final String CARTS_FILE = "carts.dat";
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram ADD_TIMER = METRICS.timer("cart.add");
+	private static final LatencyHistogram REMOVE_TIMER = METRICS.timer("cart.remove");
+	private static final LatencyHistogram PURCHASE_TIMER = METRICS.timer("cart.purchase");
+	private static final LongAdder ADD_REJECTED = METRICS.counter("cart.add.rejected");
+	private static final LongAdder REMOVE_REJECTED = METRICS.counter("cart.remove.rejected");
+	private static final LongAdder PURCHASE_OUT_OF_STOCK = METRICS.counter("cart.purchase.outOfStock");
+	private static final LongAdder PURCHASE_UNITS = METRICS.counter("cart.purchase.units");
+	private static final LongAdder ORDER_LOG_FAILURES = METRICS.counter("orders.failures");
+
 	private InventoryManager productInventory;
 	private ShoppingCart cart;
+	private OrderLog orderLog;
+	private CartStore cartStore;
+	private InventoryRenderer renderer = new InventoryRenderer(System.out);
+	private final File dataDir;
 
 	/**
 	 * Constructs a new StoreFront instance. Initializes the product inventory with
 	 * products from a JSON file or default products if the file cannot be read.
 	 */
 	public StoreFront() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a StoreFront that keeps its files in a folder of its own, so
+	 * several stores can run from one place.
+	 * 
+	 * @param dataDir the folder holding the inventory file and its snapshot, or
+	 *                null for the working directory
+	 */
+	public StoreFront(File dataDir) {
+		this.dataDir = dataDir;
 		this.productInventory = new InventoryManager();
 		this.cart = new ShoppingCart();
 		initializeSampleProducts();
@@ -36,15 +75,33 @@ public class StoreFront {
 	 * JSON file to populate the inventory. If reading the file fails (e.g., the
 	 * file doesn't exist or is malformed), it adds default products to the
 	 * inventory.
+	 * 
+	 * A snapshot written at the last shutdown is read instead of the JSON file
+	 * when it is at least as new, since it loads several times faster.
 	 */
 	private void initializeSampleProducts() {
+		long start = System.nanoTime();
+		File snapshot = getDataFile(SNAPSHOT_FILE);
+		File json = getDataFile(INVENTORY_FILE);
+		SalableProduct[] product = null;
+		String source = json.getPath();
+		if (snapshot.isFile() && snapshot.lastModified() >= json.lastModified()) {
+			try {
+				product = FileService.loadSnapshot(snapshot.getPath());
+				source = snapshot.getPath();
+			} catch (IOException e) {
+				System.out.println("Unable to read the snapshot; reading " + json.getPath() + " instead");
+			}
+		}
 		try {
-			File file = new File("Inventory.json");
-			ObjectMapper objectMapper = new ObjectMapper();
-			SalableProduct[] product = objectMapper.readValue(file, SalableProduct[].class);
+			if (product == null) {
+				product = FileService.loadFromFile(json.getPath());
+			}
 			for (int i = 0; i < product.length; i++) {
 				productInventory.addSalableProduct(product[i]);
 			}
+			System.out.printf("Loaded %d products from %s in %.1f ms\n", product.length, source,
+					(System.nanoTime() - start) / 1e6);
 		} catch (Exception e) {
 //			e.printStackTrace();
 			System.out.println("Unable to read saved inventory adding default inventory to the store");
@@ -57,6 +114,16 @@ public class StoreFront {
 		}
 	}
 
+	/**
+	 * Gets one of the store's files, in its data folder.
+	 * 
+	 * @param name the file's name
+	 * @return the file
+	 */
+	File getDataFile(String name) {
+		return new File(dataDir, name);
+	}
+
 	/**
 	 * Gets the product inventory.
 	 * 
@@ -67,27 +134,12 @@ public class StoreFront {
 	}
 
 	/**
-	 * Gets the current shopping cart.
+	 * Gets the current shopping cart. Use {@link ConsoleView#printCart} to show
+	 * it.
 	 * 
 	 * @return Cart instance
 	 */
 	public ShoppingCart viewCart() {
-		Map<SalableProduct, Integer> products = cart.getProductsInCart();
-
-		if (products.isEmpty()) {
-			System.out.println("Your cart is empty.");
-		} else {
-			System.out.println("\n------------------------------- Cart Contents -------------------------------");
-			// Iterate over the map and print product details
-			for (Map.Entry<SalableProduct, Integer> entry : products.entrySet()) {
-				SalableProduct product = entry.getKey();
-				int quantity = entry.getValue();
-				System.out.printf("Name: %s | Description: %s | Price: $%.2f | Quantity: %d\n", product.getName(),
-						product.getDescription(), product.getPrice(), quantity);
-			}
-			System.out.println("-----------------------------------------------------------------------------");
-		}
-
 		return cart;
 	}
 
@@ -100,87 +152,220 @@ public class StoreFront {
 		productInventory.addSalableProduct(product);
 	}
 
+	/**
+	 * Searches the inventory by product name and description.
+	 * 
+	 * @param query words to search for; the last word can be partly typed
+	 * @param limit the most products to return
+	 * @return the matching products, best match first
+	 * @see InventoryManager#search(String, int)
+	 */
+	public List<SalableProduct> searchProducts(String query, int limit) {
+		return productInventory.search(query, limit);
+	}
+
 	/**
 	 * Adds a product to the cart by product name and quantity.
 	 * 
 	 * @param productName Name of the product
 	 * @param qty         Quantity to add
+	 * @return {@code ADDED} or {@code NOT_AVAILABLE}
 	 */
-	public void addToCart(String productName, int qty) {
-		SalableProduct product = productInventory.getProductByName(productName);
+	public CartResult addToCart(String productName, int qty) {
+		return addToCart(productInventory, cart, productName, qty);
+	}
 
-		if (product != null && product.getQuantity() >= qty) {
-			System.out.println("Product added to cart");
-			cart.addToCart(product, qty);
-			System.out.println(
-					"--------------------------------------------------------------------------------------------");
-			System.out.println(
-					"--------------------------------------------------------------------------------------------");
-		} else {
-			System.out.println("Product not available in desired quantity.");
-			System.out.println(
-					"--------------------------------------------------------------------------------------------");
-			System.out.println(
-					"--------------------------------------------------------------------------------------------");
+	/**
+	 * Removes a quantity of a product from the cart by product name.
+	 * 
+	 * @param productName Name of the product
+	 * @param qty         Quantity to remove
+	 * @return {@code REMOVED}, {@code NOT_IN_CART} or
+	 *         {@code EXCEEDS_CART_QUANTITY}
+	 */
+	public CartResult removeFromCart(String productName, int qty) {
+		return removeFromCart(productInventory, cart, productName, qty);
+	}
+
+	/**
+	 * Purchases all items in the cart and updates inventory accordingly.
+	 * 
+	 * @return {@code PURCHASED}, {@code CART_EMPTY} or {@code OUT_OF_STOCK}
+	 */
+	public CartResult purchaseFromCart() {
+		CartResult result = purchaseFromCart(productInventory, cart, orderLog);
+		if (result.getStatus() == CartResult.Status.PURCHASED && cartStore != null) {
+			try {
+				cartStore.remove(CONSOLE_SESSION);
+			} catch (IOException e) {
+				System.out.println("Unable to remove the saved cart: " + e.getMessage());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the cart store a cancelled purchase's cart is saved in, and restores
+	 * the cart saved there by an earlier run, if there is one.
+	 * 
+	 * @param cartStore the cart store, or null to keep the cart in memory only
+	 */
+	public void setCartStore(CartStore cartStore) {
+		this.cartStore = cartStore;
+		if (cartStore == null) {
+			return;
+		}
+		try {
+			ShoppingCart saved = cartStore.load(CONSOLE_SESSION, productInventory);
+			if (saved != null && cart.isEmpty()) {
+				cart = saved;
+				System.out.println("Your saved cart has been restored.");
+			}
+		} catch (IOException e) {
+			System.out.println("Unable to restore the saved cart: " + e.getMessage());
 		}
 	}
 
 	/**
-	 * Represents the main interface and logic for the store front application.
+	 * Sets the order log purchases from the cart are recorded in.
+	 * 
+	 * @param orderLog the order log, or null to record nothing
 	 */
-	public void removeFromCart(String productName, int qty) {
-		SalableProduct product = productInventory.getProductByName(productName);
-		// Check if the product exists in the cart
-		if (product != null && cart.getProductsInCart().containsKey(product)) {
-			int currentQtyInCart = cart.getProductsInCart().get(product);
+	public void setOrderLog(OrderLog orderLog) {
+		this.orderLog = orderLog;
+	}
 
-			// Check if the quantity to remove is valid
-			if (qty <= currentQtyInCart) {
-				System.out.println("Product removed from cart");
-				cart.removeFromCart(product, qty);
-				System.out.println(
-						"--------------------------------------------------------------------------------------------");
-			} else {
-				System.out.println("Cannot remove more than the quantity in your cart.");
-				System.out.println("You currently have " + currentQtyInCart + " of this product in your cart.");
-				System.out.println(
-						"--------------------------------------------------------------------------------------------");
+	/**
+	 * Adds a product to the given cart if the inventory has enough of it.
+	 * 
+	 * @param inventory   the inventory to look the product up in
+	 * @param cart        the cart to add to
+	 * @param productName Name of the product
+	 * @param qty         Quantity to add
+	 * @return the result of the operation
+	 */
+	static CartResult addToCart(InventoryManager inventory, ShoppingCart cart, String productName, int qty) {
+		long start = METRICS.start();
+		try {
+			SalableProduct product = inventory.getProductByName(productName);
+			if (product == null || product.getQuantity() < qty) {
+				METRICS.increment(ADD_REJECTED);
+				return new CartResult(CartResult.Status.NOT_AVAILABLE, productName, qty, 0);
 			}
-		} else {
-			System.out.println("Product not found in cart.");
-			System.out.println(
-					"--------------------------------------------------------------------------------------------");
+			cart.addToCart(product, qty);
+			return new CartResult(CartResult.Status.ADDED, product.getName(), qty, 0);
+		} finally {
+			METRICS.stop(ADD_TIMER, start);
 		}
 	}
 
 	/**
-	 * Purchases all items in the cart and updates inventory accordingly.
+	 * Removes a quantity of a product from the given cart.
+	 * 
+	 * @param inventory   the inventory to look the product up in
+	 * @param cart        the cart to remove from
+	 * @param productName Name of the product
+	 * @param qty         Quantity to remove
+	 * @return the result of the operation
 	 */
-	public void purchaseFromCart() {
-		double totalPrice = cart.getTotalPrice();
+	static CartResult removeFromCart(InventoryManager inventory, ShoppingCart cart, String productName, int qty) {
+		long start = METRICS.start();
+		try {
+			SalableProduct product = inventory.getProductByName(productName);
+			int currentQtyInCart = product == null ? 0 : cart.getQuantity(product);
+			if (currentQtyInCart == 0) {
+				METRICS.increment(REMOVE_REJECTED);
+				return new CartResult(CartResult.Status.NOT_IN_CART, productName, qty, 0);
+			}
+			// Check if the quantity to remove is valid
+			if (qty > currentQtyInCart) {
+				METRICS.increment(REMOVE_REJECTED);
+				return new CartResult(CartResult.Status.EXCEEDS_CART_QUANTITY, product.getName(), currentQtyInCart,
+						0);
+			}
+			cart.removeFromCart(product, qty);
+			return new CartResult(CartResult.Status.REMOVED, product.getName(), qty, 0);
+		} finally {
+			METRICS.stop(REMOVE_TIMER, start);
+		}
+	}
 
-		if (totalPrice > 0) {
-			System.out.printf("Your total is $%.2f. Proceeding with purchase...\n", totalPrice);
+	/**
+	 * Purchases everything in the given cart. The cart is cleared only if the
+	 * inventory had enough stock for every product in it.
+	 * 
+	 * @param inventory the inventory to take stock from
+	 * @param cart      the cart to purchase
+	 * @return the result of the operation
+	 */
+	static CartResult purchaseFromCart(InventoryManager inventory, ShoppingCart cart) {
+		return purchaseFromCart(inventory, cart, null);
+	}
 
+	/**
+	 * Purchases everything in the given cart and records the order. The cart is
+	 * cleared only if the inventory had enough stock for every product in it.
+	 * 
+	 * @param inventory the inventory to take stock from
+	 * @param cart      the cart to purchase
+	 * @param orderLog  the order log to record the purchase in, or null
+	 * @return the result of the operation
+	 */
+	static CartResult purchaseFromCart(InventoryManager inventory, ShoppingCart cart, OrderLog orderLog) {
+		long start = METRICS.start();
+		try {
+			if (cart.isEmpty()) {
+				return new CartResult(CartResult.Status.CART_EMPTY);
+			}
+			Map<SalableProduct, Integer> lines = cart.getProductsInCart();
+			// Priced once, so the total charged and the order recorded agree
+			List<Order.Line> orderLines = Order.linesOf(lines);
+			double totalPrice = Order.totalOf(orderLines);
+			if (inventory.isReadOnly()) {
+				return new CartResult(CartResult.Status.READ_ONLY, null, 0, totalPrice);
+			}
 			// Process purchase and update inventory
-			Map<SalableProduct, Integer> cartProducts = cart.getProductsInCart();
-			for (Map.Entry<SalableProduct, Integer> entry : cartProducts.entrySet()) {
-				SalableProduct product = entry.getKey();
-				int qtyPurchased = entry.getValue();
-
-				productInventory.removeSalableProduct(product, product.getQuantity() - qtyPurchased);
+			if (!inventory.purchase(lines)) {
+				METRICS.increment(PURCHASE_OUT_OF_STOCK);
+				return new CartResult(CartResult.Status.OUT_OF_STOCK, null, 0, totalPrice);
 			}
-
+			if (METRICS.isEnabled()) {
+				for (int units : lines.values()) {
+					PURCHASE_UNITS.add(units);
+				}
+			}
+			recordOrders(orderLog, List.of(orderLines));
 			// Clear the cart after purchase
 			cart.clearCart();
-			System.out.println("Purchase completed!");
-		} else {
-			System.out.println("Your cart is empty, cannot proceed with purchase.");
+			return new CartResult(CartResult.Status.PURCHASED, null, 0, totalPrice);
+		} finally {
+			METRICS.stop(PURCHASE_TIMER, start);
+		}
+	}
+
+	/**
+	 * Records purchases that have already been taken from the inventory. A
+	 * purchase stands even if it cannot be recorded, so a failure is counted and
+	 * reported rather than thrown.
+	 * 
+	 * @param orderLog  the order log, or null to record nothing
+	 * @param purchases the lines of each purchase, priced when it was made
+	 */
+	static void recordOrders(OrderLog orderLog, List<List<Order.Line>> purchases) {
+		if (orderLog == null || purchases.isEmpty()) {
+			return;
+		}
+		try {
+			orderLog.appendLines(purchases);
+		} catch (IOException e) {
+			METRICS.increment(ORDER_LOG_FAILURES);
+			System.out.println("Unable to record " + purchases.size() + " order(s): " + e.getMessage());
 		}
 	}
 
 	/**
-	 * Cancels the current purchase and displays the saved cart contents.
+	 * Cancels the current purchase and displays the saved cart contents. With a
+	 * cart store, the cart is also saved there, so the next run restores it.
 	 */
 	public void cancelPurchase() {
 		Map<SalableProduct, Integer> products = cart.getProductsInCart();
@@ -190,8 +375,16 @@ public class StoreFront {
 		} else {
 			for (Map.Entry<SalableProduct, Integer> entry : products.entrySet()) {
 				System.out.println(entry.getKey().getName() + " x " + entry.getValue());
-				System.out.println("Your purchase is cancelled. Cart is saved.");
 			}
+			if (cartStore != null) {
+				try {
+					cartStore.save(CONSOLE_SESSION, cart);
+				} catch (IOException e) {
+					System.out.println("Your purchase is cancelled. Unable to save the cart: " + e.getMessage());
+					return;
+				}
+			}
+			System.out.println("Your purchase is cancelled. Cart is saved.");
 		}
 	}
 
@@ -200,16 +393,22 @@ public class StoreFront {
 	 */
 	public void displayInventory() {
 		productInventory.sortByNameThenPrice();
+		renderer.renderAll(productInventory.getProductsSnapshot());
+	}
 
-		System.out.println("\n----------------------------- Current Inventory -------------------------------");
-		for (SalableProduct product : productInventory.getAllProduct()) {
-			System.out.printf("Name: %s | Description: %s | Price: $%.2f | Quantity: %d\n", product.getName(),
-					product.getDescription(), product.getPrice(), product.getQuantity());
+	/**
+	 * Displays one page of the current inventory. The inventory is sorted when the
+	 * first page is shown.
+	 * 
+	 * @param page     the page number, starting at 0
+	 * @param pageSize the number of products on a page
+	 * @return true if there are more pages after this one
+	 */
+	public boolean displayInventoryPage(int page, int pageSize) {
+		if (page == 0) {
+			productInventory.sortByNameThenPrice();
 		}
-		System.out.println(
-				"--------------------------------------------------------------------------------------------");
-		System.out.println(
-				"--------------------------------------------------------------------------------------------");
+		return renderer.renderPage(productInventory.getProductsSnapshot(), page, pageSize);
 	}
 
 	/**
@@ -256,11 +455,73 @@ public class StoreFront {
 	 * with the user, including viewing inventory, adding/removing products from the
 	 * cart, and handling purchases.
 	 *
-	 * @param args Command line arguments (not used)
+	 * Several stores can run on one host and share a catalog: one started with
+	 * {@code --replication-port} leads, and the others started with
+	 * {@code --follow host:port} keep their inventory in step with it.
+	 *
+	 * {@code --warm} runs {@link StoreWarmup} before serving anyone, and
+	 * {@code --train} does the same and then stops, for a training run that
+	 * makes a class data sharing archive.
+	 *
+	 * {@code --data-dir folder} keeps the inventory file, its snapshot, the
+	 * order log and the saved carts in that folder instead of the working
+	 * directory, so several stores can run from one place.
+	 *
+	 * @param args Optional {@code --admin-port N}, {@code --http-port N}, either
+	 *             {@code --replication-port N} or {@code --follow host:port},
+	 *             {@code --data-dir folder}, and {@code --warm} or
+	 *             {@code --train}
 	 */
 	public static void main(String[] args) throws IOException {
 
-		StoreFront store = new StoreFront();
+		// Small JSON responses are written as headers then body, so without
+		// TCP_NODELAY each one waits on the client's delayed ACK. The JDK's HTTP
+		// server reads this once, so it is set before any server is created.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+
+		// Created first so the startup time covers loading the inventory
+		StoreLifecycle lifecycle = new StoreLifecycle();
+
+		int adminPort = 9999;
+		int httpPort = 8080;
+		int replicationPort = -1;
+		String leader = null;
+		File dataDir = null;
+		boolean warm = false;
+		boolean train = false;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--data-dir":
+				dataDir = new File(args[++i]);
+				dataDir.mkdirs();
+				break;
+			case "--admin-port":
+				adminPort = Integer.parseInt(args[++i]);
+				break;
+			case "--http-port":
+				httpPort = Integer.parseInt(args[++i]);
+				break;
+			case "--replication-port":
+				replicationPort = Integer.parseInt(args[++i]);
+				break;
+			case "--follow":
+				leader = args[++i];
+				break;
+			case "--warm":
+				warm = true;
+				break;
+			case "--train":
+				train = true;
+				break;
+			default:
+				System.out.println("Unknown option " + args[i]);
+			}
+		}
+
+		StoreFront store = new StoreFront(dataDir);
+		ConsoleView view = new ConsoleView(System.out);
 		Scanner scnr = new Scanner(System.in);
 		int choice = 0;
 		int qty = 0;
@@ -269,10 +530,90 @@ public class StoreFront {
 		// Start the main StoreFront application interface for customers
 		store.welcomeToStoreFront();
 
+		// Run the JSON, search and cart code before the first request needs it. A
+		// training run does the same, for a class data sharing archive, and exits
+		InventoryManager inventory = store.getProductInventory();
+		if (warm || train) {
+			System.out.printf("Warmed up in %.1f ms\n", StoreWarmup.warm(inventory, StoreWarmup.DEFAULT_ROUNDS));
+		}
+
+		// Services are stopped in the reverse of the order they are added, so the
+		// snapshot of the inventory is written last, once nothing can change it
+		String snapshotFile = store.getDataFile(SNAPSHOT_FILE).getPath();
+		lifecycle.add("snapshot", () -> FileService.saveSnapshot(snapshotFile, inventory.getProductsSnapshot()));
+
+		// Record every purchase, from the console or over HTTP, in the order log
+		OrderLog orderLog = null;
+		try {
+			orderLog = new OrderLog(store.getDataFile(ORDERS_FOLDER));
+			store.setOrderLog(orderLog);
+			lifecycle.add("order log", orderLog::close);
+		} catch (IOException e) {
+			System.out.println("Unable to open the order log; orders will not be recorded: " + e.getMessage());
+		}
+
+		// Keep carts of cancelled purchases and idle shoppers across restarts
+		CartStore cartStore = null;
+		try {
+			cartStore = new CartStore(store.getDataFile(CARTS_FILE));
+			store.setCartStore(cartStore);
+			lifecycle.add("cart store", cartStore::close);
+		} catch (IOException e) {
+			System.out.println("Unable to open the cart store; carts will not be saved: " + e.getMessage());
+		}
+
 		// Start the AdminService on a new thread to listen for admin commands on port
 		// 9999
 		// This allows admin tasks (like updating inventory) to run in the background
-		new Thread(new AdminService(store.getProductInventory(), 9999)).start();
+		AdminService admin = new AdminService(inventory, adminPort, AdminService.DEFAULT_CACHE_BYTES,
+				store.getDataFile(INVENTORY_FILE).getPath());
+		new Thread(admin).start();
+		lifecycle.add("admin", admin::close);
+		MetricsRegistry.GLOBAL.registerMBean();
+
+		// Lead or follow other stores, so they all sell from one catalog
+		if (replicationPort >= 0) {
+			ReplicationLeader replication = new ReplicationLeader(inventory, replicationPort);
+			new Thread(replication).start();
+			lifecycle.add("replication", replication::close);
+		} else if (leader != null) {
+			int colon = leader.lastIndexOf(':');
+			// Only the leader takes stock, or both could sell the last unit
+			admin.setReadOnly(true);
+			inventory.setReadOnly(true);
+			ReplicationFollower replication = new ReplicationFollower(inventory, leader.substring(0, colon),
+					Integer.parseInt(leader.substring(colon + 1)));
+			new Thread(replication).start();
+			lifecycle.add("replication", replication::close);
+		}
+
+		// Serve shoppers over HTTP on port 8080 using the same inventory, purchasing
+		// carts checked out at the same time in batches
+		StoreSessionManager sessions = new StoreSessionManager(inventory, 30 * 60 * 1000,
+				new CheckoutPipeline(inventory, CheckoutPipeline.DEFAULT_MAX_BATCH, orderLog), cartStore);
+		sessions.startEvictor(60 * 1000);
+		ExecutorService httpPool = Executors.newFixedThreadPool(8);
+		ShopperHttpService http = new ShopperHttpService(sessions, httpPort, httpPool);
+		if (warm || train) {
+			http.warm();
+		}
+		http.start();
+		lifecycle.add("shoppers", () -> {
+			// Finish requests in progress, then park every cart so shoppers resume
+			// them after the restart
+			http.stop(1);
+			httpPool.shutdown();
+			sessions.stopEvictor();
+			sessions.parkAllSessions();
+		});
+
+		// Stop cleanly on Ctrl-C as well as on Exit
+		lifecycle.installShutdownHook();
+		System.out.printf("Store started in %.1f ms\n", lifecycle.getUptimeMillis());
+		if (train) {
+			lifecycle.shutdown();
+			return;
+		}
 
 		// Main interaction loop
 		while (choice != 7) {
@@ -280,58 +621,45 @@ public class StoreFront {
 
 			switch (choice) {
 			case 1:
-				// Show inventory
-				store.displayInventory();
+				// Show inventory a page at a time
+				int page = 0;
+				while (store.displayInventoryPage(page, INVENTORY_PAGE_SIZE)) {
+					System.out.print("Enter N for the next page or Q to stop: ");
+					if (!scnr.next().equalsIgnoreCase("n")) {
+						break;
+					}
+					page++;
+				}
 				break;
 			case 2:
-				// Add product to cart
+				// Add product to cart, found by searching the inventory
+				System.out.print("Search for the item you want to add: ");
+				scnr.nextLine(); // finish the menu choice line
+				List<SalableProduct> matches = store.searchProducts(scnr.nextLine(), 10);
+				if (matches.isEmpty()) {
+					System.out.println("No products match your search.");
+					break;
+				}
 				System.out.println("Which item do you want to add?");
-				System.out.println("1. Sword");
-				System.out.println("2. Axe");
-				System.out.println("3. Sheild");
-				System.out.println("4. Helmet");
-				System.out.println("5. Health Herb");
-				System.out.println("6. Med Kit");
+				for (int i = 0; i < matches.size(); i++) {
+					System.out.printf("%d. %s ($%.2f)\n", i + 1, matches.get(i).getName(), matches.get(i).getPrice());
+				}
 				System.out.print("Item you chose: ");
 				int itemChoice = scnr.nextInt();
-				if (itemChoice == 1) {
-					System.out.println("How many do you want to add?");
-					System.out.print("Entered Quantity: ");
-					qty = scnr.nextInt();
-					store.addToCart("Sword", qty);
-				} else if (itemChoice == 2) {
-					System.out.println("How many do you want to add?");
-					System.out.print("Entered Quantity: ");
-					qty = scnr.nextInt();
-					store.addToCart("Axe", qty);
-				} else if (itemChoice == 3) {
-					System.out.println("How many do you want to add?");
-					System.out.print("Entered Quantity: ");
-					qty = scnr.nextInt();
-					store.addToCart("Sheild", qty);
-				} else if (itemChoice == 4) {
-					System.out.println("How many do you want to add?");
-					System.out.print("Entered Quantity: ");
-					qty = scnr.nextInt();
-					store.addToCart("Helmet", qty);
-				} else if (itemChoice == 5) {
-					System.out.println("How many do you want to add?");
-					System.out.print("Entered Quantity: ");
-					qty = scnr.nextInt();
-					store.addToCart("Health Herb", qty);
-				} else if (itemChoice == 6) {
+				if (itemChoice >= 1 && itemChoice <= matches.size()) {
 					System.out.println("How many do you want to add?");
 					System.out.print("Entered Quantity: ");
 					qty = scnr.nextInt();
-					store.addToCart("Med Kit", qty);
+					view.printResult(store.addToCart(matches.get(itemChoice - 1).getName(), qty));
 				}
 				break;
 			case 3:
 				// Show cart total price
+				view.printCart(store.viewCart());
 				System.out.printf("Cart total price: $%.2f\n", store.viewCart().getTotalPrice());
 				break;
 			case 4:
-				store.purchaseFromCart();
+				view.printResult(store.purchaseFromCart());
 				break;
 			case 5:
 				// Cancel purchase
@@ -340,7 +668,8 @@ public class StoreFront {
 			case 6:
 				// remove product from cart
 				ShoppingCart cart = store.viewCart();
-				if (cart.getProductsInCart().isEmpty()) {
+				view.printCart(cart);
+				if (cart.isEmpty()) {
 					break;
 				}
 				Map<SalableProduct, Integer> products = cart.getProductsInCart();
@@ -355,37 +684,38 @@ public class StoreFront {
 					System.out.println("How many do you want to remove?");
 					System.out.print("Entered Quantity: ");
 					qty = scnr.nextInt();
-					store.removeFromCart("Axe", qty);
+					view.printResult(store.removeFromCart("Axe", qty));
 				} else if (itemName.toLowerCase().equals("sword")) {
 					System.out.println("How many do you want to remove?");
 					System.out.print("Entered Quantity: ");
 					qty = scnr.nextInt();
-					store.removeFromCart("Sword", qty);
+					view.printResult(store.removeFromCart("Sword", qty));
 				} else if (itemName.toLowerCase().equals("sheild")) {
 					System.out.println("How many do you want to remove?");
 					System.out.print("Entered Quantity: ");
 					qty = scnr.nextInt();
-					store.removeFromCart("Sheild", qty);
+					view.printResult(store.removeFromCart("Sheild", qty));
 				} else if (itemName.toLowerCase().equals("helmet")) {
 					System.out.println("How many do you want to remove?");
 					System.out.print("Entered Quantity: ");
 					qty = scnr.nextInt();
-					store.removeFromCart("Helmet", qty);
+					view.printResult(store.removeFromCart("Helmet", qty));
 				} else if (itemName.toLowerCase().equals("health herb")) {
 					System.out.println("How many do you want to remove?");
 					System.out.print("Entered Quantity: ");
 					qty = scnr.nextInt();
-					store.removeFromCart("Health Herb", qty);
+					view.printResult(store.removeFromCart("Health Herb", qty));
 				} else if (itemName.toLowerCase().equals("med kit")) {
 					System.out.println("How many do you want to remove?");
 					System.out.print("Entered Quantity: ");
 					qty = scnr.nextInt();
-					store.removeFromCart("Med Kit", qty);
+					view.printResult(store.removeFromCart("Med Kit", qty));
 				}
 				break;
 			case 7:
 				// Exit program
 				System.out.println("Thank you for shopping with us!");
+				lifecycle.shutdown();
 				break;
 			default:
 				// Handle invalid input
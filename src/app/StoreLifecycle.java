@@ -0,0 +1,109 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * StoreLifecycle shuts the store's services down in order, once, and reports
+ * how long each step took.
+ *
+ * Services are added as they start, and stopped in the reverse order, so a
+ * service is stopped before the ones it depends on: shoppers and admins stop
+ * being served before their carts, orders and inventory are saved. A step that
+ * fails is reported and the rest still run. {@link #installShutdownHook()}
+ * runs the same steps when the JVM is asked to exit, so stopping the store
+ * with Ctrl-C saves everything too.
+ *
+ * @see StoreFront#main(String[])
+ */
+public class StoreLifecycle implements AutoCloseable {
+
+	/**
+	 * One step of shutting down.
+	 */
+	public interface Step {
+		/**
+		 * Stops a service.
+		 *
+		 * @throws Exception if the service could not be stopped cleanly
+		 */
+		void stop() throws Exception;
+	}
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram SHUTDOWN_TIMER = METRICS.timer("lifecycle.shutdown");
+
+	private final List<String> names = new ArrayList<>();
+	private final List<Step> steps = new ArrayList<>();
+	private final AtomicBoolean stopped = new AtomicBoolean();
+	private final long startNanos = System.nanoTime();
+
+	/**
+	 * Adds a step, to run before every step added earlier.
+	 *
+	 * @param name what the step stops, for the report
+	 * @param step the step
+	 */
+	public synchronized void add(String name, Step step) {
+		names.add(name);
+		steps.add(step);
+	}
+
+	/**
+	 * Gets how long since the lifecycle was created, which is when the store
+	 * started.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public double getUptimeMillis() {
+		return (System.nanoTime() - startNanos) / 1e6;
+	}
+
+	/**
+	 * Runs {@link #shutdown()} when the JVM exits.
+	 */
+	public void installShutdownHook() {
+		Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "store-shutdown"));
+	}
+
+	/**
+	 * Runs every step, newest first, the first time it is called, and prints how
+	 * long each took. Later calls do nothing.
+	 *
+	 * @return true if every step succeeded, false if one failed or this was not
+	 *         the first call
+	 */
+	public synchronized boolean shutdown() {
+		if (!stopped.compareAndSet(false, true)) {
+			return false;
+		}
+		long start = System.nanoTime();
+		boolean clean = true;
+		StringBuilder report = new StringBuilder();
+		for (int i = steps.size() - 1; i >= 0; i--) {
+			long stepStart = System.nanoTime();
+			try {
+				steps.get(i).stop();
+			} catch (Exception e) {
+				clean = false;
+				System.out.println("Unable to stop " + names.get(i) + ": " + e);
+			}
+			report.append(String.format(" | %s %.1f ms", names.get(i), (System.nanoTime() - stepStart) / 1e6));
+		}
+		long nanos = System.nanoTime() - start;
+		if (METRICS.isEnabled()) {
+			SHUTDOWN_TIMER.record(nanos);
+		}
+		System.out.printf("Store stopped in %.1f ms%s\n", nanos / 1e6, report);
+		return clean;
+	}
+
+	/**
+	 * Shuts down, as {@link #shutdown()}.
+	 */
+	@Override
+	public void close() {
+		shutdown();
+	}
+}
@@ -0,0 +1,481 @@
+package app;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * StoreSessionManager serves many shoppers at once. Each shopper gets a session
+ * id and their own {@link ShoppingCart}, and every session shares one
+ * {@link InventoryManager}.
+ *
+ * Sessions that are not used for longer than the idle timeout are evicted,
+ * either by calling {@link #evictIdleSessions()} or by starting the background
+ * evictor with {@link #startEvictor(long)}. At most
+ * {@link #DEFAULT_MAX_SESSIONS} sessions are open at once unless set
+ * otherwise, so a flood of new sessions cannot fill the heap.
+ *
+ * With a {@link CartStore}, an evicted session's cart is parked in the store
+ * rather than dropped, and the session is resumed with its cart the next time
+ * its id is used, even after a restart. Carts are read back only when their
+ * session is resumed, so parked carts cost no memory.
+ *
+ * @see StoreFront
+ * @see ShoppingCart
+ */
+public class StoreSessionManager {
+
+	/** The most carts parked with one wait for the disk. */
+	public static final int PARK_BATCH = 4096;
+
+	/** The default most sessions open at once. */
+	public static final int DEFAULT_MAX_SESSIONS = 100_000;
+
+	/** The shortest time between sweeps for idle sessions made to open one. */
+	private static final long FULL_SWEEP_MILLIS = 1000;
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LongAdder REJECTED = METRICS.counter("sessions.rejected");
+
+	private final InventoryManager inventory;
+	private final long idleTimeoutMillis;
+	private final CheckoutPipeline checkout;
+	private final CartStore cartStore;
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private ScheduledExecutorService evictor;
+	private volatile int maxSessions = DEFAULT_MAX_SESSIONS;
+	private final AtomicLong lastFullSweep = new AtomicLong();
+
+	/**
+	 * One shopper's cart and the last time it was used.
+	 */
+	private static class Session {
+		private final ShoppingCart cart;
+		private volatile long lastAccess = System.currentTimeMillis();
+		/** Set under the cart's lock once the session is parked and removed. */
+		private boolean evicted;
+
+		Session(ShoppingCart cart) {
+			this.cart = cart;
+		}
+	}
+
+	/**
+	 * Creates a session manager for the given inventory.
+	 *
+	 * @param inventory         the inventory shared by every session
+	 * @param idleTimeoutMillis how long a session can be unused before it is
+	 *                          evicted
+	 */
+	public StoreSessionManager(InventoryManager inventory, long idleTimeoutMillis) {
+		this(inventory, idleTimeoutMillis, null);
+	}
+
+	/**
+	 * Creates a session manager whose purchases go through a checkout pipeline,
+	 * so many shoppers checking out at once are purchased in batches.
+	 *
+	 * @param inventory         the inventory shared by every session
+	 * @param idleTimeoutMillis how long a session can be unused before it is
+	 *                          evicted
+	 * @param checkout          the pipeline taking stock from the inventory, or
+	 *                          null to purchase each cart directly
+	 */
+	public StoreSessionManager(InventoryManager inventory, long idleTimeoutMillis, CheckoutPipeline checkout) {
+		this(inventory, idleTimeoutMillis, checkout, null);
+	}
+
+	/**
+	 * Creates a session manager that parks the carts of idle sessions in a cart
+	 * store and resumes them from it.
+	 *
+	 * @param inventory         the inventory shared by every session
+	 * @param idleTimeoutMillis how long a session can be unused before it is
+	 *                          parked
+	 * @param checkout          the pipeline taking stock from the inventory, or
+	 *                          null to purchase each cart directly
+	 * @param cartStore         the store to park carts in, or null to drop them
+	 */
+	public StoreSessionManager(InventoryManager inventory, long idleTimeoutMillis, CheckoutPipeline checkout,
+			CartStore cartStore) {
+		this.inventory = inventory;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.checkout = checkout;
+		this.cartStore = cartStore;
+	}
+
+	/**
+	 * Sets the most sessions open at once. Sessions resumed from parked carts
+	 * are not refused, so the count can go over it by the sessions resumed.
+	 *
+	 * @param maxSessions the most open sessions
+	 */
+	public void setMaxSessions(int maxSessions) {
+		this.maxSessions = maxSessions;
+	}
+
+	/**
+	 * Opens a new session with an empty cart. When the most sessions are open,
+	 * idle sessions are evicted first, at most once a second, and the session
+	 * is refused if that does not make room.
+	 *
+	 * @return the id of the new session, or null if too many sessions are open
+	 */
+	public String openSession() {
+		if (sessions.size() >= maxSessions) {
+			long last = lastFullSweep.get();
+			long now = System.currentTimeMillis();
+			if (now - last >= FULL_SWEEP_MILLIS && lastFullSweep.compareAndSet(last, now)) {
+				evictIdleSessions();
+			}
+			if (sessions.size() >= maxSessions) {
+				METRICS.increment(REJECTED);
+				return null;
+			}
+		}
+		String sessionId = UUID.randomUUID().toString();
+		sessions.put(sessionId, new Session(new ShoppingCart()));
+		return sessionId;
+	}
+
+	/**
+	 * Closes a session and drops its cart, including any parked copy.
+	 *
+	 * @param sessionId the session to close
+	 */
+	public void closeSession(String sessionId) {
+		sessions.remove(sessionId);
+		unpark(sessionId);
+	}
+
+	/**
+	 * Gets the cart of a session. Callers that read the cart while other requests
+	 * may be using the same session should synchronize on the cart.
+	 *
+	 * @param sessionId the session id
+	 * @return the session's cart, or null if the session does not exist
+	 */
+	public ShoppingCart getCart(String sessionId) {
+		Session session = touch(sessionId);
+		return session == null ? null : session.cart;
+	}
+
+	/**
+	 * Adds a product to a session's cart if the inventory has enough of it.
+	 *
+	 * @param sessionId   the session id
+	 * @param productName name of the product
+	 * @param qty         quantity to add
+	 * @return the result, {@code NO_SESSION} if the session does not exist
+	 */
+	public CartResult addToCart(String sessionId, String productName, int qty) {
+		return withSession(sessionId, session -> StoreFront.addToCart(inventory, session.cart, productName, qty));
+	}
+
+	/**
+	 * Removes a quantity of a product from a session's cart.
+	 *
+	 * @param sessionId   the session id
+	 * @param productName name of the product
+	 * @param qty         quantity to remove
+	 * @return the result, {@code NO_SESSION} if the session does not exist
+	 */
+	public CartResult removeFromCart(String sessionId, String productName, int qty) {
+		return withSession(sessionId, session -> StoreFront.removeFromCart(inventory, session.cart, productName, qty));
+	}
+
+	/**
+	 * Purchases everything in a session's cart. The cart is cleared only if the
+	 * inventory had enough stock for every product in it.
+	 *
+	 * @param sessionId the session id
+	 * @return the result, {@code NO_SESSION} if the session does not exist
+	 */
+	public CartResult purchaseFromCart(String sessionId) {
+		return withSession(sessionId, session -> {
+			CartResult result = checkout == null ? StoreFront.purchaseFromCart(inventory, session.cart)
+					: checkout.checkout(session.cart);
+			if (result.getStatus() == CartResult.Status.PURCHASED) {
+				// A parked copy would bring the purchased cart back after a restart
+				unpark(sessionId);
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Removes every session that has been idle longer than the timeout. With a
+	 * cart store, the carts that are not empty are parked first, in batches of
+	 * {@link #PARK_BATCH} forced to disk together.
+	 *
+	 * Each session is checked again and removed under its cart's lock, and only
+	 * if it was not used since its cart was parked, so a request that uses it
+	 * meanwhile either keeps it open or finds it evicted and resumes it from
+	 * the parked cart; no change is lost.
+	 *
+	 * @return the number of sessions removed
+	 */
+	public int evictIdleSessions() {
+		long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+		List<Map.Entry<String, Session>> idle = new ArrayList<>();
+		int evicted = 0;
+		for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+			if (entry.getValue().lastAccess < cutoff) {
+				idle.add(entry);
+				if (idle.size() == PARK_BATCH) {
+					evicted += evict(idle, cutoff);
+					idle.clear();
+				}
+			}
+		}
+		return evicted + evict(idle, cutoff);
+	}
+
+	/**
+	 * Parks the cart of every open session, as before a shutdown, in batches of
+	 * {@link #PARK_BATCH} forced to disk together. The sessions stay open.
+	 *
+	 * @return the number of carts parked
+	 */
+	public int parkAllSessions() {
+		int parked = 0;
+		if (cartStore == null) {
+			return parked;
+		}
+		List<Map.Entry<String, Session>> batch = new ArrayList<>();
+		for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+			batch.add(entry);
+			if (batch.size() == PARK_BATCH) {
+				parked += parkBatch(batch);
+				batch.clear();
+			}
+		}
+		return parked + parkBatch(batch);
+	}
+
+	/**
+	 * Parks a batch of sessions together, or one at a time if that fails.
+	 *
+	 * @return the number of carts parked that have products
+	 */
+	private int parkBatch(List<Map.Entry<String, Session>> batch) {
+		int parked = parkAll(batch);
+		if (parked >= 0) {
+			return parked;
+		}
+		parked = 0;
+		for (Map.Entry<String, Session> entry : batch) {
+			boolean empty = entry.getValue().cart.isEmpty();
+			if (park(entry.getKey(), entry.getValue()) && !empty) {
+				parked++;
+			}
+		}
+		return parked;
+	}
+
+	/**
+	 * Parks a batch of idle sessions together, then removes those not used since
+	 * they were seen idle. A session used meanwhile stays open, and is parked
+	 * again on its own in case its parked copy is behind.
+	 */
+	private int evict(List<Map.Entry<String, Session>> idle, long cutoff) {
+		long[] seen = new long[idle.size()];
+		for (int i = 0; i < seen.length; i++) {
+			seen[i] = idle.get(i).getValue().lastAccess;
+		}
+		boolean parked = parkAll(idle) >= 0;
+		int evicted = 0;
+		for (int i = 0; i < seen.length; i++) {
+			String sessionId = idle.get(i).getKey();
+			Session session = idle.get(i).getValue();
+			synchronized (session.cart) {
+				if (session.evicted) {
+					continue;
+				}
+				if (session.lastAccess == seen[i] && seen[i] < cutoff) {
+					if ((parked || park(sessionId, session)) && sessions.remove(sessionId, session)) {
+						session.evicted = true;
+						evicted++;
+					}
+				} else if (parked && cartStore != null) {
+					park(sessionId, session);
+				}
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Saves the carts of a batch of sessions to the cart store with one wait for
+	 * the disk. If the batch cannot be saved, callers park each cart on its own,
+	 * so one cart that cannot be saved does not keep the others from being
+	 * parked.
+	 *
+	 * @return the number of carts parked that have products, or -1 if the batch
+	 *         could not be saved as a whole
+	 */
+	private int parkAll(List<Map.Entry<String, Session>> batch) {
+		if (cartStore == null || batch.isEmpty()) {
+			return 0;
+		}
+		Map<String, ShoppingCart> carts = new LinkedHashMap<>();
+		for (Map.Entry<String, Session> entry : batch) {
+			carts.put(entry.getKey(), entry.getValue().cart);
+		}
+		try {
+			return cartStore.saveAll(carts);
+		} catch (IOException e) {
+			System.out.println("Unable to park " + batch.size() + " sessions together: " + e.getMessage());
+			return -1;
+		}
+	}
+
+	/**
+	 * Starts a background thread that evicts idle sessions on a fixed period.
+	 *
+	 * @param periodMillis how often to check for idle sessions
+	 */
+	public synchronized void startEvictor(long periodMillis) {
+		if (evictor != null) {
+			return;
+		}
+		evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "session-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		evictor.scheduleAtFixedRate(this::evictIdleSessions, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the background evictor if it is running.
+	 */
+	public synchronized void stopEvictor() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+			evictor = null;
+		}
+	}
+
+	/**
+	 * Gets the number of open sessions.
+	 *
+	 * @return the session count
+	 */
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	/**
+	 * Gets the number of carts parked in the cart store, which includes the carts
+	 * of open sessions parked by {@link #parkAllSessions()}.
+	 *
+	 * @return the parked cart count, or 0 without a cart store
+	 */
+	public int getParkedCount() {
+		return cartStore == null ? 0 : cartStore.size();
+	}
+
+	/**
+	 * Gets the inventory shared by the sessions.
+	 *
+	 * @return the inventory manager
+	 */
+	public InventoryManager getInventory() {
+		return inventory;
+	}
+
+	private Session touch(String sessionId) {
+		Session session = sessions.get(sessionId);
+		if (session == null && cartStore != null && cartStore.contains(sessionId)) {
+			session = sessions.computeIfAbsent(sessionId, this::resume);
+		}
+		if (session != null) {
+			session.lastAccess = System.currentTimeMillis();
+		}
+		return session;
+	}
+
+	/**
+	 * Runs an operation on a session's cart under the cart's lock. A session
+	 * evicted between being looked up and being locked is looked up again,
+	 * which resumes it from its parked cart.
+	 *
+	 * @return the operation's result, {@code NO_SESSION} if the session does
+	 *         not exist
+	 */
+	private CartResult withSession(String sessionId, Function<Session, CartResult> operation) {
+		while (true) {
+			Session session = touch(sessionId);
+			if (session == null) {
+				return new CartResult(CartResult.Status.NO_SESSION);
+			}
+			synchronized (session.cart) {
+				if (!session.evicted) {
+					return operation.apply(session);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a parked cart back into a new session.
+	 *
+	 * @return the session, or null if the cart cannot be read
+	 */
+	private Session resume(String sessionId) {
+		try {
+			ShoppingCart cart = cartStore.load(sessionId, inventory);
+			return cart == null ? null : new Session(cart);
+		} catch (IOException e) {
+			System.out.println("Unable to resume session " + sessionId + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Saves a session's cart to the cart store if it has products.
+	 *
+	 * @return true if the cart was saved or there was nothing to save, false if
+	 *         saving failed, in which case the session should be kept
+	 */
+	private boolean park(String sessionId, Session session) {
+		if (cartStore == null) {
+			return true;
+		}
+		synchronized (session.cart) {
+			try {
+				if (session.cart.isEmpty()) {
+					cartStore.remove(sessionId);
+				} else {
+					cartStore.save(sessionId, session.cart);
+				}
+				return true;
+			} catch (IOException e) {
+				System.out.println("Unable to park session " + sessionId + ": " + e.getMessage());
+				return false;
+			}
+		}
+	}
+
+	private void unpark(String sessionId) {
+		if (cartStore == null) {
+			return;
+		}
+		try {
+			cartStore.remove(sessionId);
+		} catch (IOException e) {
+			System.out.println("Unable to remove parked session " + sessionId + ": " + e.getMessage());
+		}
+	}
+}
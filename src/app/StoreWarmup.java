@@ -0,0 +1,93 @@
+package app;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * StoreWarmup runs the store's busiest code before the first shopper or admin
+ * does, so their first requests are not the ones that load and compile it.
+ *
+ * A cold store loads Jackson and inspects {@link SalableProduct} and each of
+ * its subclasses on the first request that reads or writes JSON, and runs its
+ * searches and carts in the interpreter until the JIT compiles them. Warming
+ * up writes and reads a product of each category as JSON, searches and pages
+ * through the inventory, and fills and purchases carts, enough times for the
+ * JIT to start compiling the hot methods. Carts are purchased from a small inventory of
+ * their own, so the store's stock and order log are left alone.
+ *
+ * Loading the classes can also be skipped on later starts with a class data
+ * sharing archive, made by a training run of {@code StoreFront --train}; see
+ * the README.
+ */
+public class StoreWarmup {
+
+	/** How many times each operation is run. */
+	public static final int DEFAULT_ROUNDS = 200;
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.GLOBAL;
+	private static final LatencyHistogram WARMUP_TIMER = METRICS.timer("lifecycle.warmup");
+
+	private StoreWarmup() {
+	}
+
+	/**
+	 * Warms up the store's JSON, search and cart code without changing the
+	 * inventory.
+	 *
+	 * @param inventory the store's inventory, which is only read
+	 * @param rounds    how many times to run each operation
+	 * @return the time taken in milliseconds
+	 * @throws IOException if a product cannot be written or read as JSON
+	 */
+	public static double warm(InventoryManager inventory, int rounds) throws IOException {
+		long start = System.nanoTime();
+		List<SalableProduct> samples = Arrays.asList(new Weapon("Sword", "Sharp and can swing", 1200.0, rounds),
+				new Armor("Shield", "Stops things", 1500.0, rounds), new Health("Med Kit", "Life saver", 150.0, rounds),
+				new SalableProduct("Rope", "Long enough", 3.0, rounds));
+
+		// The JSON the admin service, the HTTP service and the inventory file use
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectWriter writer = mapper.writerFor(SalableProduct.class);
+		ObjectReader reader = mapper.readerFor(SalableProduct[].class);
+		ProductJsonCache cache = new ProductJsonCache(0);
+		for (int i = 0; i < rounds; i++) {
+			SalableProduct product = samples.get(i % samples.size());
+			reader.readValue("[" + writer.writeValueAsString(product) + "]");
+			cache.toJson(product);
+		}
+
+		// Searches and pages of the store's own inventory, which are only reads
+		List<SalableProduct> products = inventory.getProductsSnapshot();
+		ProductCategory[] categories = ProductCategory.values();
+		for (int i = 0; i < rounds && !products.isEmpty(); i++) {
+			String name = products.get(i % products.size()).getName();
+			inventory.getProductByName(name);
+			inventory.search(name, 20);
+			inventory.getProductsByCategory(categories[i % categories.length], 0, 50);
+		}
+
+		// Carts filled and purchased from an inventory of the samples
+		InventoryManager practice = new InventoryManager();
+		for (SalableProduct product : samples) {
+			practice.addSalableProduct(product);
+		}
+		for (int i = 0; i < rounds; i++) {
+			ShoppingCart cart = new ShoppingCart();
+			StoreFront.addToCart(practice, cart, samples.get(i % samples.size()).getName(), 1);
+			StoreFront.addToCart(practice, cart, samples.get((i + 1) % samples.size()).getName(), 1);
+			StoreFront.removeFromCart(practice, cart, samples.get(i % samples.size()).getName(), 1);
+			StoreFront.purchaseFromCart(practice, cart);
+		}
+
+		long nanos = System.nanoTime() - start;
+		if (METRICS.isEnabled()) {
+			WARMUP_TIMER.record(nanos);
+		}
+		return nanos / 1e6;
+	}
+}
@@ -0,0 +1,177 @@
+package app;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * StringPool hands back one shared instance for strings that are equal, so a
+ * catalog where many products have the same description keeps one copy of it
+ * instead of one per product.
+ *
+ * The pool holds at most a set number of bytes, counting each string's object
+ * and characters. When it is full the string used least recently is dropped,
+ * so a catalog of mostly unique text cannot grow the pool without bound and
+ * text that stops repeating makes room for text that does. A string larger
+ * than its stripe's share of the pool is returned as it is.
+ *
+ * The pool is safe to use from many threads. A large pool is split into
+ * stripes chosen by each string's hash, each with its own lock and an equal
+ * share of the bytes, so threads loading JSON at the same time rarely wait on
+ * each other. The least recently used string is then dropped from its stripe
+ * rather than from the whole pool.
+ *
+ * @see PooledStringDeserializer
+ */
+public class StringPool {
+
+	/** The pool used when loading products from JSON and snapshots. */
+	public static final StringPool SHARED = new StringPool(64L * 1024 * 1024);
+
+	/** The most stripes a pool is split into. */
+	public static final int MAX_STRIPES = 16;
+
+	/** The fewest bytes a stripe is given, so a small pool stays one stripe. */
+	private static final long MIN_STRIPE_BYTES = 1024 * 1024;
+
+	/** The bytes a string takes besides its characters: its object and array headers. */
+	private static final int STRING_OVERHEAD = 40;
+
+	private final Stripe[] stripes;
+
+	/**
+	 * One share of the pool: each string mapped to itself, least recently used
+	 * first, guarded by the stripe's own lock.
+	 */
+	private static class Stripe {
+		private final LinkedHashMap<String, String> strings = new LinkedHashMap<>(16, 0.75f, true);
+		private final long maxBytes;
+		private long pooledBytes;
+		private long evictions;
+
+		Stripe(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		synchronized String intern(String text, long bytes) {
+			String pooled = strings.get(text);
+			if (pooled != null) {
+				return pooled;
+			}
+			if (bytes > maxBytes) {
+				return text;
+			}
+			strings.put(text, text);
+			pooledBytes += bytes;
+			Iterator<Map.Entry<String, String>> eldest = strings.entrySet().iterator();
+			while (pooledBytes > maxBytes && eldest.hasNext()) {
+				pooledBytes -= sizeOf(eldest.next().getKey());
+				eldest.remove();
+				evictions++;
+			}
+			return text;
+		}
+	}
+
+	/**
+	 * Creates an empty pool, split into as many stripes as its size allows, up
+	 * to {@link #MAX_STRIPES}.
+	 *
+	 * @param maxBytes the most bytes of strings to keep; 0 keeps none
+	 */
+	public StringPool(long maxBytes) {
+		this(maxBytes, (int) Math.max(1, Math.min(MAX_STRIPES, maxBytes / MIN_STRIPE_BYTES)));
+	}
+
+	/**
+	 * Creates an empty pool split into a number of stripes, each given an equal
+	 * share of the bytes.
+	 *
+	 * @param maxBytes the most bytes of strings to keep; 0 keeps none
+	 * @param stripes  the number of stripes, rounded down to a power of two
+	 */
+	public StringPool(long maxBytes, int stripes) {
+		int count = Integer.highestOneBit(Math.max(1, stripes));
+		this.stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			this.stripes[i] = new Stripe(maxBytes / count);
+		}
+	}
+
+	/**
+	 * Gets the pooled instance equal to a string, adding the string and making
+	 * room for it if needed.
+	 *
+	 * @param text the string
+	 * @return an equal string, shared where possible; null for null
+	 */
+	public String intern(String text) {
+		if (text == null) {
+			return null;
+		}
+		int hash = text.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)].intern(text, sizeOf(text));
+	}
+
+	/**
+	 * Gets the number of distinct strings in the pool.
+	 *
+	 * @return the pool size
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.strings.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the bytes the pooled strings take, as the pool counts them.
+	 *
+	 * @return the pooled bytes
+	 */
+	public long getPooledBytes() {
+		long bytes = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				bytes += stripe.pooledBytes;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Gets the number of strings dropped to make room.
+	 *
+	 * @return the eviction count
+	 */
+	public long getEvictions() {
+		long evictions = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				evictions += stripe.evictions;
+			}
+		}
+		return evictions;
+	}
+
+	/**
+	 * Gets the number of stripes the pool is split into.
+	 *
+	 * @return the stripe count
+	 */
+	public int getStripeCount() {
+		return stripes.length;
+	}
+
+	/**
+	 * Estimates a string's size, at two bytes a character, which is never less
+	 * than it takes.
+	 */
+	private static long sizeOf(String text) {
+		return STRING_OVERHEAD + 2L * text.length();
+	}
+}
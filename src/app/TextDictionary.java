@@ -0,0 +1,228 @@
+package app;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * TextDictionary stores each distinct string once, packed as UTF-8 into one
+ * growing byte array, and hands out a small int id for it. It is the string
+ * column of {@link ColumnarInventory}: rows hold ids, and the text is only
+ * turned back into a {@code String} when a product is built from a row.
+ *
+ * Ids are found through an open-addressing table of ints. The table hashes
+ * strings ignoring case, so an exact lookup and a case-insensitive lookup probe
+ * the same slots.
+ *
+ * The first eight bytes of each ASCII string are also kept, folded to lower
+ * case, in a long. Comparing two of those longs orders most pairs of names
+ * without touching their bytes.
+ *
+ * This class is not thread safe; {@link ColumnarInventory} guards it with its
+ * lock.
+ */
+class TextDictionary {
+
+	/** The id used for a null string. */
+	static final int NULL_ID = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int PREFIX_BYTES = 8;
+
+	private byte[] bytes = new byte[INITIAL_CAPACITY * 16];
+	private int used;
+	/** Where each string starts in {@link #bytes}; one more entry than strings. */
+	private int[] offsets = new int[INITIAL_CAPACITY + 1];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private long[] prefixes = new long[INITIAL_CAPACITY];
+	/** Whether each string is all ASCII, so its bytes compare like its chars. */
+	private boolean[] ascii = new boolean[INITIAL_CAPACITY];
+	private int count;
+	/** Slots holding id + 1, or 0 when empty. Never more than half full. */
+	private int[] table = new int[INITIAL_CAPACITY * 2];
+
+	/**
+	 * Gets the id of a string, adding it if it is not stored yet.
+	 *
+	 * @param text the string
+	 * @return its id, or {@link #NULL_ID} for null
+	 */
+	int intern(String text) {
+		if (text == null) {
+			return NULL_ID;
+		}
+		byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+		int hash = foldedHash(text);
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		while (table[slot] != 0) {
+			int id = table[slot] - 1;
+			if (hashes[id] == hash && sameBytes(id, encoded)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return add(encoded, hash, slot);
+	}
+
+	/**
+	 * Finds every stored string equal to the given one ignoring case.
+	 *
+	 * @param text the string to look for
+	 * @return the ids found, in the order they were added
+	 */
+	int[] findIgnoreCase(String text) {
+		if (text == null) {
+			return new int[0];
+		}
+		int hash = foldedHash(text);
+		int mask = table.length - 1;
+		int[] found = new int[0];
+		for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (hashes[id] == hash && get(id).equalsIgnoreCase(text)) {
+				found = Arrays.copyOf(found, found.length + 1);
+				found[found.length - 1] = id;
+			}
+		}
+		Arrays.sort(found);
+		return found;
+	}
+
+	/**
+	 * Gets a stored string back.
+	 *
+	 * @param id the string's id
+	 * @return the string, or null for {@link #NULL_ID}
+	 */
+	String get(int id) {
+		if (id == NULL_ID) {
+			return null;
+		}
+		return new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compares two stored strings the way {@link String#compareToIgnoreCase}
+	 * does, with null first.
+	 *
+	 * @param a the first id
+	 * @param b the second id
+	 * @return negative, zero or positive as the first string sorts before, the
+	 *         same as, or after the second
+	 */
+	int compareIgnoreCase(int a, int b) {
+		if (a == b) {
+			return 0;
+		} else if (a == NULL_ID || b == NULL_ID) {
+			return a == NULL_ID ? -1 : 1;
+		}
+		if (ascii[a] && ascii[b]) {
+			int byPrefix = Long.compareUnsigned(prefixes[a], prefixes[b]);
+			if (byPrefix != 0) {
+				return byPrefix;
+			}
+			return compareAsciiIgnoreCase(a, b);
+		}
+		return get(a).compareToIgnoreCase(get(b));
+	}
+
+	/**
+	 * Gets the number of distinct strings stored.
+	 *
+	 * @return the string count
+	 */
+	int size() {
+		return count;
+	}
+
+	private int add(byte[] encoded, int hash, int slot) {
+		if (count == hashes.length) {
+			int capacity = count * 2;
+			offsets = Arrays.copyOf(offsets, capacity + 1);
+			hashes = Arrays.copyOf(hashes, capacity);
+			prefixes = Arrays.copyOf(prefixes, capacity);
+			ascii = Arrays.copyOf(ascii, capacity);
+		}
+		if (used + encoded.length > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, used + encoded.length));
+		}
+		int id = count++;
+		System.arraycopy(encoded, 0, bytes, used, encoded.length);
+		used += encoded.length;
+		offsets[id + 1] = used;
+		hashes[id] = hash;
+		ascii[id] = isAscii(encoded);
+		prefixes[id] = ascii[id] ? foldedPrefix(encoded) : 0;
+		table[slot] = id + 1;
+		if (count * 2 > table.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	private void rehash() {
+		int[] larger = new int[table.length * 2];
+		int mask = larger.length - 1;
+		for (int id = 0; id < count; id++) {
+			int slot = hashes[id] & mask;
+			while (larger[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			larger[slot] = id + 1;
+		}
+		table = larger;
+	}
+
+	private boolean sameBytes(int id, byte[] encoded) {
+		int start = offsets[id];
+		return offsets[id + 1] - start == encoded.length
+				&& Arrays.equals(bytes, start, start + encoded.length, encoded, 0, encoded.length);
+	}
+
+	private int compareAsciiIgnoreCase(int a, int b) {
+		int i = offsets[a];
+		int j = offsets[b];
+		int endA = offsets[a + 1];
+		int endB = offsets[b + 1];
+		for (; i < endA && j < endB; i++, j++) {
+			int byChar = fold(bytes[i]) - fold(bytes[j]);
+			if (byChar != 0) {
+				return byChar;
+			}
+		}
+		return (endA - offsets[a]) - (endB - offsets[b]);
+	}
+
+	/**
+	 * Hashes a string so that strings equal ignoring case hash the same.
+	 */
+	private static int foldedHash(String text) {
+		int hash = 0;
+		for (int i = 0; i < text.length(); i++) {
+			hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+		}
+		// Spread the bits so the low ones used for slots vary
+		return hash ^ (hash >>> 16);
+	}
+
+	private static long foldedPrefix(byte[] encoded) {
+		long prefix = 0;
+		for (int i = 0; i < PREFIX_BYTES; i++) {
+			prefix = (prefix << 8) | (i < encoded.length ? fold(encoded[i]) : 0);
+		}
+		return prefix;
+	}
+
+	private static int fold(byte b) {
+		return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+	}
+
+	private static boolean isAscii(byte[] encoded) {
+		for (byte b : encoded) {
+			if (b < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
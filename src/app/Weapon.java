@@ -14,6 +14,13 @@ package app;
  */
 public class Weapon extends SalableProduct implements Comparable<SalableProduct> {
 
+	/**
+	 * Constructs an empty {@code Weapon}, used when loading from JSON.
+	 */
+	public Weapon() {
+		super();
+	}
+
 	/**
 	 * Constructs a new {@code Weapon} object with the specified name, description,
 	 * price, and quantity.
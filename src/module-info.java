@@ -7,10 +7,13 @@
 module Milestone1 {
 	requires com.fasterxml.jackson.databind;
 	requires junit;
+	requires jdk.httpserver;
+	requires java.management;
+	requires jdk.management;
 
 	// https://stackoverflow.com/questions/67310161/java-jackson-failed-to-construct-beanserializer
 	// app was not accessed to jackson.databind because of Java 9 module system
-	opens app to com.fasterxml.jackson.databind;
+	opens app to com.fasterxml.jackson.databind, java.management;
 
 //	exports app;
 
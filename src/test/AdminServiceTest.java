@@ -0,0 +1,262 @@
+package test;
+
+import org.junit.After;
+import org.junit.Test;
+
+import app.AdminService;
+import app.FileService;
+import app.InventoryManager;
+import app.InventoryPersister;
+import app.MetricsRegistry;
+import app.SalableProduct;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for the admission control of the {@link AdminService} class.
+ * These tests flood a service in this process and check that a client over its
+ * rate is throttled, that a request over the size limit is refused without
+ * harm, and that connections beyond the workers and their queue are turned
+ * away at once. They also check that shutting down drains the service and
+ * saves its changes.
+ */
+public class AdminServiceTest {
+
+	private static final String TEST_FILE = "test_admin.json";
+
+	private InventoryManager inventory;
+	private InventoryPersister persister;
+	private int port;
+
+	/**
+	 * Stops the persister and removes its file.
+	 *
+	 * @throws Exception if interrupted while the persister saves
+	 */
+	@After
+	public void tearDown() throws Exception {
+		if (persister != null) {
+			persister.close();
+		}
+		new File(TEST_FILE).delete();
+	}
+
+	/**
+	 * Tests that a client sending far more than its rate has only about its
+	 * burst answered, and that the rest are counted as throttled.
+	 *
+	 * @throws Exception if the service cannot be reached
+	 */
+	@Test
+	public void testFloodIsThrottled() throws Exception {
+		AdminService admin = create();
+		admin.setRateLimit(5, 20);
+		start(admin);
+		long throttledBefore = MetricsRegistry.GLOBAL.getCounters().getOrDefault("admin.throttled", 0L);
+
+		int answered = 0;
+		int throttled = 0;
+		for (int i = 0; i < 200; i++) {
+			String reply = send("S\n");
+			if (reply.startsWith("Too many requests")) {
+				throttled++;
+			} else if (reply.startsWith("{")) {
+				answered++;
+			}
+		}
+		assertEquals("Every request should get an answer", 200, answered + throttled);
+		assertTrue("About the burst should be answered, not " + answered, answered >= 15 && answered <= 40);
+		if (MetricsRegistry.GLOBAL.isEnabled()) {
+			assertEquals("Throttled requests should be counted", throttled,
+					MetricsRegistry.GLOBAL.getCounters().get("admin.throttled") - throttledBefore);
+		}
+	}
+
+	/**
+	 * Tests that an update larger than the limit is refused without being
+	 * applied, and that a small one still works afterwards.
+	 *
+	 * @throws Exception if the service cannot be reached
+	 */
+	@Test
+	public void testOversizedPayloadRefused() throws Exception {
+		AdminService admin = create();
+		admin.setMaxRequestBytes(1024);
+		start(admin);
+
+		StringBuilder large = new StringBuilder("U\n[");
+		for (int i = 0; i < 100; i++) {
+			large.append(i == 0 ? "" : ",").append(product("Sword" + i));
+		}
+		large.append("]\n");
+		assertEquals("Large update should be refused", "Payload too large", send(large.toString()));
+		assertEquals("Refused update should not be applied", 0, inventory.getProductsSnapshot().size());
+
+		assertEquals("Small update should still work", "Inventory updated successfully",
+				send("U\n[" + product("Axe") + "]\n"));
+		assertEquals("Small update should be applied", 1, inventory.getProductsSnapshot().size());
+	}
+
+	/**
+	 * Tests that an update with no product list, or one that is not valid JSON,
+	 * is answered with an error line and changes nothing.
+	 *
+	 * @throws Exception if the service cannot be reached
+	 */
+	@Test
+	public void testInvalidUpdateAnswered() throws Exception {
+		AdminService admin = create();
+		start(admin);
+		long timedBefore = MetricsRegistry.GLOBAL.timer("admin.update").getCount();
+
+		assertEquals("Update without a payload should be answered", "Missing product list", send("U\n"));
+		assertEquals("Update of null should be answered", "Missing product list", send("U\nnull\n"));
+		String reply = send("U\n[{\"name\": \n");
+		assertTrue("Malformed update should be answered, not " + reply,
+				reply != null && reply.startsWith("Invalid product list"));
+		assertEquals("Invalid updates should change nothing", 0, inventory.getProductsSnapshot().size());
+		assertEquals("Valid update should still work", "Inventory updated successfully",
+				send("U\n[" + product("Axe") + "]\n"));
+		if (MetricsRegistry.GLOBAL.isEnabled()) {
+			assertTrue("Invalid updates should be timed too",
+					MetricsRegistry.GLOBAL.timer("admin.update").getCount() - timedBefore >= 3);
+		}
+	}
+
+	/**
+	 * Tests that with every worker busy and the queue full, another connection
+	 * is answered "Busy" at once, and that the service recovers when the busy
+	 * clients leave.
+	 *
+	 * @throws Exception if the service cannot be reached
+	 */
+	@Test
+	public void testFullQueueRejectsFast() throws Exception {
+		AdminService admin = create();
+		admin.setWorkers(1, 1);
+		start(admin);
+
+		// One silent client holds the worker and another waits in the queue
+		List<Socket> silent = new ArrayList<>();
+		silent.add(new Socket("localhost", port));
+		Thread.sleep(200);
+		silent.add(new Socket("localhost", port));
+		Thread.sleep(200);
+
+		long startNanos = System.nanoTime();
+		assertTrue("Connection over the queue should be refused", send("S\n").startsWith("Busy"));
+		assertTrue("Refusal should be fast", System.nanoTime() - startNanos < 1_000_000_000L);
+
+		for (Socket socket : silent) {
+			socket.close();
+		}
+		Thread.sleep(200);
+		assertTrue("Service should answer once the clients leave", send("S\n").startsWith("{"));
+	}
+
+	/**
+	 * Tests that shutting down saves an update that was applied but not yet
+	 * written, and stops accepting connections.
+	 *
+	 * @throws Exception if the service cannot be reached
+	 */
+	@Test
+	public void testShutdownDrainsAndSaves() throws Exception {
+		AdminService admin = create();
+		start(admin);
+		assertEquals("Update should be applied", "Inventory updated successfully",
+				send("U\n[" + product("Axe") + "]\n"));
+
+		assertTrue("Service should drain in time", admin.shutdown(5000));
+		SalableProduct[] saved = FileService.loadFromFile(TEST_FILE);
+		assertEquals("Update should be saved", 1, saved.length);
+		assertEquals("Saved product should be the update", "Axe", saved[0].getName());
+		try {
+			new Socket("localhost", port).close();
+			fail("Service should not accept connections after shutdown");
+		} catch (IOException expected) {
+			// refused, as it should be
+		}
+	}
+
+	/**
+	 * Tests that a service made without a file or persister applies updates
+	 * without writing the store's inventory file.
+	 *
+	 * @throws Exception if the service cannot be reached
+	 */
+	@Test
+	public void testNoPersistenceByDefault() throws Exception {
+		File inventoryFile = new File(AdminService.DEFAULT_INVENTORY_FILE);
+		long modified = inventoryFile.lastModified();
+		long length = inventoryFile.length();
+		inventory = new InventoryManager();
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+		AdminService admin = new AdminService(inventory, port);
+		start(admin);
+
+		assertEquals("Update should be applied", "Inventory updated successfully",
+				send("U\n[" + product("Axe") + "]\n"));
+		assertTrue("Service should drain in time", admin.shutdown(5000));
+		assertEquals("Update should be in the inventory", 1, inventory.getProductsSnapshot().size());
+		assertEquals("Inventory file should not be written", modified, inventoryFile.lastModified());
+		assertEquals("Inventory file should not be written", length, inventoryFile.length());
+	}
+
+	private AdminService create() throws IOException {
+		inventory = new InventoryManager();
+		persister = new InventoryPersister(inventory, TEST_FILE, InventoryPersister.Durability.ACK_AFTER_APPLY);
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+		return new AdminService(inventory, port, AdminService.DEFAULT_CACHE_BYTES, persister);
+	}
+
+	private void start(AdminService admin) throws InterruptedException {
+		Thread thread = new Thread(admin);
+		thread.setDaemon(true);
+		thread.start();
+		for (int attempt = 0; attempt < 100; attempt++) {
+			try {
+				new Socket("localhost", port).close();
+				return;
+			} catch (IOException e) {
+				Thread.sleep(50);
+			}
+		}
+		fail("Admin service did not start listening on " + port);
+	}
+
+	private String send(String request) throws IOException {
+		try (Socket socket = new Socket("localhost", port)) {
+			OutputStream out = socket.getOutputStream();
+			out.write(request.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			// Every request is one whole command, so a missing line reads as the end
+			socket.shutdownOutput();
+			return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+					.readLine();
+		}
+	}
+
+	private static String product(String name) throws IOException {
+		return new ObjectMapper().writerFor(SalableProduct.class)
+				.writeValueAsString(new Weapon(name, "Sharp and can swing", 10.0, 1));
+	}
+}
@@ -0,0 +1,217 @@
+package test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Armor;
+import app.CartStore;
+import app.InventoryManager;
+import app.SalableProduct;
+import app.ShoppingCart;
+import app.StoreSessionManager;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the {@link CartStore} class and the parked sessions of
+ * {@link StoreSessionManager}. These tests check that saved carts survive a
+ * reopen, that a partly written cart is dropped, that replaced carts are
+ * compacted away, and that an idle session is parked and resumed with its
+ * cart.
+ */
+public class CartStoreTest {
+
+	private static final File TEST_FILE = new File("test_carts.dat");
+
+	private InventoryManager inventory;
+	private SalableProduct sword;
+	private SalableProduct shield;
+
+	/**
+	 * Creates an inventory with a sword and a shield and removes any old store.
+	 */
+	@Before
+	public void setUp() {
+		inventory = new InventoryManager();
+		sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+		shield = new Armor("Shield", "Blocks attacks", 500.0, 10);
+		inventory.addSalableProduct(sword);
+		inventory.addSalableProduct(shield);
+		tearDown();
+	}
+
+	/**
+	 * Removes the store's file.
+	 */
+	@After
+	public void tearDown() {
+		TEST_FILE.delete();
+	}
+
+	/**
+	 * Tests that saved carts are read back after a reopen, that the latest save
+	 * wins, and that removed carts and a partly written cart are gone.
+	 *
+	 * @throws IOException if the store cannot be written
+	 */
+	@Test
+	public void testSaveAndReopen() throws IOException {
+		try (CartStore store = new CartStore(TEST_FILE)) {
+			store.save("a", cart(2, 1));
+			store.save("b", cart(1, 0));
+			store.save("a", cart(3, 0));
+			store.save("c", cart(0, 4));
+			store.remove("c");
+		}
+		try (RandomAccessFile file = new RandomAccessFile(TEST_FILE, "rw")) {
+			file.seek(file.length());
+			file.writeInt(100);
+			file.writeUTF("d");
+		}
+
+		try (CartStore store = new CartStore(TEST_FILE)) {
+			assertEquals("Two carts should be saved", 2, store.size());
+			ShoppingCart a = store.load("a", inventory);
+			assertEquals("Latest save should win", 3, a.getQuantity(sword));
+			assertEquals("Latest save should replace every line", 0, a.getQuantity(shield));
+			assertEquals("Other cart should be whole", 1, store.load("b", inventory).getQuantity(sword));
+			assertNull("Removed cart should be gone", store.load("c", inventory));
+			assertNull("Partly written cart should be dropped", store.load("d", inventory));
+
+			store.save("e", cart(0, 2));
+			assertEquals("Store should keep saving after the cut", 2, store.load("e", inventory).getQuantity(shield));
+		}
+	}
+
+	/**
+	 * Tests that carts saved together are read back after a reopen, that an
+	 * empty cart in the batch removes its session, and that removing a session
+	 * with nothing saved writes nothing.
+	 *
+	 * @throws IOException if the store cannot be written
+	 */
+	@Test
+	public void testSaveAll() throws IOException {
+		try (CartStore store = new CartStore(TEST_FILE)) {
+			store.save("a", cart(1, 0));
+			long before = store.getFileBytes();
+			Map<String, ShoppingCart> batch = new LinkedHashMap<>();
+			batch.put("missing", new ShoppingCart());
+			assertEquals("An empty batch should save nothing", 0, store.saveAll(batch));
+			assertEquals("Removing a missing session should write nothing", before, store.getFileBytes());
+
+			batch.put("a", new ShoppingCart());
+			batch.put("b", cart(2, 0));
+			batch.put("c", cart(0, 3));
+			assertEquals("Two carts with products should be saved", 2, store.saveAll(batch));
+		}
+		try (CartStore store = new CartStore(TEST_FILE)) {
+			assertEquals("Two carts should be saved", 2, store.size());
+			assertFalse("Empty cart should remove its session", store.contains("a"));
+			assertEquals("Cart b should hold its swords", 2, store.load("b", inventory).getQuantity(sword));
+			assertEquals("Cart c should hold its shields", 3, store.load("c", inventory).getQuantity(shield));
+		}
+	}
+
+	/**
+	 * Tests that saving the same carts over and over compacts the file, and that
+	 * every cart is still there after compacting.
+	 *
+	 * @throws IOException if the store cannot be written
+	 */
+	@Test
+	public void testCompaction() throws IOException {
+		try (CartStore store = new CartStore(TEST_FILE, 4096)) {
+			for (int round = 1; round <= 200; round++) {
+				for (int i = 0; i < 10; i++) {
+					store.save("session-" + i, cart(round, i));
+				}
+			}
+			assertTrue("File should be compacted", store.getFileBytes() < 8192);
+			for (int i = 0; i < 10; i++) {
+				ShoppingCart cart = store.load("session-" + i, inventory);
+				assertEquals("Cart should hold its latest swords", 200, cart.getQuantity(sword));
+				assertEquals("Cart should hold its latest shields", i, cart.getQuantity(shield));
+			}
+		}
+		try (CartStore store = new CartStore(TEST_FILE, 4096)) {
+			assertEquals("Compacted file should reopen", 10, store.size());
+		}
+	}
+
+	/**
+	 * Tests that an idle session's cart is parked, that a new session manager
+	 * resumes it when the session is used again, and that a purchase removes it.
+	 *
+	 * @throws Exception if the store cannot be written or the wait is
+	 *                   interrupted
+	 */
+	@Test
+	public void testParkAndResumeSession() throws Exception {
+		String sessionId;
+		try (CartStore store = new CartStore(TEST_FILE)) {
+			StoreSessionManager manager = new StoreSessionManager(inventory, 1, null, store);
+			sessionId = manager.openSession();
+			manager.addToCart(sessionId, "Sword", 2);
+			Thread.sleep(10);
+			assertEquals("Idle session should be evicted", 1, manager.evictIdleSessions());
+			assertEquals("Its cart should be parked", 1, manager.getParkedCount());
+		}
+
+		try (CartStore store = new CartStore(TEST_FILE)) {
+			StoreSessionManager manager = new StoreSessionManager(inventory, 60_000, null, store);
+			assertEquals("Parked session should not be loaded before it is used", 0, manager.getSessionCount());
+			assertEquals("Resumed cart should hold the swords", 2, manager.getCart(sessionId).getQuantity(sword));
+			assertTrue("Resumed cart should be purchased", manager.purchaseFromCart(sessionId).isSuccess());
+			assertEquals("Purchase should remove the parked cart", 0, manager.getParkedCount());
+		}
+	}
+
+	/**
+	 * Tests that more sessions than fit in one batch are all parked, both when
+	 * they go idle and when every session is parked for a shutdown.
+	 *
+	 * @throws Exception if the store cannot be written or the wait is
+	 *                   interrupted
+	 */
+	@Test
+	public void testParkManySessions() throws Exception {
+		int count = StoreSessionManager.PARK_BATCH + 10;
+		try (CartStore store = new CartStore(TEST_FILE)) {
+			StoreSessionManager manager = new StoreSessionManager(inventory, 60_000, null, store);
+			for (int i = 0; i < count; i++) {
+				manager.addToCart(manager.openSession(), "Sword", 1);
+			}
+			manager.openSession();
+			assertEquals("Every cart with products should be parked", count, manager.parkAllSessions());
+			assertEquals("Sessions should stay open", count + 1, manager.getSessionCount());
+
+			StoreSessionManager shortLived = new StoreSessionManager(inventory, 1, null, store);
+			for (int i = 0; i < count; i++) {
+				shortLived.addToCart(shortLived.openSession(), "Shield", 1);
+			}
+			Thread.sleep(10);
+			assertEquals("Every idle session should be evicted", count, shortLived.evictIdleSessions());
+			assertEquals("Every cart should be parked", 2 * count, store.size());
+		}
+	}
+
+	private ShoppingCart cart(int swords, int shields) {
+		ShoppingCart cart = new ShoppingCart();
+		if (swords > 0) {
+			cart.addToCart(sword, swords);
+		}
+		if (shields > 0) {
+			cart.addToCart(shield, shields);
+		}
+		return cart;
+	}
+}
@@ -0,0 +1,81 @@
+package test;
+
+import org.junit.Test;
+
+import app.Armor;
+import app.CatalogGenerator;
+import app.Health;
+import app.InventoryManager;
+import app.ProductCategory;
+import app.SalableProduct;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for the {@link CatalogGenerator} class, and for the inventory with
+ * a catalog far larger than the sample products.
+ */
+public class CatalogGeneratorTest {
+
+	/**
+	 * Tests that the same seed makes the same catalog.
+	 */
+	@Test
+	public void testDeterministic() {
+		List<SalableProduct> first = new CatalogGenerator(7).generate(1000);
+		List<SalableProduct> second = new CatalogGenerator(7).generate(1000);
+		for (int i = 0; i < first.size(); i++) {
+			assertEquals("Product " + i + " should be the same", first.get(i), second.get(i));
+		}
+		assertNotEquals("Another seed should make another catalog", first, new CatalogGenerator(8).generate(1000));
+	}
+
+	/**
+	 * Tests that names are unique and every product is a usable weapon, armor or
+	 * health item.
+	 */
+	@Test
+	public void testProducts() {
+		List<SalableProduct> products = new CatalogGenerator(42).generate(20_000);
+		Set<String> names = new HashSet<>();
+		int[] categories = new int[ProductCategory.values().length];
+		for (SalableProduct product : products) {
+			assertTrue("Name should be unique: " + product.getName(), names.add(product.getName()));
+			assertFalse("Description should not be empty", product.getDescription().isEmpty());
+			assertTrue("Price should be positive", product.getPrice() > 0);
+			assertTrue("Quantity should not be negative", product.getQuantity() >= 0);
+			assertTrue("Product should be a weapon, armor or health item",
+					product instanceof Weapon || product instanceof Armor || product instanceof Health);
+			categories[ProductCategory.of(product).ordinal()]++;
+		}
+		for (ProductCategory category : new ProductCategory[] { ProductCategory.WEAPON, ProductCategory.ARMOR,
+				ProductCategory.HEALTH }) {
+			assertTrue("Catalog should have plenty of " + category, categories[category.ordinal()] > 3000);
+		}
+	}
+
+	/**
+	 * Tests that every product of a large catalog can be found by name.
+	 */
+	@Test
+	public void testLargeInventory() {
+		List<SalableProduct> products = new CatalogGenerator(42).generate(20_000);
+		InventoryManager inventory = new InventoryManager();
+		for (SalableProduct product : products) {
+			inventory.addSalableProduct(product);
+		}
+		for (int i = 0; i < products.size(); i += 97) {
+			SalableProduct product = products.get(i);
+			assertSame("Product should be found by name", product,
+					inventory.getProductByName(product.getName().toLowerCase()));
+		}
+		assertEquals("Every product should be listed once", products.size(),
+				inventory.getCategoryCount(ProductCategory.WEAPON) + inventory.getCategoryCount(ProductCategory.ARMOR)
+						+ inventory.getCategoryCount(ProductCategory.HEALTH));
+	}
+}
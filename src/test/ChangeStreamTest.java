@@ -0,0 +1,210 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import app.ChangeStream;
+import app.InventoryEvent;
+import app.InventoryManager;
+import app.InventorySubscriber;
+import app.SalableProduct;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the {@link ChangeStream} class and the events the
+ * {@link InventoryManager} publishes on it.
+ */
+public class ChangeStreamTest {
+
+	private List<InventoryEvent> received;
+	private List<Integer> batchSizes;
+
+	/**
+	 * Clears the events received.
+	 */
+	@Before
+	public void setUp() {
+		received = new ArrayList<>();
+		batchSizes = new ArrayList<>();
+	}
+
+	/**
+	 * Tests that adding, changing and purchasing a product publish one event each,
+	 * in order.
+	 */
+	@Test
+	public void testInventoryEvents() {
+		InventoryManager inventory = new InventoryManager();
+		ChangeStream.Subscription subscription = inventory.getChangeStream().subscribe("test", this::receive);
+		SalableProduct sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+		inventory.addSalableProduct(sword);
+		sword.setPrice(1100.0);
+		Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+		lines.put(sword, 3);
+		assertTrue("Purchase should succeed", inventory.purchase(lines));
+
+		assertTrue("Every event should be delivered",
+				subscription.awaitDelivered(inventory.getChangeStream().getLastSequence(), 5000));
+		subscription.close();
+		synchronized (received) {
+			assertEquals("Three events should be published", 3, received.size());
+			assertEquals("First event should be the add", InventoryEvent.Type.ADDED, received.get(0).getType());
+			assertEquals("Second event should be the update", InventoryEvent.Type.UPDATED, received.get(1).getType());
+			assertEquals("Third event should be the purchase", InventoryEvent.Type.STOCK_DECREMENTED,
+					received.get(2).getType());
+			assertEquals("Purchase event should have the stock left", 7, received.get(2).getQuantity());
+			assertSame("Events should hold the product", sword, received.get(2).getProduct());
+		}
+	}
+
+	/**
+	 * Tests that a slow subscriber that keeps within the buffer gets every event
+	 * in order, in batches, even when the publisher wraps around it many times.
+	 */
+	@Test
+	public void testWrapAndBatch() {
+		ChangeStream stream = new ChangeStream(8);
+		ChangeStream.Subscription subscription = stream.subscribe("slow", events -> {
+			receive(events);
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		SalableProduct sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("Sequence numbers should count up", i, stream.publish(InventoryEvent.Type.UPDATED, sword));
+			if (i % 8 == 7) {
+				assertTrue("Each buffer should be delivered", subscription.awaitDelivered(i, 5000));
+			}
+		}
+		assertTrue("Every event should be delivered", subscription.awaitDelivered(999, 5000));
+		assertEquals("A subscriber within the buffer should not be overrun", 0, subscription.getOverrunCount());
+		subscription.close();
+		synchronized (received) {
+			assertEquals("Every event should be delivered once", 1000, received.size());
+			for (int i = 0; i < received.size(); i++) {
+				assertEquals("Events should arrive in order", i, received.get(i).getSequence());
+			}
+			assertTrue("Events should arrive in batches", batchSizes.size() < 1000);
+			for (int size : batchSizes) {
+				assertTrue("No batch should exceed the buffer", size <= 8);
+			}
+		}
+	}
+
+	/**
+	 * Tests that a stalled subscriber does not hold up publishing, and that once
+	 * it wakes it is told it was overrun and then gets the newer events.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@Test
+	public void testOverrun() throws InterruptedException {
+		ChangeStream stream = new ChangeStream(8);
+		CountDownLatch stalled = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch resynced = new CountDownLatch(1);
+		AtomicInteger overruns = new AtomicInteger();
+		ChangeStream.Subscription subscription = stream.subscribe("stalled", new InventorySubscriber() {
+			@Override
+			public void onEvents(List<InventoryEvent> events) {
+				receive(events);
+				stalled.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void onOverrun() {
+				overruns.incrementAndGet();
+				resynced.countDown();
+			}
+		});
+		SalableProduct sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+		stream.publish(InventoryEvent.Type.UPDATED, sword);
+		assertTrue("First event should be delivered", stalled.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i < 100; i++) {
+			stream.publish(InventoryEvent.Type.UPDATED, sword);
+		}
+		release.countDown();
+		assertTrue("Subscriber should be told it was overrun", resynced.await(5, TimeUnit.SECONDS));
+		long last = stream.publish(InventoryEvent.Type.UPDATED, sword);
+		assertTrue("Events after the overrun should be delivered", subscription.awaitDelivered(last, 5000));
+		subscription.close();
+
+		assertEquals("Subscriber should be told once", 1, overruns.get());
+		assertEquals("Overrun should be counted", 1, subscription.getOverrunCount());
+		synchronized (received) {
+			assertEquals("Events the buffer lost should be skipped", 0, received.get(0).getSequence());
+			assertTrue("Events the buffer lost should be skipped", received.size() < 100);
+			assertEquals("Newest event should be delivered", last, received.get(received.size() - 1).getSequence());
+			for (int i = 1; i < received.size(); i++) {
+				assertTrue("Events should arrive in order",
+						received.get(i).getSequence() > received.get(i - 1).getSequence());
+			}
+		}
+	}
+
+	/**
+	 * Tests that a subscriber throwing an Error keeps receiving events.
+	 */
+	@Test
+	public void testSubscriberError() {
+		ChangeStream stream = new ChangeStream();
+		ChangeStream.Subscription subscription = stream.subscribe("failing", events -> {
+			receive(events);
+			throw new AssertionError("Subscriber failed");
+		});
+		SalableProduct sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+		long first = stream.publish(InventoryEvent.Type.UPDATED, sword);
+		assertTrue("Event should be delivered", subscription.awaitDelivered(first, 5000));
+		long second = stream.publish(InventoryEvent.Type.UPDATED, sword);
+		assertTrue("Events after an Error should be delivered", subscription.awaitDelivered(second, 5000));
+		subscription.close();
+	}
+
+	/**
+	 * Tests that nothing is published without subscribers and nothing is
+	 * delivered after closing.
+	 */
+	@Test
+	public void testClose() {
+		ChangeStream stream = new ChangeStream();
+		SalableProduct sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+		assertEquals("Publishing without subscribers should do nothing", -1,
+				stream.publish(InventoryEvent.Type.ADDED, sword));
+
+		ChangeStream.Subscription subscription = stream.subscribe("test", this::receive);
+		long sequence = stream.publish(InventoryEvent.Type.ADDED, sword);
+		assertTrue("Event should be delivered", subscription.awaitDelivered(sequence, 5000));
+		subscription.close();
+		assertEquals("Closed stream should have no subscribers", 0, stream.getSubscriberCount());
+		assertEquals("Publishing after close should do nothing", -1,
+				stream.publish(InventoryEvent.Type.UPDATED, sword));
+		synchronized (received) {
+			assertEquals("Only the first event should be delivered", 1, received.size());
+		}
+	}
+
+	private void receive(List<InventoryEvent> events) {
+		synchronized (received) {
+			received.addAll(events);
+			batchSizes.add(events.size());
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Armor;
+import app.CartResult;
+import app.ChangeStream;
+import app.CheckoutPipeline;
+import app.InventoryEvent;
+import app.InventoryManager;
+import app.SalableProduct;
+import app.ShoppingCart;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the {@link CheckoutPipeline} class and the batch purchase in
+ * {@link InventoryManager#purchaseAll(List)} it runs. These tests check that
+ * purchases in a batch are filled in order, that each product is written once
+ * per batch, and that every cart checked out at the same time gets its own
+ * result.
+ */
+public class CheckoutPipelineTest {
+
+	private InventoryManager inventory;
+	private SalableProduct sword;
+	private SalableProduct shield;
+
+	/**
+	 * Creates an inventory with a sword and a shield.
+	 */
+	@Before
+	public void setUp() {
+		inventory = new InventoryManager();
+		sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 5);
+		shield = new Armor("Shield", "Blocks attacks", 500.0, 10);
+		inventory.addSalableProduct(sword);
+		inventory.addSalableProduct(shield);
+	}
+
+	/**
+	 * Tests that purchases in a batch are checked against the stock earlier ones
+	 * left, that a short purchase takes nothing, and that each product is
+	 * published once for the batch.
+	 */
+	@Test
+	public void testPurchaseAll() {
+		List<InventoryEvent> events = new ArrayList<>();
+		ChangeStream.Subscription subscription = inventory.getChangeStream().subscribe("test", batch -> {
+			synchronized (events) {
+				events.addAll(batch);
+			}
+		});
+		boolean[] taken = inventory.purchaseAll(Arrays.asList(lines(sword, 3, shield, 1), lines(sword, 3, shield, 1),
+				lines(sword, 2, shield, 1)));
+
+		assertArrayEquals("Second purchase should be short", new boolean[] { true, false, true }, taken);
+		assertEquals("Sword stock should be taken by two purchases", 0, sword.getQuantity());
+		assertEquals("Short purchase should not take its shield", 8, shield.getQuantity());
+		assertEquals("Stock index should follow", 1, inventory.getProductsWithQuantityBelow(1).size());
+
+		assertTrue("Events should be delivered",
+				subscription.awaitDelivered(inventory.getChangeStream().getLastSequence(), 5000));
+		subscription.close();
+		synchronized (events) {
+			assertEquals("Each product should be published once", 2, events.size());
+		}
+	}
+
+	/**
+	 * Tests that many shoppers checking out at once each get a result, that
+	 * exactly as many as the stock allows succeed, and that only their carts
+	 * are cleared.
+	 *
+	 * @throws InterruptedException if interrupted while the shoppers run
+	 */
+	@Test
+	public void testConcurrentCheckouts() throws InterruptedException {
+		CheckoutPipeline pipeline = new CheckoutPipeline(inventory);
+		AtomicInteger purchased = new AtomicInteger();
+		AtomicInteger outOfStock = new AtomicInteger();
+		AtomicInteger wrongCarts = new AtomicInteger();
+		Thread[] shoppers = new Thread[20];
+		for (int i = 0; i < shoppers.length; i++) {
+			shoppers[i] = new Thread(() -> {
+				ShoppingCart cart = new ShoppingCart();
+				cart.addToCart(shield, 1);
+				CartResult result = pipeline.checkout(cart);
+				if (result.getStatus() == CartResult.Status.PURCHASED) {
+					purchased.incrementAndGet();
+					if (!cart.isEmpty()) {
+						wrongCarts.incrementAndGet();
+					}
+				} else if (result.getStatus() == CartResult.Status.OUT_OF_STOCK) {
+					outOfStock.incrementAndGet();
+					if (cart.isEmpty()) {
+						wrongCarts.incrementAndGet();
+					}
+				}
+			});
+			shoppers[i].start();
+		}
+		for (Thread shopper : shoppers) {
+			shopper.join();
+		}
+		assertEquals("As many checkouts as the stock allows should succeed", 10, purchased.get());
+		assertEquals("The rest should run out of stock", 10, outOfStock.get());
+		assertEquals("Only purchased carts should be cleared", 0, wrongCarts.get());
+		assertEquals("Stock should be used up", 0, shield.getQuantity());
+	}
+
+	/**
+	 * Tests that an empty cart is not purchased.
+	 */
+	@Test
+	public void testEmptyCart() {
+		CheckoutPipeline pipeline = new CheckoutPipeline(inventory);
+		assertEquals("Empty cart should not be purchased", CartResult.Status.CART_EMPTY,
+				pipeline.checkout(new ShoppingCart()).getStatus());
+	}
+
+	private static Map<SalableProduct, Integer> lines(SalableProduct first, int firstQty, SalableProduct second,
+			int secondQty) {
+		Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+		lines.put(first, firstQty);
+		lines.put(second, secondQty);
+		return lines;
+	}
+}
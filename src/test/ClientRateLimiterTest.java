@@ -0,0 +1,48 @@
+package test;
+
+import org.junit.Test;
+
+import app.ClientRateLimiter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link ClientRateLimiter} class. These tests check that a
+ * client is held to its burst, and that a flood from many addresses cannot
+ * grow the limiter past its cap.
+ */
+public class ClientRateLimiterTest {
+
+	/**
+	 * Tests that a client gets its burst and is then refused, without affecting
+	 * another client.
+	 */
+	@Test
+	public void testBurst() {
+		ClientRateLimiter limiter = new ClientRateLimiter(0.001, 3);
+		for (int i = 0; i < 3; i++) {
+			assertTrue("Requests within the burst should be allowed", limiter.tryAcquire("10.0.0.1"));
+		}
+		assertFalse("Requests past the burst should be refused", limiter.tryAcquire("10.0.0.1"));
+		assertTrue("Other clients should have their own bucket", limiter.tryAcquire("10.0.0.2"));
+	}
+
+	/**
+	 * Tests that clients that keep sending, too many to drop as quiet, are
+	 * evicted quietest first so the limiter stays within its cap.
+	 */
+	@Test
+	public void testCapWithActiveClients() {
+		ClientRateLimiter limiter = new ClientRateLimiter(0.001, 3);
+		int clients = ClientRateLimiter.MAX_CLIENTS * 3;
+		for (int i = 0; i < clients; i++) {
+			assertTrue("First request should be allowed", limiter.tryAcquire("client-" + i));
+			assertTrue("Limiter should stay within its cap",
+					limiter.getClientCount() <= ClientRateLimiter.MAX_CLIENTS);
+		}
+		assertTrue("Clients should be evicted", limiter.getEvictions() >= clients - ClientRateLimiter.MAX_CLIENTS);
+		assertTrue("Newest client should keep its bucket", limiter.tryAcquire("client-" + (clients - 1)));
+		assertTrue("Newest client's bucket should hold what it used",
+				limiter.tryAcquire("client-" + (clients - 1)) && !limiter.tryAcquire("client-" + (clients - 1)));
+	}
+}
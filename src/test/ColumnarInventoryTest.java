@@ -0,0 +1,157 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Armor;
+import app.ColumnarInventory;
+import app.Health;
+import app.InventoryManager;
+import app.ProductCategory;
+import app.SalableProduct;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the {@link ColumnarInventory} class. These tests check that it
+ * answers the same way as {@link InventoryManager} for the same products.
+ */
+public class ColumnarInventoryTest {
+
+	private ColumnarInventory inventory;
+
+	/**
+	 * Sets up a columnar inventory with a few sample products, two of them with
+	 * names that differ only in case.
+	 */
+	@Before
+	public void setUp() {
+		inventory = new ColumnarInventory();
+		inventory.addSalableProduct(new Weapon("Sword", "Sharp and can swing", 1200.0, 10));
+		inventory.addSalableProduct(new Weapon("Axe", "Sharp and pointy", 800.0, 15));
+		inventory.addSalableProduct(new Armor("Shield", "Stops things", 1500.0, 30));
+		inventory.addSalableProduct(new Health("Potion", "Heals", 20.5, 100));
+		inventory.addSalableProduct(new Health("potion", "Heals", 15.0, 5));
+	}
+
+	/**
+	 * Tests that products come back with their type and values.
+	 */
+	@Test
+	public void testGetProductByName() {
+		SalableProduct shield = inventory.getProductByName("SHIELD");
+		assertTrue("Shield should come back as Armor", shield instanceof Armor);
+		assertEquals("Shield price should be kept", 1500.0, shield.getPrice(), 0.001);
+		assertEquals("Shield quantity should be kept", 30, shield.getQuantity());
+		assertNull("Unknown names should not be found", inventory.getProductByName("Hammer"));
+	}
+
+	/**
+	 * Tests that sorting gives the same order as {@link InventoryManager}.
+	 */
+	@Test
+	public void testSortMatchesInventoryManager() {
+		InventoryManager manager = new InventoryManager();
+		for (SalableProduct product : inventory.getAllProduct()) {
+			manager.addSalableProduct(product);
+		}
+		manager.sortByNameThenPrice();
+		inventory.sortByNameThenPrice();
+
+		List<SalableProduct> sorted = inventory.getAllProduct();
+		List<SalableProduct> expected = manager.getAllProduct();
+		assertEquals("Both should hold every product", expected.size(), sorted.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals("Names should be in the same order", expected.get(i).getName(), sorted.get(i).getName());
+			assertEquals("Prices should be in the same order", expected.get(i).getPrice(), sorted.get(i).getPrice(),
+					0.001);
+		}
+		assertEquals("Cheaper potion should come first", 15.0, sorted.get(1).getPrice(), 0.001);
+	}
+
+	/**
+	 * Tests the stock value, category stock and price range scans.
+	 */
+	@Test
+	public void testScans() {
+		assertEquals("Total value should add price times quantity",
+				1200.0 * 10 + 800.0 * 15 + 1500.0 * 30 + 20.5 * 100 + 15.0 * 5, inventory.getTotalStockValue(),
+				0.001);
+		assertEquals("Health stock should add both potions", 105,
+				inventory.getCategoryStock(ProductCategory.HEALTH));
+		assertEquals("Snapshot should agree on the total", inventory.getTotalStockValue(),
+				inventory.getSnapshot().getTotalStockValue(false), 0.001);
+
+		List<String> names = new ArrayList<>();
+		for (SalableProduct product : inventory.getProductsByPriceRange(800.0, 1200.0)) {
+			names.add(product.getName());
+		}
+		assertEquals("Range should include both ends, cheapest first", List.of("Axe", "Sword"), names);
+		assertEquals("Names should be stored once however many products share them", 9,
+				inventory.getDictionarySize());
+	}
+
+	/**
+	 * Tests that a purchase takes all of its stock or none of it.
+	 */
+	@Test
+	public void testPurchase() {
+		Map<SalableProduct, Integer> lines = new HashMap<>();
+		lines.put(new Weapon("Sword", "", 0, 0), 4);
+		lines.put(new Health("Potion", "", 0, 0), 500);
+		assertFalse("Purchase should fail when a line is short", inventory.purchase(lines));
+		assertEquals("Failed purchase should leave stock alone", 10,
+				inventory.getProductByName("Sword").getQuantity());
+
+		lines.put(new Health("Potion", "", 0, 0), 5);
+		assertTrue("Purchase should succeed with enough stock", inventory.purchase(lines));
+		assertEquals("Sword stock should go down", 6, inventory.getProductByName("Sword").getQuantity());
+		assertEquals("Potion stock should go down", 95, inventory.getProductByName("Potion").getQuantity());
+
+		inventory.removeSalableProduct(new Weapon("Sword", "", 0, 0), 1);
+		assertEquals("Quantity should be set", 1, inventory.getProductByName("Sword").getQuantity());
+	}
+
+	/**
+	 * Tests that lines naming the same product are added up before the stock is
+	 * checked, so together they cannot take more than there is.
+	 */
+	@Test
+	public void testPurchaseSameProductTwice() {
+		Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+		lines.put(new Armor("Shield", "", 0, 0), 20);
+		lines.put(new Armor("SHIELD", "", 0, 0), 20);
+		assertFalse("Lines together should not take more than the stock", inventory.purchase(lines));
+		assertEquals("Failed purchase should leave stock alone", 30,
+				inventory.getProductByName("Shield").getQuantity());
+
+		lines.clear();
+		lines.put(new Armor("Shield", "", 0, 0), 10);
+		lines.put(new Armor("shield", "", 0, 0), 15);
+		assertTrue("Lines within the stock together should succeed", inventory.purchase(lines));
+		assertEquals("Stock should go down by the total", 5, inventory.getProductByName("Shield").getQuantity());
+	}
+
+	/**
+	 * Tests that lookups find the first product with a name after adding and
+	 * sorting.
+	 */
+	@Test
+	public void testLookupAfterSort() {
+		assertEquals("First potion added should be found", 20.5, inventory.getProductByName("POTION").getPrice(),
+				0.001);
+		inventory.sortByNameThenPrice();
+		assertEquals("First potion after sorting should be found", 15.0,
+				inventory.getProductByName("Potion").getPrice(), 0.001);
+		inventory.addSalableProduct(new Weapon("Hammer", "Heavy", 300.0, 4));
+		assertEquals("Products added after sorting should be found", 4,
+				inventory.getProductByName("hammer").getQuantity());
+	}
+}
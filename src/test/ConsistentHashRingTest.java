@@ -0,0 +1,79 @@
+package test;
+
+import org.junit.Test;
+
+import app.ConsistentHashRing;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the {@link ConsistentHashRing} class. These tests check that
+ * owners do not depend on the order of the nodes, that keys are spread evenly,
+ * and that adding a node moves few keys.
+ */
+public class ConsistentHashRingTest {
+
+	private static final List<String> NODES = Arrays.asList("localhost:7001", "localhost:7002", "localhost:7003",
+			"localhost:7004");
+	private static final int KEYS = 40_000;
+
+	/**
+	 * Tests that rings built from the same nodes in another order agree on every
+	 * key.
+	 */
+	@Test
+	public void testOrderDoesNotMatter() {
+		ConsistentHashRing ring = new ConsistentHashRing(NODES);
+		List<String> reversed = Arrays.asList("localhost:7004", "localhost:7003", "localhost:7002", "localhost:7001");
+		ConsistentHashRing other = new ConsistentHashRing(reversed);
+		for (int i = 0; i < 1000; i++) {
+			String key = "product " + i;
+			assertEquals("Both rings should pick the same node", NODES.get(ring.nodeFor(key)),
+					reversed.get(other.nodeFor(key)));
+		}
+	}
+
+	/**
+	 * Tests that no node gets far more or fewer keys than its share.
+	 */
+	@Test
+	public void testBalance() {
+		ConsistentHashRing ring = new ConsistentHashRing(NODES);
+		int[] counts = new int[NODES.size()];
+		for (int i = 0; i < KEYS; i++) {
+			counts[ring.nodeFor("product " + i)]++;
+		}
+		int share = KEYS / NODES.size();
+		for (int count : counts) {
+			assertTrue("Each node should get close to its share: " + Arrays.toString(counts),
+					Math.abs(count - share) < share * 0.25);
+		}
+	}
+
+	/**
+	 * Tests that adding a node only moves keys to the new node, and about one
+	 * key in every node count.
+	 */
+	@Test
+	public void testAddingNodeMovesFewKeys() {
+		ConsistentHashRing ring = new ConsistentHashRing(NODES);
+		List<String> grown = Arrays.asList("localhost:7001", "localhost:7002", "localhost:7003", "localhost:7004",
+				"localhost:7005");
+		ConsistentHashRing bigger = new ConsistentHashRing(grown);
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String key = "product " + i;
+			String before = NODES.get(ring.nodeFor(key));
+			String after = grown.get(bigger.nodeFor(key));
+			if (!before.equals(after)) {
+				assertEquals("Keys should only move to the new node", "localhost:7005", after);
+				moved++;
+			}
+		}
+		assertTrue("About a fifth of the keys should move, not " + moved,
+				moved > KEYS / 5 * 0.75 && moved < KEYS / 5 * 1.25);
+	}
+}
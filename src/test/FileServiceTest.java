@@ -4,12 +4,15 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.List;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import app.Armor;
 import app.FileService;
+import app.Health;
 import app.SalableProduct;
 import app.Weapon;
 
@@ -17,7 +20,7 @@ import app.Weapon;
  * Unit tests for the {@link FileService} class to ensure that products can be
  * saved to a file correctly. The tests cover various scenarios like saving an
  * empty list, saving a list when the file already exists, and saving products
- * that contain special characters.
+ * that contain special characters, and round-tripping the binary snapshot.
  */
 public class FileServiceTest {
 
@@ -118,4 +121,110 @@ public class FileServiceTest {
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Tests that weapons and armor are read back as the same class they were
+	 * saved as.
+	 */
+	@Test
+	public void testSaveToFile_KeepsProductType() {
+		FileService.saveToFile(TEST_FILE, testProducts);
+
+		try {
+			ObjectMapper mapper = new ObjectMapper();
+			SalableProduct[] productsFromFile = mapper.readValue(new File(TEST_FILE), SalableProduct[].class);
+			assertTrue("Sword should load as a Weapon", productsFromFile[0] instanceof Weapon);
+			assertTrue("Shield should load as Armor", productsFromFile[2] instanceof Armor);
+			assertEquals("Loaded sword should equal the saved one", testProducts.get(0), productsFromFile[0]);
+		} catch (Exception e) {
+			fail("Exception during file reading: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests that a durable save replaces the file with the new list and leaves no
+	 * temporary file behind.
+	 *
+	 * @throws Exception if the file cannot be written or read
+	 */
+	@Test
+	public void testSaveToFileDurably() throws Exception {
+		FileService.saveToFile(TEST_FILE, testProducts);
+		FileService.saveToFileDurably(TEST_FILE, testProducts.subList(0, 1));
+
+		SalableProduct[] saved = FileService.loadFromFile(TEST_FILE);
+		assertEquals("File should hold only the new list", 1, saved.length);
+		assertEquals("Product should keep its type", Weapon.class, saved[0].getClass());
+		assertFalse("Temporary file should be gone", new File(TEST_FILE + ".tmp").exists());
+	}
+
+	/**
+	 * Tests that a snapshot loads back every product with its type, fields and
+	 * a missing description intact.
+	 *
+	 * @throws Exception if the snapshot cannot be written or read
+	 */
+	@Test
+	public void testSnapshotRoundTrip() throws Exception {
+		String snapshotFile = "test_inventory.snapshot";
+		List<SalableProduct> products = Arrays.asList(testProducts.get(0), testProducts.get(2),
+				new Health("Potion", "Heals wounds", 25.5, 40), new SalableProduct("Rope", null, 3.0, 0),
+				new SalableProduct("Scroll", "Long é".repeat(20_000), 9.0, 1));
+		try {
+			FileService.saveSnapshot(snapshotFile, products);
+			SalableProduct[] loaded = FileService.loadSnapshot(snapshotFile);
+
+			assertEquals("Snapshot should hold every product", products.size(), loaded.length);
+			for (int i = 0; i < loaded.length; i++) {
+				SalableProduct expected = products.get(i);
+				assertEquals("Product should keep its type", expected.getClass(), loaded[i].getClass());
+				assertEquals("Name should match", expected.getName(), loaded[i].getName());
+				assertEquals("Description should match", expected.getDescription(), loaded[i].getDescription());
+				assertEquals("Price should match", expected.getPrice(), loaded[i].getPrice(), 0.0);
+				assertEquals("Quantity should match", expected.getQuantity(), loaded[i].getQuantity());
+			}
+			assertFalse("Temporary file should be gone", new File(snapshotFile + ".tmp").exists());
+		} finally {
+			new File(snapshotFile).delete();
+		}
+	}
+
+	/**
+	 * Tests that a snapshot with a corrupt product count or category is refused
+	 * with an IOException, which makes the store read its JSON file instead.
+	 *
+	 * @throws Exception if the snapshot cannot be written
+	 */
+	@Test
+	public void testCorruptSnapshot() throws Exception {
+		String snapshotFile = "test_inventory.snapshot";
+		try {
+			FileService.saveSnapshot(snapshotFile, testProducts);
+			try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+				// The count follows the magic number and version
+				file.seek(8);
+				file.writeInt(Integer.MAX_VALUE);
+			}
+			try {
+				FileService.loadSnapshot(snapshotFile);
+				fail("A corrupt count should be refused");
+			} catch (IOException e) {
+				// Expected
+			}
+
+			FileService.saveSnapshot(snapshotFile, testProducts);
+			try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+				// The first product's category follows the count
+				file.seek(12);
+				file.writeByte(100);
+			}
+			try {
+				FileService.loadSnapshot(snapshotFile);
+				fail("A corrupt category should be refused");
+			} catch (IOException e) {
+				// Expected
+			}
+		} finally {
+			new File(snapshotFile).delete();
+		}
+	}
+}
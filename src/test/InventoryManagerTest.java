@@ -4,7 +4,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import app.Armor;
+import app.Health;
 import app.InventoryManager;
+import app.InventorySnapshot;
+import app.ProductCategory;
 import app.SalableProduct;
 import app.Weapon;
 
@@ -163,4 +166,120 @@ public class InventoryManagerTest {
 		assertTrue("Inventory should contain Axe", products.contains(axe));
 		assertTrue("Inventory should contain Shield", products.contains(shield));
 	}
+
+	/**
+	 * Tests searching by prefix, by several words and with a typo. Verifies that
+	 * name matches rank above description matches.
+	 */
+	@Test
+	public void testSearch() {
+		SalableProduct swordfish = new Weapon("Swordfish Spear", "A sword shaped like a fish", 300.0, 2);
+		inventoryManager.addSalableProduct(swordfish);
+
+		List<SalableProduct> prefix = inventoryManager.search("swo", 10);
+		assertEquals("Prefix should match both sword products", 2, prefix.size());
+
+		List<SalableProduct> exact = inventoryManager.search("sword", 10);
+		assertEquals("Exact name match should rank first", sword, exact.get(0));
+		assertEquals("Description match should rank second", swordfish, exact.get(1));
+
+		List<SalableProduct> multi = inventoryManager.search("sharp pointy", 10);
+		assertEquals("Only the axe is sharp and pointy", 1, multi.size());
+		assertEquals("Only the axe is sharp and pointy", axe, multi.get(0));
+
+		List<SalableProduct> fuzzy = inventoryManager.search("sheild", 10);
+		assertEquals("A typo should still find the shield", shield, fuzzy.get(0));
+
+		assertTrue("Unknown words should match nothing", inventoryManager.search("banana", 10).isEmpty());
+		assertEquals("A huge limit should return every match", 2,
+				inventoryManager.search("swo", Integer.MAX_VALUE).size());
+	}
+
+	/**
+	 * Tests that the search index follows changes made through the product
+	 * setters.
+	 */
+	@Test
+	public void testSearchAfterProductChanges() {
+		axe.setName("Hatchet");
+		assertTrue("Old name should no longer match", inventoryManager.search("axe", 10).isEmpty());
+		assertEquals("New name should match", axe, inventoryManager.search("hatchet", 10).get(0));
+
+		sword.setDescription("Long and shiny");
+		assertEquals("New description should match", sword, inventoryManager.search("shiny", 10).get(0));
+	}
+
+	/**
+	 * Tests that products are partitioned by category with counts, stock totals
+	 * and paging kept current as stock changes.
+	 */
+	@Test
+	public void testCategoryPartitions() {
+		SalableProduct herb = new Health("Health Herb", "Tastes bad but helps", 150.0, 25);
+		inventoryManager.addSalableProduct(herb);
+
+		assertEquals("There should be 2 weapons", 2, inventoryManager.getCategoryCount(ProductCategory.WEAPON));
+		assertEquals("There should be 1 armor", 1, inventoryManager.getCategoryCount(ProductCategory.ARMOR));
+		assertEquals("Armor list should only hold the shield", shield,
+				inventoryManager.getProductsByCategory(ProductCategory.ARMOR).get(0));
+		assertEquals("Weapon stock should be 25", 25, inventoryManager.getCategoryStock(ProductCategory.WEAPON));
+
+		sword.setQuantity(4);
+		assertEquals("Weapon stock should follow quantity changes", 19,
+				inventoryManager.getCategoryStock(ProductCategory.WEAPON));
+
+		List<SalableProduct> secondPage = inventoryManager.getProductsByCategory(ProductCategory.WEAPON, 1, 1);
+		assertEquals("Second page should hold the axe", axe, secondPage.get(0));
+		assertTrue("Pages past the end should be empty",
+				inventoryManager.getProductsByCategory(ProductCategory.WEAPON, 5, 1).isEmpty());
+	}
+
+	/**
+	 * Tests price range and low stock queries, including after prices and
+	 * quantities change.
+	 */
+	@Test
+	public void testPriceAndQuantityRanges() {
+		List<SalableProduct> midPriced = inventoryManager.getProductsByPriceRange(800.0, 1200.0);
+		assertEquals("Axe and sword are between 800 and 1200", 2, midPriced.size());
+		assertEquals("Cheapest should come first", axe, midPriced.get(0));
+
+		assertEquals("Only the sword has less than 15 in stock", sword,
+				inventoryManager.getProductsWithQuantityBelow(15).get(0));
+		assertEquals("Only the sword has less than 15 in stock", 1,
+				inventoryManager.getProductsWithQuantityBelow(15).size());
+
+		shield.setPrice(1000.0);
+		inventoryManager.removeSalableProduct(shield, 3);
+		assertEquals("Repriced shield should now be in range", 3,
+				inventoryManager.getProductsByPriceRange(800.0, 1200.0).size());
+		assertEquals("Shield should now be the lowest stock", shield,
+				inventoryManager.getProductsWithQuantityBelow(15).get(0));
+		assertTrue("An empty range should return nothing",
+				inventoryManager.getProductsByPriceRange(5000.0, 100.0).isEmpty());
+	}
+
+	/**
+	 * Tests the stock value and most expensive product aggregations, with enough
+	 * products that the parallel path is used.
+	 */
+	@Test
+	public void testAnalytics() {
+		assertEquals("Total value should add price times quantity", 1200.0 * 10 + 800.0 * 15 + 1500.0 * 30,
+				inventoryManager.getTotalStockValue(), 0.001);
+		assertEquals("Armor value should only count the shield", 1500.0 * 30,
+				inventoryManager.getStockValueByCategory().get(ProductCategory.ARMOR), 0.001);
+		assertEquals("Shield should be the most expensive", shield, inventoryManager.getMostExpensive(1).get(0));
+
+		for (int i = 0; i < 20_000; i++) {
+			inventoryManager.addSalableProduct(new Health("Herb " + i, "Common herb", 1.0, 1));
+		}
+		InventorySnapshot snapshot = inventoryManager.getSnapshot();
+		assertEquals("Parallel and sequential totals should agree", snapshot.getTotalStockValue(false),
+				snapshot.getTotalStockValue(true), 0.001);
+		List<SalableProduct> top = inventoryManager.getMostExpensive(3);
+		assertEquals("Top 3 should be shield, sword, axe", shield, top.get(0));
+		assertEquals("Top 3 should be shield, sword, axe", sword, top.get(1));
+		assertEquals("Top 3 should be shield, sword, axe", axe, top.get(2));
+	}
 }
@@ -0,0 +1,112 @@
+package test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.FileService;
+import app.InventoryManager;
+import app.InventoryPersister;
+import app.SalableProduct;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+/**
+ * Unit tests for the {@link InventoryPersister} class. These tests check that
+ * changes are saved in the background, that waiting for a save starts one at
+ * once, and that closing saves what is left.
+ */
+public class InventoryPersisterTest {
+
+	private static final String TEST_FILE = "test_persister.json";
+
+	private InventoryManager inventory;
+
+	/**
+	 * Creates an empty inventory.
+	 */
+	@Before
+	public void setUp() {
+		inventory = new InventoryManager();
+	}
+
+	/**
+	 * Removes the saved file.
+	 */
+	@After
+	public void tearDown() {
+		new File(TEST_FILE).delete();
+	}
+
+	/**
+	 * Tests that waiting for a change to be saved flushes it long before the
+	 * interval would.
+	 *
+	 * @throws Exception if the file cannot be read
+	 */
+	@Test
+	public void testAwaitSavedFlushes() throws Exception {
+		try (InventoryPersister persister = new InventoryPersister(inventory, TEST_FILE, 60_000, 1_000_000,
+				InventoryPersister.Durability.ACK_AFTER_FSYNC)) {
+			inventory.addSalableProduct(new Weapon("Sword", "Sharp and can swing", 1200.0, 10));
+			long start = System.currentTimeMillis();
+			assertTrue("Change should be saved", persister.awaitSaved(5000));
+			assertTrue("Save should not wait for the interval", System.currentTimeMillis() - start < 5000);
+
+			SalableProduct[] saved = FileService.loadFromFile(TEST_FILE);
+			assertEquals("File should hold the product", 1, saved.length);
+			assertEquals("File should hold the product's name", "Sword", saved[0].getName());
+		}
+	}
+
+	/**
+	 * Tests that changes are saved after the flush interval without anyone
+	 * waiting.
+	 *
+	 * @throws Exception if the file cannot be read
+	 */
+	@Test
+	public void testFlushesOnInterval() throws Exception {
+		InventoryPersister persister = new InventoryPersister(inventory, TEST_FILE, 50, 1_000_000,
+				InventoryPersister.Durability.ACK_AFTER_APPLY);
+		try {
+			SalableProduct sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+			inventory.addSalableProduct(sword);
+			sword.setQuantity(4);
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!savedQuantityIs(4) && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertTrue("Change should be saved within the interval", savedQuantityIs(4));
+		} finally {
+			persister.close();
+		}
+	}
+
+	/**
+	 * Tests that closing saves changes made since the last flush.
+	 *
+	 * @throws Exception if the file cannot be read
+	 */
+	@Test
+	public void testCloseSaves() throws Exception {
+		InventoryPersister persister = new InventoryPersister(inventory, TEST_FILE, 60_000, 1_000_000,
+				InventoryPersister.Durability.ACK_AFTER_APPLY);
+		inventory.addSalableProduct(new Weapon("Sword", "Sharp and can swing", 1200.0, 10));
+		inventory.addSalableProduct(new Weapon("Axe", "Sharp and pointy", 800.0, 15));
+		persister.close();
+		assertEquals("Both products should be saved on close", 2, FileService.loadFromFile(TEST_FILE).length);
+	}
+
+	private boolean savedQuantityIs(int quantity) {
+		try {
+			SalableProduct[] saved = FileService.loadFromFile(TEST_FILE);
+			return saved.length == 1 && saved[0].getQuantity() == quantity;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Armor;
+import app.InventoryRenderer;
+import app.SalableProduct;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the {@link InventoryRenderer} class. These tests check that
+ * rows match the old {@code printf} format and that paging splits a listing
+ * correctly.
+ */
+public class InventoryRendererTest {
+
+	private ByteArrayOutputStream out;
+	private InventoryRenderer renderer;
+
+	/**
+	 * Creates a renderer with a small buffer so rows cross buffer boundaries.
+	 */
+	@Before
+	public void setUp() {
+		out = new ByteArrayOutputStream();
+		renderer = new InventoryRenderer(out, 256);
+	}
+
+	/**
+	 * Tests that rows match what {@code String.format} produced.
+	 */
+	@Test
+	public void testRowsMatchFormattedOutput() {
+		List<SalableProduct> products = Arrays.asList(new Weapon("Sword", "Sharp and can swing", 1200.0, 10),
+				new Armor("Helmet", "Save my head", 0.5, 0), new Weapon("Bow", "Long range", 99.999, 1234567),
+				new Armor("Bouclier", "Protège la tête", 12.07, 3));
+
+		StringBuilder expected = new StringBuilder(InventoryRenderer.HEADER);
+		for (SalableProduct product : products) {
+			expected.append(String.format("Name: %s | Description: %s | Price: $%.2f | Quantity: %d\n", product.getName(),
+					product.getDescription(), product.getPrice(), product.getQuantity()));
+		}
+		expected.append(InventoryRenderer.FOOTER);
+
+		renderer.renderAll(products);
+		assertEquals("Rendered rows should match printf output", expected.toString(),
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Tests that pages hold the right rows and report whether more pages follow.
+	 */
+	@Test
+	public void testPaging() {
+		List<SalableProduct> products = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			products.add(new Weapon("Item" + i, "Description", 1.0, i));
+		}
+
+		assertTrue("First page should have more after it", renderer.renderPage(products, 0, 2));
+		String first = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue("First page should list Item1", first.contains("Name: Item1 "));
+		assertFalse("First page should not list Item2", first.contains("Name: Item2 "));
+		assertTrue("First page should show its number", first.contains("-- Page 1 of 3 --"));
+
+		out.reset();
+		assertFalse("Last page should have nothing after it", renderer.renderPage(products, 2, 2));
+		String last = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue("Last page should list Item4", last.contains("Name: Item4 "));
+		assertTrue("Last page should show its number", last.contains("-- Page 3 of 3 --"));
+	}
+
+	/**
+	 * Tests that a page far past the end renders no rows instead of overflowing,
+	 * and that a page size of zero is refused.
+	 */
+	@Test
+	public void testPagingBounds() {
+		List<SalableProduct> products = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			products.add(new Weapon("Item" + i, "Description", 1.0, i));
+		}
+
+		assertFalse("A page past the end should have nothing after it",
+				renderer.renderPage(products, Integer.MAX_VALUE, Integer.MAX_VALUE));
+		assertFalse("A page past the end should list no rows",
+				new String(out.toByteArray(), StandardCharsets.UTF_8).contains("Name: "));
+
+		try {
+			renderer.renderPage(products, 0, 0);
+			fail("A page size of zero should be refused");
+		} catch (IllegalArgumentException e) {
+			assertTrue("Message should name the page size", e.getMessage().contains("Page size"));
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import app.LatencyHistogram;
+import app.MetricsRegistry;
+import app.StoreFront;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Unit tests for the {@link MetricsRegistry} and {@link LatencyHistogram}
+ * classes, and for the timers on the store's cart operations.
+ */
+public class MetricsRegistryTest {
+
+	private MetricsRegistry registry;
+
+	/**
+	 * Creates an empty registry for each test.
+	 */
+	@Before
+	public void setUp() {
+		registry = new MetricsRegistry();
+	}
+
+	/**
+	 * Tests that percentiles land within the histogram's bucket precision.
+	 */
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = registry.timer("test");
+		for (long nanos = 1; nanos <= 100_000; nanos++) {
+			histogram.record(nanos);
+		}
+		assertEquals("Count should include every value", 100_000, histogram.getCount());
+		assertEquals("Mean should be exact", 50_000, histogram.getMean());
+		assertEquals("Max should be exact", 100_000, histogram.getMax());
+		assertEquals("p50 should be within 6.25%", 50_000, histogram.getPercentile(0.5), 50_000 * 0.0625);
+		assertEquals("p99 should be within 6.25%", 99_000, histogram.getPercentile(0.99), 99_000 * 0.0625);
+		assertEquals("p100 should be the max", 100_000, histogram.getPercentile(1.0));
+		assertEquals("Small values should be exact", 1, histogram.getPercentile(0.00001));
+	}
+
+	/**
+	 * Tests that a disabled registry records nothing.
+	 */
+	@Test
+	public void testDisabled() {
+		LatencyHistogram timer = registry.timer("test");
+		registry.setEnabled(false);
+		long start = registry.start();
+		registry.stop(timer, start);
+		registry.increment(registry.counter("count"));
+		assertEquals("Disabled timer should stay empty", 0, timer.getCount());
+		assertEquals("Disabled counter should stay at 0", Long.valueOf(0), registry.getCounters().get("count"));
+
+		registry.setEnabled(true);
+		registry.stop(timer, registry.start());
+		registry.increment(registry.counter("count"));
+		assertEquals("Enabled timer should record", 1, timer.getCount());
+		assertEquals("Enabled counter should count", Long.valueOf(1), registry.getCounters().get("count"));
+		assertEquals("Timer statistics should be flattened by name", Long.valueOf(1),
+				registry.getTimers().get("test.count"));
+	}
+
+	/**
+	 * Tests that cart operations are timed and rejections counted in the global
+	 * registry.
+	 */
+	@Test
+	public void testStoreFrontIsInstrumented() {
+		MetricsRegistry global = MetricsRegistry.GLOBAL;
+		long adds = global.timer("cart.add").getCount();
+		long rejected = global.counter("cart.add.rejected").sum();
+
+		StoreFront store = new StoreFront();
+		store.addToCart("Sword", 1);
+		store.addToCart("No such product", 1);
+
+		assertEquals("Both adds should be timed", adds + 2, global.timer("cart.add").getCount());
+		assertEquals("The unknown product should be counted", rejected + 1,
+				global.counter("cart.add.rejected").sum());
+		assertTrue("Lookups should be timed", global.timer("inventory.getProductByName").getCount() >= 2);
+	}
+
+	/**
+	 * Tests that the global registry can be read over JMX.
+	 *
+	 * @throws Exception if the MBean cannot be read
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testJmx() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(MetricsRegistry.OBJECT_NAME);
+		if (!server.isRegistered(name)) {
+			MetricsRegistry.GLOBAL.registerMBean();
+		}
+		assertEquals("Enabled should be readable", true, server.getAttribute(name, "Enabled"));
+		Object counters = server.getAttribute(name, "Counters");
+		assertNotNull("Counters should be readable", counters);
+	}
+}
@@ -0,0 +1,212 @@
+package test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Armor;
+import app.Order;
+import app.OrderLog;
+import app.SalableProduct;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the {@link OrderLog} class. These tests check that orders are
+ * found by time, by id and by product, that a partly written order is cut off
+ * when the log is opened again, and that queries span segments.
+ */
+public class OrderLogTest {
+
+	private static final File TEST_DIRECTORY = new File("test_orders");
+
+	private SalableProduct sword;
+	private SalableProduct shield;
+
+	/**
+	 * Creates a sword and a shield and removes any old log.
+	 */
+	@Before
+	public void setUp() {
+		sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+		shield = new Armor("Shield", "Blocks attacks", 500.0, 10);
+		tearDown();
+	}
+
+	/**
+	 * Removes the log.
+	 */
+	@After
+	public void tearDown() {
+		File[] files = TEST_DIRECTORY.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		TEST_DIRECTORY.delete();
+	}
+
+	/**
+	 * Tests that orders are numbered and totalled, and found by id, by time and
+	 * by product.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	@Test
+	public void testAppendAndQuery() throws IOException {
+		try (OrderLog log = new OrderLog(TEST_DIRECTORY)) {
+			Order first = log.appendAll(List.of(lines(sword, 1, shield, 2)), 1000).get(0);
+			log.appendAll(List.of(lines(shield, 1, null, 0)), 2000);
+			log.appendAll(List.of(lines(sword, 3, null, 0)), 3000);
+
+			assertEquals("First order should be numbered 0", 0, first.getOrderId());
+			assertEquals("Total should sum the lines", 2200.0, first.getTotal(), 0.001);
+			assertEquals("Log should count the orders", 3, log.getOrderCount());
+			assertEquals("Order should be found by id", 2, log.getOrder(2).getOrderId());
+			assertNull("Unknown order should not be found", log.getOrder(3));
+
+			List<Order> middle = log.getOrders(1500, 3000);
+			assertEquals("Range should hold the last two orders", 2, middle.size());
+			assertEquals("Range should start at the second order", 1, middle.get(0).getOrderId());
+
+			OrderLog.Sales swordSales = log.getSales("sword", 0, 2500);
+			assertEquals("Sword should be sold once before 2500", 1, swordSales.getUnits());
+			assertEquals("Sword revenue should follow", 1200.0, swordSales.getRevenue(), 0.001);
+			assertEquals("All sword sales should be counted", 4, log.getSales("Sword", 0, Long.MAX_VALUE).getUnits());
+			assertEquals("Unknown product should have no sales", 0, log.getSales("Axe", 0, 5000).getLines());
+		}
+	}
+
+	/**
+	 * Tests that reopening the log rebuilds its indexes and cuts off a partly
+	 * written order, and that the next order takes its place.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	@Test
+	public void testReopenCutsTornOrder() throws IOException {
+		try (OrderLog log = new OrderLog(TEST_DIRECTORY)) {
+			log.appendAll(List.of(lines(sword, 1, null, 0), lines(shield, 2, null, 0)), 1000);
+		}
+		File segment = TEST_DIRECTORY.listFiles()[0];
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(file.length());
+			file.writeBytes("{\"orderId\":2,\"timesta");
+		}
+
+		try (OrderLog log = new OrderLog(TEST_DIRECTORY)) {
+			assertEquals("Torn order should not be counted", 2, log.getOrderCount());
+			assertEquals("Sales should be rebuilt", 2, log.getSales("Shield", 0, 5000).getUnits());
+			Order next = log.append(lines(sword, 1, null, 0));
+			assertEquals("Next order should take the torn order's id", 2, next.getOrderId());
+			assertEquals("Next order should be readable", 2, log.getOrder(2).getOrderId());
+		}
+	}
+
+	/**
+	 * Tests that a full segment starts a new one, and that range queries and
+	 * replay read across segments in order.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	@Test
+	public void testSegmentsRoll() throws IOException {
+		try (OrderLog log = new OrderLog(TEST_DIRECTORY, 1024)) {
+			for (int i = 0; i < 500; i++) {
+				log.appendAll(List.of(lines(sword, 1, null, 0)), i);
+			}
+			assertTrue("Log should roll into several segments", log.getSegmentCount() > 5);
+			assertEquals("Order in a later segment should be found", 321, log.getOrder(321).getOrderId());
+
+			List<Order> range = log.getOrders(100, 399);
+			assertEquals("Range should span segments", 300, range.size());
+			assertEquals("Range should start at its first order", 100, range.get(0).getOrderId());
+			assertEquals("Range should end at its last order", 399, range.get(299).getOrderId());
+			assertEquals("Sales should match the range", 300, log.getSales("Sword", 100, 399).getUnits());
+
+			List<Long> replayed = new ArrayList<>();
+			log.replay(250, order -> replayed.add(order.getOrderId()));
+			assertEquals("Replay should read from the order asked for", 250, replayed.size());
+			for (int i = 0; i < replayed.size(); i++) {
+				assertEquals("Replay should be in order", 250L + i, (long) replayed.get(i));
+			}
+		}
+		try (OrderLog log = new OrderLog(TEST_DIRECTORY, 1024)) {
+			assertEquals("Every segment should be read on open", 500, log.getOrderCount());
+		}
+	}
+
+	/**
+	 * Tests that sales over ranges covering whole buckets and parts of others
+	 * add up to the same as the orders in the range, before and after a reopen.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	@Test
+	public void testSalesAcrossBuckets() throws IOException {
+		long bucket = OrderLog.SALES_BUCKET_MILLIS;
+		try (OrderLog log = new OrderLog(TEST_DIRECTORY)) {
+			// Four swords a bucket, a quarter of a bucket apart, for ten buckets
+			for (long time = 0; time < 10 * bucket; time += bucket / 4) {
+				log.appendAll(List.of(lines(sword, 1, null, 0)), time);
+			}
+			log.appendAll(List.of(lines(shield, 1, null, 0)), 10 * bucket);
+		}
+		try (OrderLog log = new OrderLog(TEST_DIRECTORY)) {
+			long[][] ranges = { { 0, 10 * bucket }, { bucket, 3 * bucket - 1 }, { bucket / 2, 3 * bucket + bucket / 2 },
+					{ bucket / 3, bucket / 2 }, { bucket - 1, bucket + 1 }, { 9 * bucket + 1, Long.MAX_VALUE } };
+			for (long[] range : ranges) {
+				int expected = 0;
+				for (Order order : log.getOrders(range[0], range[1])) {
+					expected += order.getLines().get(0).getProductName().equals("Sword") ? 1 : 0;
+				}
+				OrderLog.Sales sales = log.getSales("Sword", range[0], range[1]);
+				assertEquals("Sales from " + range[0] + " to " + range[1] + " should match the orders", expected,
+						sales.getUnits());
+				assertEquals("Lines should match the units", expected, sales.getLines());
+				assertEquals("Revenue should follow the units", expected * 1200.0, sales.getRevenue(), 0.001);
+			}
+			assertEquals("Shield should have no sales before its bucket", 0,
+					log.getSales("Shield", 0, 10 * bucket - 1).getUnits());
+		}
+	}
+
+	/**
+	 * Tests that lines taken when a purchase is priced are recorded at those
+	 * prices, even if a product's price changes before the order is written.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	@Test
+	public void testLinesKeepPurchasePrices() throws IOException {
+		List<Order.Line> priced = Order.linesOf(lines(sword, 2, shield, 1));
+		assertEquals("Total should use the prices read", 2900.0, Order.totalOf(priced), 0.001);
+		sword.setPrice(1.0);
+		try (OrderLog log = new OrderLog(TEST_DIRECTORY)) {
+			Order order = log.appendLines(List.of(priced), 1000).get(0);
+			assertEquals("Order should keep the purchase's total", 2900.0, order.getTotal(), 0.001);
+			assertEquals("Sword revenue should use the purchase's price", 2400.0,
+					log.getSales("Sword", 0, 5000).getRevenue(), 0.001);
+		}
+	}
+
+	private static Map<SalableProduct, Integer> lines(SalableProduct first, int firstQty, SalableProduct second,
+			int secondQty) {
+		Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+		lines.put(first, firstQty);
+		if (second != null) {
+			lines.put(second, secondQty);
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,126 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Armor;
+import app.ChangeStream;
+import app.FileService;
+import app.Health;
+import app.InventoryManager;
+import app.ProductJsonCache;
+import app.SalableProduct;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for the {@link ProductJsonCache} class. These tests check that
+ * cached output matches plain serialization, that setters invalidate entries,
+ * and that the size limit evicts the least recently used product.
+ */
+public class ProductJsonCacheTest {
+
+	private ProductJsonCache cache;
+	private List<SalableProduct> products;
+
+	/**
+	 * Creates a cache large enough for the sample products.
+	 */
+	@Before
+	public void setUp() {
+		cache = new ProductJsonCache(1024 * 1024);
+		products = Arrays.asList(new Weapon("Sword", "Sharp and can swing", 1200.0, 10),
+				new Armor("Shield", "Stops things", 1500.0, 30), new Health("Herb", "Tastes bad", 15.5, 3));
+	}
+
+	/**
+	 * Tests that the cached array is the same JSON the list writer produces, with
+	 * each product's type.
+	 *
+	 * @throws Exception if the products cannot be written
+	 */
+	@Test
+	public void testArrayMatchesListWriter() throws Exception {
+		String expected = new ObjectMapper().writerFor(FileService.PRODUCT_LIST).writeValueAsString(products);
+		assertEquals("First write should match the list writer", expected, write());
+		assertEquals("Cached write should match the list writer", expected, write());
+		assertEquals("Second write should hit for every product", 3, cache.getHits());
+		assertEquals("Only the first write should miss", 3, cache.getMisses());
+		assertEquals("Hit rate should be one half", 0.5, cache.getHitRate(), 0.001);
+	}
+
+	/**
+	 * Tests that a setter call makes the product be written again.
+	 *
+	 * @throws Exception if the products cannot be written
+	 */
+	@Test
+	public void testSetterInvalidates() throws Exception {
+		write();
+		products.get(0).setQuantity(7);
+		String json = write();
+		assertTrue("New quantity should be written", json.contains("\"quantity\":7"));
+		assertEquals("Only the changed product should miss again", 4, cache.getMisses());
+	}
+
+	/**
+	 * Tests that the cache writes changed products when it follows an
+	 * inventory, so a retrieve after the change only hits.
+	 *
+	 * @throws Exception if the products cannot be written
+	 */
+	@Test
+	public void testFollowsInventoryChanges() throws Exception {
+		InventoryManager inventory = new InventoryManager();
+		ChangeStream.Subscription subscription = inventory.getChangeStream().subscribe("test", cache);
+		for (SalableProduct product : products) {
+			inventory.addSalableProduct(product);
+		}
+		products.get(0).setQuantity(7);
+		assertTrue("Changes should be delivered",
+				subscription.awaitDelivered(inventory.getChangeStream().getLastSequence(), 5000));
+		subscription.close();
+
+		String json = write();
+		assertTrue("New quantity should be written", json.contains("\"quantity\":7"));
+		assertEquals("Retrieve should not miss", 0, cache.getMisses());
+		assertEquals("Retrieve should hit for every product", 3, cache.getHits());
+	}
+
+	/**
+	 * Tests that the cache drops the least recently used product when full.
+	 *
+	 * @throws Exception if the products cannot be written
+	 */
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		int swordSize = cache.toJson(products.get(0)).length;
+		cache = new ProductJsonCache(swordSize * 2);
+		cache.toJson(products.get(0));
+		cache.toJson(products.get(1));
+		cache.toJson(products.get(0));
+		cache.toJson(products.get(2));
+		assertTrue("Cache should stay within its size", cache.getCachedBytes() <= swordSize * 2);
+		assertTrue("Cache should have evicted", cache.getEvictions() > 0);
+
+		long misses = cache.getMisses();
+		cache.toJson(products.get(0));
+		assertEquals("Recently used sword should still be cached", misses, cache.getMisses());
+		cache.toJson(products.get(1));
+		assertEquals("Least recently used shield should have been evicted", misses + 1, cache.getMisses());
+	}
+
+	private String write() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		cache.writeArray(products, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
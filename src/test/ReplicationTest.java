@@ -0,0 +1,165 @@
+package test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Armor;
+import app.CartResult;
+import app.CheckoutPipeline;
+import app.Health;
+import app.InventoryManager;
+import app.ReplicationFollower;
+import app.ReplicationLeader;
+import app.SalableProduct;
+import app.ShoppingCart;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the {@link ReplicationLeader} and {@link ReplicationFollower}
+ * classes. These tests run a leader and a follower in one process on a local
+ * port, and check that the follower catches up from a snapshot, follows each
+ * kind of change, starts over when the leader restarts, and refuses purchases
+ * of its own.
+ */
+public class ReplicationTest {
+
+	private InventoryManager leaderInventory;
+	private InventoryManager followerInventory;
+	private ReplicationLeader leader;
+	private ReplicationFollower follower;
+
+	/**
+	 * Starts a leader with two products and a follower whose inventory holds a
+	 * product the leader does not have.
+	 *
+	 * @throws Exception if the leader cannot open a port
+	 */
+	@Before
+	public void setUp() throws Exception {
+		leaderInventory = new InventoryManager();
+		leaderInventory.addSalableProduct(new Weapon("Sword", "Sharp and can swing", 1200.0, 10));
+		leaderInventory.addSalableProduct(new Armor("Shield", "Blocks attacks", 500.0, 5));
+		leader = start(new ReplicationLeader(leaderInventory, 0));
+
+		followerInventory = new InventoryManager();
+		followerInventory.addSalableProduct(new Health("Stale Potion", "Only on the follower", 10.0, 3));
+		followerInventory.setReadOnly(true);
+		follower = new ReplicationFollower(followerInventory, "localhost", leader.getPort());
+		Thread thread = new Thread(follower);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the follower and the leader.
+	 *
+	 * @throws Exception if a socket cannot be closed
+	 */
+	@After
+	public void tearDown() throws Exception {
+		follower.close();
+		leader.close();
+	}
+
+	/**
+	 * Tests that the follower's inventory becomes the leader's snapshot and then
+	 * follows adds, updates and purchases.
+	 *
+	 * @throws Exception if interrupted while waiting
+	 */
+	@Test
+	public void testCatchUpAndFollow() throws Exception {
+		assertTrue("Follower should catch up", follower.awaitApplied(-1, 5000));
+		assertEquals("Follower should hold the leader's products", 2, followerInventory.getProductsSnapshot().size());
+		assertNull("Products only on the follower should be gone", followerInventory.getProductByName("Stale Potion"));
+		SalableProduct sword = followerInventory.getProductByName("Sword");
+
+		leaderInventory.addSalableProduct(new Health("Potion", "Heals wounds", 25.0, 40));
+		leaderInventory.getProductByName("Sword").setPrice(1100.0);
+		Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+		lines.put(leaderInventory.getProductByName("Shield"), 2);
+		assertTrue("Purchase should succeed", leaderInventory.purchase(lines));
+
+		assertTrue("Follower should apply every change",
+				follower.awaitApplied(leaderInventory.getChangeStream().getLastSequence(), 5000));
+		assertEquals("Added product should be replicated", 40,
+				followerInventory.getProductByName("Potion").getQuantity());
+		assertSame("Updated product should keep its object", sword, followerInventory.getProductByName("Sword"));
+		assertEquals("Price change should be replicated", 1100.0, sword.getPrice(), 0.001);
+		assertEquals("Purchase should be replicated", 3, followerInventory.getProductByName("Shield").getQuantity());
+		assertEquals("Follower's indexes should follow", 1,
+				followerInventory.getProductsByPriceRange(1000.0, 1200.0).size());
+		assertEquals("Follower should not be behind", 0, follower.getLagChanges());
+	}
+
+	/**
+	 * Tests that the follower reconnects when the leader restarts and replaces
+	 * its inventory with the new leader's snapshot.
+	 *
+	 * @throws Exception if the new leader cannot open the port
+	 */
+	@Test
+	public void testLeaderRestart() throws Exception {
+		assertTrue("Follower should catch up", follower.awaitApplied(-1, 5000));
+		int port = leader.getPort();
+		leader.close();
+
+		InventoryManager restarted = new InventoryManager();
+		restarted.addSalableProduct(new Weapon("Axe", "Sharp and pointy", 800.0, 15));
+		leader = start(new ReplicationLeader(restarted, port));
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (followerInventory.getProductByName("Axe") == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertNotNull("Follower should catch up from the new leader", followerInventory.getProductByName("Axe"));
+		assertEquals("Follower should hold only the new leader's products", 1,
+				followerInventory.getProductsSnapshot().size());
+	}
+
+	/**
+	 * Tests that a shopper on the follower cannot buy, so the follower's stock
+	 * only ever changes with the leader's.
+	 *
+	 * @throws Exception if interrupted while waiting
+	 */
+	@Test
+	public void testFollowerRefusesPurchases() throws Exception {
+		assertTrue("Follower should catch up", follower.awaitApplied(-1, 5000));
+		SalableProduct shield = followerInventory.getProductByName("Shield");
+		ShoppingCart cart = new ShoppingCart();
+		cart.addToCart(shield, 5);
+
+		CartResult result = new CheckoutPipeline(followerInventory).checkout(cart);
+		assertEquals("Purchase should be refused", CartResult.Status.READ_ONLY, result.getStatus());
+		assertEquals("Refused cart should be kept", 5, cart.getQuantity(shield));
+		assertEquals("Follower stock should be unchanged", 5, shield.getQuantity());
+
+		Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+		lines.put(shield, 1);
+		assertFalse("Inventory should refuse a direct purchase", followerInventory.purchase(lines));
+		assertTrue("The leader can still sell", leaderInventory.purchase(leaderLines(2)));
+		assertTrue("Follower should follow the leader's sale",
+				follower.awaitApplied(leaderInventory.getChangeStream().getLastSequence(), 5000));
+		assertEquals("Follower stock should follow the leader", 3, shield.getQuantity());
+	}
+
+	private Map<SalableProduct, Integer> leaderLines(int quantity) {
+		Map<SalableProduct, Integer> lines = new IdentityHashMap<>();
+		lines.put(leaderInventory.getProductByName("Shield"), quantity);
+		return lines;
+	}
+
+	private static ReplicationLeader start(ReplicationLeader leader) {
+		Thread thread = new Thread(leader);
+		thread.setDaemon(true);
+		thread.start();
+		return leader;
+	}
+}
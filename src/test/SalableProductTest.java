@@ -120,4 +120,27 @@ public class SalableProductTest {
 		assertTrue("Product1 should come after Product6 by price.", product1.compareTo(product6) > 0);
 	}
 
+	/**
+	 * Tests that setters called from several threads at once each move the
+	 * version on.
+	 *
+	 * @throws InterruptedException if a thread is interrupted
+	 */
+	@Test
+	public void testVersionCountsConcurrentChanges() throws InterruptedException {
+		int before = product1.getVersion();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					product1.setQuantity(i);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals("Every change should be counted.", before + 40_000, product1.getVersion());
+	}
 }
@@ -0,0 +1,162 @@
+package test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.AdminService;
+import app.Armor;
+import app.CartResult;
+import app.Health;
+import app.InventoryManager;
+import app.InventoryPersister;
+import app.ProductCategory;
+import app.SalableProduct;
+import app.ShardRouter;
+import app.ShoppingCart;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the {@link ShardRouter} class. These tests run three shards as
+ * admin services in this process and check that products land on their owning
+ * shard only, that lookups and cart adds find them there, and that listing and
+ * totals merge every shard.
+ */
+public class ShardRouterTest {
+
+	private static final int SHARDS = 3;
+
+	private List<InventoryManager> inventories;
+	private List<InventoryPersister> persisters;
+	private ShardRouter router;
+
+	/**
+	 * Starts the shards and a router over them.
+	 *
+	 * @throws Exception if a shard does not start listening
+	 */
+	@Before
+	public void setUp() throws Exception {
+		inventories = new ArrayList<>();
+		persisters = new ArrayList<>();
+		List<String> addresses = new ArrayList<>();
+		for (int i = 0; i < SHARDS; i++) {
+			InventoryManager inventory = new InventoryManager();
+			InventoryPersister persister = new InventoryPersister(inventory, "test_shard_" + i + ".json",
+					InventoryPersister.Durability.ACK_AFTER_APPLY);
+			int port;
+			try (ServerSocket probe = new ServerSocket(0)) {
+				port = probe.getLocalPort();
+			}
+			Thread thread = new Thread(new AdminService(inventory, port, AdminService.DEFAULT_CACHE_BYTES, persister));
+			thread.setDaemon(true);
+			thread.start();
+			awaitPort(port);
+			inventories.add(inventory);
+			persisters.add(persister);
+			addresses.add("localhost:" + port);
+		}
+		router = new ShardRouter(addresses);
+		router.update(Arrays.asList(new Weapon("Sword", "Sharp and can swing", 1200.0, 10),
+				new Weapon("Axe", "Sharp and pointy", 800.0, 15), new Armor("Shield", "Blocks attacks", 500.0, 5),
+				new Armor("Helmet", "Protects the head", 300.0, 8), new Health("Potion", "Heals wounds", 25.0, 40),
+				new Health("Elixir", "Heals everything", 90.0, 2)));
+	}
+
+	/**
+	 * Stops the router and removes the shard files.
+	 *
+	 * @throws Exception if interrupted while a persister saves
+	 */
+	@After
+	public void tearDown() throws Exception {
+		router.close();
+		for (int i = 0; i < SHARDS; i++) {
+			persisters.get(i).close();
+			new File("test_shard_" + i + ".json").delete();
+		}
+	}
+
+	/**
+	 * Tests that each product is held by its owning shard and no other.
+	 */
+	@Test
+	public void testProductsOnOwningShard() {
+		int total = 0;
+		for (int i = 0; i < SHARDS; i++) {
+			for (SalableProduct product : inventories.get(i).getProductsSnapshot()) {
+				assertEquals("Product should be on its owning shard", i, router.shardFor(product.getName()));
+				total++;
+			}
+		}
+		assertEquals("Every product should be on one shard", 6, total);
+	}
+
+	/**
+	 * Tests that lookups in any case and cart adds go to the owning shard.
+	 *
+	 * @throws IOException if a shard cannot be reached
+	 */
+	@Test
+	public void testLookupAndCartAdd() throws IOException {
+		SalableProduct shield = router.getProductByName("shield");
+		assertNotNull("Lookup should find the product on its shard", shield);
+		assertTrue("Lookup should keep the product type", shield instanceof Armor);
+		assertNull("Lookup should miss unknown products", router.getProductByName("Bow"));
+
+		ShoppingCart cart = new ShoppingCart();
+		assertEquals("Add within stock should succeed", CartResult.Status.ADDED,
+				router.addToCart(cart, "Sword", 2).getStatus());
+		assertEquals("Add of the same product should succeed", CartResult.Status.ADDED,
+				router.addToCart(cart, "sword", 3).getStatus());
+		assertEquals("Add beyond stock should be refused", CartResult.Status.NOT_AVAILABLE,
+				router.addToCart(cart, "Elixir", 3).getStatus());
+		assertEquals("Cart should hold one line", 1, cart.getProductsInCart().size());
+		assertEquals("Cart line should add up", 5, (int) cart.getProductsInCart().values().iterator().next());
+	}
+
+	/**
+	 * Tests that listing merges every shard in name order and totals add up
+	 * across shards.
+	 *
+	 * @throws IOException if a shard cannot be reached
+	 */
+	@Test
+	public void testFanOut() throws IOException {
+		List<SalableProduct> products = router.getAllProducts();
+		assertEquals("Listing should include every shard", 6, products.size());
+		for (int i = 1; i < products.size(); i++) {
+			assertTrue("Listing should be sorted by name",
+					products.get(i - 1).getName().compareToIgnoreCase(products.get(i).getName()) <= 0);
+		}
+
+		Map<ProductCategory, ShardRouter.CategoryTotals> totals = router.getCategoryTotals();
+		assertEquals("Weapons should be counted across shards", 2, totals.get(ProductCategory.WEAPON).getCount());
+		assertEquals("Armor stock should be summed across shards", 13, totals.get(ProductCategory.ARMOR).getStock());
+		assertEquals("Health value should be summed across shards", 25.0 * 40 + 90.0 * 2,
+				totals.get(ProductCategory.HEALTH).getValue(), 0.001);
+	}
+
+	private static void awaitPort(int port) throws InterruptedException {
+		for (int attempt = 0; attempt < 100; attempt++) {
+			try {
+				new Socket("localhost", port).close();
+				return;
+			} catch (IOException e) {
+				Thread.sleep(50);
+			}
+		}
+		fail("Shard did not start listening on " + port);
+	}
+}
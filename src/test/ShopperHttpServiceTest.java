@@ -0,0 +1,144 @@
+package test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.InventoryManager;
+import app.ShopperHttpService;
+import app.StoreSessionManager;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for the {@link ShopperHttpService} class. Each test starts the
+ * service on a free local port and calls it over HTTP.
+ */
+public class ShopperHttpServiceTest {
+
+	private ShopperHttpService service;
+	private ExecutorService executor;
+	private String base;
+	private ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Starts the service with a small inventory before each test.
+	 *
+	 * @throws IOException if the server cannot start
+	 */
+	@Before
+	public void setUp() throws IOException {
+		InventoryManager inventory = new InventoryManager();
+		inventory.addSalableProduct(new Weapon("Sword", "Sharp and can swing", 1200.0, 10));
+		inventory.addSalableProduct(new Weapon("Axe", "Sharp and pointy", 800.0, 15));
+		executor = Executors.newFixedThreadPool(2);
+		service = new ShopperHttpService(new StoreSessionManager(inventory, 60_000), 0, executor);
+		service.start();
+		base = "http://localhost:" + service.getPort();
+	}
+
+	/**
+	 * Stops the service after each test.
+	 */
+	@After
+	public void tearDown() {
+		service.stop(0);
+		executor.shutdown();
+	}
+
+	/**
+	 * Tests listing the inventory.
+	 *
+	 * @throws IOException if the request fails
+	 */
+	@Test
+	public void testInventory() throws IOException {
+		List<?> products = mapper.readValue(send("GET", "/inventory", 200), List.class);
+		assertEquals("Inventory should list 2 products", 2, products.size());
+
+		List<?> second = mapper.readValue(send("GET", "/inventory?page=1&size=1", 200), List.class);
+		assertEquals("Second page of one should list 1 product", 1, second.size());
+		assertEquals("Second page should start after the first product", "Axe", ((Map<?, ?>) second.get(0)).get("name"));
+	}
+
+	/**
+	 * Tests adding to the cart, viewing it and purchasing it.
+	 *
+	 * @throws IOException if a request fails
+	 */
+	@Test
+	public void testAddViewAndPurchase() throws IOException {
+		String session = (String) mapper.readValue(send("POST", "/session", 200), Map.class).get("session");
+
+		Map<?, ?> added = mapper.readValue(send("POST", "/cart/add?session=" + session + "&product=Sword&qty=2", 200),
+				Map.class);
+		assertEquals("Add should succeed", Boolean.TRUE, added.get("success"));
+
+		Map<?, ?> cart = mapper.readValue(send("GET", "/cart?session=" + session, 200), Map.class);
+		assertEquals("Cart total should be 2400", 2400.0, ((Number) cart.get("total")).doubleValue(), 0.001);
+
+		Map<?, ?> purchased = mapper.readValue(send("POST", "/cart/purchase?session=" + session, 200), Map.class);
+		assertEquals("Purchase should succeed", Boolean.TRUE, purchased.get("success"));
+	}
+
+	/**
+	 * Tests that unknown sessions and bad quantities are rejected.
+	 *
+	 * @throws IOException if a request fails
+	 */
+	@Test
+	public void testBadRequests() throws IOException {
+		send("GET", "/cart?session=missing", 404);
+		String session = (String) mapper.readValue(send("POST", "/session", 200), Map.class).get("session");
+		send("POST", "/cart/add?session=" + session + "&product=Sword&qty=abc", 400);
+		send("GET", "/session", 405);
+		send("POST", "/sessionXYZ", 404);
+		send("GET", "/inventory/foo", 404);
+		send("GET", "/search/anything?q=sword", 404);
+	}
+
+	/**
+	 * Tests that negative, malformed and overflowing paging parameters are
+	 * rejected instead of failing inside the inventory.
+	 *
+	 * @throws IOException if a request fails
+	 */
+	@Test
+	public void testBadPaging() throws IOException {
+		send("GET", "/inventory?category=weapon&page=-1", 400);
+		send("GET", "/inventory?category=weapon&size=-5", 400);
+		send("GET", "/inventory?category=weapon&size=abc", 400);
+		send("GET", "/inventory?category=weapon&page=99999999999", 400);
+		send("GET", "/inventory?category=weapon&page=2&size=" + Integer.MAX_VALUE, 400);
+		send("GET", "/search?q=sword&limit=-1", 400);
+		send("GET", "/search?q=sword&limit=" + Integer.MAX_VALUE, 400);
+
+		send("GET", "/inventory?size=" + (ShopperHttpService.MAX_PAGE_SIZE + 1), 400);
+
+		List<?> last = mapper.readValue(
+				send("GET", "/inventory?category=weapon&page=0&size=" + ShopperHttpService.MAX_PAGE_SIZE, 200),
+				List.class);
+		assertEquals("A page larger than the category should list all of it", 2, last.size());
+	}
+
+	private byte[] send(String method, String path, int expectedStatus) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+		connection.setRequestMethod(method);
+		assertEquals("Unexpected status for " + path, expectedStatus, connection.getResponseCode());
+		try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			return in.readAllBytes();
+		}
+	}
+}
@@ -7,6 +7,10 @@ import app.SalableProduct;
 import app.ShoppingCart;
 
 import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -144,4 +148,65 @@ public class ShoppingCartTest {
 		double expectedTotal = 0.0;
 		assertEquals("Total price should be 0.0 for empty cart", expectedTotal, cart.getTotalPrice(), 0.001);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Tests a cart with enough products that its table grows, then removes every
+	 * other product and checks the rest are still found.
+	 */
+	@Test
+	public void testManyProducts() {
+		List<SalableProduct> products = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			SalableProduct product = new SalableProduct("Item" + i, "Same", 1.0, 100);
+			products.add(product);
+			cart.addToCart(product, i + 1);
+		}
+		for (int i = 0; i < products.size(); i += 2) {
+			cart.removeFromCart(products.get(i), i + 1);
+		}
+		for (int i = 0; i < products.size(); i++) {
+			int expected = i % 2 == 0 ? 0 : i + 1;
+			assertEquals("Quantity of Item" + i + " should survive removals", expected,
+					cart.getQuantity(products.get(i)));
+		}
+		assertEquals("Half the products should be left", 500, cart.getProductsInCart().size());
+	}
+
+	/**
+	 * Tests that adding and removing products allocates nothing once the cart has
+	 * warmed up. Quantities go well past the range of cached Integers, so any
+	 * boxing would show up. Skipped on JVMs that cannot count allocated bytes.
+	 */
+	@Test
+	public void testAddRemoveDoesNotAllocate() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		long thread = Thread.currentThread().getId();
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+
+		addAndRemove(100_000);
+		// Measuring allocates a little itself, so take the smallest of a few runs
+		long allocated = Long.MAX_VALUE;
+		for (int run = 0; run < 5; run++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			addAndRemove(100_000);
+			allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - before);
+		}
+		assertTrue("100,000 adds and removes should not allocate, but took " + allocated + " bytes",
+				allocated < 1024);
+	}
+
+	private void addAndRemove(int operations) {
+		for (int i = 0; i < operations; i++) {
+			cart.addToCart(product1, 1000);
+			cart.addToCart(product2, i % 500 + 200);
+			cart.removeFromCart(product1, 1000);
+			cart.removeFromCart(product2, i % 500 + 200);
+		}
+	}
+}
@@ -4,6 +4,8 @@ import app.*;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
 import java.util.Map;
 import java.util.List;
 
@@ -156,4 +158,54 @@ public class StoreFrontTest {
 		assertTrue("Inventory should contain products", products.size() >= 6);
 	}
 
+	/**
+	 * Tests that cart operations return a result describing what happened instead
+	 * of only printing it.
+	 */
+	@Test
+	public void testCartOperationResults() {
+		assertEquals("Adding too many should be refused", CartResult.Status.NOT_AVAILABLE,
+				store.addToCart("Sword", 1000).getStatus());
+		assertEquals("Removing a product not in the cart", CartResult.Status.NOT_IN_CART,
+				store.removeFromCart("Axe", 1).getStatus());
+		assertEquals("Purchasing an empty cart", CartResult.Status.CART_EMPTY, store.purchaseFromCart().getStatus());
+
+		assertEquals("Adding should succeed", CartResult.Status.ADDED, store.addToCart("Axe", 2).getStatus());
+		CartResult tooMany = store.removeFromCart("Axe", 5);
+		assertEquals("Removing too many should be refused", CartResult.Status.EXCEEDS_CART_QUANTITY,
+				tooMany.getStatus());
+		assertEquals("Result should report the quantity in the cart", 2, tooMany.getQuantity());
+
+		double expectedTotal = store.viewCart().getTotalPrice();
+		CartResult purchased = store.purchaseFromCart();
+		assertTrue("Purchase should succeed", purchased.isSuccess());
+		assertEquals("Result should carry the total", expectedTotal, purchased.getTotal(), 0.001);
+	}
+
+
+	/**
+	 * Tests that a store whose snapshot is corrupt loads its JSON inventory
+	 * file instead of falling back to the default products.
+	 *
+	 * @throws Exception if the files cannot be written
+	 */
+	@Test
+	public void testCorruptSnapshotFallsBackToJson() throws Exception {
+		File dataDir = Files.createTempDirectory("store").toFile();
+		File json = new File(dataDir, "Inventory.json");
+		File snapshot = new File(dataDir, "Inventory.snapshot");
+		try {
+			FileService.saveToFile(json.getPath(), List.of(new Weapon("Bow", "Long range weapon", 500.0, 10)));
+			Files.write(snapshot.toPath(), new byte[] { 0x53, 0x54, 0x4b, 0x53, 0, 0, 0, 2, 0x7f, 0, 0, 0 });
+			snapshot.setLastModified(json.lastModified() + 1000);
+
+			InventoryManager inventory = new StoreFront(dataDir).getProductInventory();
+			assertEquals("Only the JSON file's product should be loaded", 1, inventory.getAllProduct().size());
+			assertNotNull("JSON file's product should be loaded", inventory.getProductByName("Bow"));
+		} finally {
+			json.delete();
+			snapshot.delete();
+			dataDir.delete();
+		}
+	}
 }
@@ -0,0 +1,159 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import app.Armor;
+import app.InventoryManager;
+import app.SalableProduct;
+import app.ShoppingCart;
+import app.StoreSessionManager;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link StoreSessionManager} class. These tests check that
+ * each session has its own cart, that purchases update the shared inventory,
+ * and that idle sessions are evicted.
+ */
+public class StoreSessionManagerTest {
+
+	private InventoryManager inventory;
+	private StoreSessionManager manager;
+	private SalableProduct sword;
+
+	/**
+	 * Sets up a shared inventory and a session manager before each test.
+	 */
+	@Before
+	public void setUp() {
+		inventory = new InventoryManager();
+		sword = new Weapon("Sword", "Sharp and can swing", 1200.0, 10);
+		inventory.addSalableProduct(sword);
+		inventory.addSalableProduct(new Armor("Shield", "Stops things", 1500.0, 30));
+		manager = new StoreSessionManager(inventory, 60_000);
+	}
+
+	/**
+	 * Tests that two sessions keep separate carts.
+	 */
+	@Test
+	public void testSessionsHaveSeparateCarts() {
+		String first = manager.openSession();
+		String second = manager.openSession();
+
+		assertTrue("Sword should be added", manager.addToCart(first, "Sword", 2).isSuccess());
+		assertTrue("Shield should be added", manager.addToCart(second, "Shield", 1).isSuccess());
+
+		assertEquals("First cart should only hold the sword", 1, manager.getCart(first).getProductsInCart().size());
+		assertEquals("First cart should hold 2 swords", Integer.valueOf(2),
+				manager.getCart(first).getProductsInCart().get(sword));
+		assertNull("Second cart should not hold the sword", manager.getCart(second).getProductsInCart().get(sword));
+	}
+
+	/**
+	 * Tests that a purchase takes stock from the shared inventory and that a cart
+	 * holding the same product in another session still works afterwards.
+	 */
+	@Test
+	public void testPurchaseUpdatesSharedInventory() {
+		String first = manager.openSession();
+		String second = manager.openSession();
+		manager.addToCart(first, "Sword", 3);
+		manager.addToCart(second, "Sword", 4);
+
+		assertTrue("First purchase should succeed", manager.purchaseFromCart(first).isSuccess());
+		assertEquals("Sword stock should drop to 7", 7, sword.getQuantity());
+		assertTrue("First cart should be empty", manager.getCart(first).getProductsInCart().isEmpty());
+
+		assertTrue("Second session can still remove its sword",
+				manager.removeFromCart(second, "Sword", 1).isSuccess());
+		assertTrue("Second purchase should succeed", manager.purchaseFromCart(second).isSuccess());
+		assertEquals("Sword stock should drop to 4", 4, sword.getQuantity());
+	}
+
+	/**
+	 * Tests that a purchase is refused when the stock has run out since the
+	 * products were added.
+	 */
+	@Test
+	public void testPurchaseFailsWhenStockRunsOut() {
+		String first = manager.openSession();
+		String second = manager.openSession();
+		manager.addToCart(first, "Sword", 8);
+		manager.addToCart(second, "Sword", 8);
+
+		assertTrue("First purchase should succeed", manager.purchaseFromCart(first).isSuccess());
+		assertFalse("Second purchase should fail", manager.purchaseFromCart(second).isSuccess());
+		assertEquals("Sword stock should not go negative", 2, sword.getQuantity());
+		assertFalse("Second cart should be kept", manager.getCart(second).getProductsInCart().isEmpty());
+	}
+
+	/**
+	 * Tests that sessions idle longer than the timeout are evicted.
+	 *
+	 * @throws InterruptedException if the sleep is interrupted
+	 */
+	@Test
+	public void testEvictIdleSessions() throws InterruptedException {
+		StoreSessionManager shortLived = new StoreSessionManager(inventory, 20);
+		String sessionId = shortLived.openSession();
+		Thread.sleep(50);
+
+		assertEquals("One session should be evicted", 1, shortLived.evictIdleSessions());
+		assertEquals("No sessions should remain", 0, shortLived.getSessionCount());
+		assertNull("Evicted session should have no cart", shortLived.getCart(sessionId));
+	}
+
+	/**
+	 * Tests that no more than the most sessions are opened, and that idle
+	 * sessions are evicted to make room before a session is refused.
+	 *
+	 * @throws InterruptedException if the sleep is interrupted
+	 */
+	@Test
+	public void testMaxSessions() throws InterruptedException {
+		manager.setMaxSessions(2);
+		manager.openSession();
+		manager.openSession();
+		assertNull("A third session should be refused", manager.openSession());
+		assertEquals("Only two sessions should be open", 2, manager.getSessionCount());
+
+		StoreSessionManager shortLived = new StoreSessionManager(inventory, 20);
+		shortLived.setMaxSessions(2);
+		shortLived.openSession();
+		shortLived.openSession();
+		Thread.sleep(50);
+		assertNotNull("Idle sessions should make room", shortLived.openSession());
+		assertEquals("Only the new session should be open", 1, shortLived.getSessionCount());
+	}
+
+	/**
+	 * Tests that a session used while the evictor waits for its cart is kept,
+	 * since eviction checks the idle time again under the cart's lock.
+	 *
+	 * @throws InterruptedException if the sleep or join is interrupted
+	 */
+	@Test
+	public void testEvictionRechecksUnderLock() throws InterruptedException {
+		StoreSessionManager shortLived = new StoreSessionManager(inventory, 20);
+		String sessionId = shortLived.openSession();
+		ShoppingCart cart = shortLived.getCart(sessionId);
+		Thread.sleep(50);
+
+		int[] evicted = new int[1];
+		Thread evictor = new Thread(() -> evicted[0] = shortLived.evictIdleSessions());
+		synchronized (cart) {
+			evictor.start();
+			// Let the evictor see the idle session and wait for the cart
+			Thread.sleep(50);
+			assertTrue("Add should succeed", shortLived.addToCart(sessionId, "Sword", 1).isSuccess());
+		}
+		evictor.join();
+
+		assertEquals("Session used meanwhile should not be evicted", 0, evicted[0]);
+		assertSame("Session should keep its cart", cart, shortLived.getCart(sessionId));
+		assertEquals("Cart should keep the product", 1, cart.getQuantity(sword));
+	}
+}
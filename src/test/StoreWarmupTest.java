@@ -0,0 +1,65 @@
+package test;
+
+import org.junit.Test;
+
+import app.Armor;
+import app.Health;
+import app.InventoryManager;
+import app.SalableProduct;
+import app.StoreWarmup;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the {@link StoreWarmup} class. These tests check that warming
+ * up only reads the store's inventory, and that it works before the store has
+ * any products.
+ */
+public class StoreWarmupTest {
+
+	/**
+	 * Tests that warming up leaves every product's stock and version as they
+	 * were, even though it purchases carts.
+	 *
+	 * @throws Exception if a product cannot be written as JSON
+	 */
+	@Test
+	public void testWarmLeavesInventoryUnchanged() throws Exception {
+		InventoryManager inventory = new InventoryManager();
+		List<SalableProduct> products = Arrays.asList(new Weapon("Sword", "Sharp and can swing", 1200.0, 10),
+				new Armor("Shield", "Stops things", 1500.0, 30), new Health("Med Kit", "Life saver", 150.0, 2));
+		for (SalableProduct product : products) {
+			inventory.addSalableProduct(product);
+		}
+		int[] versions = new int[products.size()];
+		for (int i = 0; i < versions.length; i++) {
+			versions[i] = products.get(i).getVersion();
+		}
+
+		StoreWarmup.warm(inventory, 50);
+
+		assertEquals("No products should be added", products.size(), inventory.getProductsSnapshot().size());
+		assertEquals("Sword stock should be unchanged", 10, inventory.getProductByName("Sword").getQuantity());
+		assertEquals("Shield stock should be unchanged", 30, inventory.getProductByName("Shield").getQuantity());
+		assertEquals("Med kit stock should be unchanged", 2, inventory.getProductByName("Med Kit").getQuantity());
+		for (int i = 0; i < versions.length; i++) {
+			assertEquals("Products should not be changed", versions[i], products.get(i).getVersion());
+		}
+	}
+
+	/**
+	 * Tests that an empty inventory can be warmed up.
+	 *
+	 * @throws Exception if a product cannot be written as JSON
+	 */
+	@Test
+	public void testWarmEmptyInventory() throws Exception {
+		InventoryManager inventory = new InventoryManager();
+		assertTrue("Warm-up time should be reported", StoreWarmup.warm(inventory, 10) >= 0);
+		assertTrue("Inventory should stay empty", inventory.getProductsSnapshot().isEmpty());
+	}
+}
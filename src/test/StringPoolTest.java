@@ -0,0 +1,129 @@
+package test;
+
+import org.junit.Test;
+
+import app.Armor;
+import app.FileService;
+import app.SalableProduct;
+import app.StringPool;
+import app.Weapon;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for the {@link StringPool} class and its use when products are
+ * read from JSON.
+ */
+public class StringPoolTest {
+
+	private static final String CATALOG = "[{\"type\":\"weapon\",\"name\":\"Sword\",\"description\":\"Sharp\",\"price\":10.0,\"quantity\":1},"
+			+ "{\"type\":\"armor\",\"name\":\"Shield\",\"description\":\"Sharp\",\"price\":20.0,\"quantity\":2}]";
+
+	/**
+	 * Tests that equal strings come back as one instance.
+	 */
+	@Test
+	public void testIntern() {
+		StringPool pool = new StringPool(1024);
+		String first = pool.intern(new String("Sharp and pointy"));
+		assertSame("Equal strings should share an instance", first, pool.intern(new String("Sharp and pointy")));
+		assertNull("Null should stay null", pool.intern(null));
+		assertEquals("Pool should hold one string", 1, pool.size());
+	}
+
+	/**
+	 * Tests that a full pool drops the string used least recently, and that a
+	 * string larger than the pool is returned without being kept.
+	 */
+	@Test
+	public void testEviction() {
+		// Room for two five-letter strings
+		StringPool pool = new StringPool(2 * (40 + 10));
+		String sword = pool.intern(new String("Sword"));
+		String arrow = pool.intern(new String("Arrow"));
+		assertSame("Recently used strings should be kept", sword, pool.intern(new String("Sword")));
+		pool.intern("Spear");
+		assertEquals("Pool should not grow past its bytes", 2, pool.size());
+		assertEquals("One string should be dropped", 1, pool.getEvictions());
+		assertSame("String used most recently should be kept", sword, pool.intern(new String("Sword")));
+		assertNotSame("String used least recently should be dropped", arrow, pool.intern(new String("Arrow")));
+
+		String description = "Sharp".repeat(100);
+		assertSame("Strings larger than the pool should be returned as they are", description,
+				pool.intern(description));
+		assertTrue("Pool should stay within its bytes", pool.getPooledBytes() <= 2 * (40 + 10));
+	}
+
+	/**
+	 * Tests that a large pool is split into stripes, and that threads interning
+	 * the same strings at once still get one instance of each.
+	 *
+	 * @throws Exception if a thread is interrupted
+	 */
+	@Test
+	public void testStripes() throws Exception {
+		StringPool pool = new StringPool(64L * 1024 * 1024);
+		assertEquals("A large pool should use every stripe", StringPool.MAX_STRIPES, pool.getStripeCount());
+		assertEquals("A small pool should be one stripe", 1, new StringPool(1024).getStripeCount());
+
+		String[][] seen = new String[4][1000];
+		Thread[] threads = new Thread[seen.length];
+		for (int t = 0; t < threads.length; t++) {
+			String[] mine = seen[t];
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < mine.length; i++) {
+					mine[i] = pool.intern(new String("Description " + i));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (int t = 1; t < seen.length; t++) {
+			for (int i = 0; i < seen[t].length; i++) {
+				assertSame("Every thread should get the same instance", seen[0][i], seen[t][i]);
+			}
+		}
+		assertEquals("Pool should hold each string once", 1000, pool.size());
+	}
+
+	/**
+	 * Tests that products read from JSON share repeated descriptions.
+	 *
+	 * @throws Exception if the JSON cannot be read
+	 */
+	@Test
+	public void testJsonSharesDescriptions() throws Exception {
+		StringPool pool = new StringPool(1024);
+		SalableProduct[] products = new ObjectMapper().readerFor(SalableProduct[].class)
+				.withAttribute(StringPool.class, pool).readValue(CATALOG);
+		assertSame("Repeated descriptions should be one instance", products[0].getDescription(),
+				products[1].getDescription());
+		assertEquals("Pool should hold two names and one description", 3, pool.size());
+	}
+
+	/**
+	 * Tests that products loaded from a snapshot share repeated descriptions.
+	 *
+	 * @throws Exception if the snapshot cannot be written or read
+	 */
+	@Test
+	public void testSnapshotSharesDescriptions() throws Exception {
+		String snapshotFile = "test_pool.snapshot";
+		try {
+			FileService.saveSnapshot(snapshotFile, List.of(new Weapon("Sword", new String("Sharp"), 10.0, 1),
+					new Armor("Shield", new String("Sharp"), 20.0, 2)));
+			SalableProduct[] products = FileService.loadSnapshot(snapshotFile);
+			assertSame("Repeated descriptions should be one instance", products[0].getDescription(),
+					products[1].getDescription());
+		} finally {
+			new File(snapshotFile).delete();
+		}
+	}
+}